@@ -26,12 +26,15 @@ import java.util.Vector;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.bayes.net.ADNode;
+import weka.classifiers.bayes.net.ADTreeBuilder;
 import weka.classifiers.bayes.net.BIFReader;
+import weka.classifiers.bayes.net.InferencePlan;
 import weka.classifiers.bayes.net.ParentSet;
 import weka.classifiers.bayes.net.estimate.BayesNetEstimator;
 import weka.classifiers.bayes.net.estimate.DiscreteEstimatorBayes;
 import weka.classifiers.bayes.net.estimate.SimpleEstimator;
 import weka.classifiers.bayes.net.search.SearchAlgorithm;
+import weka.classifiers.bayes.net.search.SearchMetrics;
 import weka.classifiers.bayes.net.search.local.K2;
 import weka.classifiers.bayes.net.search.local.LocalScoreSearchAlgorithm;
 import weka.classifiers.bayes.net.search.local.Scoreable;
@@ -75,6 +78,18 @@ import weka.filters.unsupervised.attribute.ReplaceMissingValues;
  * </pre>
  * 
  * <pre>
+ * -adtree-leaf-size &lt;num&gt;
+ *  Min number of instances of an expanded ADTree node
+ *  (default 0, expand all nodes)
+ * </pre>
+ * 
+ * <pre>
+ * -adtree-memory &lt;MB&gt;
+ *  Memory in MB for ADTree nodes, beyond which nodes are
+ *  expanded on first use (default 0, no limit)
+ * </pre>
+ * 
+ * <pre>
  * -B &lt;BIF file&gt;
  *  BIF file to compare with
  * </pre>
@@ -152,6 +167,18 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
    */
   boolean m_bUseADTree = false;
 
+  /**
+   * ADTree nodes with fewer instances than this keep a list of their instances
+   * instead of being expanded further
+   */
+  int m_nADTreeLeafSize = 0;
+
+  /**
+   * Max estimated memory in MB used by the ADTree before nodes are only
+   * expanded when they are first used, 0 for no limit
+   */
+  int m_nADTreeMemory = 0;
+
   /**
    * Search algorithm used for learning the structure of a network.
    */
@@ -162,6 +189,12 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
    */
   BayesNetEstimator m_BayesNetEstimator = new SimpleEstimator();
 
+  /**
+   * The network compiled for batch prediction, null if it needs to be
+   * (re)compiled.
+   */
+  protected transient InferencePlan m_InferencePlan;
+
   /**
    * Returns default capabilities of the classifier.
    * 
@@ -216,7 +249,11 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
 
     // initialize ADTree
     if (m_bUseADTree) {
-      m_ADTree = ADNode.makeADTree(instances);
+      ADTreeBuilder builder = new ADTreeBuilder();
+      builder.setLeafListThreshold(m_nADTreeLeafSize);
+      builder.setMemoryBudget(m_nADTreeMemory * 1024L * 1024L);
+      builder.setNumThreads(getADTreeNumThreads());
+      m_ADTree = builder.build(instances);
       // System.out.println("Oef, done!");
     }
 
@@ -234,6 +271,23 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
     m_ADTree = null;
   } // buildClassifier
 
+  /**
+   * get the number of threads to build the ADTree on: the execution slots of
+   * the search algorithm, so the tree is built within the same budget as the
+   * search, and a single thread for searches without slots
+   * 
+   * @return number of threads, at least 1
+   */
+  protected int getADTreeNumThreads() {
+    if (!(m_SearchAlgorithm instanceof LocalScoreSearchAlgorithm)) {
+      return 1;
+    }
+    int nNumSlots = ((LocalScoreSearchAlgorithm) m_SearchAlgorithm)
+      .getNumSlots();
+    return nNumSlots > 0 ? nNumSlots : Runtime.getRuntime()
+      .availableProcessors();
+  } // getADTreeNumThreads
+
   /**
    * Returns the number of instances the model was built from.
    */
@@ -303,6 +357,7 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
    * @throws Exception in case of an error
    */
   public void initStructure() throws Exception {
+    m_InferencePlan = null;
 
     // initialize topological ordering
     // m_nOrder = new int[m_Instances.numAttributes()];
@@ -346,6 +401,7 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
    * @throws Exception in case of an error
    */
   public void estimateCPTs() throws Exception {
+    m_InferencePlan = null;
     m_BayesNetEstimator.estimateCPTs(this);
   } // estimateCPTs
 
@@ -355,6 +411,7 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
    * @throws Exception in case of an error
    */
   public void initCPTs() throws Exception {
+    m_InferencePlan = null;
     m_BayesNetEstimator.initCPTs(this);
   } // estimateCPTs
 
@@ -366,6 +423,7 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
    */
   public void updateClassifier(Instance instance) throws Exception {
     instance = normalizeInstance(instance);
+    m_InferencePlan = null;
     m_BayesNetEstimator.updateClassifier(this, instance);
   } // updateClassifier
 
@@ -382,6 +440,69 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
     return m_BayesNetEstimator.distributionForInstance(this, instance);
   } // distributionForInstance
 
+  /**
+   * Returns true if the estimator classifies instances from the CPTs of the
+   * network like SimpleEstimator does, so batch predictions can be made with
+   * a compiled inference plan.
+   * 
+   * @return true if batch predictions can be generated efficiently
+   */
+  @Override
+  public boolean implementsMoreEfficientBatchPrediction() {
+    try {
+      return m_BayesNetEstimator.getClass()
+        .getMethod("distributionForInstance", BayesNet.class, Instance.class)
+        .getDeclaringClass() == SimpleEstimator.class;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  } // implementsMoreEfficientBatchPrediction
+
+  /**
+   * Calculates the class membership probabilities for a batch of test
+   * instances with the compiled inference plan of the network. Only instances
+   * that have missing values or need to be discretized are passed through the
+   * filters.
+   * 
+   * @param instances the instances to be classified
+   * @return predicted class probability distributions
+   * @throws Exception if there is a problem generating the predictions
+   */
+  @Override
+  public double[][] distributionsForInstances(Instances instances)
+    throws Exception {
+    if (!implementsMoreEfficientBatchPrediction()) {
+      return super.distributionsForInstances(instances);
+    }
+    InferencePlan plan = getInferencePlan();
+    boolean bDiscretize = m_nNonDiscreteAttribute > -1
+      && instances.attribute(m_nNonDiscreteAttribute).type() != Attribute.NOMINAL;
+    double[][] fDistributions = new double[instances.numInstances()][];
+    for (int iInstance = 0; iInstance < instances.numInstances(); iInstance++) {
+      Instance instance = instances.instance(iInstance);
+      if (bDiscretize || !plan.isComplete(instance)) {
+        instance = normalizeInstance(instance);
+      }
+      fDistributions[iInstance] = plan.distributionForInstance(instance);
+    }
+    return fDistributions;
+  } // distributionsForInstances
+
+  /**
+   * Returns the network compiled for batch prediction, compiling it if the
+   * structure or the CPTs changed since it was last compiled.
+   * 
+   * @return the inference plan
+   */
+  protected InferencePlan getInferencePlan() {
+    InferencePlan plan = m_InferencePlan;
+    if (plan == null) {
+      plan = new InferencePlan(this);
+      m_InferencePlan = plan;
+    }
+    return plan;
+  } // getInferencePlan
+
   /**
    * Calculates the counts for Dirichlet distribution for the class membership
    * probabilities for the given test instance.
@@ -436,10 +557,18 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
    */
   @Override
   public Enumeration<Option> listOptions() {
-    Vector<Option> newVector = new Vector<Option>(4);
+    Vector<Option> newVector = new Vector<Option>(6);
 
     newVector.addElement(new Option("\tDo not use ADTree data structure\n",
       "D", 0, "-D"));
+    newVector.addElement(new Option(
+      "\tMin number of instances of an expanded ADTree node\n"
+        + "\t(default 0, expand all nodes)", "adtree-leaf-size", 1,
+      "-adtree-leaf-size <num>"));
+    newVector.addElement(new Option(
+      "\tMemory in MB for ADTree nodes, beyond which nodes are\n"
+        + "\texpanded on first use (default 0, no limit)", "adtree-memory", 1,
+      "-adtree-memory <MB>"));
     newVector.addElement(new Option("\tBIF file to compare with\n", "B", 1,
       "-B <BIF file>"));
     newVector.addElement(new Option("\tSearch algorithm\n", "Q", 1,
@@ -474,6 +603,18 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
    * </pre>
    * 
    * <pre>
+   * -adtree-leaf-size &lt;num&gt;
+   *  Min number of instances of an expanded ADTree node
+   *  (default 0, expand all nodes)
+   * </pre>
+   * 
+   * <pre>
+   * -adtree-memory &lt;MB&gt;
+   *  Memory in MB for ADTree nodes, beyond which nodes are
+   *  expanded on first use (default 0, no limit)
+   * </pre>
+   * 
+   * <pre>
    * -B &lt;BIF file&gt;
    *  BIF file to compare with
    * </pre>
@@ -498,6 +639,20 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
     super.setOptions(options);
     m_bUseADTree = !(Utils.getFlag('D', options));
 
+    String sLeafSize = Utils.getOption("adtree-leaf-size", options);
+    if (sLeafSize.length() != 0) {
+      setADTreeLeafSize(Integer.parseInt(sLeafSize));
+    } else {
+      setADTreeLeafSize(0);
+    }
+
+    String sMemory = Utils.getOption("adtree-memory", options);
+    if (sMemory.length() != 0) {
+      setADTreeMemory(Integer.parseInt(sMemory));
+    } else {
+      setADTreeMemory(0);
+    }
+
     String sBIFFile = Utils.getOption('B', options);
     if (sBIFFile != null && !sBIFFile.equals("")) {
       setBIFFile(sBIFFile);
@@ -576,6 +731,16 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
       options.add("-D");
     }
 
+    if (m_nADTreeLeafSize != 0) {
+      options.add("-adtree-leaf-size");
+      options.add("" + m_nADTreeLeafSize);
+    }
+
+    if (m_nADTreeMemory != 0) {
+      options.add("-adtree-memory");
+      options.add("" + m_nADTreeMemory);
+    }
+
     if (m_otherBayesNet != null) {
       options.add("-B");
       options.add(m_otherBayesNet.getFileName());
@@ -648,6 +813,40 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
     return m_bUseADTree;
   }
 
+  /**
+   * Set the min number of instances of an expanded ADTree node. Nodes with
+   * fewer instances keep a list of their instances instead.
+   * 
+   * @param nADTreeLeafSize min number of instances of an expanded node
+   */
+  public void setADTreeLeafSize(int nADTreeLeafSize) {
+    m_nADTreeLeafSize = nADTreeLeafSize;
+  }
+
+  /**
+   * @return min number of instances of an expanded ADTree node
+   */
+  public int getADTreeLeafSize() {
+    return m_nADTreeLeafSize;
+  }
+
+  /**
+   * Set the memory available for ADTree nodes, beyond which nodes are only
+   * expanded when they are first used
+   * 
+   * @param nADTreeMemory memory in MB, 0 for no limit
+   */
+  public void setADTreeMemory(int nADTreeMemory) {
+    m_nADTreeMemory = nADTreeMemory;
+  }
+
+  /**
+   * @return memory in MB available for ADTree nodes, 0 for no limit
+   */
+  public int getADTreeMemory() {
+    return m_nADTreeMemory;
+  }
+
   /**
    * Set name of network in BIF file to compare with
    * 
@@ -887,7 +1086,27 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
       + " learning time goes down typically. However, because ADTrees are memory"
       + " intensive, memory problems may occur. Switching this option off makes"
       + " the structure learning algorithms slower, and run with less memory."
-      + " By default, ADTrees are used.";
+      + " By default, ADTrees are used. The tree is built on as many threads as"
+      + " the search algorithm has execution slots.";
+  }
+
+  /**
+   * @return a string to describe the ADTreeLeafSize option.
+   */
+  public String ADTreeLeafSizeTipText() {
+    return "ADTree nodes with fewer instances than this are not expanded but"
+      + " keep a list of their instances, which are counted directly. This"
+      + " saves a lot of memory on data sets with many attributes. Set to 0 to"
+      + " expand all nodes.";
+  }
+
+  /**
+   * @return a string to describe the ADTreeMemory option.
+   */
+  public String ADTreeMemoryTipText() {
+    return "Estimated memory in MB available for ADTree nodes. Once it is used"
+      + " up, further nodes are only expanded when they are first needed for"
+      + " counting. Set to 0 for no limit.";
   }
 
   /**
@@ -1093,6 +1312,10 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
     newVector.addElement("measureMDLScore");
     newVector.addElement("measureAICScore");
     newVector.addElement("measureEntropyScore");
+    newVector.addElement("measureSearchTime");
+    newVector.addElement("measureSearchIterations");
+    newVector.addElement("measureScoreEvaluations");
+    newVector.addElement("measureScoreCacheHitRate");
     return newVector.elements();
   } // enumerateMeasures
 
@@ -1178,6 +1401,38 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
     }
   } // measureEntropyScore
 
+  /**
+   * get a total of the metrics the structure search recorded
+   * 
+   * @param sName name of the total
+   * @return the total, 0 if the search did not record it
+   */
+  protected double getSearchTotal(String sName) {
+    SearchMetrics metrics = m_SearchAlgorithm == null ? null
+      : m_SearchAlgorithm.getMetrics();
+    if (metrics == null) {
+      return 0;
+    }
+    double fTotal = metrics.getTotal(sName);
+    return Double.isNaN(fTotal) ? 0 : fTotal;
+  } // getSearchTotal
+
+  public double measureSearchTime() {
+    return getSearchTotal(SearchMetrics.WALL_TIME);
+  } // measureSearchTime
+
+  public double measureSearchIterations() {
+    return getSearchTotal(SearchMetrics.ITERATIONS);
+  } // measureSearchIterations
+
+  public double measureScoreEvaluations() {
+    return getSearchTotal(SearchMetrics.SCORE_EVALUATIONS);
+  } // measureScoreEvaluations
+
+  public double measureScoreCacheHitRate() {
+    return getSearchTotal(SearchMetrics.CACHE_HIT_RATE);
+  } // measureScoreCacheHitRate
+
   /**
    * Returns the value of the named measure
    * 
@@ -1214,6 +1469,18 @@ public class BayesNet extends AbstractClassifier implements OptionHandler,
     if (measureName.equals("measureEntropyScore")) {
       return measureEntropyScore();
     }
+    if (measureName.equals("measureSearchTime")) {
+      return measureSearchTime();
+    }
+    if (measureName.equals("measureSearchIterations")) {
+      return measureSearchIterations();
+    }
+    if (measureName.equals("measureScoreEvaluations")) {
+      return measureScoreEvaluations();
+    }
+    if (measureName.equals("measureScoreCacheHitRate")) {
+      return measureScoreCacheHitRate();
+    }
     return 0;
   } // getMeasure
 
@@ -0,0 +1,768 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * StreamingBayesNet.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.bayes;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import weka.classifiers.UpdateableClassifier;
+import weka.classifiers.bayes.net.ParentSet;
+import weka.classifiers.bayes.net.estimate.SimpleEstimator;
+import weka.classifiers.bayes.net.search.SearchAlgorithm;
+import weka.classifiers.bayes.net.search.local.AntColonyOptimization;
+import weka.classifiers.bayes.net.search.local.HillClimber;
+import weka.classifiers.bayes.net.search.local.LocalScoreSearchAlgorithm;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.RevisionUtils;
+import weka.core.SerializedObject;
+import weka.core.Utils;
+import weka.gui.ProgrammaticProperty;
+
+/**
+ <!-- globalinfo-start -->
+ * Bayes Network classifier for data streams. The CPTs are estimated from a sliding window of the most recent instances: every update adds the new instance to the counts and subtracts the instance that leaves the window. Every so many updates, the structure is refreshed in a background thread by a search that starts from the current structure, on a snapshot of the window: a hill climber limited to a few steps, or an ant colony limited to a few iterations that continues with the pheromone the last refresh ended with. The refreshed structure and its CPTs replace the old ones in a single step, so classification never sees a mix of both. A refresh can be skipped when the score of the current structure on the window has not dropped by more than a threshold since the last refresh.
+ * <p/>
+ <!-- globalinfo-end -->
+ *
+ <!-- options-start -->
+ * Valid options are: <p/>
+ *
+ * <pre> -window &lt;num&gt;
+ *  Number of most recent instances the CPTs are estimated from
+ *  (default 10000)</pre>
+ *
+ * <pre> -refresh-interval &lt;num&gt;
+ *  Number of updates between two structure refreshes
+ *  (default 1000, 0 for no refreshes)</pre>
+ *
+ * <pre> -refresh-steps &lt;num&gt;
+ *  Max number of arcs a hill climbing refresh adds, deletes
+ *  or reverses, or number of iterations of an ant colony
+ *  refresh (default 5, 0 for no limit)</pre>
+ *
+ * <pre> -drift-threshold &lt;num&gt;
+ *  Min drop of the score per instance of the structure since the
+ *  last refresh for a refresh to search (default 0, always search)</pre>
+ *
+ * <pre> -refresh-search &lt;search algorithm specification&gt;
+ *  Search algorithm that refreshes the structure, a hill climber
+ *  or ant colony optimization
+ *  (default weka.classifiers.bayes.net.search.local.HillClimber)</pre>
+ *
+ <!-- options-end -->
+ *
+ * and the options of BayesNet.
+ *
+ * @version $Revision$
+ */
+public class StreamingBayesNet extends BayesNet implements
+  UpdateableClassifier {
+
+  /** for serialization */
+  private static final long serialVersionUID = 4301773146095376215L;
+
+  /** number of most recent instances the CPTs are estimated from **/
+  protected int m_nWindowSize = 10000;
+
+  /** number of updates between two refreshes, 0 for no refreshes **/
+  protected int m_nRefreshInterval = 1000;
+
+  /**
+   * max number of steps of a hill climbing refresh, or number of iterations of
+   * an ant colony refresh, 0 for no limit
+   **/
+  protected int m_nRefreshSteps = 5;
+
+  /** min drop of the score per instance for a refresh to search **/
+  protected double m_fDriftThreshold = 0;
+
+  /** search algorithm that refreshes the structure **/
+  protected SearchAlgorithm m_RefreshSearch = new HillClimber();
+
+  /** the most recent instances, oldest first **/
+  protected ArrayDeque<Instance> m_Window = new ArrayDeque<Instance>();
+
+  /** number of updates since the last refresh started **/
+  protected int m_nUpdatesSinceRefresh;
+
+  /**
+   * score per instance of the structure on the window when it was last
+   * refreshed, NaN if it was not scored yet
+   **/
+  protected double m_fRefreshScore = Double.NaN;
+
+  /** number of refreshes that searched for a new structure **/
+  protected int m_nNrOfRefreshes;
+
+  /**
+   * pheromone matrix the last ant colony refresh ended with, the next one
+   * starts with it. Null if there is none
+   **/
+  protected double[][] m_Pheromone;
+
+  /** the running refresh, null if there is none **/
+  protected transient Future<Refresh> m_Refresh;
+
+  /** executor refreshes run on, null to start a thread per refresh **/
+  protected transient Executor m_Executor;
+
+  /**
+   * result of a refresh: the structure it found, if it searched, and the
+   * score of the structure
+   */
+  protected static class Refresh {
+
+    /** parent sets of the new structure, null if there was no search **/
+    ParentSet[] m_ParentSets;
+
+    /** score per instance of the structure on the window snapshot **/
+    double m_fScore;
+
+    /** pheromone matrix an ant colony search ended with, null if none **/
+    double[][] m_Pheromone;
+  } // class Refresh
+
+  /**
+   * Generates the classifier. The last instances, as many as fit in the
+   * window, fill the window and the CPTs are estimated from them.
+   *
+   * @param instances set of instances serving as training data
+   * @throws Exception if the classifier has not been generated successfully
+   */
+  @Override
+  public synchronized void buildClassifier(Instances instances)
+    throws Exception {
+    if (m_BayesNetEstimator.getClass() != SimpleEstimator.class) {
+      throw new Exception("Instances leaving the window are subtracted from "
+        + "the CPTs, which needs the " + SimpleEstimator.class.getName());
+    }
+    if (m_Refresh != null) {
+      m_Refresh.cancel(true);
+      m_Refresh = null;
+    }
+    m_Window = new ArrayDeque<Instance>();
+    m_nUpdatesSinceRefresh = 0;
+    m_fRefreshScore = Double.NaN;
+    m_nNrOfRefreshes = 0;
+    m_Pheromone = null;
+    super.buildClassifier(instances);
+  } // buildClassifier
+
+  /**
+   * estimates the CPTs from the window. While the network is built, the data
+   * fills the window first.
+   *
+   * @throws Exception in case of an error
+   */
+  @Override
+  public void estimateCPTs() throws Exception {
+    m_InferencePlan = null;
+    if (m_Instances.numInstances() > 0) {
+      m_Window = new ArrayDeque<Instance>();
+      int nFirst = Math.max(0, m_Instances.numInstances() - m_nWindowSize);
+      for (int iInstance = nFirst; iInstance < m_Instances.numInstances(); iInstance++) {
+        m_Window.addLast(copyForWindow(m_Instances.instance(iInstance)));
+      }
+    }
+    m_BayesNetEstimator.initCPTs(this);
+    for (Instance instance : m_Window) {
+      m_BayesNetEstimator.updateClassifier(this, instance);
+    }
+  } // estimateCPTs
+
+  /**
+   * copy an instance to keep in the window, without a reference to its data
+   * set so the window does not keep data sets alive
+   *
+   * @param instance the instance
+   * @return the copy
+   */
+  protected Instance copyForWindow(Instance instance) {
+    Instance copy = (Instance) instance.copy();
+    copy.setDataset(null);
+    return copy;
+  } // copyForWindow
+
+  /**
+   * Updates the classifier with the given instance: adds it to the window and
+   * the CPTs, subtracts the instance that leaves the window from the CPTs,
+   * installs the structure of a refresh that finished and starts a refresh
+   * when it is due.
+   *
+   * @param instance the new training instance to include in the model
+   * @throws Exception if the instance could not be incorporated in the model,
+   *           or a refresh failed
+   */
+  @Override
+  public synchronized void updateClassifier(Instance instance)
+    throws Exception {
+    if (m_Refresh != null && m_Refresh.isDone()) {
+      installRefresh();
+    }
+    if (instance.classIsMissing()) {
+      return;
+    }
+
+    Instance windowInstance = copyForWindow(normalizeInstance(instance));
+    m_InferencePlan = null;
+    m_BayesNetEstimator.updateClassifier(this, windowInstance);
+    m_Window.addLast(windowInstance);
+    while (m_Window.size() > m_nWindowSize) {
+      Instance removal = (Instance) m_Window.removeFirst().copy();
+      removal.setWeight(-removal.weight());
+      m_BayesNetEstimator.updateClassifier(this, removal);
+    }
+
+    m_nUpdatesSinceRefresh++;
+    if (m_nRefreshInterval > 0 && m_nUpdatesSinceRefresh >= m_nRefreshInterval
+      && m_Refresh == null) {
+      refresh();
+    }
+  } // updateClassifier
+
+  /**
+   * starts refreshing the structure in the background, on a snapshot of the
+   * window, unless a refresh is running already
+   */
+  public synchronized void refresh() {
+    if (m_Refresh != null || m_Window.isEmpty()) {
+      return;
+    }
+    m_nUpdatesSinceRefresh = 0;
+
+    final Instances snapshot = new Instances(m_Instances, m_Window.size());
+    for (Instance instance : m_Window) {
+      snapshot.add(instance);
+    }
+    final ParentSet[] parentSets = new ParentSet[m_ParentSets.length];
+    for (int iNode = 0; iNode < parentSets.length; iNode++) {
+      parentSets[iNode] = new ParentSet(m_ParentSets[iNode]);
+    }
+    final double fRefreshScore = m_fRefreshScore;
+    final double fDriftThreshold = m_fDriftThreshold;
+    final SearchAlgorithm refreshSearch = m_RefreshSearch;
+    final int nRefreshSteps = m_nRefreshSteps;
+    final double[][] pheromone = m_Pheromone;
+
+    FutureTask<Refresh> task = new FutureTask<Refresh>(new Callable<Refresh>() {
+      @Override
+      public Refresh call() throws Exception {
+        BayesNet bayesNet = new BayesNet();
+        bayesNet.m_Instances = snapshot;
+        bayesNet.m_ParentSets = parentSets;
+
+        Refresh refresh = new Refresh();
+        refresh.m_fScore = scoreStructure(bayesNet, refreshSearch);
+        if (fDriftThreshold > 0 && !Double.isNaN(fRefreshScore)
+          && fRefreshScore - refresh.m_fScore <= fDriftThreshold) {
+          // no drift, keep comparing with the score of the last refresh
+          refresh.m_fScore = fRefreshScore;
+          return refresh;
+        }
+
+        SearchAlgorithm search = (SearchAlgorithm) new SerializedObject(
+          refreshSearch).getObject();
+        if (search instanceof HillClimber) {
+          ((HillClimber) search).setMaxNrOfSteps(nRefreshSteps);
+        } else {
+          // continue from the current structure and the pheromone of the
+          // last refresh instead of a cold search from K2
+          AntColonyOptimization aco = (AntColonyOptimization) search;
+          if (nRefreshSteps > 0) {
+            aco.setNumOfIterations(nRefreshSteps);
+          }
+          aco.setWarmStart(true);
+          aco.setInitialPheromone(pheromone);
+        }
+        search.refineStructure(bayesNet, snapshot);
+        refresh.m_ParentSets = bayesNet.m_ParentSets;
+        if (search instanceof AntColonyOptimization) {
+          refresh.m_Pheromone = ((AntColonyOptimization) search)
+            .getLastPheromone();
+        }
+        refresh.m_fScore = scoreStructure(bayesNet, refreshSearch);
+        return refresh;
+      }
+    });
+    m_Refresh = task;
+    if (m_Executor != null) {
+      m_Executor.execute(task);
+    } else {
+      Thread thread = new Thread(task, "bayes-net-refresh");
+      // a refresh should never keep the JVM alive
+      thread.setDaemon(true);
+      thread.start();
+    }
+  } // refresh
+
+  /**
+   * score per instance of the structure of a network on its data, with the
+   * score type of the refresh search if it has one
+   *
+   * @param bayesNet network holding the structure and the data
+   * @param refreshSearch the refresh search
+   * @return score divided by the number of instances
+   */
+  protected static double scoreStructure(BayesNet bayesNet,
+    SearchAlgorithm refreshSearch) {
+    LocalScoreSearchAlgorithm scorer = new LocalScoreSearchAlgorithm(bayesNet,
+      bayesNet.m_Instances);
+    if (refreshSearch instanceof LocalScoreSearchAlgorithm) {
+      scorer.setScoreType(((LocalScoreSearchAlgorithm) refreshSearch)
+        .getScoreType());
+    }
+    double fScore = 0;
+    for (int iNode = 0; iNode < bayesNet.m_Instances.numAttributes(); iNode++) {
+      fScore += scorer.calcNodeScore(iNode);
+    }
+    return fScore / bayesNet.m_Instances.numInstances();
+  } // scoreStructure
+
+  /**
+   * installs the result of the finished refresh: the CPTs of the new
+   * structure are estimated from the current window, then structure and CPTs
+   * replace the old ones
+   *
+   * @throws Exception if the refresh failed
+   */
+  protected void installRefresh() throws Exception {
+    Future<Refresh> future = m_Refresh;
+    m_Refresh = null;
+    Refresh refresh;
+    try {
+      refresh = future.get();
+    } catch (ExecutionException e) {
+      throw new Exception("Refreshing the structure failed", e.getCause());
+    }
+    m_fRefreshScore = refresh.m_fScore;
+    if (refresh.m_ParentSets == null) {
+      return;
+    }
+    if (refresh.m_Pheromone != null) {
+      m_Pheromone = refresh.m_Pheromone;
+    }
+
+    BayesNet bayesNet = new BayesNet();
+    bayesNet.m_Instances = m_Instances;
+    bayesNet.m_ParentSets = refresh.m_ParentSets;
+    m_BayesNetEstimator.initCPTs(bayesNet);
+    for (Instance instance : m_Window) {
+      m_BayesNetEstimator.updateClassifier(bayesNet, instance);
+    }
+    m_ParentSets = bayesNet.m_ParentSets;
+    m_Distributions = bayesNet.m_Distributions;
+    m_InferencePlan = null;
+    m_nNrOfRefreshes++;
+  } // installRefresh
+
+  /**
+   * waits for the running refresh, if any, and installs its structure
+   *
+   * @throws Exception if the refresh failed or waiting was interrupted
+   */
+  public synchronized void waitForRefresh() throws Exception {
+    if (m_Refresh != null) {
+      installRefresh();
+    }
+  } // waitForRefresh
+
+  /**
+   * Calculates the class membership probabilities for the given test instance.
+   *
+   * @param instance the instance to be classified
+   * @return predicted class probability distribution
+   * @throws Exception if there is a problem generating the prediction
+   */
+  @Override
+  public synchronized double[] distributionForInstance(Instance instance)
+    throws Exception {
+    return super.distributionForInstance(instance);
+  } // distributionForInstance
+
+  /**
+   * Calculates the class membership probabilities for the given test
+   * instances.
+   *
+   * @param instances the instances to be classified
+   * @return predicted class probability distributions
+   * @throws Exception if there is a problem generating the predictions
+   */
+  @Override
+  public synchronized double[][] distributionsForInstances(Instances instances)
+    throws Exception {
+    return super.distributionsForInstances(instances);
+  } // distributionsForInstances
+
+  /**
+   * @return number of instances in the window
+   */
+  public synchronized int getNrOfWindowInstances() {
+    return m_Window.size();
+  }
+
+  /**
+   * @return number of refreshes that searched for a new structure
+   */
+  public synchronized int getNrOfRefreshes() {
+    return m_nNrOfRefreshes;
+  }
+
+  /**
+   * Returns an enumeration describing the available options
+   *
+   * @return an enumeration of all the available options
+   */
+  @Override
+  public Enumeration<Option> listOptions() {
+    Vector<Option> newVector = new Vector<Option>(5);
+
+    newVector.addElement(new Option(
+      "\tNumber of most recent instances the CPTs are estimated from\n"
+        + "\t(default 10000)", "window", 1, "-window <num>"));
+    newVector.addElement(new Option(
+      "\tNumber of updates between two structure refreshes\n"
+        + "\t(default 1000, 0 for no refreshes)", "refresh-interval", 1,
+      "-refresh-interval <num>"));
+    newVector.addElement(new Option(
+      "\tMax number of arcs a hill climbing refresh adds, deletes\n"
+        + "\tor reverses, or number of iterations of an ant colony\n"
+        + "\trefresh (default 5, 0 for no limit)", "refresh-steps", 1,
+      "-refresh-steps <num>"));
+    newVector.addElement(new Option(
+      "\tMin drop of the score per instance of the structure since the\n"
+        + "\tlast refresh for a refresh to search (default 0, always search)",
+      "drift-threshold", 1, "-drift-threshold <num>"));
+    newVector.addElement(new Option(
+      "\tSearch algorithm that refreshes the structure, a hill climber\n"
+        + "\tor ant colony optimization\n"
+        + "\t(default weka.classifiers.bayes.net.search.local.HillClimber)",
+      "refresh-search", 1,
+      "-refresh-search <search algorithm specification>"));
+
+    newVector.addAll(Collections.list(super.listOptions()));
+
+    return newVector.elements();
+  } // listOptions
+
+  /**
+   * Parses a given list of options.
+   * <p/>
+   *
+   <!-- options-start -->
+   * Valid options are: <p/>
+   *
+   * <pre> -window &lt;num&gt;
+   *  Number of most recent instances the CPTs are estimated from
+   *  (default 10000)</pre>
+   *
+   * <pre> -refresh-interval &lt;num&gt;
+   *  Number of updates between two structure refreshes
+   *  (default 1000, 0 for no refreshes)</pre>
+   *
+   * <pre> -refresh-steps &lt;num&gt;
+   *  Max number of arcs a hill climbing refresh adds, deletes
+   *  or reverses, or number of iterations of an ant colony
+   *  refresh (default 5, 0 for no limit)</pre>
+   *
+   * <pre> -drift-threshold &lt;num&gt;
+   *  Min drop of the score per instance of the structure since the
+   *  last refresh for a refresh to search (default 0, always search)</pre>
+   *
+   * <pre> -refresh-search &lt;search algorithm specification&gt;
+   *  Search algorithm that refreshes the structure, a hill climber
+   *  or ant colony optimization
+   *  (default weka.classifiers.bayes.net.search.local.HillClimber)</pre>
+   *
+   <!-- options-end -->
+   *
+   * and the options of BayesNet.
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  @Override
+  public void setOptions(String[] options) throws Exception {
+    String sWindowSize = Utils.getOption("window", options);
+    if (sWindowSize.length() != 0) {
+      setWindowSize(Integer.parseInt(sWindowSize));
+    } else {
+      setWindowSize(10000);
+    }
+
+    String sRefreshInterval = Utils.getOption("refresh-interval", options);
+    if (sRefreshInterval.length() != 0) {
+      setRefreshInterval(Integer.parseInt(sRefreshInterval));
+    } else {
+      setRefreshInterval(1000);
+    }
+
+    String sRefreshSteps = Utils.getOption("refresh-steps", options);
+    if (sRefreshSteps.length() != 0) {
+      setRefreshSteps(Integer.parseInt(sRefreshSteps));
+    } else {
+      setRefreshSteps(5);
+    }
+
+    String sDriftThreshold = Utils.getOption("drift-threshold", options);
+    if (sDriftThreshold.length() != 0) {
+      setDriftThreshold(Double.parseDouble(sDriftThreshold));
+    } else {
+      setDriftThreshold(0);
+    }
+
+    String sRefreshSearch = Utils.getOption("refresh-search", options);
+    if (sRefreshSearch.length() != 0) {
+      String[] searchSpec = Utils.splitOptions(sRefreshSearch);
+      String sSearchName = searchSpec[0];
+      searchSpec[0] = "";
+      setRefreshSearch((SearchAlgorithm) Utils.forName(SearchAlgorithm.class,
+        sSearchName, searchSpec));
+    } else {
+      setRefreshSearch(new HillClimber());
+    }
+
+    super.setOptions(options);
+  } // setOptions
+
+  /**
+   * Gets the current settings of the classifier.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  @Override
+  public String[] getOptions() {
+    Vector<String> options = new Vector<String>();
+
+    options.add("-window");
+    options.add("" + m_nWindowSize);
+    options.add("-refresh-interval");
+    options.add("" + m_nRefreshInterval);
+    options.add("-refresh-steps");
+    options.add("" + m_nRefreshSteps);
+    options.add("-drift-threshold");
+    options.add("" + m_fDriftThreshold);
+    options.add("-refresh-search");
+    options.add(getRefreshSearch().getClass().getName() + " "
+      + Utils.joinOptions(getRefreshSearch().getOptions()));
+
+    // BayesNet's options end with those of the estimator, so come last
+    Collections.addAll(options, super.getOptions());
+
+    return options.toArray(new String[0]);
+  } // getOptions
+
+  /**
+   * @param nWindowSize number of most recent instances the CPTs are
+   *          estimated from
+   */
+  public void setWindowSize(int nWindowSize) {
+    m_nWindowSize = nWindowSize;
+  }
+
+  /**
+   * @return number of most recent instances the CPTs are estimated from
+   */
+  public int getWindowSize() {
+    return m_nWindowSize;
+  }
+
+  /**
+   * @param nRefreshInterval number of updates between two refreshes, 0 for
+   *          no refreshes
+   */
+  public void setRefreshInterval(int nRefreshInterval) {
+    m_nRefreshInterval = nRefreshInterval;
+  }
+
+  /**
+   * @return number of updates between two refreshes, 0 for no refreshes
+   */
+  public int getRefreshInterval() {
+    return m_nRefreshInterval;
+  }
+
+  /**
+   * @param nRefreshSteps max number of steps of a hill climbing refresh, or
+   *          number of iterations of an ant colony refresh, 0 for no limit
+   */
+  public void setRefreshSteps(int nRefreshSteps) {
+    m_nRefreshSteps = nRefreshSteps;
+  }
+
+  /**
+   * @return max number of steps of a hill climbing refresh, or number of
+   *         iterations of an ant colony refresh, 0 for no limit
+   */
+  public int getRefreshSteps() {
+    return m_nRefreshSteps;
+  }
+
+  /**
+   * @param fDriftThreshold min drop of the score per instance for a refresh
+   *          to search, 0 to always search
+   */
+  public void setDriftThreshold(double fDriftThreshold) {
+    m_fDriftThreshold = fDriftThreshold;
+  }
+
+  /**
+   * @return min drop of the score per instance for a refresh to search
+   */
+  public double getDriftThreshold() {
+    return m_fDriftThreshold;
+  }
+
+  /**
+   * @param refreshSearch search algorithm that refreshes the structure,
+   *          starting from the current structure. Only a hill climber or ant
+   *          colony optimization: other searches can not be limited to a few
+   *          steps from the current structure, so every refresh would be a
+   *          full search from scratch
+   * @throws IllegalArgumentException if the search is neither
+   */
+  public void setRefreshSearch(SearchAlgorithm refreshSearch) {
+    if (!(refreshSearch instanceof HillClimber)
+      && !(refreshSearch instanceof AntColonyOptimization)) {
+      throw new IllegalArgumentException("A refresh needs a "
+        + HillClimber.class.getName() + " or "
+        + AntColonyOptimization.class.getName() + " to search, not "
+        + refreshSearch.getClass().getName());
+    }
+    m_RefreshSearch = refreshSearch;
+  }
+
+  /**
+   * @return search algorithm that refreshes the structure
+   */
+  public SearchAlgorithm getRefreshSearch() {
+    return m_RefreshSearch;
+  }
+
+  /**
+   * @param executor executor refreshes run on, or null to start a thread per
+   *          refresh
+   */
+  @ProgrammaticProperty
+  public void setExecutor(Executor executor) {
+    m_Executor = executor;
+  }
+
+  /**
+   * @return executor refreshes run on, null if a thread is started per
+   *         refresh
+   */
+  @ProgrammaticProperty
+  public Executor getExecutor() {
+    return m_Executor;
+  }
+
+  /**
+   * @return a string to describe the WindowSize option.
+   */
+  public String windowSizeTipText() {
+    return "Number of most recent instances the CPTs are estimated from.";
+  }
+
+  /**
+   * @return a string to describe the RefreshInterval option.
+   */
+  public String refreshIntervalTipText() {
+    return "Number of updates between two refreshes of the structure, 0 for no"
+      + " refreshes.";
+  }
+
+  /**
+   * @return a string to describe the RefreshSteps option.
+   */
+  public String refreshStepsTipText() {
+    return "Max number of arcs a hill climbing refresh adds, deletes or reverses,"
+      + " or number of iterations of an ant colony refresh, 0 for no limit (an"
+      + " ant colony then runs its own number of iterations).";
+  }
+
+  /**
+   * @return a string to describe the DriftThreshold option.
+   */
+  public String driftThresholdTipText() {
+    return "When larger than 0, a refresh only searches for a new structure if the"
+      + " score per instance of the current structure on the window dropped by more"
+      + " than this since the last refresh.";
+  }
+
+  /**
+   * @return a string to describe the RefreshSearch option.
+   */
+  public String refreshSearchTipText() {
+    return "Search algorithm that refreshes the structure, a hill climber or ant"
+      + " colony optimization. It starts from the current structure, and an ant"
+      + " colony also from the pheromone the last refresh ended with, so a"
+      + " search limited to a few steps or iterations is cheap.";
+  }
+
+  /**
+   * This will return a string describing the classifier.
+   *
+   * @return The string.
+   */
+  @Override
+  public String globalInfo() {
+    return "Bayes Network classifier for data streams. The CPTs are estimated "
+      + "from a sliding window of the most recent instances: every update adds "
+      + "the new instance to the counts and subtracts the instance that leaves "
+      + "the window. Every so many updates, the structure is refreshed in a "
+      + "background thread by a search that starts from the current structure, "
+      + "on a snapshot of the window: a hill climber limited to a few steps, or "
+      + "an ant colony limited to a few iterations that continues with the "
+      + "pheromone the last refresh ended with. The refreshed structure and its CPTs replace the old ones in a "
+      + "single step, so classification never sees a mix of both. A refresh can "
+      + "be skipped when the score of the current structure on the window has "
+      + "not dropped by more than a threshold since the last refresh.";
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+
+  /**
+   * Main method for testing this class.
+   *
+   * @param argv the options
+   */
+  public static void main(String[] argv) {
+    runClassifier(new StreamingBayesNet(), argv);
+  } // main
+} // class StreamingBayesNet
@@ -24,6 +24,7 @@ package weka.classifiers.bayes.net;
 import java.io.FileReader;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import weka.core.Instance;
 import weka.core.Instances;
@@ -72,14 +73,30 @@ public class ADNode implements Serializable, TechnicalInformationHandler,
 
   final static int MIN_RECORD_SIZE = 0;
 
-  /** list of VaryNode children **/
-  public VaryNode[] m_VaryNodes;
+  /**
+   * list of VaryNode children. Volatile, since nodes built by an
+   * ADTreeBuilder may be expanded on first use while other threads count.
+   **/
+  public volatile VaryNode[] m_VaryNodes;
   /**
    * list of Instance children (either m_Instances or m_VaryNodes is
    * instantiated)
    **/
   public Instance[] m_Instances;
 
+  /**
+   * indexes of the records of this node in the data of m_Builder, used
+   * instead of m_Instances by nodes built with an ADTreeBuilder that are not
+   * expanded
+   **/
+  public int[] m_nRecords;
+
+  /**
+   * builder holding the data m_nRecords refers to, null once the node has
+   * expanded so expanded trees do not keep the data of the builder alive
+   **/
+  public volatile ADTreeBuilder m_Builder;
+
   /** count **/
   public int m_nCount;
 
@@ -202,12 +219,7 @@ public class ADNode implements Serializable, TechnicalInformationHandler,
    * @return ADNode representing an ADTree
    */
   public static ADNode makeADTree(Instances instances) {
-    ArrayList<Integer> nRecords = new ArrayList<Integer>(
-      instances.numInstances());
-    for (int iRecord = 0; iRecord < instances.numInstances(); iRecord++) {
-      nRecords.add(new Integer(iRecord));
-    }
-    return makeADTree(0, nRecords, instances);
+    return new ADTreeBuilder().build(instances);
   } // MakeADTree
 
   /**
@@ -234,9 +246,27 @@ public class ADNode implements Serializable, TechnicalInformationHandler,
       }
       return;
     } else {
-      if (m_VaryNodes != null) {
-        m_VaryNodes[nNodes[iNode] - m_nStartNode].getCounts(nCounts, nNodes,
+      VaryNode[] varyNodes = m_VaryNodes;
+      if (varyNodes == null && m_Instances == null) {
+        // leaf lists keep their builder, a node without builder was expanded
+        // by another thread since m_VaryNodes was read
+        ADTreeBuilder builder = m_Builder;
+        if (builder == null || !builder.isLeafList(m_nCount)) {
+          varyNodes = expand();
+        }
+      }
+      if (varyNodes != null) {
+        varyNodes[nNodes[iNode] - m_nStartNode].getCounts(nCounts, nNodes,
           nOffsets, iNode, iOffset, this, bSubstract);
+      } else if (m_nRecords != null) {
+        int nDelta = bSubstract ? -1 : 1;
+        for (int iRecord : m_nRecords) {
+          int iOffset2 = iOffset;
+          for (int iNode2 = iNode; iNode2 < nNodes.length; iNode2++) {
+            iOffset2 += nOffsets[iNode2] * m_Builder.value(nNodes[iNode2], iRecord);
+          }
+          nCounts[iOffset2] += nDelta;
+        }
       } else {
         for (Instance instance : m_Instances) {
           int iOffset2 = iOffset;
@@ -254,6 +284,21 @@ public class ADNode implements Serializable, TechnicalInformationHandler,
     }
   } // getCounts
 
+  /**
+   * expand a node that was left unexpanded by its ADTreeBuilder because the
+   * memory budget was exhausted, and release its records and builder
+   * 
+   * @return the VaryNode children of this node
+   */
+  synchronized VaryNode[] expand() {
+    if (m_VaryNodes == null) {
+      m_VaryNodes = m_Builder.expand(this);
+      m_nRecords = null;
+      m_Builder = null;
+    }
+    return m_VaryNodes;
+  } // expand
+
   /**
    * print is used for debugging only and shows the ADTree in ASCII graphics
    */
@@ -268,6 +313,8 @@ public class ADNode implements Serializable, TechnicalInformationHandler,
         System.out.println(sTab + "Node " + (iNode + m_nStartNode));
         m_VaryNodes[iNode].print(sTab);
       }
+    } else if (m_nRecords != null) {
+      System.out.println(sTab + Arrays.toString(m_nRecords));
     } else {
       System.out.println(m_Instances);
     }
@@ -0,0 +1,425 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ADTreeBuilder.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.bayes.net;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Builds ADTrees (see ADNode) from a data set. Compared to the recursive
+ * construction in ADNode, the builder
+ * <ul>
+ * <li>copies the data once into one short[] per attribute and partitions
+ * int[] record ranges instead of lists of boxed record indexes,</li>
+ * <li>builds the VaryNodes of large nodes in parallel,</li>
+ * <li>stops splitting nodes with fewer records than the leaf list threshold.
+ * Such nodes keep the indexes of their records and count them directly
+ * (sparse ADTree),</li>
+ * <li>keeps an estimate of the memory used by the tree. Once the memory budget
+ * is exhausted, new nodes keep their records instead of being expanded, and
+ * are only expanded one level at a time when they are first counted.</li>
+ * </ul>
+ * Only nodes that keep their records refer to the builder, so the copied data
+ * can be garbage collected once every node has expanded.
+ * Whatever the settings, the counts returned by the tree are the same as those
+ * of a fully expanded tree.
+ *
+ * @version $Revision$
+ */
+public class ADTreeBuilder implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -3551730593263389245L;
+
+  /** estimated size in bytes of an object header **/
+  final static int OBJECT_SIZE = 16;
+
+  /** estimated size in bytes of an object reference **/
+  final static int REFERENCE_SIZE = 4;
+
+  /** nodes with at least this many records build their VaryNodes in parallel **/
+  final static int PARALLEL_THRESHOLD = 256;
+
+  /** nodes with fewer records than this keep their records **/
+  protected int m_nLeafListThreshold = ADNode.MIN_RECORD_SIZE;
+
+  /** max estimated memory in bytes used by expanded nodes, 0 means no limit **/
+  protected long m_nMemoryBudget = 0;
+
+  /** number of threads used to build the tree **/
+  protected int m_nNumThreads = 1;
+
+  /** values of the data set, one column per attribute **/
+  short[][] m_nColumns;
+
+  /** number of values of each attribute **/
+  int[] m_nNumValues;
+
+  /** estimated memory in bytes used by the tree so far **/
+  AtomicLong m_nUsedMemory;
+
+  /**
+   * create AD tree from set of instances
+   *
+   * @param instances data set, all attributes must be nominal
+   * @return ADNode representing an ADTree
+   */
+  public ADNode build(Instances instances) {
+    int nNrOfAtts = instances.numAttributes();
+    int nNrOfRecords = instances.numInstances();
+    m_nNumValues = new int[nNrOfAtts];
+    for (int iAttribute = 0; iAttribute < nNrOfAtts; iAttribute++) {
+      m_nNumValues[iAttribute] = instances.attribute(iAttribute).numValues();
+    }
+    m_nColumns = new short[nNrOfAtts][nNrOfRecords];
+    for (int iRecord = 0; iRecord < nNrOfRecords; iRecord++) {
+      Instance instance = instances.instance(iRecord);
+      for (int iAttribute = 0; iAttribute < nNrOfAtts; iAttribute++) {
+        // missing values end up as the first value, like (int) Double.NaN
+        m_nColumns[iAttribute][iRecord] = (short) instance.value(iAttribute);
+      }
+    }
+    m_nUsedMemory = new AtomicLong();
+
+    int[] nRecords = new int[nNrOfRecords];
+    for (int iRecord = 0; iRecord < nNrOfRecords; iRecord++) {
+      nRecords[iRecord] = iRecord;
+    }
+
+    if (m_nNumThreads <= 1 || nNrOfRecords < PARALLEL_THRESHOLD) {
+      return makeADTree(0, nRecords, 0, nNrOfRecords);
+    }
+    ForkJoinPool pool = new ForkJoinPool(m_nNumThreads);
+    try {
+      return pool.invoke(new ADTreeTask(nRecords));
+    } finally {
+      pool.shutdown();
+    }
+  } // build
+
+  /**
+   * task building the tree in a fork join pool
+   */
+  class ADTreeTask extends RecursiveTask<ADNode> {
+
+    /** for serialization */
+    private static final long serialVersionUID = -4617291047623551385L;
+
+    /** all records of the data set **/
+    final int[] m_nRecords;
+
+    /**
+     * c'tor
+     *
+     * @param nRecords all records of the data set
+     */
+    ADTreeTask(int[] nRecords) {
+      m_nRecords = nRecords;
+    }
+
+    @Override
+    protected ADNode compute() {
+      return makeADTree(0, m_nRecords, 0, m_nRecords.length);
+    }
+  } // class ADTreeTask
+
+  /**
+   * task building one VaryNode
+   */
+  class VaryNodeTask extends RecursiveTask<VaryNode> {
+
+    /** for serialization */
+    private static final long serialVersionUID = 3106372425926563140L;
+
+    /** attribute varied by the node **/
+    final int m_iNode;
+
+    /** array holding the records, only read **/
+    final int[] m_nRecords;
+
+    /** first record in m_nRecords to consider **/
+    final int m_iFrom;
+
+    /** one past the last record in m_nRecords to consider **/
+    final int m_iTo;
+
+    /**
+     * c'tor
+     *
+     * @param iNode attribute varied by the node
+     * @param nRecords array holding the records
+     * @param iFrom first record in nRecords to consider
+     * @param iTo one past the last record in nRecords to consider
+     */
+    VaryNodeTask(int iNode, int[] nRecords, int iFrom, int iTo) {
+      m_iNode = iNode;
+      m_nRecords = nRecords;
+      m_iFrom = iFrom;
+      m_iTo = iTo;
+    }
+
+    @Override
+    protected VaryNode compute() {
+      return makeVaryNode(m_iNode, m_nRecords, m_iFrom, m_iTo);
+    }
+  } // class VaryNodeTask
+
+  /**
+   * create an ADNode for a range of records. Depending on the number of
+   * records and the memory used so far, the node is either expanded, becomes
+   * a leaf list or is left for expansion on first use.
+   *
+   * @param iNode index of the lowest node in the tree
+   * @param nRecords array holding the records
+   * @param iFrom first record in nRecords to consider
+   * @param iTo one past the last record in nRecords to consider
+   * @return ADNode representing part of an ADTree
+   */
+  ADNode newADNode(int iNode, int[] nRecords, int iFrom, int iTo) {
+    ADNode node = new ADNode();
+    node.m_nCount = iTo - iFrom;
+    node.m_nStartNode = iNode;
+    if (isLeafList(node.m_nCount) || isOverBudget()) {
+      // only nodes that keep records refer to the data of the builder
+      node.m_Builder = this;
+      node.m_nRecords = Arrays.copyOfRange(nRecords, iFrom, iTo);
+      m_nUsedMemory.addAndGet(OBJECT_SIZE * 3 + 4 * node.m_nCount);
+    }
+    return node;
+  } // newADNode
+
+  /**
+   * create sub tree
+   *
+   * @param iNode index of the lowest node in the tree
+   * @param nRecords array holding the records
+   * @param iFrom first record in nRecords to consider
+   * @param iTo one past the last record in nRecords to consider
+   * @return ADNode representing an ADTree
+   */
+  ADNode makeADTree(int iNode, int[] nRecords, int iFrom, int iTo) {
+    ADNode node = newADNode(iNode, nRecords, iFrom, iTo);
+    if (node.m_nRecords == null) {
+      node.m_VaryNodes = makeVaryNodes(iNode, nRecords, iFrom, iTo);
+    }
+    return node;
+  } // makeADTree
+
+  /**
+   * create the VaryNodes of an ADNode
+   *
+   * @param iNode index of the lowest node in the tree
+   * @param nRecords array holding the records of the ADNode
+   * @param iFrom first record in nRecords to consider
+   * @param iTo one past the last record in nRecords to consider
+   * @return VaryNodes for nodes iNode and up
+   */
+  VaryNode[] makeVaryNodes(int iNode, int[] nRecords, int iFrom, int iTo) {
+    VaryNode[] varyNodes = new VaryNode[m_nColumns.length - iNode];
+    m_nUsedMemory.addAndGet(OBJECT_SIZE * 3 + REFERENCE_SIZE * varyNodes.length);
+    if (varyNodes.length > 1 && iTo - iFrom >= PARALLEL_THRESHOLD
+      && ForkJoinTask.inForkJoinPool()) {
+      List<VaryNodeTask> tasks = new ArrayList<VaryNodeTask>(varyNodes.length);
+      for (int iNode2 = iNode; iNode2 < m_nColumns.length; iNode2++) {
+        tasks.add(new VaryNodeTask(iNode2, nRecords, iFrom, iTo));
+      }
+      ForkJoinTask.invokeAll(tasks);
+      for (int iNode2 = iNode; iNode2 < m_nColumns.length; iNode2++) {
+        varyNodes[iNode2 - iNode] = tasks.get(iNode2 - iNode).join();
+      }
+    } else {
+      for (int iNode2 = iNode; iNode2 < m_nColumns.length; iNode2++) {
+        varyNodes[iNode2 - iNode] = makeVaryNode(iNode2, nRecords, iFrom, iTo);
+      }
+    }
+    return varyNodes;
+  } // makeVaryNodes
+
+  /**
+   * create sub tree. The records are sorted on the value of iNode into a new
+   * array, so every child gets a contiguous range of it.
+   *
+   * @param iNode index of the node varied
+   * @param nRecords array holding the records
+   * @param iFrom first record in nRecords to consider
+   * @param iTo one past the last record in nRecords to consider
+   * @return VaryNode representing part of an ADTree
+   */
+  VaryNode makeVaryNode(int iNode, int[] nRecords, int iFrom, int iTo) {
+    VaryNode varyNode = new VaryNode(iNode);
+    int nValues = m_nNumValues[iNode];
+    short[] nColumn = m_nColumns[iNode];
+    m_nUsedMemory.addAndGet(OBJECT_SIZE * 2 + REFERENCE_SIZE * nValues);
+
+    // divide the records among children
+    int[] nStarts = new int[nValues + 1];
+    for (int iRecord = iFrom; iRecord < iTo; iRecord++) {
+      nStarts[(nColumn[nRecords[iRecord]] & 0xFFFF) + 1]++;
+    }
+
+    // find most common value
+    int nCount = nStarts[1];
+    int nMCV = 0;
+    for (int iChild = 1; iChild < nValues; iChild++) {
+      if (nStarts[iChild + 1] > nCount) {
+        nCount = nStarts[iChild + 1];
+        nMCV = iChild;
+      }
+    }
+    varyNode.m_nMCV = nMCV;
+    varyNode.m_ADNodes = new ADNode[nValues];
+    if (nCount == iTo - iFrom) {
+      // all records have the most common value
+      return varyNode;
+    }
+
+    for (int iChild = 0; iChild < nValues; iChild++) {
+      nStarts[iChild + 1] += nStarts[iChild];
+    }
+    int[] nSorted = new int[iTo - iFrom];
+    int[] nNext = Arrays.copyOf(nStarts, nValues);
+    for (int iRecord = iFrom; iRecord < iTo; iRecord++) {
+      nSorted[nNext[(nColumn[nRecords[iRecord]] & 0xFFFF)]++] = nRecords[iRecord];
+    }
+
+    // determine child nodes
+    for (int iChild = 0; iChild < nValues; iChild++) {
+      if (iChild != nMCV && nStarts[iChild + 1] > nStarts[iChild]) {
+        varyNode.m_ADNodes[iChild] = makeADTree(iNode + 1, nSorted,
+          nStarts[iChild], nStarts[iChild + 1]);
+      }
+    }
+    return varyNode;
+  } // makeVaryNode
+
+  /**
+   * expand a node that was left unexpanded because the memory budget was
+   * exhausted
+   *
+   * @param node node holding its records
+   * @return VaryNodes of the node
+   */
+  VaryNode[] expand(ADNode node) {
+    return makeVaryNodes(node.m_nStartNode, node.m_nRecords, 0,
+      node.m_nRecords.length);
+  } // expand
+
+  /**
+   * @param nCount number of records of a node
+   * @return whether a node with nCount records keeps its records instead of
+   *         being expanded
+   */
+  boolean isLeafList(int nCount) {
+    return nCount < m_nLeafListThreshold;
+  }
+
+  /**
+   * @return whether the tree uses more memory than allowed
+   */
+  boolean isOverBudget() {
+    return m_nMemoryBudget > 0 && m_nUsedMemory.get() > m_nMemoryBudget;
+  }
+
+  /**
+   * get the value of an attribute for a record
+   *
+   * @param iAttribute index of the attribute
+   * @param iRecord index of the record
+   * @return index of the value
+   */
+  final int value(int iAttribute, int iRecord) {
+    return m_nColumns[iAttribute][iRecord] & 0xFFFF;
+  }
+
+  /**
+   * @param nLeafListThreshold nodes with fewer records than this keep a list
+   *          of their records instead of being expanded
+   */
+  public void setLeafListThreshold(int nLeafListThreshold) {
+    m_nLeafListThreshold = nLeafListThreshold;
+  }
+
+  /**
+   * @return nodes with fewer records than this keep a list of their records
+   */
+  public int getLeafListThreshold() {
+    return m_nLeafListThreshold;
+  }
+
+  /**
+   * @param nMemoryBudget max estimated number of bytes used by expanded nodes,
+   *          0 for no limit
+   */
+  public void setMemoryBudget(long nMemoryBudget) {
+    m_nMemoryBudget = nMemoryBudget;
+  }
+
+  /**
+   * @return max estimated number of bytes used by expanded nodes, 0 for no
+   *         limit
+   */
+  public long getMemoryBudget() {
+    return m_nMemoryBudget;
+  }
+
+  /**
+   * @param nNumThreads number of threads used to build the tree
+   */
+  public void setNumThreads(int nNumThreads) {
+    m_nNumThreads = nNumThreads;
+  }
+
+  /**
+   * @return number of threads used to build the tree
+   */
+  public int getNumThreads() {
+    return m_nNumThreads;
+  }
+
+  /**
+   * @return estimated number of bytes used by the tree so far
+   */
+  public long getUsedMemory() {
+    return m_nUsedMemory == null ? 0 : m_nUsedMemory.get();
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+} // class ADTreeBuilder
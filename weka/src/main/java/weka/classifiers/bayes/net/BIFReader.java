@@ -193,6 +193,7 @@ public class BIFReader extends BayesNet implements TechnicalInformationHandler {
   void buildStructure(Document doc) throws Exception {
     // Get the name of the network
     // initialize conditional distribution tables
+    m_InferencePlan = null;
     m_Distributions = new Estimator[m_Instances.numAttributes()][];
     for (int iNode = 0; iNode < m_Instances.numAttributes(); iNode++) {
       // find definition that goes with this node
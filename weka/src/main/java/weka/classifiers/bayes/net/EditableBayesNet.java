@@ -201,6 +201,17 @@ public class EditableBayesNet extends BayesNet {
     }
   } // c'tor
 
+  /**
+   * Returns a freshly compiled inference plan, since the structure and the
+   * CPTs of an editable network are changed in place.
+   * 
+   * @return the inference plan
+   */
+  @Override
+  protected InferencePlan getInferencePlan() {
+    return new InferencePlan(this);
+  } // getInferencePlan
+
   /**
    * Assuming a network structure is defined and we want to learn from data, the
    * data set must be put if correct order first and possibly
@@ -82,7 +82,6 @@ import javax.swing.table.AbstractTableModel;
 import weka.classifiers.bayes.net.MarginCalculator.JunctionTreeNode;
 import weka.core.Instances;
 import weka.core.OptionHandler;
-import weka.core.SerializedObject;
 import weka.core.Utils;
 import weka.core.converters.AbstractFileLoader;
 import weka.core.converters.AbstractFileSaver;
@@ -2996,22 +2995,10 @@ public class GUI extends JPanel implements LayoutCompleteEventListener {
             if (iValue < outcomes.length) {
               m_jStatusBar.setText("Set evidence for "
                 + m_BayesNet.getNodeName(m_nCurrentNode));
-              if (m_BayesNet.getEvidence(m_nCurrentNode) < 0 && iValue >= 0) {
-                m_BayesNet.setEvidence(m_nCurrentNode, iValue);
-                m_marginCalculatorWithEvidence.setEvidence(m_nCurrentNode,
-                  iValue);
-              } else {
-                m_BayesNet.setEvidence(m_nCurrentNode, iValue);
-                SerializedObject so = new SerializedObject(m_marginCalculator);
-                m_marginCalculatorWithEvidence = (MarginCalculator) so
-                  .getObject();
-                for (int iNode = 0; iNode < m_BayesNet.getNrOfNodes(); iNode++) {
-                  if (m_BayesNet.getEvidence(iNode) >= 0) {
-                    m_marginCalculatorWithEvidence.setEvidence(iNode,
-                      m_BayesNet.getEvidence(iNode));
-                  }
-                }
-              }
+              m_BayesNet.setEvidence(m_nCurrentNode, iValue);
+              // changed and retracted evidence is propagated incrementally
+              m_marginCalculatorWithEvidence.setEvidence(m_nCurrentNode,
+                iValue);
               for (int iNode = 0; iNode < m_BayesNet.getNrOfNodes(); iNode++) {
                 m_BayesNet.setMargin(iNode,
                   m_marginCalculatorWithEvidence.getMargin(iNode));
@@ -3329,8 +3316,7 @@ public class GUI extends JPanel implements LayoutCompleteEventListener {
     try {
       m_marginCalculator = new MarginCalculator();
       m_marginCalculator.calcMargins(m_BayesNet);
-      SerializedObject so = new SerializedObject(m_marginCalculator);
-      m_marginCalculatorWithEvidence = (MarginCalculator) so.getObject();
+      m_marginCalculatorWithEvidence = new MarginCalculator(m_marginCalculator);
       for (int iNode = 0; iNode < m_BayesNet.getNrOfNodes(); iNode++) {
         if (m_BayesNet.getEvidence(iNode) >= 0) {
           m_marginCalculatorWithEvidence.setEvidence(iNode,
@@ -0,0 +1,209 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * InferencePlan.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.bayes.net;
+
+import java.io.Serializable;
+
+import weka.classifiers.bayes.BayesNet;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+import weka.estimators.Estimator;
+
+/**
+ * A trained Bayes network compiled for classifying many instances. The CPT of
+ * every node is flattened into a single table of log probabilities, indexed
+ * by parent configuration * number of values + value, and the parent
+ * configuration of a node is found with precomputed strides. The stride of
+ * the class is kept apart, so the part of the index that does not depend on
+ * the class is computed once per instance instead of once per class.
+ * <p/>
+ * Log probabilities are summed in the same order as
+ * SimpleEstimator.distributionForInstance does, so the distributions are
+ * exactly the same. The plan is a snapshot: it does not follow later changes
+ * to the structure or the CPTs of the network.
+ *
+ * @version $Revision$
+ */
+public class InferencePlan implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -3164458325869254707L;
+
+  /** index of the class node **/
+  protected final int m_nClassIndex;
+
+  /** number of class values **/
+  protected final int m_nNumClasses;
+
+  /** number of values of every node **/
+  protected final int[] m_nNumValues;
+
+  /** parents of every node, except the class **/
+  protected final int[][] m_nParents;
+
+  /** stride of every parent in m_nParents in the parent configuration **/
+  protected final int[][] m_nStrides;
+
+  /** stride of the class in the parent configuration, 0 if not a parent **/
+  protected final int[] m_nClassStrides;
+
+  /** log probabilities of every node, indexed by configuration * values + value **/
+  protected final double[][] m_fLogCPTs;
+
+  /**
+   * c'tor, compiles a network with estimated CPTs
+   *
+   * @param bayesNet the network
+   */
+  public InferencePlan(BayesNet bayesNet) {
+    Instances instances = bayesNet.m_Instances;
+    int nNodes = instances.numAttributes();
+    m_nClassIndex = instances.classIndex();
+    m_nNumClasses = instances.numClasses();
+    m_nNumValues = new int[nNodes];
+    for (int iNode = 0; iNode < nNodes; iNode++) {
+      m_nNumValues[iNode] = instances.attribute(iNode).numValues();
+    }
+    m_nParents = new int[nNodes][];
+    m_nStrides = new int[nNodes][];
+    m_nClassStrides = new int[nNodes];
+    m_fLogCPTs = new double[nNodes][];
+    for (int iNode = 0; iNode < nNodes; iNode++) {
+      ParentSet parentSet = bayesNet.getParentSet(iNode);
+      int nNrOfParents = parentSet.getNrOfParents();
+      int nNrOfOtherParents = parentSet.contains(m_nClassIndex) ? nNrOfParents - 1
+        : nNrOfParents;
+      m_nParents[iNode] = new int[nNrOfOtherParents];
+      m_nStrides[iNode] = new int[nNrOfOtherParents];
+      // the configuration is built up with the first parent most significant
+      int nStride = 1;
+      int iOtherParent = nNrOfOtherParents;
+      for (int iParent = nNrOfParents - 1; iParent >= 0; iParent--) {
+        int nParent = parentSet.getParent(iParent);
+        if (nParent == m_nClassIndex) {
+          m_nClassStrides[iNode] = nStride;
+        } else {
+          iOtherParent--;
+          m_nParents[iNode][iOtherParent] = nParent;
+          m_nStrides[iNode][iOtherParent] = nStride;
+        }
+        nStride *= m_nNumValues[nParent];
+      }
+      int nNumValues = m_nNumValues[iNode];
+      Estimator[] estimators = bayesNet.m_Distributions[iNode];
+      double[] fLogCPT = new double[nStride * nNumValues];
+      for (int iCPT = 0; iCPT < nStride; iCPT++) {
+        for (int iValue = 0; iValue < nNumValues; iValue++) {
+          fLogCPT[iCPT * nNumValues + iValue] = Math.log(estimators[iCPT]
+            .getProbability(iValue));
+        }
+      }
+      m_fLogCPTs[iNode] = fLogCPT;
+    }
+  } // c'tor
+
+  /**
+   * whether an instance can be classified as it is, that is, none of the
+   * attributes other than the class is missing
+   *
+   * @param instance the instance to check
+   * @return true if no attribute value needs to be filled in
+   */
+  public boolean isComplete(Instance instance) {
+    for (int iNode = 0; iNode < m_nNumValues.length; iNode++) {
+      if (iNode != m_nClassIndex && instance.isMissing(iNode)) {
+        return false;
+      }
+    }
+    return true;
+  } // isComplete
+
+  /**
+   * calculate the class distribution of an instance
+   *
+   * @param instance a complete instance with discrete values only
+   * @return class distribution, all zeros if no class has a non-zero
+   *         probability
+   */
+  public double[] distributionForInstance(Instance instance) {
+    int nNodes = m_nNumValues.length;
+    // index of the first entry of the node for class value 0
+    int[] nOffsets = new int[nNodes];
+    for (int iNode = 0; iNode < nNodes; iNode++) {
+      int[] nParents = m_nParents[iNode];
+      int[] nStrides = m_nStrides[iNode];
+      int iCPT = 0;
+      for (int iParent = 0; iParent < nParents.length; iParent++) {
+        iCPT += (int) instance.value(nParents[iParent]) * nStrides[iParent];
+      }
+      nOffsets[iNode] = iCPT * m_nNumValues[iNode];
+      if (iNode != m_nClassIndex) {
+        nOffsets[iNode] += (int) instance.value(iNode);
+      }
+    }
+
+    double[] fProbs = new double[m_nNumClasses];
+    for (int iClass = 0; iClass < m_nNumClasses; iClass++) {
+      double logfP = 0;
+      for (int iNode = 0; iNode < nNodes; iNode++) {
+        int iEntry = nOffsets[iNode] + iClass * m_nClassStrides[iNode]
+          * m_nNumValues[iNode];
+        if (iNode == m_nClassIndex) {
+          iEntry += iClass;
+        }
+        logfP += m_fLogCPTs[iNode][iEntry];
+      }
+      fProbs[iClass] = logfP;
+    }
+
+    // Find maximum
+    double fMax = fProbs[0];
+    for (int iClass = 0; iClass < m_nNumClasses; iClass++) {
+      if (fProbs[iClass] > fMax) {
+        fMax = fProbs[iClass];
+      }
+    }
+    // transform from log-space to normal-space
+    for (int iClass = 0; iClass < m_nNumClasses; iClass++) {
+      fProbs[iClass] = Math.exp(fProbs[iClass] - fMax);
+    }
+    try {
+      Utils.normalize(fProbs);
+    } catch (IllegalArgumentException ex) {
+      return new double[m_nNumClasses]; // predict missing value
+    }
+    return fProbs;
+  } // distributionForInstance
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+} // class InferencePlan
@@ -22,15 +22,31 @@
 package weka.classifiers.bayes.net;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import weka.classifiers.bayes.BayesNet;
+import weka.classifiers.bayes.net.search.SearchTaskRunner;
 import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
 
+/**
+ * Calculates margins of the nodes of a Bayes network with a junction tree.
+ * Evidence is propagated incrementally: when evidence changes, only the clique
+ * holding it and the cliques on its path to the root collect their messages
+ * again, and the margins of a clique are only distributed to it when they are
+ * asked for. Evidence can be changed and retracted without starting over, and
+ * the buffers propagation works in are allocated once per clique.
+ *
+ * @version $Revision$
+ */
 public class MarginCalculator implements Serializable, RevisionHandler {
   /** for serialization */
   private static final long serialVersionUID = 650278019241175534L;
@@ -39,6 +55,58 @@ public class MarginCalculator implements Serializable, RevisionHandler {
   public JunctionTreeNode m_root = null;
   JunctionTreeNode[] jtNodes;
 
+  /** evidence per node, -1 if the node is not observed **/
+  int[] m_nEvidence;
+
+  /** index in jtNodes of the clique that holds evidence and margins of a node **/
+  int[] m_nNodeCliques;
+
+  /**
+   * incremented whenever evidence changes, distributions of cliques calculated
+   * for another version are out of date
+   **/
+  int m_nEvidenceVersion = 0;
+
+  /**
+   * c'tor
+   */
+  public MarginCalculator() {
+  } // c'tor
+
+  /**
+   * c'tor, copies the junction tree and the evidence of another calculator.
+   * The potentials of the cliques are shared, the buffers propagation works in
+   * are not, so both calculators can propagate evidence independently.
+   * 
+   * @param other calculator to copy, with an initialized junction tree
+   */
+  public MarginCalculator(MarginCalculator other) {
+    m_debug = other.m_debug;
+    m_nEvidence = other.m_nEvidence.clone();
+    m_nNodeCliques = other.m_nNodeCliques;
+    jtNodes = new JunctionTreeNode[other.jtNodes.length];
+    for (int iJtNode = 0; iJtNode < jtNodes.length; iJtNode++) {
+      if (other.jtNodes[iJtNode] != null) {
+        jtNodes[iJtNode] = new JunctionTreeNode(other.jtNodes[iJtNode]);
+      }
+    }
+    for (int iJtNode = 0; iJtNode < jtNodes.length; iJtNode++) {
+      JunctionTreeNode otherNode = other.jtNodes[iJtNode];
+      if (otherNode != null) {
+        JunctionTreeSeparator separator = otherNode.m_parentSeparator;
+        if (separator != null) {
+          jtNodes[iJtNode].setParentSeparator(new JunctionTreeSeparator(
+            separator, jtNodes[iJtNode],
+            jtNodes[separator.m_parentNode.m_nClique]));
+        }
+        for (JunctionTreeNode childNode : otherNode.m_children) {
+          jtNodes[iJtNode].addChildClique(jtNodes[childNode.m_nClique]);
+        }
+      }
+    }
+    m_root = jtNodes[other.m_root.m_nClique];
+  } // c'tor
+
   public int getNode(String sNodeName) {
     int iNode = 0;
     while (iNode < m_root.m_bayesNet.m_Instances.numAttributes()) {
@@ -127,8 +195,21 @@ public class MarginCalculator implements Serializable, RevisionHandler {
         break;
       }
     }
-    m_Margins = new double[nNodes][];
-    initialize(jtNodes, order, cliques, separators, parentCliques);
+    m_nEvidence = new int[nNodes];
+    Arrays.fill(m_nEvidence, -1);
+    m_nNodeCliques = new int[nNodes];
+    for (int iNode = 0; iNode < nNodes; iNode++) {
+      int iJtNode = 0;
+      while (iJtNode < jtNodes.length
+        && (jtNodes[iJtNode] == null || !jtNodes[iJtNode].contains(iNode))) {
+        iJtNode++;
+      }
+      if (jtNodes.length == iJtNode) {
+        throw new Exception("Could not find node " + iNode + " in junction tree");
+      }
+      m_nNodeCliques[iNode] = iJtNode;
+    }
+    collectEvidence();
 
     // sanity check
     for (int i = 0; i < nNodes; i++) {
@@ -144,22 +225,34 @@ public class MarginCalculator implements Serializable, RevisionHandler {
     }
   } // process
 
-  void initialize(JunctionTreeNode[] jtNodes, int[] order,
-    Set<Integer>[] cliques, Set<Integer>[] separators, int[] parentCliques) {
-    int nNodes = order.length;
-    for (int i = nNodes - 1; i >= 0; i--) {
-      int iNode = order[i];
-      if (jtNodes[iNode] != null) {
-        jtNodes[iNode].initializeUp();
+  /**
+   * bring the messages of the cliques up to date with the evidence. Only
+   * cliques that are not up to date collect the messages of their children
+   * again.
+   */
+  void collectEvidence() {
+    for (JunctionTreeNode jtNode : jtNodes) {
+      if (jtNode != null && jtNode.m_parentSeparator == null
+        && !jtNode.m_bCollected) {
+        jtNode.collect();
       }
     }
-    for (int i = 0; i < nNodes; i++) {
-      int iNode = order[i];
-      if (jtNodes[iNode] != null) {
-        jtNodes[iNode].initializeDown(false);
-      }
+  } // collectEvidence
+
+  /**
+   * normalize a distribution in place
+   * 
+   * @param fP distribution to normalize
+   */
+  static void normalize(double[] fP) {
+    double sum = 0;
+    for (double element : fP) {
+      sum += element;
     }
-  } // initialize
+    for (int iPos = 0; iPos < fP.length; iPos++) {
+      fP[iPos] /= sum;
+    }
+  } // normalize
 
   JunctionTreeNode[] getJunctionTree(Set<Integer>[] cliques,
     Set<Integer>[] separators, int[] parentCliques, int[] order,
@@ -172,6 +265,7 @@ public class MarginCalculator implements Serializable, RevisionHandler {
       int iNode = order[i];
       if (cliques[iNode] != null) {
         jtns[iNode] = new JunctionTreeNode(cliques[iNode], bayesNet, bDone);
+        jtns[iNode].m_nClique = iNode;
       }
     }
     // create junction tree separators
@@ -197,6 +291,10 @@ public class MarginCalculator implements Serializable, RevisionHandler {
     private static final long serialVersionUID = 6502780192411755343L;
     int[] m_nNodes;
     int m_nCardinality;
+    /** separator entry of every entry of the parent clique **/
+    int[] m_nParentIndex;
+    /** separator entry of every entry of the child clique **/
+    int[] m_nChildIndex;
     double[] m_fiParent;
     double[] m_fiChild;
     JunctionTreeNode m_parentNode;
@@ -218,90 +316,88 @@ public class MarginCalculator implements Serializable, RevisionHandler {
       m_parentNode = parentNode;
       m_childNode = childNode;
       m_bayesNet = bayesNet;
+      m_nParentIndex = getIndex(parentNode);
+      m_nChildIndex = getIndex(childNode);
+      m_fiParent = new double[m_nCardinality];
+      m_fiChild = new double[m_nCardinality];
     } // c'tor
 
     /**
-     * marginalize junciontTreeNode node over all nodes outside the separator
-     * set of the parent clique
+     * c'tor, copies a separator between copies of its cliques. Index tables
+     * are shared, messages are copied.
      * 
+     * @param other separator to copy
+     * @param childNode copy of the child clique
+     * @param parentNode copy of the parent clique
      */
-    public void updateFromParent() {
-      double[] fis = update(m_parentNode);
-      if (fis == null) {
-        m_fiParent = null;
-      } else {
-        m_fiParent = fis;
-        // normalize
-        double sum = 0;
-        for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-          sum += m_fiParent[iPos];
-        }
-        for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-          m_fiParent[iPos] /= sum;
-        }
-      }
-    } // updateFromParent
-
-    /**
-     * marginalize junciontTreeNode node over all nodes outside the separator
-     * set of the child clique
-     * 
-     */
-    public void updateFromChild() {
-      double[] fis = update(m_childNode);
-      if (fis == null) {
-        m_fiChild = null;
-      } else {
-        m_fiChild = fis;
-        // normalize
-        double sum = 0;
-        for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-          sum += m_fiChild[iPos];
-        }
-        for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-          m_fiChild[iPos] /= sum;
-        }
-      }
-    } // updateFromChild
+    JunctionTreeSeparator(JunctionTreeSeparator other,
+      JunctionTreeNode childNode, JunctionTreeNode parentNode) {
+      m_nNodes = other.m_nNodes;
+      m_nCardinality = other.m_nCardinality;
+      m_nParentIndex = other.m_nParentIndex;
+      m_nChildIndex = other.m_nChildIndex;
+      m_fiParent = other.m_fiParent.clone();
+      m_fiChild = other.m_fiChild.clone();
+      m_parentNode = parentNode;
+      m_childNode = childNode;
+      m_bayesNet = other.m_bayesNet;
+    } // c'tor
 
     /**
-     * marginalize junciontTreeNode node over all nodes outside the separator
-     * set
+     * calculate for every entry of the distribution over a neighboring junction
+     * tree node the entry of the separator it is marginalized into
      * 
-     * @param node one of the neighboring junciont tree nodes of this separator
+     * @param node one of the neighboring junction tree nodes of this separator
+     * @return separator entry per junction tree node entry
      */
-    public double[] update(JunctionTreeNode node) {
-      if (node.m_P == null) {
-        return null;
-      }
-      double[] fi = new double[m_nCardinality];
-
+    int[] getIndex(JunctionTreeNode node) {
+      int[] nIndex = new int[node.m_nCardinality];
       int[] values = new int[node.m_nNodes.length];
       int[] order = new int[m_bayesNet.getNrOfNodes()];
       for (int iNode = 0; iNode < node.m_nNodes.length; iNode++) {
         order[node.m_nNodes[iNode]] = iNode;
       }
-      // fill in the values
       for (int iPos = 0; iPos < node.m_nCardinality; iPos++) {
         int iNodeCPT = getCPT(node.m_nNodes, node.m_nNodes.length, values,
           order, m_bayesNet);
-        int iSepCPT = getCPT(m_nNodes, m_nNodes.length, values, order,
+        nIndex[iNodeCPT] = getCPT(m_nNodes, m_nNodes.length, values, order,
           m_bayesNet);
-        fi[iSepCPT] += node.m_P[iNodeCPT];
-        // update values
-        int i = 0;
-        values[i]++;
-        while (i < node.m_nNodes.length
-          && values[i] == m_bayesNet.getCardinality(node.m_nNodes[i])) {
-          values[i] = 0;
-          i++;
-          if (i < node.m_nNodes.length) {
-            values[i]++;
-          }
-        }
+        node.nextValues(values);
       }
-      return fi;
-    } // update
+      return nIndex;
+    } // getIndex
+
+    /**
+     * marginalize the distribution over the parent clique over all nodes
+     * outside the separator set
+     */
+    public void updateFromParent() {
+      marginalize(m_parentNode.m_P, m_nParentIndex, m_fiParent);
+    } // updateFromParent
+
+    /**
+     * marginalize the collected potential of the child clique over all nodes
+     * outside the separator set
+     */
+    public void updateFromChild() {
+      marginalize(m_childNode.m_fCollected, m_nChildIndex, m_fiChild);
+    } // updateFromChild
+
+    /**
+     * marginalize a potential of a neighboring junction tree node over all
+     * nodes outside the separator set and normalize the result
+     * 
+     * @param fP potential over the junction tree node
+     * @param nIndex separator entry per junction tree node entry
+     * @param fi receives the normalized margin
+     */
+    void marginalize(double[] fP, int[] nIndex, double[] fi) {
+      Arrays.fill(fi, 0);
+      for (int iPos = 0; iPos < fP.length; iPos++) {
+        fi[nIndex[iPos]] += fP[iPos];
+      }
+      normalize(fi);
+    } // marginalize
 
     /**
      * Returns the revision string.
@@ -327,14 +423,28 @@ public class MarginCalculator implements Serializable, RevisionHandler {
     public int[] m_nNodes;
     /** cardinality of the instances of variables in this junction node **/
     int m_nCardinality;
+    /** index of this junction node in jtNodes **/
+    int m_nClique;
     /** potentials for first network **/
     double[] m_fi;
 
+    /**
+     * potentials times the evidence held by this junction node and the
+     * messages of its children, normalized
+     **/
+    double[] m_fCollected;
+
+    /** whether m_fCollected and the message to the parent are up to date **/
+    boolean m_bCollected = false;
+
     /** distribution over this junction node according to first Bayes network **/
     double[] m_P;
 
     double[][] m_MarginalP;
 
+    /** evidence version m_P and m_MarginalP were calculated for **/
+    int m_nVersion = -1;
+
     JunctionTreeSeparator m_parentSeparator;
 
     public void setParentSeparator(JunctionTreeSeparator parentSeparator) {
@@ -347,106 +457,86 @@ public class MarginCalculator implements Serializable, RevisionHandler {
       m_children.add(child);
     }
 
-    public void initializeUp() {
-      m_P = new double[m_nCardinality];
-      for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-        m_P[iPos] = m_fi[iPos];
+    /**
+     * collect the messages of the children that are not up to date, enter the
+     * evidence held by this junction node and update the message to the
+     * parent
+     */
+    void collect() {
+      for (JunctionTreeNode childNode : m_children) {
+        if (!childNode.m_bCollected) {
+          childNode.collect();
+        }
       }
-      int[] values = new int[m_nNodes.length];
-      int[] order = new int[m_bayesNet.getNrOfNodes()];
+      System.arraycopy(m_fi, 0, m_fCollected, 0, m_nCardinality);
       for (int iNode = 0; iNode < m_nNodes.length; iNode++) {
-        order[m_nNodes[iNode]] = iNode;
+        int nNode = m_nNodes[iNode];
+        if (m_nEvidence[nNode] >= 0 && m_nNodeCliques[nNode] == m_nClique) {
+          enterEvidence(iNode, m_nEvidence[nNode]);
+        }
       }
-      for (JunctionTreeNode element : m_children) {
-        JunctionTreeNode childNode = element;
+      for (JunctionTreeNode childNode : m_children) {
         JunctionTreeSeparator separator = childNode.m_parentSeparator;
-        // Update the values
+        int[] nIndex = separator.m_nParentIndex;
+        double[] fiChild = separator.m_fiChild;
         for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-          int iSepCPT = getCPT(separator.m_nNodes, separator.m_nNodes.length,
-            values, order, m_bayesNet);
-          int iNodeCPT = getCPT(m_nNodes, m_nNodes.length, values, order,
-            m_bayesNet);
-          m_P[iNodeCPT] *= separator.m_fiChild[iSepCPT];
-          // update values
-          int i = 0;
-          values[i]++;
-          while (i < m_nNodes.length
-            && values[i] == m_bayesNet.getCardinality(m_nNodes[i])) {
-            values[i] = 0;
-            i++;
-            if (i < m_nNodes.length) {
-              values[i]++;
-            }
-          }
+          m_fCollected[iPos] *= fiChild[nIndex[iPos]];
         }
       }
-      // normalize
-      double sum = 0;
-      for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-        sum += m_P[iPos];
+      normalize(m_fCollected);
+      if (m_parentSeparator != null) { // not a root node
+        m_parentSeparator.updateFromChild();
       }
+      m_bCollected = true;
+    } // collect
+
+    /**
+     * zero the entries of the collected potential that do not agree with the
+     * evidence on a node
+     * 
+     * @param iNode position of the node in m_nNodes
+     * @param iValue observed value of the node
+     */
+    void enterEvidence(int iNode, int iValue) {
+      int[] values = new int[m_nNodes.length];
       for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-        m_P[iPos] /= sum;
+        if (values[iNode] != iValue) {
+          m_fCollected[iPos] = 0;
+        }
+        nextEntry(values);
       }
+    } // enterEvidence
 
-      if (m_parentSeparator != null) { // not a root node
-        m_parentSeparator.updateFromChild();
+    /**
+     * calculate the distribution over this junction node given all evidence,
+     * distributing it from the root down. Assumes the messages of all junction
+     * nodes are collected.
+     */
+    void distribute() {
+      if (m_nVersion == m_nEvidenceVersion) {
+        return;
       }
-    } // initializeUp
-
-    public void initializeDown(boolean recursively) {
       if (m_parentSeparator == null) { // a root node
-        calcMarginalProbabilities();
+        System.arraycopy(m_fCollected, 0, m_P, 0, m_nCardinality);
       } else {
+        m_parentSeparator.m_parentNode.distribute();
         m_parentSeparator.updateFromParent();
-        int[] values = new int[m_nNodes.length];
-        int[] order = new int[m_bayesNet.getNrOfNodes()];
-        for (int iNode = 0; iNode < m_nNodes.length; iNode++) {
-          order[m_nNodes[iNode]] = iNode;
-        }
-
-        // Update the values
+        int[] nIndex = m_parentSeparator.m_nChildIndex;
+        double[] fiParent = m_parentSeparator.m_fiParent;
+        double[] fiChild = m_parentSeparator.m_fiChild;
         for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-          int iSepCPT = getCPT(m_parentSeparator.m_nNodes,
-            m_parentSeparator.m_nNodes.length, values, order, m_bayesNet);
-          int iNodeCPT = getCPT(m_nNodes, m_nNodes.length, values, order,
-            m_bayesNet);
-          if (m_parentSeparator.m_fiChild[iSepCPT] > 0) {
-            m_P[iNodeCPT] *= m_parentSeparator.m_fiParent[iSepCPT]
-              / m_parentSeparator.m_fiChild[iSepCPT];
+          int iSepCPT = nIndex[iPos];
+          if (fiChild[iSepCPT] > 0) {
+            m_P[iPos] = m_fCollected[iPos] * (fiParent[iSepCPT] / fiChild[iSepCPT]);
           } else {
-            m_P[iNodeCPT] = 0;
+            m_P[iPos] = 0;
           }
-          // update values
-          int i = 0;
-          values[i]++;
-          while (i < m_nNodes.length
-            && values[i] == m_bayesNet.getCardinality(m_nNodes[i])) {
-            values[i] = 0;
-            i++;
-            if (i < m_nNodes.length) {
-              values[i]++;
-            }
-          }
-        }
-        // normalize
-        double sum = 0;
-        for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-          sum += m_P[iPos];
-        }
-        for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-          m_P[iPos] /= sum;
-        }
-        m_parentSeparator.updateFromChild();
-        calcMarginalProbabilities();
-      }
-      if (recursively) {
-        for (Object element : m_children) {
-          JunctionTreeNode childNode = (JunctionTreeNode) element;
-          childNode.initializeDown(true);
         }
+        normalize(m_P);
       }
-    } // initializeDown
+      calcMarginalProbabilities();
+      m_nVersion = m_nEvidenceVersion;
+    } // distribute
 
     /**
      * calculate marginal probabilities for the individual nodes in the clique.
@@ -455,36 +545,52 @@ public class MarginCalculator implements Serializable, RevisionHandler {
     void calcMarginalProbabilities() {
       // calculate marginal probabilities
       int[] values = new int[m_nNodes.length];
-      int[] order = new int[m_bayesNet.getNrOfNodes()];
       m_MarginalP = new double[m_nNodes.length][];
       for (int iNode = 0; iNode < m_nNodes.length; iNode++) {
-        order[m_nNodes[iNode]] = iNode;
         m_MarginalP[iNode] = new double[m_bayesNet
           .getCardinality(m_nNodes[iNode])];
       }
       for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-        int iNodeCPT = getCPT(m_nNodes, m_nNodes.length, values, order,
-          m_bayesNet);
         for (int iNode = 0; iNode < m_nNodes.length; iNode++) {
-          m_MarginalP[iNode][values[iNode]] += m_P[iNodeCPT];
+          m_MarginalP[iNode][values[iNode]] += m_P[iPos];
         }
-        // update values
-        int i = 0;
+        nextEntry(values);
+      }
+    } // calcMarginalProbabilities
+
+    /**
+     * advance the values of the nodes to those of the next entry of the
+     * distribution over this junction node, the last node changing fastest
+     * 
+     * @param values value of every node in m_nNodes
+     */
+    void nextEntry(int[] values) {
+      int i = m_nNodes.length - 1;
+      values[i]++;
+      while (i > 0 && values[i] == m_bayesNet.getCardinality(m_nNodes[i])) {
+        values[i] = 0;
+        i--;
         values[i]++;
-        while (i < m_nNodes.length
-          && values[i] == m_bayesNet.getCardinality(m_nNodes[i])) {
-          values[i] = 0;
-          i++;
-          if (i < m_nNodes.length) {
-            values[i]++;
-          }
-        }
       }
+    } // nextEntry
 
-      for (int iNode = 0; iNode < m_nNodes.length; iNode++) {
-        m_Margins[m_nNodes[iNode]] = m_MarginalP[iNode];
+    /**
+     * advance the values of the nodes, the first node changing fastest
+     * 
+     * @param values value of every node in m_nNodes
+     */
+    void nextValues(int[] values) {
+      int i = 0;
+      values[i]++;
+      while (i < m_nNodes.length
+        && values[i] == m_bayesNet.getCardinality(m_nNodes[i])) {
+        values[i] = 0;
+        i++;
+        if (i < m_nNodes.length) {
+          values[i]++;
+        }
       }
-    } // calcMarginalProbabilities
+    } // nextValues
 
     @Override
     public String toString() {
@@ -578,6 +684,26 @@ public class MarginCalculator implements Serializable, RevisionHandler {
       // //////////////////////////////
       // initialize potential function
       calculatePotentials(bayesNet, clique, bDone);
+      m_fCollected = new double[m_nCardinality];
+      m_P = new double[m_nCardinality];
+    } // JunctionTreeNode c'tor
+
+    /**
+     * c'tor, copies a junction tree node without its separators and children.
+     * Potentials are shared, the collected potential is copied.
+     * 
+     * @param other junction tree node to copy
+     */
+    JunctionTreeNode(JunctionTreeNode other) {
+      m_bayesNet = other.m_bayesNet;
+      m_children = new Vector<JunctionTreeNode>();
+      m_nNodes = other.m_nNodes;
+      m_nCardinality = other.m_nCardinality;
+      m_nClique = other.m_nClique;
+      m_fi = other.m_fi;
+      m_fCollected = other.m_fCollected.clone();
+      m_bCollected = other.m_bCollected;
+      m_P = new double[m_nCardinality];
     } // JunctionTreeNode c'tor
 
     /*
@@ -592,105 +718,17 @@ public class MarginCalculator implements Serializable, RevisionHandler {
       return false;
     } // contains
 
-    public void setEvidence(int nNode, int iValue) throws Exception {
-      int[] values = new int[m_nNodes.length];
-      int[] order = new int[m_bayesNet.getNrOfNodes()];
-
-      int nNodeIdx = -1;
+    /*
+     * position of node nNode in this junction tree node, -1 if not contained
+     */
+    int indexOf(int nNode) {
       for (int iNode = 0; iNode < m_nNodes.length; iNode++) {
-        order[m_nNodes[iNode]] = iNode;
         if (m_nNodes[iNode] == nNode) {
-          nNodeIdx = iNode;
-        }
-      }
-      if (nNodeIdx < 0) {
-        throw new Exception("setEvidence: Node " + nNode
-          + " not found in this clique");
-      }
-      for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-        if (values[nNodeIdx] != iValue) {
-          int iNodeCPT = getCPT(m_nNodes, m_nNodes.length, values, order,
-            m_bayesNet);
-          m_P[iNodeCPT] = 0;
-        }
-        // update values
-        int i = 0;
-        values[i]++;
-        while (i < m_nNodes.length
-          && values[i] == m_bayesNet.getCardinality(m_nNodes[i])) {
-          values[i] = 0;
-          i++;
-          if (i < m_nNodes.length) {
-            values[i]++;
-          }
+          return iNode;
         }
       }
-      // normalize
-      double sum = 0;
-      for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-        sum += m_P[iPos];
-      }
-      for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-        m_P[iPos] /= sum;
-      }
-      calcMarginalProbabilities();
-      updateEvidence(this);
-    } // setEvidence
-
-    void updateEvidence(JunctionTreeNode source) {
-      if (source != this) {
-        int[] values = new int[m_nNodes.length];
-        int[] order = new int[m_bayesNet.getNrOfNodes()];
-        for (int iNode = 0; iNode < m_nNodes.length; iNode++) {
-          order[m_nNodes[iNode]] = iNode;
-        }
-        int[] nChildNodes = source.m_parentSeparator.m_nNodes;
-        int nNumChildNodes = nChildNodes.length;
-        for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-          int iNodeCPT = getCPT(m_nNodes, m_nNodes.length, values, order,
-            m_bayesNet);
-          int iChildCPT = getCPT(nChildNodes, nNumChildNodes, values, order,
-            m_bayesNet);
-          if (source.m_parentSeparator.m_fiParent[iChildCPT] != 0) {
-            m_P[iNodeCPT] *= source.m_parentSeparator.m_fiChild[iChildCPT]
-              / source.m_parentSeparator.m_fiParent[iChildCPT];
-          } else {
-            m_P[iNodeCPT] = 0;
-          }
-          // update values
-          int i = 0;
-          values[i]++;
-          while (i < m_nNodes.length
-            && values[i] == m_bayesNet.getCardinality(m_nNodes[i])) {
-            values[i] = 0;
-            i++;
-            if (i < m_nNodes.length) {
-              values[i]++;
-            }
-          }
-        }
-        // normalize
-        double sum = 0;
-        for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-          sum += m_P[iPos];
-        }
-        for (int iPos = 0; iPos < m_nCardinality; iPos++) {
-          m_P[iPos] /= sum;
-        }
-        calcMarginalProbabilities();
-      }
-      for (Object element : m_children) {
-        JunctionTreeNode childNode = (JunctionTreeNode) element;
-        if (childNode != source) {
-          childNode.initializeDown(true);
-        }
-      }
-      if (m_parentSeparator != null) {
-        m_parentSeparator.updateFromChild();
-        m_parentSeparator.m_parentNode.updateEvidence(this);
-        m_parentSeparator.updateFromParent();
-      }
-    } // updateEvidence
+      return -1;
+    } // indexOf
 
     /**
      * Returns the revision string.
@@ -962,32 +1000,142 @@ public class MarginCalculator implements Serializable, RevisionHandler {
     return order;
   } // getMaxCardOrder
 
+  /**
+   * set, change or retract the evidence on a node. Only the clique holding
+   * the evidence of the node and the cliques on its path to the root need to
+   * collect their messages again, which is done when margins are asked for.
+   * 
+   * @param nNode index of the node
+   * @param iValue observed value, or -1 to retract the evidence on the node
+   * @throws Exception if the junction tree is not initialized or the node is
+   *           not in it
+   */
   public void setEvidence(int nNode, int iValue) throws Exception {
     if (m_root == null) {
       throw new Exception("Junction tree not initialize yet");
     }
-    int iJtNode = 0;
-    while (iJtNode < jtNodes.length
-      && (jtNodes[iJtNode] == null || !jtNodes[iJtNode].contains(nNode))) {
-      iJtNode++;
-    }
-    if (jtNodes.length == iJtNode) {
+    if (nNode < 0 || nNode >= m_nNodeCliques.length) {
       throw new Exception("Could not find node " + nNode + " in junction tree");
     }
-    jtNodes[iJtNode].setEvidence(nNode, iValue);
+    if (iValue < 0) {
+      iValue = -1;
+    }
+    if (m_nEvidence[nNode] == iValue) {
+      return;
+    }
+    m_nEvidence[nNode] = iValue;
+    // ancestors of a clique that is not up to date are not up to date either
+    JunctionTreeNode jtNode = jtNodes[m_nNodeCliques[nNode]];
+    while (jtNode != null && jtNode.m_bCollected) {
+      jtNode.m_bCollected = false;
+      jtNode = jtNode.m_parentSeparator == null ? null
+        : jtNode.m_parentSeparator.m_parentNode;
+    }
+    m_nEvidenceVersion++;
   } // setEvidence
 
+  /**
+   * get the evidence on a node
+   * 
+   * @param nNode index of the node
+   * @return observed value, or -1 if the node is not observed
+   */
+  public int getEvidence(int nNode) {
+    return m_nEvidence[nNode];
+  } // getEvidence
+
   @Override
   public String toString() {
+    collectEvidence();
+    for (JunctionTreeNode jtNode : jtNodes) {
+      if (jtNode != null) {
+        jtNode.distribute();
+      }
+    }
     return m_root.toString();
   } // toString
 
-  double[][] m_Margins;
-
   public double[] getMargin(int iNode) {
-    return m_Margins[iNode];
+    collectEvidence();
+    JunctionTreeNode jtNode = jtNodes[m_nNodeCliques[iNode]];
+    jtNode.distribute();
+    return jtNode.m_MarginalP[jtNode.indexOf(iNode)];
   } // getMargin
 
+  /**
+   * calculate the margins of all nodes for many sets of evidence. The sets are
+   * spread over the execution slots. Every slot propagates on its own copy of
+   * the junction tree, so when consecutive sets share evidence only the
+   * cliques where they differ collect their messages again.
+   * 
+   * @param nEvidence evidence sets, with the observed value of every node or
+   *          -1 if the node is not observed
+   * @param executor executor to take threads from, null to let the
+   *          calculator create its own
+   * @param nNumSlots number of execution slots, 0 or less for the number of
+   *          available processors
+   * @return margins per evidence set and node
+   * @throws Exception if the junction tree is not initialized or an evidence
+   *           set does not have a value for every node
+   */
+  public double[][][] getMargins(final int[][] nEvidence, Executor executor,
+    int nNumSlots) throws Exception {
+    if (m_root == null) {
+      throw new Exception("Junction tree not initialize yet");
+    }
+    final int nNodes = m_nEvidence.length;
+    for (int[] element : nEvidence) {
+      if (element.length != nNodes) {
+        throw new Exception("Evidence set does not have a value for all "
+          + nNodes + " nodes");
+      }
+    }
+    // copies start from messages that are up to date
+    collectEvidence();
+    final double[][][] fMargins = new double[nEvidence.length][][];
+    final ConcurrentLinkedQueue<MarginCalculator> calculators =
+      new ConcurrentLinkedQueue<MarginCalculator>();
+    SearchTaskRunner<double[][]> runner = new SearchTaskRunner<double[][]>(
+      executor, nNumSlots);
+    try {
+      for (int iSet = 0; iSet < nEvidence.length; iSet++) {
+        final int iEvidence = iSet;
+        runner.submit(new Callable<double[][]>() {
+          @Override
+          public double[][] call() throws Exception {
+            MarginCalculator calculator = calculators.poll();
+            if (calculator == null) {
+              calculator = new MarginCalculator(MarginCalculator.this);
+            }
+            try {
+              double[][] fSetMargins = new double[nNodes][];
+              for (int iNode = 0; iNode < nNodes; iNode++) {
+                calculator.setEvidence(iNode, nEvidence[iEvidence][iNode]);
+              }
+              for (int iNode = 0; iNode < nNodes; iNode++) {
+                fSetMargins[iNode] = calculator.getMargin(iNode);
+              }
+              fMargins[iEvidence] = fSetMargins;
+              return fSetMargins;
+            } finally {
+              calculators.add(calculator);
+            }
+          }
+        });
+      }
+      for (int iSet = 0; iSet < nEvidence.length; iSet++) {
+        try {
+          runner.take().get();
+        } catch (ExecutionException e) {
+          throw new Exception("Could not calculate margins", e.getCause());
+        }
+      }
+    } finally {
+      runner.close();
+    }
+    return fMargins;
+  } // getMargins
+
   /**
    * Returns the revision string.
    * 
@@ -144,7 +144,8 @@ public class ParentSet
   public ParentSet(ParentSet other) {
     m_nNrOfParents = other.m_nNrOfParents;
     m_nCardinalityOfParents = other.m_nCardinalityOfParents;
-    m_nParents = new int[m_nNrOfParents];
+    // keep the capacity, an empty array could not grow when parents are added
+    m_nParents = new int[other.m_nParents.length];
 
     for (int iParent = 0; iParent < m_nNrOfParents; iParent++) {
       m_nParents[iParent] = other.m_nParents[iParent];
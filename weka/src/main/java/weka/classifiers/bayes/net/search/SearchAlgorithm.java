@@ -22,7 +22,10 @@ package weka.classifiers.bayes.net.search;
 
 import java.io.Serializable;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import weka.classifiers.bayes.BayesNet;
 import weka.classifiers.bayes.net.BIFReader;
@@ -74,6 +77,12 @@ public class SearchAlgorithm implements OptionHandler, Serializable,
    */
   protected String m_sInitalBIFFile;
 
+  /** metrics recorded by the last search, null if it did not record any **/
+  protected transient SearchMetrics m_Metrics;
+
+  /** listeners following the metrics of a search, null if there are none **/
+  protected transient List<SearchMetricsListener> m_MetricsListeners;
+
   /** c'tor **/
   public SearchAlgorithm() {
   } // SearchAlgorithm
@@ -296,7 +305,7 @@ public class SearchAlgorithm implements OptionHandler, Serializable,
       BIFReader initialNet = new BIFReader().processFile(m_sInitalBIFFile);
       for (int iAttribute = 0; iAttribute < instances.numAttributes(); iAttribute++) {
         int iNode = initialNet.getNode(bayesNet.getNodeName(iAttribute));
-        for (int iParent = 0; iParent < initialNet.getNrOfParents(iAttribute); iParent++) {
+        for (int iParent = 0; iParent < initialNet.getNrOfParents(iNode); iParent++) {
           String sParent = initialNet.getNodeName(initialNet.getParent(iNode,
             iParent));
           int nParent = 0;
@@ -324,11 +333,26 @@ public class SearchAlgorithm implements OptionHandler, Serializable,
         }
       }
     }
+    refineStructure(bayesNet, instances);
+  } // buildStructure
+
+  /**
+   * refineStructure searches for a better network structure, starting from
+   * the structure the network has, so a network can be updated with a few
+   * search steps when its data changes. buildStructure initializes the
+   * structure and then refines it.
+   * 
+   * @param bayesNet the network, with the structure to start from
+   * @param instances the data to use
+   * @throws Exception if something goes wrong
+   */
+  public void refineStructure(BayesNet bayesNet, Instances instances)
+    throws Exception {
     search(bayesNet, instances);
     if (m_bMarkovBlanketClassifier) {
       doMarkovBlanketCorrection(bayesNet, instances);
     }
-  } // buildStructure
+  } // refineStructure
 
   /**
    * 
@@ -408,6 +432,75 @@ public class SearchAlgorithm implements OptionHandler, Serializable,
     return m_bMarkovBlanketClassifier;
   }
 
+  /**
+   * add a listener that is notified of the metrics a search records while it
+   * runs
+   * 
+   * @param listener the listener to add
+   */
+  public void addMetricsListener(SearchMetricsListener listener) {
+    if (m_MetricsListeners == null) {
+      m_MetricsListeners = new CopyOnWriteArrayList<SearchMetricsListener>();
+    }
+    m_MetricsListeners.add(listener);
+  } // addMetricsListener
+
+  /**
+   * remove a listener added with addMetricsListener
+   * 
+   * @param listener the listener to remove
+   */
+  public void removeMetricsListener(SearchMetricsListener listener) {
+    if (m_MetricsListeners != null) {
+      m_MetricsListeners.remove(listener);
+    }
+  } // removeMetricsListener
+
+  /**
+   * get the metrics recorded by the last search
+   * 
+   * @return the metrics, or null if the search algorithm does not record
+   *         metrics or did not run yet
+   */
+  public SearchMetrics getMetrics() {
+    return m_Metrics;
+  } // getMetrics
+
+  /**
+   * start recording the metrics of a search
+   * 
+   * @return the metrics the search records to
+   */
+  protected SearchMetrics startMetrics() {
+    m_Metrics = new SearchMetrics();
+    return m_Metrics;
+  } // startMetrics
+
+  /**
+   * record the metrics of an iteration and notify the listeners
+   * 
+   * @param metrics metrics of the iteration by name
+   */
+  protected void recordIteration(Map<String, Double> metrics) {
+    m_Metrics.addIteration(metrics);
+    if (m_MetricsListeners != null) {
+      for (SearchMetricsListener listener : m_MetricsListeners) {
+        listener.iterationCompleted(this, metrics);
+      }
+    }
+  } // recordIteration
+
+  /**
+   * notify the listeners that the search finished recording metrics
+   */
+  protected void finishMetrics() {
+    if (m_MetricsListeners != null) {
+      for (SearchMetricsListener listener : m_MetricsListeners) {
+        listener.searchCompleted(this, m_Metrics);
+      }
+    }
+  } // finishMetrics
+
   /**
    * @return a string to describe the MaxNrOfParentsoption.
    */
@@ -0,0 +1,269 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SearchMetrics.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.bayes.net.search;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Metrics recorded by a structure search: a row of named values per
+ * iteration and named totals of the whole search. Times are in milliseconds.
+ * Searches record the metrics that make sense for them, the names below are
+ * the ones shared by several searches. Metrics can be written as CSV, one row
+ * per iteration, or as JSON with the totals and the iterations.
+ *
+ * @version $Revision$
+ */
+public class SearchMetrics implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -5079318470516745937L;
+
+  /** number of the iteration **/
+  public static final String ITERATION = "iteration";
+
+  /** number of iterations run **/
+  public static final String ITERATIONS = "iterations";
+
+  /** wall clock time **/
+  public static final String WALL_TIME = "wallTime";
+
+  /** number of node scores calculated, not counting cache hits **/
+  public static final String SCORE_EVALUATIONS = "scoreEvaluations";
+
+  /** number of node scores found in the score cache **/
+  public static final String CACHE_HITS = "cacheHits";
+
+  /** number of node scores not found in the score cache **/
+  public static final String CACHE_MISSES = "cacheMisses";
+
+  /** fraction of score cache lookups that found a score **/
+  public static final String CACHE_HIT_RATE = "cacheHitRate";
+
+  /** score of the best structure found so far **/
+  public static final String BEST_SCORE = "bestScore";
+
+  /** metrics of every iteration, in the order they were recorded **/
+  protected final List<Map<String, Double>> m_Iterations =
+    new ArrayList<Map<String, Double>>();
+
+  /** totals of the search **/
+  protected final Map<String, Double> m_Totals =
+    new LinkedHashMap<String, Double>();
+
+  /**
+   * add the metrics of an iteration
+   *
+   * @param metrics metrics by name, in the order they are to be written
+   */
+  public synchronized void addIteration(Map<String, Double> metrics) {
+    m_Iterations.add(Collections.unmodifiableMap(
+      new LinkedHashMap<String, Double>(metrics)));
+  } // addIteration
+
+  /**
+   * get the metrics of all iterations recorded so far
+   *
+   * @return metrics per iteration, not to be modified
+   */
+  public synchronized List<Map<String, Double>> getIterations() {
+    return new ArrayList<Map<String, Double>>(m_Iterations);
+  } // getIterations
+
+  /**
+   * set a total of the search
+   *
+   * @param sName name of the total
+   * @param fValue value of the total
+   */
+  public synchronized void setTotal(String sName, double fValue) {
+    m_Totals.put(sName, fValue);
+  } // setTotal
+
+  /**
+   * get a total of the search
+   *
+   * @param sName name of the total
+   * @return value of the total, NaN if it was not recorded
+   */
+  public synchronized double getTotal(String sName) {
+    Double fValue = m_Totals.get(sName);
+    return fValue == null ? Double.NaN : fValue;
+  } // getTotal
+
+  /**
+   * get all totals of the search
+   *
+   * @return totals by name
+   */
+  public synchronized Map<String, Double> getTotals() {
+    return new LinkedHashMap<String, Double>(m_Totals);
+  } // getTotals
+
+  /**
+   * write the metrics to a file, as JSON if the name of the file ends with
+   * .json and as CSV otherwise
+   *
+   * @param file file to write to
+   * @throws IOException if the file can not be written
+   */
+  public void write(File file) throws IOException {
+    Writer writer = new BufferedWriter(new FileWriter(file));
+    try {
+      if (file.getName().toLowerCase().endsWith(".json")) {
+        writeJSON(writer);
+      } else {
+        writeCSV(writer);
+      }
+    } finally {
+      writer.close();
+    }
+  } // write
+
+  /**
+   * write the metrics of the iterations as CSV, with a header line holding the
+   * names of all metrics. Metrics an iteration did not record are left empty.
+   *
+   * @param writer writer to write to, not closed
+   * @throws IOException if writing fails
+   */
+  public void writeCSV(Writer writer) throws IOException {
+    List<Map<String, Double>> iterations = getIterations();
+    Set<String> names = new LinkedHashSet<String>();
+    for (Map<String, Double> metrics : iterations) {
+      names.addAll(metrics.keySet());
+    }
+    writer.write(join(names));
+    writer.write('\n');
+    for (Map<String, Double> metrics : iterations) {
+      StringBuilder line = new StringBuilder();
+      boolean bFirst = true;
+      for (String sName : names) {
+        if (!bFirst) {
+          line.append(',');
+        }
+        bFirst = false;
+        Double fValue = metrics.get(sName);
+        if (fValue != null) {
+          line.append(format(fValue));
+        }
+      }
+      writer.write(line.toString());
+      writer.write('\n');
+    }
+    writer.flush();
+  } // writeCSV
+
+  /**
+   * write the totals and the metrics of the iterations as a JSON object.
+   * Values that are not a number or infinite are written as null.
+   *
+   * @param writer writer to write to, not closed
+   * @throws IOException if writing fails
+   */
+  public void writeJSON(Writer writer) throws IOException {
+    writer.write("{\n  \"totals\": ");
+    writer.write(toJSON(getTotals()));
+    writer.write(",\n  \"iterations\": [");
+    List<Map<String, Double>> iterations = getIterations();
+    for (int iIteration = 0; iIteration < iterations.size(); iIteration++) {
+      writer.write(iIteration == 0 ? "\n    " : ",\n    ");
+      writer.write(toJSON(iterations.get(iIteration)));
+    }
+    writer.write(iterations.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+    writer.flush();
+  } // writeJSON
+
+  /**
+   * a JSON object holding named values
+   *
+   * @param metrics values by name
+   * @return the JSON object on a single line
+   */
+  protected static String toJSON(Map<String, Double> metrics) {
+    StringBuilder json = new StringBuilder("{");
+    for (Map.Entry<String, Double> entry : metrics.entrySet()) {
+      if (json.length() > 1) {
+        json.append(", ");
+      }
+      json.append('"').append(entry.getKey()).append("\": ");
+      double fValue = entry.getValue();
+      json.append(Double.isNaN(fValue) || Double.isInfinite(fValue) ? "null"
+        : format(fValue));
+    }
+    return json.append('}').toString();
+  } // toJSON
+
+  /**
+   * format a value, whole numbers without a fraction
+   *
+   * @param fValue value to format
+   * @return the formatted value
+   */
+  protected static String format(double fValue) {
+    if (fValue == Math.rint(fValue) && Math.abs(fValue) < 1e15) {
+      return Long.toString((long) fValue);
+    }
+    return Double.toString(fValue);
+  } // format
+
+  /**
+   * join names with commas
+   *
+   * @param names names to join
+   * @return the joined names
+   */
+  protected static String join(Set<String> names) {
+    StringBuilder line = new StringBuilder();
+    for (String sName : names) {
+      if (line.length() > 0) {
+        line.append(',');
+      }
+      line.append(sName);
+    }
+    return line.toString();
+  } // join
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+} // class SearchMetrics
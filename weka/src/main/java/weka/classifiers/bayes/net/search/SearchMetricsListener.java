@@ -0,0 +1,50 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SearchMetricsListener.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.bayes.net.search;
+
+import java.util.Map;
+
+/**
+ * Interface for objects that want to follow the metrics of a structure search
+ * while it runs. Listeners are called from the thread running the search, so
+ * they should return quickly.
+ *
+ * @version $Revision$
+ */
+public interface SearchMetricsListener {
+
+  /**
+   * called when a search recorded the metrics of an iteration
+   *
+   * @param search the search algorithm
+   * @param metrics metrics of the iteration by name, not to be modified
+   */
+  void iterationCompleted(SearchAlgorithm search, Map<String, Double> metrics);
+
+  /**
+   * called when a search finished and recorded its totals
+   *
+   * @param search the search algorithm
+   * @param metrics all metrics of the search
+   */
+  void searchCompleted(SearchAlgorithm search, SearchMetrics metrics);
+}
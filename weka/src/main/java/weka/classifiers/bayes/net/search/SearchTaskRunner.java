@@ -0,0 +1,269 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SearchTaskRunner.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.bayes.net.search;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Runs the tasks of a structure search on a limited number of execution
+ * slots, like a completion service. The thread that takes results is one of
+ * the slots: whenever it waits for a result while tasks are pending, it runs a
+ * pending task itself. The other slots are helpers that run on an executor and
+ * return their thread as soon as no task is pending, they never wait for
+ * results.
+ * <p/>
+ * This makes it safe to run a search on an executor that is shared with the
+ * code calling the search, like the common fork join pool or an executor that
+ * runs the folds of a cross-validation in parallel. The search never uses more
+ * threads than it has slots, and when all threads of a shared executor are
+ * busy the search still makes progress in the calling thread. An executor
+ * that is handed to the runner is never shut down by it, an executor that the
+ * runner creates itself is shut down by close(). Once close() returns, no
+ * task of the runner is running any more, so a search that ends with an
+ * exception does not leave tasks behind that change its state.
+ *
+ * @param <T> type of the results of the tasks
+ * @version $Revision$
+ */
+public class SearchTaskRunner<T> implements RevisionHandler {
+
+  /** executor the helpers run on, null if there is a single slot **/
+  protected Executor m_Executor;
+
+  /** executor created by the runner, null if it was handed an executor **/
+  protected ExecutorService m_OwnExecutor;
+
+  /** max number of helpers running at the same time **/
+  protected int m_nMaxHelpers;
+
+  /** number of helpers running **/
+  protected final AtomicInteger m_nHelpers = new AtomicInteger();
+
+  /** tasks that are not started yet **/
+  protected final ConcurrentLinkedQueue<FutureTask<T>> m_PendingTasks =
+    new ConcurrentLinkedQueue<FutureTask<T>>();
+
+  /** tasks that are done and not taken yet **/
+  protected final BlockingQueue<Future<T>> m_DoneTasks =
+    new LinkedBlockingQueue<Future<T>>();
+
+  /** number of tasks running **/
+  protected final AtomicInteger m_nRunning = new AtomicInteger();
+
+  /** whether the runner is closed, tasks that did not start yet never start **/
+  protected volatile boolean m_bClosed;
+
+  /**
+   * c'tor
+   *
+   * @param executor executor to run helpers on, or null to let the runner
+   *          create its own executor if it needs one
+   * @param nNumSlots number of execution slots, including the thread that
+   *          takes the results. 0 or less means the number of available
+   *          processors
+   */
+  public SearchTaskRunner(Executor executor, int nNumSlots) {
+    if (nNumSlots <= 0) {
+      nNumSlots = Runtime.getRuntime().availableProcessors();
+    }
+    m_nMaxHelpers = nNumSlots - 1;
+    if (m_nMaxHelpers > 0) {
+      if (executor == null) {
+        m_OwnExecutor = Executors.newFixedThreadPool(m_nMaxHelpers,
+          new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "structure-search");
+              // an unfinished search should never keep the JVM alive
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+        executor = m_OwnExecutor;
+      }
+      m_Executor = executor;
+    }
+  } // c'tor
+
+  /**
+   * submit a task. It is run by a helper, or by the thread taking results
+   *
+   * @param task task to run
+   * @return future of the task, also returned by take() when the task is
+   *         done
+   */
+  public Future<T> submit(final Callable<T> task) {
+    FutureTask<T> futureTask = new FutureTask<T>(new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        // count the task as running before checking whether the runner is
+        // closed, so close() either sees it running or it sees close()
+        m_nRunning.incrementAndGet();
+        try {
+          if (m_bClosed) {
+            throw new CancellationException("Search task runner is closed");
+          }
+          return task.call();
+        } finally {
+          if (m_nRunning.decrementAndGet() == 0 && m_bClosed) {
+            synchronized (m_nRunning) {
+              m_nRunning.notifyAll();
+            }
+          }
+        }
+      }
+    }) {
+      @Override
+      protected void done() {
+        m_DoneTasks.add(this);
+      }
+    };
+    m_PendingTasks.add(futureTask);
+    startHelper();
+    return futureTask;
+  } // submit
+
+  /**
+   * take the future of a task that is done, running pending tasks in the
+   * calling thread while no task is done
+   *
+   * @return future of a task that is done
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public Future<T> take() throws InterruptedException {
+    while (true) {
+      Future<T> future = m_DoneTasks.poll();
+      if (future != null) {
+        return future;
+      }
+      FutureTask<T> task = m_PendingTasks.poll();
+      if (task == null) {
+        return m_DoneTasks.take();
+      }
+      task.run();
+    }
+  } // take
+
+  /**
+   * start a helper if there are fewer helpers than allowed
+   */
+  protected void startHelper() {
+    if (m_Executor == null) {
+      return;
+    }
+    int nHelpers = m_nHelpers.get();
+    while (nHelpers < m_nMaxHelpers) {
+      if (m_nHelpers.compareAndSet(nHelpers, nHelpers + 1)) {
+        try {
+          m_Executor.execute(new Runnable() {
+            @Override
+            public void run() {
+              runPendingTasks();
+            }
+          });
+        } catch (RuntimeException e) {
+          // rejected, the thread taking results runs the tasks
+          m_nHelpers.decrementAndGet();
+        }
+        return;
+      }
+      nHelpers = m_nHelpers.get();
+    }
+  } // startHelper
+
+  /**
+   * run pending tasks until there are none left, then end the helper
+   */
+  protected void runPendingTasks() {
+    while (true) {
+      FutureTask<T> task;
+      while ((task = m_PendingTasks.poll()) != null) {
+        task.run();
+      }
+      m_nHelpers.decrementAndGet();
+      // a task submitted after the queue was found empty may have missed
+      // this helper, so check once more before returning the thread
+      if (m_PendingTasks.isEmpty()) {
+        return;
+      }
+      int nHelpers = m_nHelpers.get();
+      if (nHelpers >= m_nMaxHelpers
+        || !m_nHelpers.compareAndSet(nHelpers, nHelpers + 1)) {
+        return;
+      }
+    }
+  } // runPendingTasks
+
+  /**
+   * cancel the tasks that did not start, wait until the running tasks are
+   * done and shut down the executor if the runner created it. Running tasks
+   * are not interrupted, searches stop them through their own stop flags.
+   */
+  public void close() {
+    m_bClosed = true;
+    FutureTask<T> task;
+    while ((task = m_PendingTasks.poll()) != null) {
+      task.cancel(false);
+    }
+    boolean bInterrupted = false;
+    synchronized (m_nRunning) {
+      while (m_nRunning.get() > 0) {
+        try {
+          m_nRunning.wait();
+        } catch (InterruptedException e) {
+          // keep waiting, the tasks may still change the state of the search
+          bInterrupted = true;
+        }
+      }
+    }
+    if (bInterrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (m_OwnExecutor != null) {
+      m_OwnExecutor.shutdown();
+    }
+  } // close
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+} // class SearchTaskRunner
@@ -21,9 +21,11 @@
 
 package weka.classifiers.bayes.net.search.ci;
 
+import java.util.Arrays;
+
 import weka.classifiers.bayes.BayesNet;
-import weka.classifiers.bayes.net.ParentSet;
 import weka.classifiers.bayes.net.search.local.LocalScoreSearchAlgorithm;
+import weka.classifiers.bayes.net.search.local.NodeScoreCache;
 import weka.core.Instances;
 import weka.core.RevisionUtils;
 
@@ -58,6 +60,10 @@ public class CISearchAlgorithm
   	
 	BayesNet  m_BayesNet;
 	Instances m_instances;
+
+	/** scores of nodes given a separating set, shared by all tests of a search
+	 * with the same node and separating set. null if scores are not cached */
+	transient NodeScoreCache m_SepSetScoreCache;
 	    
 	/**
 	 * Returns a string describing this object
@@ -75,6 +81,7 @@ public class CISearchAlgorithm
 	/** IsConditionalIndependent tests whether two nodes X and Y are independent
 	 *  given a set of variables Z. The test compares the score of the Bayes network
 	 * with and without arrow Y->X where all nodes in Z are parents of X.
+	 * The parent set of X is not changed, so tests can run in parallel.
 	 * @param iAttributeX - index of attribute representing variable X
 	 * @param iAttributeY - index of attribute representing variable Y
  	 * @param iAttributesZ - array of integers representing indices of attributes in set Z
@@ -86,19 +93,17 @@ public class CISearchAlgorithm
 		int iAttributeY, 
 		int [] iAttributesZ, 
 		int nAttributesZ) {
-		ParentSet oParentSetX = m_BayesNet.getParentSet(iAttributeX);
-		// clear parent set of AttributeX
-		while (oParentSetX.getNrOfParents() > 0) {
-			oParentSetX.deleteLastParent(m_instances);
-		}
-		
-		// insert parents in iAttributeZ
+		// parents in iAttributeZ, followed by iAttributeY
+		int [] nParents = Arrays.copyOf(iAttributesZ, nAttributesZ + 1);
 		for (int iAttributeZ = 0; iAttributeZ < nAttributesZ; iAttributeZ++) {
-			oParentSetX.addParent( iAttributesZ[iAttributeZ], m_instances);
+			if (nParents[iAttributeZ] == iAttributeY) {
+				return true;
+			}
 		}
+		nParents[nAttributesZ] = iAttributeY;
 		
-		double fScoreZ = calcNodeScore(iAttributeX);
-		double fScoreZY = calcScoreWithExtraParent(iAttributeX, iAttributeY);
+		double fScoreZ = calcSepSetScore(iAttributeX, Arrays.copyOf(nParents, nAttributesZ));
+		double fScoreZY = calcNodeScoreOfParents(iAttributeX, nParents, nAttributesZ + 1);
 		if (fScoreZY <= fScoreZ) {
 			// the score does not improve by adding Y to the parent set of X
 			// so we conclude that nodes X and Y are conditionally independent
@@ -108,6 +113,27 @@ public class CISearchAlgorithm
 		return false;
 	} // IsConditionalIndependent
 
+	/** calcSepSetScore calculates the score of a node given a separating set,
+	 * looking it up in the cache of separating set scores first
+	 * @param iAttribute - index of attribute representing the node
+	 * @param iAttributesZ - indices of attributes in the separating set, not modified
+	 * @return log score
+	 */
+	double calcSepSetScore(int iAttribute, int [] iAttributesZ) {
+		NodeScoreCache cache = m_SepSetScoreCache;
+		if (cache == null) {
+			return calcNodeScoreOfParents(iAttribute, iAttributesZ, iAttributesZ.length);
+		}
+		// the cache only lives as long as a search, so it holds a single score type
+		Double fCachedScore = cache.get(iAttribute, 0, iAttributesZ);
+		if (fCachedScore != null) {
+			return fCachedScore;
+		}
+		double fScore = calcNodeScoreOfParents(iAttribute, iAttributesZ, iAttributesZ.length);
+		cache.put(iAttribute, 0, iAttributesZ, fScore);
+		return fScore;
+	} // calcSepSetScore
+
 	/**
 	 * Returns the revision string.
 	 * 
@@ -22,12 +22,17 @@
 package weka.classifiers.bayes.net.search.ci;
 
 import java.io.FileReader;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import weka.classifiers.bayes.BayesNet;
 import weka.classifiers.bayes.net.ParentSet;
+import weka.classifiers.bayes.net.search.SearchTaskRunner;
+import weka.classifiers.bayes.net.search.local.NodeScoreCache;
 import weka.core.Instances;
 import weka.core.Option;
 import weka.core.RevisionHandler;
@@ -41,6 +46,12 @@ import weka.core.Utils;
  * <p/>
  * <!-- globalinfo-end -->
  * 
+ * The pairs of nodes of a level of the skeleton search are tested in parallel
+ * against the skeleton at the start of the level. The tests in the order of
+ * the serial search then only need to be redone for pairs whose first
+ * separating set lost a node during the level, so the skeleton found does not
+ * depend on the number of threads.
+ * 
  * <!-- options-start --> Valid options are:
  * <p/>
  * 
@@ -65,6 +76,15 @@ import weka.core.Utils;
  *  Score type (BAYES, BDeu, MDL, ENTROPY and AIC)
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads the search runs its tasks on, including
+ *  the thread running the search. 0 means the number of
+ *  available processors. Supported by hill climbing, tabu search,
+ *  simulated annealing, genetic search, ICS and ant colony
+ *  optimization. (default 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Remco Bouckaert
@@ -75,6 +95,24 @@ public class ICSSearchAlgorithm extends CISearchAlgorithm {
   /** for serialization */
   static final long serialVersionUID = -2510985917284798576L;
 
+  /** max number of scores of nodes given a separating set that are cached **/
+  static final int SEP_SET_SCORE_CACHE_SIZE = 65536;
+
+  /** runs the tasks of the running search, null if tests are done serially **/
+  transient SearchTaskRunner<int[]> m_TaskRunner;
+
+  /**
+   * whether a pair of nodes was tested in parallel at the current level,
+   * indexed by the lower and the higher node. null if no pair was
+   **/
+  transient boolean[][] m_bTested;
+
+  /**
+   * first separating set of a pair of nodes that was tested in parallel at the
+   * current level, or null if there was none
+   **/
+  transient int[][][] m_nFirstSepSets;
+
   /**
    * returns the name of the attribute with the given index
    * 
@@ -147,6 +185,35 @@ public class ICSSearchAlgorithm extends CISearchAlgorithm {
 
   } // class sepset
 
+  /**
+   * buildStructure determines the network structure/graph of the network,
+   * running independence tests on the execution slots of the search
+   * 
+   * @param bayesNet the network
+   * @param instances the data to use
+   * @throws Exception if something goes wrong
+   */
+  @Override
+  public void buildStructure(BayesNet bayesNet, Instances instances)
+    throws Exception {
+    int nNumSlots = getNumSlotsToUse();
+    if (nNumSlots > 1) {
+      m_TaskRunner = createTaskRunner(nNumSlots);
+    }
+    m_SepSetScoreCache = new NodeScoreCache(SEP_SET_SCORE_CACHE_SIZE);
+    try {
+      super.buildStructure(bayesNet, instances);
+    } finally {
+      if (m_TaskRunner != null) {
+        m_TaskRunner.close();
+        m_TaskRunner = null;
+      }
+      m_SepSetScoreCache = null;
+      m_bTested = null;
+      m_nFirstSepSets = null;
+    }
+  } // buildStructure
+
   /**
    * Search for Bayes network structure using ICS algorithm
    * 
@@ -198,8 +265,10 @@ public class ICSSearchAlgorithm extends CISearchAlgorithm {
    * 
    * @param edges boolean matrix representing the edges
    * @param sepsets set of separating sets
+   * @throws Exception if a test fails
    */
-  void calcDependencyGraph(boolean[][] edges, SeparationSet[][] sepsets) {
+  void calcDependencyGraph(boolean[][] edges, SeparationSet[][] sepsets)
+    throws Exception {
     /* calc undirected graph a-b iff D(a,S,b) for all S) */
     SeparationSet oSepSet;
 
@@ -214,6 +283,9 @@ public class ICSSearchAlgorithm extends CISearchAlgorithm {
     }
 
     for (int iCardinality = 0; iCardinality <= getMaxCardinality(); iCardinality++) {
+      if (m_TaskRunner != null) {
+        testPairsInParallel(iCardinality, edges);
+      }
       for (int iNode1 = 0; iNode1 <= maxn() - 2; iNode1++) {
         for (int iNode2 = iNode1 + 1; iNode2 < maxn(); iNode2++) {
           if (edges[iNode1][iNode2]) {
@@ -233,6 +305,8 @@ public class ICSSearchAlgorithm extends CISearchAlgorithm {
           }
         }
       }
+      m_bTested = null;
+      m_nFirstSepSets = null;
       // report current state of dependency graph
       System.err.print(iCardinality + " ");
       for (int iNode1 = 0; iNode1 < maxn(); iNode1++) {
@@ -253,6 +327,91 @@ public class ICSSearchAlgorithm extends CISearchAlgorithm {
     }
   } /* CalcDependencyGraph */
 
+  /**
+   * testPairsInParallel looks for the first separating set of every pair of
+   * adjacent nodes in parallel, using the skeleton at the start of a level.
+   * Every separating set the serial search considers for a pair later in the
+   * level is also considered here, in the same order, so the outcome of all
+   * tests up to the first separating set found here is known.
+   * 
+   * @param nCardinality size of the separating sets of the level
+   * @param edges skeleton at the start of the level
+   * @throws Exception if a test fails
+   */
+  void testPairsInParallel(final int nCardinality, boolean[][] edges)
+    throws Exception {
+    final boolean[][] startEdges = new boolean[edges.length][];
+    for (int iNode = 0; iNode < edges.length; iNode++) {
+      startEdges[iNode] = edges[iNode].clone();
+    }
+    final boolean[][] bTested = new boolean[maxn()][maxn()];
+    final int[][][] nFirstSepSets = new int[maxn()][maxn()][];
+    int nNrOfTasks = 0;
+    for (int iNode1 = 0; iNode1 <= maxn() - 2; iNode1++) {
+      for (int iNode2 = iNode1 + 1; iNode2 < maxn(); iNode2++) {
+        if (startEdges[iNode1][iNode2]) {
+          final int iFirst = iNode1;
+          final int iSecond = iNode2;
+          m_TaskRunner.submit(new Callable<int[]>() {
+            @Override
+            public int[] call() {
+              SeparationSet oSepSet = existsSepSet(iFirst, iSecond,
+                nCardinality, startEdges);
+              if (oSepSet != null) {
+                nFirstSepSets[iFirst][iSecond] = Arrays.copyOf(
+                  oSepSet.m_set, nCardinality);
+              }
+              bTested[iFirst][iSecond] = true;
+              return nFirstSepSets[iFirst][iSecond];
+            }
+          });
+          nNrOfTasks++;
+        }
+      }
+    }
+    for (int iTask = 0; iTask < nNrOfTasks; iTask++) {
+      try {
+        m_TaskRunner.take().get();
+      } catch (ExecutionException e) {
+        throw new Exception("Could not test conditional independence",
+          e.getCause());
+      }
+    }
+    m_bTested = bTested;
+    m_nFirstSepSets = nFirstSepSets;
+  } // testPairsInParallel
+
+  /**
+   * isSeparating tests whether a set separates two nodes, using the outcome of
+   * the tests done in parallel at the start of the level when it is known
+   * 
+   * @param iNode1 index of first node
+   * @param iNode2 index of second node, larger than iNode1
+   * @param nSet candidate separating set, in increasing order
+   * @param nCardinality size of the candidate separating set
+   * @return true if the nodes are conditionally independent given the set
+   */
+  boolean isSeparating(int iNode1, int iNode2, int[] nSet, int nCardinality) {
+    if (m_bTested != null && m_bTested[iNode1][iNode2]) {
+      int[] nFirstSepSet = m_nFirstSepSets[iNode1][iNode2];
+      // sets are considered in lexicographic order
+      int nCompare = -1;
+      if (nFirstSepSet != null) {
+        nCompare = 0;
+        for (int iNode = 0; nCompare == 0 && iNode < nCardinality; iNode++) {
+          nCompare = Integer.compare(nSet[iNode], nFirstSepSet[iNode]);
+        }
+      }
+      if (nCompare < 0) {
+        return false;
+      }
+      if (nCompare == 0) {
+        return true;
+      }
+    }
+    return isConditionalIndependent(iNode2, iNode1, nSet, nCardinality);
+  } // isSeparating
+
   /**
    * ExistsSepSet tests if a separating set Z of node a and b exists of given
    * cardiniality exists. The set Z is found by trying all possible subsets of
@@ -294,7 +453,7 @@ public class ICSSearchAlgorithm extends CISearchAlgorithm {
 
     while (iZ >= 0) {
       // check if candidate separating set makes iNode2_ and iNode1_ independent
-      if (isConditionalIndependent(iNode2, iNode1, Z.m_set, nCardinality)) {
+      if (isSeparating(iNode1, iNode2, Z.m_set, nCardinality)) {
         return Z;
       }
       // calc next candidate separating set
@@ -518,6 +677,7 @@ public class ICSSearchAlgorithm extends CISearchAlgorithm {
           + "\tlength of the search. (default 2)", "cardinality", 1,
         "-cardinality <num>"));
 
+
     result.addAll(Collections.list(super.listOptions()));
 
     return result.elements();
@@ -551,6 +711,15 @@ public class ICSSearchAlgorithm extends CISearchAlgorithm {
    *  Score type (BAYES, BDeu, MDL, ENTROPY and AIC)
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads the search runs its tasks on, including
+   *  the thread running the search. 0 means the number of
+   *  available processors. Supported by hill climbing, tabu search,
+   *  simulated annealing, genetic search, ICS and ant colony
+   *  optimization. (default 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
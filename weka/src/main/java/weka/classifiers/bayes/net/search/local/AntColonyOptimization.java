@@ -2,10 +2,18 @@ package weka.classifiers.bayes.net.search.local;
 
 import weka.classifiers.bayes.BayesNet;
 import weka.classifiers.bayes.net.ParentSet;
+import weka.classifiers.bayes.net.search.SearchMetrics;
+import weka.classifiers.bayes.net.search.SearchTaskRunner;
 import weka.core.*;
+import weka.gui.ProgrammaticProperty;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Created by Borna Feldsar on 26/08/17.
@@ -15,54 +23,149 @@ import java.util.concurrent.*;
  * local optimizer solution optimization allows parallelization with the number of threads equal to a number of available cores.
  * In order to recreate the same solution when the same seed value is given, local pheromone update is done after an ant builds
  * a solution and not while building it. More local search algorithms are available as local optimizers.
+ * Several colonies with their own pheromone matrix and seed can search side by side as islands, which exchange their
+ * best structures and blend their pheromone every few iterations.
+ * In the asynchronous mode ants apply local pheromone updates while they build a solution, to a pheromone store that is
+ * shared by the ants of a colony, and a new ant starts as soon as one finishes, without waiting for the iteration to end.
+ * This keeps all cores busy when build times of ants vary, but results depend on thread scheduling.
+ * On data sets with many variables ants can be restricted to a few candidate parents per node, the nodes with the
+ * highest mutual information or chi-squared dependence, which shrinks the candidate arcs from n^2 to n*k.
+ * Every iteration records its wall time, the time spent in the phases of the iteration, score evaluations, score
+ * cache hits, the best score and pheromone statistics as search metrics, which listeners can follow while the
+ * search runs and which can be written to a CSV or JSON file.
  */
 public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
 
+    /**
+     * metric: time the ants of an iteration spent building solutions, summed over the ants
+     */
+    public static final String ANT_BUILD_TIME = "antBuildTime";
+    /**
+     * metric: time the local optimizers of an iteration spent, summed over the ants
+     */
+    public static final String LOCAL_OPTIMIZATION_TIME = "localOptimizationTime";
+    /**
+     * metric: wall time of the global pheromone update of an iteration
+     */
+    public static final String GLOBAL_UPDATE_TIME = "globalUpdateTime";
+    /**
+     * metric: lowest pheromone level of an arc in any colony
+     */
+    public static final String PHEROMONE_MIN = "pheromoneMin";
+    /**
+     * metric: highest pheromone level of an arc in any colony
+     */
+    public static final String PHEROMONE_MAX = "pheromoneMax";
+    /**
+     * metric: mean pheromone level of the arcs of all colonies
+     */
+    public static final String PHEROMONE_MEAN = "pheromoneMean";
+    /**
+     * metric: mean normalized pheromone entropy of the colonies, 1 for uniform pheromone
+     */
+    public static final String PHEROMONE_ENTROPY = "pheromoneEntropy";
+    /**
+     * metric: score of the initial structure
+     */
+    public static final String INITIAL_SCORE = "initialScore";
+    /**
+     * metric: 1 if a stop criterion ended the search before its number of iterations, 0 otherwise
+     */
+    public static final String STOPPED_EARLY = "stoppedEarly";
+
     /**
      * cache for remembering the change in score for steps in the search space
      */
     class Cache implements RevisionHandler {
 
         /**
-         * change in score due to adding an arc
+         * change in score due to adding an arc, indexed by head and slot of the tail in the candidate parents of
+         * the head
          **/
         double[][] m_fDeltaScoreAdd;
 
         /**
-         * product of a pheromone value and a heuristic value powered by beta for an arc
+         * product of a pheromone value and a heuristic value powered by beta for an arc, indexed like
+         * m_fDeltaScoreAdd
          */
 
         double[][] m_arcPheromoneHeuristicB;
+
         /**
-         * number of arcs which are still candidates ( not in G and inclusion of an arc improves G)
+         * number of nodes in a network
          */
-        int numOfAvailableArcs;
+        int m_nNrOfNodes;
         /**
-         * sum of cells that are still candidates  ( not in G and inclusion of an arc improves G)
-         **/
-        double sumOfPheromoneHeuristic;
+         * number of candidate parents of every node, the number of nodes if parents are not restricted
+         */
+        int m_nNrOfSlots;
+        /**
+         * index of the first leaf in the candidate trees. The leaf m_nLeafOffset + head sums up the arcs with that
+         * head, so the trees hold O(nodes) entries whatever the number of candidate parents, and the arcs of a head
+         * are scanned in the order of their slots
+         */
+        int m_nLeafOffset;
+        /**
+         * sum tree over the product of a pheromone and a heuristic value of arcs that are still candidates
+         * ( not in G and inclusion of an arc improves G)
+         */
+        double[] m_fCandidateSums;
+        /**
+         * count tree over arcs that are still candidates
+         */
+        int[] m_nCandidateCounts;
+        /**
+         * tournament tree holding the arc index head * m_nNrOfSlots + slot of the best candidate arc in a subtree,
+         * -1 if there is no candidate. Ties are resolved in favour of the arc with the smaller index
+         */
+        int[] m_nCandidateBest;
+        /**
+         * arc returned by the candidate queries, reused so that selecting an arc does not allocate
+         */
+        int[] m_nArc = new int[3];
 
         /**
          * constructor
          *
          * @param nNrOfNodes number of nodes in a network, used to determine a memory
          *                   size to reserve
+         * @param nNrOfSlots number of candidate parents of every node
          */
-        Cache(int nNrOfNodes) {
-            m_fDeltaScoreAdd = new double[nNrOfNodes][nNrOfNodes];
-            m_arcPheromoneHeuristicB = new double[nNrOfNodes][nNrOfNodes];
+        Cache(int nNrOfNodes, int nNrOfSlots) {
+            m_fDeltaScoreAdd = new double[nNrOfNodes][nNrOfSlots];
+            m_arcPheromoneHeuristicB = new double[nNrOfNodes][nNrOfSlots];
+
+            m_nNrOfNodes = nNrOfNodes;
+            m_nNrOfSlots = nNrOfSlots;
+            m_nLeafOffset = 1;
+            while (m_nLeafOffset < nNrOfNodes) {
+                m_nLeafOffset <<= 1;
+            }
+            m_fCandidateSums = new double[2 * m_nLeafOffset];
+            m_nCandidateCounts = new int[2 * m_nLeafOffset];
+            m_nCandidateBest = new int[2 * m_nLeafOffset];
+            Arrays.fill(m_nCandidateBest, -1);
+        }
 
+        /**
+         * Empties the candidate trees, so the cache can be filled again for a new solution. The score and
+         * pheromone heuristic matrices are not cleared because filling the cache overwrites every cell.
+         */
+        void reset() {
+            Arrays.fill(m_fCandidateSums, 0);
+            Arrays.fill(m_nCandidateCounts, 0);
+            Arrays.fill(m_nCandidateBest, -1);
         }
 
         /**
          * Set cache entry
          *
          * @param m_nHead index of a head node
-         * @param m_nTail index of a tail node
+         * @param m_nSlot slot of the tail node in the candidate parents of the head
          * @param fValue  value to put in the cache
          */
-        public void putScore(int m_nTail, int m_nHead, double fValue) {
-            m_fDeltaScoreAdd[m_nTail][m_nHead] = fValue;
+        public void putScore(int m_nHead, int m_nSlot, double fValue) {
+            m_fDeltaScoreAdd[m_nHead][m_nSlot] = fValue;
         } // put
 
         /**
@@ -70,8 +173,8 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
          *
          * @return cache value
          */
-        public double getScore(int m_nTail, int m_nHead) {
-            return m_fDeltaScoreAdd[m_nTail][m_nHead];
+        public double getScore(int m_nHead, int m_nSlot) {
+            return m_fDeltaScoreAdd[m_nHead][m_nSlot];
 
         } // get
 
@@ -79,11 +182,11 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
          * Set cache entry
          *
          * @param m_nHead index of a head node
-         * @param m_nTail index of a tail node
+         * @param m_nSlot slot of the tail node in the candidate parents of the head
          * @param fValue  value to put in the cache
          */
-        public void putPheromoneHeuristicB(int m_nTail, int m_nHead, double fValue) {
-            m_arcPheromoneHeuristicB[m_nTail][m_nHead] = fValue;
+        public void putPheromoneHeuristicB(int m_nHead, int m_nSlot, double fValue) {
+            m_arcPheromoneHeuristicB[m_nHead][m_nSlot] = fValue;
         } // put
 
         /**
@@ -91,10 +194,192 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
          *
          * @return cache value
          */
-        public double getPheromoneHeuristicB(int m_nTail, int m_nHead) {
-            return m_arcPheromoneHeuristicB[m_nTail][m_nHead];
+        public double getPheromoneHeuristicB(int m_nHead, int m_nSlot) {
+            return m_arcPheromoneHeuristicB[m_nHead][m_nSlot];
         } // get
 
+        /**
+         * Returns the number of arcs which are still candidates ( not in G and inclusion of an arc improves G)
+         *
+         * @return number of available arcs
+         */
+        public int getNumOfAvailableArcs() {
+            return m_nCandidateCounts[1];
+        }
+
+        /**
+         * Returns the sum of cells that are still candidates ( not in G and inclusion of an arc improves G)
+         *
+         * @return sum of the product of a pheromone and a heuristic value of candidate arcs
+         */
+        public double getSumOfPheromoneHeuristic() {
+            return m_fCandidateSums[1];
+        }
+
+        /**
+         * Returns the candidate arc with the highest product of a pheromone and a heuristic value
+         *
+         * @return an arc as an array. At the index 0 is Tail, at the index 1 is Head and at the index 2 the slot of
+         * Tail. Returns {-1,-1,-1} if there is no candidate arc
+         */
+        public int[] getBestCandidate() {
+            return toArc(m_nCandidateBest[1]);
+        }
+
+        /**
+         * Returns the first candidate arc at which the accumulated product of a pheromone and a heuristic value
+         * reaches the given value. Arcs are accumulated in the head by head, tail by tail order: the trees find the
+         * head, then the slots of the head are scanned. The sums of the tree add the sums of heads pairwise instead
+         * of from left to right, so they can differ in the last bits from a running sum. A value that falls on the
+         * boundary between two arcs within that rounding can select the other arc, so the structures found for a
+         * seed match those of a linear scan only up to rounding.
+         *
+         * @param fValue value in the range [0, getSumOfPheromoneHeuristic())
+         * @return an arc as an array. At the index 0 is Tail, at the index 1 is Head and at the index 2 the slot of
+         * Tail. Returns {-1,-1,-1} if there is no candidate arc
+         */
+        public int[] getCandidateAt(double fValue) {
+            if (m_nCandidateCounts[1] == 0) {
+                return toArc(-1);
+            }
+            int iNode = 1;
+            while (iNode < m_nLeafOffset) {
+                int iLeft = 2 * iNode;
+                if (m_nCandidateCounts[iLeft + 1] == 0
+                        || (m_nCandidateCounts[iLeft] > 0 && Double.compare(fValue, m_fCandidateSums[iLeft]) <= 0)) {
+                    iNode = iLeft;
+                } else {
+                    fValue -= m_fCandidateSums[iLeft];
+                    iNode = iLeft + 1;
+                }
+            }
+            // the last candidate of the head takes what rounding left over
+            int iHead = iNode - m_nLeafOffset;
+            int nRemaining = m_nCandidateCounts[iNode];
+            double[] fScores = m_fDeltaScoreAdd[iHead];
+            double[] fValues = m_arcPheromoneHeuristicB[iHead];
+            for (int iSlot = 0; ; iSlot++) {
+                if (fScores[iSlot] > 0) {
+                    if (--nRemaining == 0 || Double.compare(fValue, fValues[iSlot]) <= 0) {
+                        return toArc(iHead * m_nNrOfSlots + iSlot);
+                    }
+                    fValue -= fValues[iSlot];
+                }
+            }
+        }
+
+        /**
+         * Updates candidate trees for the arcs with the head in the given range. Arcs are candidates if
+         * their score is bigger than 0, that is, they are not in G, they do not create a cycle and their inclusion
+         * improves G
+         *
+         * @param iFirstHead first head node to update
+         * @param iLastHead  last head node to update (inclusive)
+         */
+        public void updateCandidates(int iFirstHead, int iLastHead) {
+            int iFirstLeaf = m_nLeafOffset + iFirstHead;
+            int iLastLeaf = m_nLeafOffset + iLastHead;
+            for (int iHead = iFirstHead; iHead <= iLastHead; iHead++) {
+                setLeaf(iHead);
+            }
+            // recompute inner nodes level by level
+            for (iFirstLeaf >>= 1, iLastLeaf >>= 1; iFirstLeaf >= 1; iFirstLeaf >>= 1, iLastLeaf >>= 1) {
+                for (int iNode = iFirstLeaf; iNode <= iLastLeaf; iNode++) {
+                    pull(iNode);
+                }
+            }
+        }
+
+        /**
+         * Updates candidate trees for a single arc
+         *
+         * @param iHead index of a head node
+         * @param iSlot slot of the tail node in the candidate parents of the head
+         */
+        public void updateCandidate(int iHead, int iSlot) {
+            int iNode = setLeaf(iHead);
+            for (iNode >>= 1; iNode >= 1; iNode >>= 1) {
+                pull(iNode);
+            }
+        }
+
+        /**
+         * Sets the leaf of the candidate trees for the arcs of a head, summing them in the order of their slots
+         *
+         * @param iHead index of a head node
+         * @return index of the leaf
+         */
+        private int setLeaf(int iHead) {
+            double[] fScores = m_fDeltaScoreAdd[iHead];
+            double[] fValues = m_arcPheromoneHeuristicB[iHead];
+            double fSum = 0;
+            int nCount = 0;
+            int iBest = -1;
+            for (int iSlot = 0; iSlot < m_nNrOfSlots; iSlot++) {
+                if (fScores[iSlot] > 0) {
+                    fSum += fValues[iSlot];
+                    nCount++;
+                    if (iBest == -1 || fValues[iSlot] > fValues[iBest]) {
+                        iBest = iSlot;
+                    }
+                }
+            }
+            int iLeaf = m_nLeafOffset + iHead;
+            m_fCandidateSums[iLeaf] = fSum;
+            m_nCandidateCounts[iLeaf] = nCount;
+            m_nCandidateBest[iLeaf] = iBest == -1 ? -1 : iHead * m_nNrOfSlots + iBest;
+            return iLeaf;
+        }
+
+        /**
+         * Recomputes an inner node of the candidate trees from its children
+         *
+         * @param iNode index of an inner node
+         */
+        private void pull(int iNode) {
+            int iLeft = 2 * iNode;
+            int iRight = iLeft + 1;
+            m_fCandidateSums[iNode] = m_fCandidateSums[iLeft] + m_fCandidateSums[iRight];
+            m_nCandidateCounts[iNode] = m_nCandidateCounts[iLeft] + m_nCandidateCounts[iRight];
+            int iBestLeft = m_nCandidateBest[iLeft];
+            int iBestRight = m_nCandidateBest[iRight];
+            if (iBestLeft == -1 || (iBestRight != -1 && getArcValue(iBestRight) > getArcValue(iBestLeft))) {
+                m_nCandidateBest[iNode] = iBestRight;
+            } else {
+                m_nCandidateBest[iNode] = iBestLeft;
+            }
+        }
+
+        /**
+         * Returns the product of a pheromone and a heuristic value of an arc
+         *
+         * @param iArc arc index head * m_nNrOfSlots + slot
+         * @return the product
+         */
+        private double getArcValue(int iArc) {
+            return m_arcPheromoneHeuristicB[iArc / m_nNrOfSlots][iArc % m_nNrOfSlots];
+        }
+
+        /**
+         * Converts an arc index of the candidate trees to an arc
+         *
+         * @param iArc arc index, -1 if there is no arc
+         * @return an arc as an array. At the index 0 is Tail, at the index 1 is Head and at the index 2 the slot of
+         * Tail. The array is reused by the next query
+         */
+        private int[] toArc(int iArc) {
+            if (iArc == -1) {
+                m_nArc[0] = -1;
+                m_nArc[1] = -1;
+                m_nArc[2] = -1;
+            } else {
+                m_nArc[1] = iArc / m_nNrOfSlots;
+                m_nArc[2] = iArc % m_nNrOfSlots;
+                m_nArc[0] = getCandidateParent(m_nArc[1], m_nArc[2]);
+            }
+            return m_nArc;
+        }
+
         /**
          * Returns the revision string.
          *
@@ -106,6 +391,125 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
         }
     } // class Cache
 
+    /**
+     * Buffers an ant only needs while it builds a solution: the cache and the ancestor and descendant bitsets.
+     * Workspaces are pooled and reset in place, so ants running on the same worker thread in later iterations
+     * reuse them instead of allocating new ones.
+     */
+    private class AntWorkspace {
+        /**
+         * number of nodes the buffers are sized for
+         */
+        final int numOfNodes;
+        /**
+         * cache of score differences, pheromone heuristic values and candidate arcs
+         */
+        final Cache cache;
+        /**
+         * bitset of ancestors for every node
+         */
+        final long[][] ancestors;
+        /**
+         * bitset of descendants for every node
+         */
+        final long[][] descendants;
+        /**
+         * descendants of the head of the most recently added arc
+         */
+        final long[] newDescendants;
+        /**
+         * scores of the nodes of the empty network
+         */
+        final double[] fBaseScores;
+
+        AntWorkspace(int numOfNodes) {
+            int numOfWords = (numOfNodes + 63) >>> 6;
+            this.numOfNodes = numOfNodes;
+            cache = new Cache(numOfNodes, getNumOfCandidateSlots(numOfNodes));
+            ancestors = new long[numOfNodes][numOfWords];
+            descendants = new long[numOfNodes][numOfWords];
+            newDescendants = new long[numOfWords];
+            fBaseScores = new double[numOfNodes];
+        }
+    }//class AntWorkspace
+
+    /**
+     * Pheromone matrix that ants of a colony read and update concurrently in the asynchronous mode. Levels are kept
+     * as the bits of doubles in an AtomicLongArray and updated with compare and set, so no update is lost.
+     */
+    private static final class PheromoneStore {
+        /**
+         * number of nodes in a network
+         */
+        final int numOfNodes;
+        /**
+         * bits of the pheromone level of arc (tail, head) at index tail * numOfNodes + head
+         */
+        final AtomicLongArray levels;
+
+        PheromoneStore(double[][] pheromone) {
+            numOfNodes = pheromone.length;
+            levels = new AtomicLongArray(numOfNodes * numOfNodes);
+            copyFrom(pheromone);
+        }
+
+        /**
+         * Returns the pheromone level of an arc
+         *
+         * @param iTail tail of an arc
+         * @param iHead head of an arc
+         * @return pheromone level
+         */
+        double get(int iTail, int iHead) {
+            return Double.longBitsToDouble(levels.get(iTail * numOfNodes + iHead));
+        }
+
+        /**
+         * Atomically moves the pheromone level of an arc towards a value: level = (1 - coef) * level + coef * value
+         *
+         * @param iTail tail of an arc
+         * @param iHead head of an arc
+         * @param coef  weight of the value
+         * @param value value to move towards
+         */
+        void blend(int iTail, int iHead, double coef, double value) {
+            int index = iTail * numOfNodes + iHead;
+            while (true) {
+                long oldBits = levels.get(index);
+                double newLevel = (1 - coef) * Double.longBitsToDouble(oldBits) + coef * value;
+                if (levels.compareAndSet(index, oldBits, Double.doubleToLongBits(newLevel))) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Sets all pheromone levels
+         *
+         * @param pheromone pheromone matrix to copy
+         */
+        void copyFrom(double[][] pheromone) {
+            for (int iTail = 0; iTail < numOfNodes; iTail++) {
+                for (int iHead = 0; iHead < numOfNodes; iHead++) {
+                    levels.set(iTail * numOfNodes + iHead, Double.doubleToLongBits(pheromone[iTail][iHead]));
+                }
+            }
+        }
+
+        /**
+         * Copies all pheromone levels. Levels that are updated while copying may be copied before or after the update
+         *
+         * @param pheromone pheromone matrix to copy to
+         */
+        void copyTo(double[][] pheromone) {
+            for (int iTail = 0; iTail < numOfNodes; iTail++) {
+                for (int iHead = 0; iHead < numOfNodes; iHead++) {
+                    pheromone[iTail][iHead] = get(iTail, iHead);
+                }
+            }
+        }
+    }//class PheromoneStore
+
     private class Ant extends LocalScoreSearchAlgorithm implements Callable<Ant> {
         /**
          * cache
@@ -129,9 +533,63 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
          **/
         double f_localUpdateCoef;
         /**
-         * true if there is an arc (tail,head)
+         * pheromone level matrix of the colony the ant belongs to
+         */
+        double[][] pheromone;
+        /**
+         * pheromone store of the colony in the asynchronous mode, null in the deterministic mode
+         */
+        PheromoneStore sharedPheromone;
+        /**
+         * colony the ant belongs to
+         */
+        Colony colony;
+        /**
+         * optimizer that improves the solution of the ant right after it is built, null if the solution is not
+         * optimized
+         */
+        HillClimber m_LocalOptimizer;
+        /**
+         * score of the solution, set when the ant finished
+         */
+        double m_fScore;
+        /**
+         * true if the ant finished building, optimizing and scoring its solution
+         */
+        boolean m_bFinished;
+        /**
+         * nanoseconds the ant spent building its solution
+         */
+        long m_nBuildTime;
+        /**
+         * nanoseconds the local optimizer spent on the solution, 0 if it was not optimized
+         */
+        long m_nOptimizationTime;
+        /**
+         * true if there is an arc from the candidate parent in a slot to a head, indexed by head and slot
          */
         boolean[][] m_arcs;
+        /**
+         * bitset of ancestors for every node, a node is its own ancestor
+         */
+        long[][] m_ancestors;
+        /**
+         * bitset of descendants for every node, a node is its own descendant
+         */
+        long[][] m_descendants;
+        /**
+         * descendants of the head of the most recently added arc, reused between steps
+         */
+        long[] m_newDescendants;
+
+        /**
+         * scores of the nodes of the empty network, part of the workspace
+         */
+        double[] m_fBaseScores;
+        /**
+         * network the ant builds its solution in, reused in every iteration
+         */
+        BayesNet m_AntBayesNet;
 
         private Random randomNumberGenerator = new Random();
 
@@ -139,13 +597,48 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
 
         @Override
         public void search(BayesNet bayesNet, Instances instances) throws Exception {
-            m_arcs = new boolean[instances.numAttributes()][instances.numAttributes()];
+            int numOfAttributes = instances.numAttributes();
+            int numOfSlots = getNumOfCandidateSlots(numOfAttributes);
+            if (m_arcs == null || m_arcs.length != numOfAttributes || m_arcs[0].length != numOfSlots) {
+                m_arcs = new boolean[numOfAttributes][numOfSlots];
+            } else {
+                for (boolean[] arcs : m_arcs) {
+                    Arrays.fill(arcs, false);
+                }
+            }
+            AntWorkspace workspace = acquireWorkspace(numOfAttributes);
+            try {
+                m_Cache = workspace.cache;
+                m_ancestors = workspace.ancestors;
+                m_descendants = workspace.descendants;
+                m_newDescendants = workspace.newDescendants;
+                m_fBaseScores = workspace.fBaseScores;
+                buildSolution(bayesNet, instances);
+            } finally {
+                m_Cache = null;
+                m_ancestors = null;
+                m_descendants = null;
+                m_newDescendants = null;
+                m_fBaseScores = null;
+                releaseWorkspace(workspace);
+            }
+        }
+
+        /**
+         * Builds a solution by adding arcs one by one until no arc improves the network
+         *
+         * @param bayesNet  network to add arcs to
+         * @param instances instances in a data set
+         */
+        private void buildSolution(BayesNet bayesNet, Instances instances) {
+            initReachability(instances.numAttributes());
             initCache(instances.numAttributes());
 
-            while (m_Cache.numOfAvailableArcs > 0) {
+            while (m_Cache.getNumOfAvailableArcs() > 0) {
                 int[] indices = selectIndices(instances.numAttributes(), q0);
                 int attributeTail = indices[0];
                 int attributeHead = indices[1];
+                int attributeSlot = indices[2];
 
                 if (attributeTail == -1 || attributeHead == -1) {
                     //should not happen because of the condition above
@@ -155,12 +648,16 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
                 ParentSet parentSet = bayesNet.getParentSet(attributeHead);
                 parentSet.addParent(attributeTail, instances);
                 // set value to used
-                m_Cache.putScore(attributeTail, attributeHead, Double.NEGATIVE_INFINITY);
-                m_arcs[attributeTail][attributeHead] = true;
+                m_Cache.putScore(attributeHead, attributeSlot, Double.NEGATIVE_INFINITY);
+                m_Cache.updateCandidate(attributeHead, attributeSlot);
+                m_arcs[attributeHead][attributeSlot] = true;
+                if (sharedPheromone != null) {
+                    //other ants see the update right away
+                    localPheromoneUpdate(attributeTail, attributeHead);
+                }
 
-                updateAncestorDescendantArcs(attributeTail, attributeHead, bayesNet, instances.numAttributes());
+                updateAncestorDescendantArcs(attributeTail, attributeHead, instances.numAttributes());
                 updateCacheMatrices(attributeHead, instances.numAttributes());
-                updateProporionalSelectionValues(instances.numAttributes());
             }
         }
 
@@ -171,9 +668,9 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
          */
         public void performLocalPheromoneUpdate(int nNrOfAtts) {
             for (int iAttributeHead = 0; iAttributeHead < nNrOfAtts; iAttributeHead++) {
-                for (int iAttributeTail = 0; iAttributeTail < nNrOfAtts; iAttributeTail++) {
-                    if (m_arcs[iAttributeTail][iAttributeHead]) {
-                        localPheromoneUpdate(iAttributeTail, iAttributeHead);
+                for (int iSlot = 0; iSlot < m_arcs[iAttributeHead].length; iSlot++) {
+                    if (m_arcs[iAttributeHead][iSlot]) {
+                        localPheromoneUpdate(getCandidateParent(iAttributeHead, iSlot), iAttributeHead);
                     }
                 }
             }
@@ -186,10 +683,28 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
          * @param attributeHead arc's head
          */
         private void localPheromoneUpdate(int attributeTail, int attributeHead) {
+            if (sharedPheromone != null) {
+                sharedPheromone.blend(attributeTail, attributeHead, f_localUpdateCoef, f_pheromone0);
+                return;
+            }
             pheromone[attributeTail][attributeHead] = (1 - f_localUpdateCoef) * pheromone[attributeTail][attributeHead]
                     + f_localUpdateCoef * f_pheromone0;
         }
 
+        /**
+         * Returns the pheromone level of an arc
+         *
+         * @param attributeTail arc's tail
+         * @param attributeHead arc's head
+         * @return pheromone level
+         */
+        private double getPheromone(int attributeTail, int attributeHead) {
+            if (sharedPheromone != null) {
+                return sharedPheromone.get(attributeTail, attributeHead);
+            }
+            return pheromone[attributeTail][attributeHead];
+        }
+
         /**
          * Select two indices (arc) from pair candidates. An arc that gives the most improvement is selected with the probability q0,
          * and with probability (1 - q0) an arc is selected regarding its probability, which is calculated using the formula (11)
@@ -197,7 +712,7 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
          *
          * @param nNrOfAtts number of attributes in the data set
          * @param q0        probability of method for selecting arcs
-         * @return an arc as an array. At the index 0 is Tail and at the index 1 is Head. Returns {-1,-1} if no arc addition is
+         * @return an arc as an array. At the index 0 is Tail, at the index 1 is Head and at the index 2 the slot of Tail. Returns {-1,-1,-1} if no arc addition is
          * allowed
          */
         private int[] selectIndices(int nNrOfAtts, double q0) {
@@ -214,55 +729,23 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
          * Find the best arc regarding the product of score diff and a pheromone value powered by f_beta coef
          *
          * @param nNrOfAtts number of attributes in the data set
-         * @return an arc as an array. At the index 0 is Tail and at the index 1 is Head. Returns {-1,-1} if no arc addition is
+         * @return an arc as an array. At the index 0 is Tail, at the index 1 is Head and at the index 2 the slot of Tail. Returns {-1,-1,-1} if no arc addition is
          * allowed
          */
         private int[] findBestArc(int nNrOfAtts) {
-            int[] bestArc = new int[]{-1, -1};
-            double bestScore = -1;
-            // find the best arc
-            for (int iAttributeHead = 0; iAttributeHead < nNrOfAtts; iAttributeHead++) {
-                for (int iAttributeTail = 0; iAttributeTail < nNrOfAtts; iAttributeTail++) {
-                    if (checkIfArcIsInFg(iAttributeTail, iAttributeHead)) {
-                        double valPhHeuB = m_Cache.getPheromoneHeuristicB(iAttributeTail, iAttributeHead);
-                        if (bestArc[0] == -1 || valPhHeuB > bestScore) {
-                            bestArc[0] = iAttributeTail;
-                            bestArc[1] = iAttributeHead;
-                            bestScore = valPhHeuB;
-                        }
-                    }
-                }
-            }
-            return bestArc;
+            return m_Cache.getBestCandidate();
         }//findBestArc
 
         /**
          * Selects arc proportionally using the probability calculated by the formula (11) in the paper
          *
          * @param nNrOfAtts number of attributes in the data set
-         * @return an arc as an array. At the index 0 is Tail and at the index 1 is Head. Returns {-1,-1} if no arc addition is
+         * @return an arc as an array. At the index 0 is Tail, at the index 1 is Head and at the index 2 the slot of Tail. Returns {-1,-1,-1} if no arc addition is
          * allowed
          */
         private int[] proportionallySelectIndices(int nNrOfAtts) {
-            int[] indices = new int[]{-1, -1};
-            double randValue = randomNumberGenerator.nextDouble() * m_Cache.sumOfPheromoneHeuristic;
-
-            double accumulatedSum = 0;
-            for (int iAttributeHead = 0, index = 0; iAttributeHead < nNrOfAtts; iAttributeHead++, index++) {
-                for (int iAttributeTail = 0; iAttributeTail < nNrOfAtts; iAttributeTail++) {
-                    if (checkIfArcIsInFg(iAttributeTail, iAttributeHead)) {
-                        double tmpPhHeu = m_Cache.getPheromoneHeuristicB(iAttributeTail, iAttributeHead);
-                        accumulatedSum += tmpPhHeu;
-                        if (Double.compare(randValue, accumulatedSum) <= 0) {
-                            indices[0] = iAttributeTail;
-                            indices[1] = iAttributeHead;
-                            return indices;
-                        }
-                    }
-
-                }
-            }
-            return indices;
+            double randValue = randomNumberGenerator.nextDouble() * m_Cache.getSumOfPheromoneHeuristic();
+            return m_Cache.getCandidateAt(randValue);
         }//proportionallySelectIndices
 
         /**
@@ -275,52 +758,32 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
         private void updateCacheMatrices(int iAttributeHead, int nNrOfAtts) {
             // update score cache entries for arrows heading towards iAttributeHead
             double fBaseScore = calcNodeScore(iAttributeHead);
-            for (int iAttributeTail = 0; iAttributeTail < nNrOfAtts; iAttributeTail++) {
+            for (int iSlot = 0; iSlot < m_Cache.m_nNrOfSlots; iSlot++) {
                 //if an arc is not forbidden
-                if (Double.compare(m_Cache.getScore(iAttributeTail, iAttributeHead), Double.NEGATIVE_INFINITY) != 0) {
+                if (Double.compare(m_Cache.getScore(iAttributeHead, iSlot), Double.NEGATIVE_INFINITY) != 0) {
+                    int iAttributeTail = getCandidateParent(iAttributeHead, iSlot);
                     // add entries to cache for adding arcs
                     double valScore = calcScoreWithExtraParent(iAttributeHead, iAttributeTail)
                             - fBaseScore;
-                    m_Cache.putScore(iAttributeTail, iAttributeHead, valScore);
-                    double valPhHeuB = pheromone[iAttributeTail][iAttributeHead] * Math.pow(valScore, f_beta);
-                    m_Cache.putPheromoneHeuristicB(iAttributeTail, iAttributeHead, valPhHeuB);
+                    m_Cache.putScore(iAttributeHead, iSlot, valScore);
+                    double valPhHeuB = getPheromone(iAttributeTail, iAttributeHead) * Math.pow(valScore, f_beta);
+                    m_Cache.putPheromoneHeuristicB(iAttributeHead, iSlot, valPhHeuB);
                 }
             }
+            m_Cache.updateCandidates(iAttributeHead, iAttributeHead);
         } // updateCacheMatrices
 
-        /**
-         * Updates a number of available arcs and a sum of cells of candidate arcs. It is used for proportionally
-         * selecting indices
-         *
-         * @param nNrOfAtts number of attributes in the data set
-         */
-        private void updateProporionalSelectionValues(int nNrOfAtts) {
-            double tmpSum = 0;
-            int tmpAvailableArcs = 0;
-            for (int iAttributeHead = 0; iAttributeHead < nNrOfAtts; iAttributeHead++) {
-                for (int iAttributeTail = 0; iAttributeTail < nNrOfAtts; iAttributeTail++) {
-                    if (checkIfArcIsInFg(iAttributeTail, iAttributeHead)) {
-                        //sum all positive values
-                        tmpSum += m_Cache.getPheromoneHeuristicB(iAttributeTail, iAttributeHead);
-                        tmpAvailableArcs += 1;
-                    }
-                }
-            }
-            m_Cache.sumOfPheromoneHeuristic = tmpSum;
-            m_Cache.numOfAvailableArcs = tmpAvailableArcs;
-        }//updateProporionalSelectionValues
-
         /**
          * Returns true if an arc is in the set Fg. Set Fg is defined as a set of arcs which have score bigger than 0,
          * their inclusion doesn't create a cycle and there are not in the graph already.
          *
-         * @param iAttributeTail tail of an arc
          * @param iAttributeHead head of an arc
+         * @param iSlot          slot of the tail of an arc in the candidate parents of the head
          * @return
          */
-        private boolean checkIfArcIsInFg(int iAttributeTail, int iAttributeHead) {
+        private boolean checkIfArcIsInFg(int iAttributeHead, int iSlot) {
             // check if the current arc score is bigger than 0 and it is not -inf
-            return m_Cache.getScore(iAttributeTail, iAttributeHead) > 0;
+            return m_Cache.getScore(iAttributeHead, iSlot) > 0;
 
         }
 
@@ -331,16 +794,17 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
          */
 
         private void initCache(int nNrOfAtts) {
-            double[] fBaseScores = new double[nNrOfAtts];
+            double[] fBaseScores = m_fBaseScores;
 
-            m_Cache = new Cache(nNrOfAtts);
+            m_Cache.reset();
             for (int iAttribute = 0; iAttribute < nNrOfAtts; iAttribute++) {
                 // determine base scores
                 fBaseScores[iAttribute] = calcNodeScore(iAttribute);
             }
 
             for (int iAttributeHead = 0; iAttributeHead < nNrOfAtts; iAttributeHead++) {
-                for (int iAttributeTail = 0; iAttributeTail < nNrOfAtts; iAttributeTail++) {
+                for (int iSlot = 0; iSlot < m_Cache.m_nNrOfSlots; iSlot++) {
+                    int iAttributeTail = getCandidateParent(iAttributeHead, iSlot);
                     double valScore;
                     double valPhHeuB;
                     if (iAttributeHead == iAttributeTail) {
@@ -349,98 +813,103 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
                     } else {
                         valScore = calcScoreWithExtraParent(iAttributeHead, iAttributeTail)
                                 - fBaseScores[iAttributeHead];
-                        valPhHeuB = pheromone[iAttributeTail][iAttributeHead] * Math.pow(valScore, f_beta);
+                        valPhHeuB = getPheromone(iAttributeTail, iAttributeHead) * Math.pow(valScore, f_beta);
 
                     }
-                    m_Cache.putScore(iAttributeTail, iAttributeHead, valScore);
-                    m_Cache.putPheromoneHeuristicB(iAttributeTail, iAttributeHead, valPhHeuB);
+                    m_Cache.putScore(iAttributeHead, iSlot, valScore);
+                    m_Cache.putPheromoneHeuristicB(iAttributeHead, iSlot, valPhHeuB);
                 }
             }
-            updateProporionalSelectionValues(nNrOfAtts);
+            m_Cache.updateCandidates(0, nNrOfAtts - 1);
 
         }// initCache
 
         /**
-         * Creates two sets X and Y and forbids arcs with a tail in X and a head in Y. X set consists of ancestors of the attributeTail and attributeTail itself.
+         * Initializes ancestor and descendant bitsets of an empty network, where every node is only its own
+         * ancestor and descendant. The bitsets of the workspace are cleared in place
+         *
+         * @param numOfAttributes number of attributes in the data set
+         */
+        private void initReachability(int numOfAttributes) {
+            for (int iNode = 0; iNode < numOfAttributes; iNode++) {
+                Arrays.fill(m_ancestors[iNode], 0);
+                Arrays.fill(m_descendants[iNode], 0);
+            }
+            for (int iNode = 0; iNode < numOfAttributes; iNode++) {
+                m_ancestors[iNode][iNode >>> 6] |= 1L << iNode;
+                m_descendants[iNode][iNode >>> 6] |= 1L << iNode;
+            }
+        }
+
+        /**
+         * Creates two sets X and Y and forbids arcs with a tail in Y and a head in X. X set consists of ancestors of the attributeTail and attributeTail itself.
          * Y set consists of descendants of the attributeHead and the attributeHead itself. With that ban we prevent introduction of cycles.
+         * Ancestor and descendant bitsets are updated incrementally (transitive closure of the new arc), so only arcs that were
+         * not forbidden before are visited. With restricted candidate parents only the candidate arcs of a head in X are visited.
          *
          * @param attributeTail   tail of an arc
          * @param attributeHead   head of an arc
-         * @param bayesNet        Bayes network to be learned
          * @param numOfAttributes number of attributes in the data set
          */
-        private void updateAncestorDescendantArcs(int attributeTail, int attributeHead, final BayesNet bayesNet, int numOfAttributes) {
-            int initialListSize = numOfAttributes / 2;
-
-            //all ancestors of AttributeTail
-            List<Integer> ancestors = BFS(attributeTail, initialListSize, new Function() {
-
-                @Override
-                public List<Integer> generateNextLevel(int root) {
-                    List<Integer> nextLevel = new ArrayList<>();
-                    ParentSet parentSet = bayesNet.getParentSet(root);
-                    int[] parents = parentSet.getParents();
-                    for (int i = 0; i < parentSet.getNrOfParents(); i++) {
-                        nextLevel.add(parents[i]);
+        private void updateAncestorDescendantArcs(int attributeTail, int attributeHead, int numOfAttributes) {
+            long[] ancestors = m_ancestors[attributeTail];
+            long[] descendants = m_newDescendants;
+            System.arraycopy(m_descendants[attributeHead], 0, descendants, 0, descendants.length);
+
+            //every node in X gets Y as descendants, arcs from the new descendants to the node are forbidden
+            for (int iWord = 0; iWord < ancestors.length; iWord++) {
+                for (long bits = ancestors[iWord]; bits != 0; bits &= bits - 1) {
+                    int iHead = (iWord << 6) + Long.numberOfTrailingZeros(bits);
+                    long[] headDescendants = m_descendants[iHead];
+                    if (candidateParents != null) {
+                        int[] candidates = candidateParents[iHead];
+                        for (int iSlot = 0; iSlot < candidates.length; iSlot++) {
+                            int iTailWord = candidates[iSlot] >>> 6;
+                            long tailBit = 1L << candidates[iSlot];
+                            if ((descendants[iTailWord] & tailBit) != 0 && (headDescendants[iTailWord] & tailBit) == 0) {
+                                forbidArc(iHead, iSlot);
+                            }
+                        }
+                        for (int iTailWord = 0; iTailWord < descendants.length; iTailWord++) {
+                            headDescendants[iTailWord] |= descendants[iTailWord];
+                        }
+                        continue;
                     }
-                    return nextLevel;
-                }
-
-
-            });
-            //all descendants of AttributeHead
-            List<Integer> descendants = BFS(attributeHead, initialListSize, new Function() {
-                @Override
-                public List<Integer> generateNextLevel(int root) {
-                    List<Integer> nextLevel = new ArrayList<>();
-                    boolean[] descedants = m_arcs[root];
-                    for (int iHead = 0; iHead < descedants.length; iHead++) {
-                        if (descedants[iHead]) {
-                            nextLevel.add(iHead);
+                    for (int iTailWord = 0; iTailWord < descendants.length; iTailWord++) {
+                        long newBits = descendants[iTailWord] & ~headDescendants[iTailWord];
+                        headDescendants[iTailWord] |= newBits;
+                        for (; newBits != 0; newBits &= newBits - 1) {
+                            int iTail = (iTailWord << 6) + Long.numberOfTrailingZeros(newBits);
+                            forbidArc(iHead, iTail);
                         }
                     }
-                    return nextLevel;
                 }
-            });
+            }
 
-            for (Integer iHead : ancestors) {
-                for (Integer iTail : descendants) {
-                    m_Cache.putScore(iTail, iHead, Double.NEGATIVE_INFINITY);
+            //every node in Y gets X as ancestors
+            for (int iWord = 0; iWord < descendants.length; iWord++) {
+                for (long bits = descendants[iWord]; bits != 0; bits &= bits - 1) {
+                    long[] nodeAncestors = m_ancestors[(iWord << 6) + Long.numberOfTrailingZeros(bits)];
+                    for (int iAncestorWord = 0; iAncestorWord < ancestors.length; iAncestorWord++) {
+                        nodeAncestors[iAncestorWord] |= ancestors[iAncestorWord];
+                    }
                 }
             }
-            //free up memory
-            ancestors = null;
-            descendants = null;
         }//updateAncestorDescendantArcs
 
         /**
-         * Breath first search which requires a function for generating the next level of nodes
+         * Forbids adding an arc and removes it from the candidate arcs
          *
-         * @param rootNode    start node
-         * @param initialSize initial size of a list
-         * @param function    the way in which a next level of nodes is generated
-         * @return list of all visited nodes
-         */
-        private List<Integer> BFS(int rootNode, int initialSize, Function function) {
-            List<Integer> visitedNodes = new ArrayList<>(initialSize);
-            visitedNodes.add(rootNode);
-            List<Integer> listPrevLevel = new ArrayList<>(initialSize);
-            List<Integer> listCurrLevel = new ArrayList<>(initialSize);
-            listPrevLevel.add(rootNode);
-
-            while (!listPrevLevel.isEmpty()) {
-                //for every node add all of its direct neighbours in the next level
-                for (Integer iNode : listPrevLevel) {
-                    List<Integer> nextLevel = function.generateNextLevel(iNode);
-                    listCurrLevel.addAll(nextLevel);
-                }
-                visitedNodes.addAll(listCurrLevel);
-                listPrevLevel.clear();
-                listPrevLevel.addAll(listCurrLevel);
-                listCurrLevel.clear();
+         * @param iHead head of an arc
+         * @param iSlot slot of the tail of an arc in the candidate parents of the head
+         */
+        private void forbidArc(int iHead, int iSlot) {
+            boolean bWasCandidate = checkIfArcIsInFg(iHead, iSlot);
+            m_Cache.putScore(iHead, iSlot, Double.NEGATIVE_INFINITY);
+            if (bWasCandidate) {
+                m_Cache.updateCandidate(iHead, iSlot);
             }
-            return visitedNodes;
-        }//BFS
+        }
 
         /**
          * Sets the max number of parents
@@ -514,6 +983,24 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
             this.f_localUpdateCoef = f_localUpdateCoef;
         }
 
+        /**
+         * Sets the pheromone matrix the ant reads and updates
+         *
+         * @param pheromone pheromone level matrix of the ant's colony
+         */
+        public void setPheromone(double[][] pheromone) {
+            this.pheromone = pheromone;
+        }
+
+        /**
+         * Sets the pheromone store the ant reads and updates while it builds a solution in the asynchronous mode
+         *
+         * @param sharedPheromone pheromone store of the ant's colony, null in the deterministic mode
+         */
+        public void setSharedPheromone(PheromoneStore sharedPheromone) {
+            this.sharedPheromone = sharedPheromone;
+        }
+
         /**
          * Sets seed for random generator
          *
@@ -534,10 +1021,28 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
 
         @Override
         public Ant call() throws Exception {
-            BayesNet currentBayesNet = new BayesNet();
-            currentBayesNet.m_Instances = instances;
-            currentBayesNet.initStructure();
-            buildStructure(currentBayesNet, instances);
+            m_bFinished = false;
+            if (m_AntBayesNet == null) {
+                m_AntBayesNet = new BayesNet();
+                m_AntBayesNet.m_Instances = instances;
+                m_AntBayesNet.initStructure();
+            } else {
+                clearParentSets(m_AntBayesNet, instances);
+            }
+            long startTime = System.nanoTime();
+            buildStructure(m_AntBayesNet, instances);
+            long buildEndTime = System.nanoTime();
+            m_nBuildTime = buildEndTime - startTime;
+            m_nOptimizationTime = 0;
+            if (m_LocalOptimizer != null) {
+                m_LocalOptimizer.m_BayesNet = m_AntBayesNet;
+                m_LocalOptimizer.run();
+                m_LocalOptimizer = null;
+                m_nOptimizationTime = System.nanoTime() - buildEndTime;
+            }
+            //score in the worker thread too, so only comparing scores is left to the thread that runs the search
+            m_fScore = calculateNetworkScore(this, instances.numAttributes());
+            m_bFinished = true;
 
             return this;
         }
@@ -545,18 +1050,7 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
     }//class Ant
 
     /**
-     * Interface used in imitate recursion method
-     */
-    private interface Function {
-        public List<Integer> generateNextLevel(int root);
-    }
-
-    /**
-     * pheromone level matrix
-     */
-    private double[][] pheromone;
-    /**
-     * coefficient in global pheromone update
+     * coefficient in global pheromone update
      */
     private double f_globalUpdateCoef = 0.4;
     /**
@@ -603,137 +1097,983 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
      * parallelization flag
      */
     private boolean parallelize = true;
+    /**
+     * max number of node scores shared between the ants and local optimizers, 0 disables the score cache
+     */
+    private int scoreCacheSize = 500000;
+    /**
+     * node scores shared between K2, the ants and local optimizers during one search
+     */
+    private transient NodeScoreCache scoreCache;
+    /**
+     * number of colonies (islands) searching side by side, each with its own pheromone matrix and seed
+     */
+    private int numOfColonies = 1;
+    /**
+     * colonies exchange their best structures and blend pheromone every migrationInterval iterations
+     */
+    private int migrationInterval = 10;
+    /**
+     * weight of the neighbouring colony's pheromone when pheromone is blended during migration
+     */
+    private double migrationRate = 0.5;
+    /**
+     * max wall clock time of the iterations in milliseconds, 0 for no limit. Checked after every iteration
+     */
+    private long timeLimit = 0;
+    /**
+     * stop when the best score did not improve by more than stagnationEpsilon for this many iterations, 0 disables it
+     */
+    private int stagnationIterations = 0;
+    /**
+     * min improvement of the best score that resets the stagnation count
+     */
+    private double stagnationEpsilon = 0;
+    /**
+     * stop when the mean normalized entropy of the pheromone matrices drops below this value, 0 disables it
+     */
+    private double entropyThreshold = 0;
+    /**
+     * true if ants update a shared pheromone store while building and start without an iteration barrier. Faster
+     * on many cores, but results depend on thread scheduling
+     */
+    private boolean asynchronous = false;
+    /**
+     * max number of candidate parents per node that ants consider, 0 for all nodes. Candidates are the nodes that
+     * depend most on a node according to candidateMeasure
+     */
+    private int numOfCandidateParents = 0;
+    /**
+     * measure to select candidate parents by, CandidateParentSelector.MUTUAL_INFORMATION or CHI_SQUARED
+     */
+    private int candidateMeasure = CandidateParentSelector.MUTUAL_INFORMATION;
+    /**
+     * candidate parents per node of the running search in increasing order, null if every node is a candidate
+     */
+    private transient int[][] candidateParents;
+    /**
+     * set by stopSearch() to end the running search after the current iteration
+     */
+    private volatile boolean stopRequested;
+    /**
+     * why the running or last search stopped before its number of iterations, null if it did not
+     */
+    private volatile String stopReason;
+    /**
+     * best structure found so far by the running search, readable from other threads
+     */
+    private volatile BestSoFar bestSoFar;
+    /**
+     * workspaces of ants that finished building a solution, ready to be reused by the next ant
+     */
+    private transient ConcurrentLinkedQueue<AntWorkspace> workspacePool;
+    /**
+     * file the metrics of a search are written to when it finished, as JSON if the name ends with .json and as CSV
+     * otherwise. Nothing is written if it is not set
+     */
+    private File metricsFile = new File("");
+    /**
+     * if true, the search starts from the structure the network has instead of running K2 first, e.g. a structure
+     * read from a BIF file or learned before on older data
+     */
+    private boolean warmStart = false;
+    /**
+     * file with a pheromone matrix saved by an earlier search, every colony starts with it. Not used if it is not set
+     */
+    private File pheromoneInputFile = new File("");
+    /**
+     * file the pheromone matrix of the best colony is saved to when the search finished. Nothing is written if it is
+     * not set
+     */
+    private File pheromoneOutputFile = new File("");
+    /**
+     * pheromone matrix every colony starts with, e.g. the one an earlier search on older data ended with. Takes
+     * precedence over the pheromone input file. Not used if it is null
+     */
+    private transient double[][] initialPheromone;
+    /**
+     * pheromone matrix of the best colony when the last search finished, null if no search finished
+     */
+    private transient double[][] lastPheromone;
+
+    /**
+     * Records the metrics of the iterations of a search and the totals of the search. Counters of score evaluations
+     * and cache lookups are shared with other searches, so differences are recorded.
+     */
+    private class MetricsRecorder {
+        /**
+         * time the search started, in nanoseconds
+         */
+        final long searchStartTime = System.nanoTime();
+        /**
+         * time the current iteration started, in nanoseconds
+         */
+        long iterationStartTime;
+        /**
+         * counters of score evaluations, cache hits and cache misses when the search started
+         */
+        final long[] searchCounts;
+        /**
+         * counters of score evaluations, cache hits and cache misses when the current iteration started
+         */
+        long[] iterationCounts;
+        /**
+         * phase times summed over all iterations, in nanoseconds
+         */
+        long totalBuildTime, totalOptimizationTime, totalGlobalUpdateTime;
+        /**
+         * number of iterations recorded
+         */
+        int iterations;
+        /**
+         * score cache of the search, kept here so the search can release it before the totals are recorded
+         */
+        final NodeScoreCache cache = scoreCache;
+
+        MetricsRecorder() {
+            startMetrics();
+            searchCounts = getCounts();
+        }
+
+        /**
+         * Returns the counters of score evaluations, cache hits and cache misses
+         *
+         * @return the counters
+         */
+        long[] getCounts() {
+            return new long[]{getScoreEvaluationCounter().get(), cache == null ? 0 : cache.getHits(),
+                    cache == null ? 0 : cache.getMisses()};
+        }
+
+        /**
+         * Adds score evaluations, cache hits, cache misses and the cache hit rate since the counters were taken
+         *
+         * @param metrics metrics to add to
+         * @param counts  counters taken before
+         */
+        void putCounts(Map<String, Double> metrics, long[] counts) {
+            long[] newCounts = getCounts();
+            long hits = newCounts[1] - counts[1];
+            long misses = newCounts[2] - counts[2];
+            metrics.put(SearchMetrics.SCORE_EVALUATIONS, (double) (newCounts[0] - counts[0]));
+            metrics.put(SearchMetrics.CACHE_HITS, (double) hits);
+            metrics.put(SearchMetrics.CACHE_MISSES, (double) misses);
+            metrics.put(SearchMetrics.CACHE_HIT_RATE, hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+        }
+
+        void startIteration() {
+            iterationStartTime = System.nanoTime();
+            iterationCounts = getCounts();
+        }
+
+        /**
+         * Records the metrics of an iteration. Called before ants of the next iteration start
+         *
+         * @param iteration        the iteration
+         * @param colonies         the colonies
+         * @param bestColony       colony with the best structure
+         * @param globalUpdateTime nanoseconds spent in the global pheromone update
+         */
+        void endIteration(int iteration, List<Colony> colonies, Colony bestColony, long globalUpdateTime) {
+            long buildTime = 0;
+            long optimizationTime = 0;
+            for (Colony colony : colonies) {
+                for (Ant ant : colony.ants) {
+                    buildTime += ant.m_nBuildTime;
+                    optimizationTime += ant.m_nOptimizationTime;
+                }
+            }
+            totalBuildTime += buildTime;
+            totalOptimizationTime += optimizationTime;
+            totalGlobalUpdateTime += globalUpdateTime;
+            iterations++;
+
+            Map<String, Double> metrics = new LinkedHashMap<>();
+            metrics.put(SearchMetrics.ITERATION, (double) iteration);
+            metrics.put(SearchMetrics.WALL_TIME, toMillis(System.nanoTime() - iterationStartTime));
+            metrics.put(ANT_BUILD_TIME, toMillis(buildTime));
+            metrics.put(LOCAL_OPTIMIZATION_TIME, toMillis(optimizationTime));
+            metrics.put(GLOBAL_UPDATE_TIME, toMillis(globalUpdateTime));
+            putCounts(metrics, iterationCounts);
+            metrics.put(SearchMetrics.BEST_SCORE, bestColony.fBestScore);
+
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            double entropy = 0;
+            long numOfArcs = 0;
+            for (Colony colony : colonies) {
+                double[][] pheromone = colony.snapshotPheromone();
+                for (int iTail = 0; iTail < pheromone.length; iTail++) {
+                    for (int iHead = 0; iHead < pheromone.length; iHead++) {
+                        if (iTail != iHead) {
+                            min = Math.min(min, pheromone[iTail][iHead]);
+                            max = Math.max(max, pheromone[iTail][iHead]);
+                            sum += pheromone[iTail][iHead];
+                            numOfArcs++;
+                        }
+                    }
+                }
+                entropy += calculatePheromoneEntropy(pheromone);
+            }
+            if (numOfArcs > 0) {
+                metrics.put(PHEROMONE_MIN, min);
+                metrics.put(PHEROMONE_MAX, max);
+                metrics.put(PHEROMONE_MEAN, sum / numOfArcs);
+            }
+            metrics.put(PHEROMONE_ENTROPY, entropy / colonies.size());
+            recordIteration(metrics);
+        }
+
+        /**
+         * Records the totals of the search, notifies the listeners and writes the metrics file, if any
+         *
+         * @param fInitialScore score of the initial structure
+         * @param fBestScore    score of the best structure
+         * @throws IOException if the metrics file can not be written
+         */
+        void finish(double fInitialScore, double fBestScore) throws IOException {
+            SearchMetrics metrics = getMetrics();
+            metrics.setTotal(SearchMetrics.ITERATIONS, iterations);
+            metrics.setTotal(SearchMetrics.WALL_TIME, toMillis(System.nanoTime() - searchStartTime));
+            metrics.setTotal(ANT_BUILD_TIME, toMillis(totalBuildTime));
+            metrics.setTotal(LOCAL_OPTIMIZATION_TIME, toMillis(totalOptimizationTime));
+            metrics.setTotal(GLOBAL_UPDATE_TIME, toMillis(totalGlobalUpdateTime));
+            Map<String, Double> counts = new LinkedHashMap<>();
+            putCounts(counts, searchCounts);
+            for (Map.Entry<String, Double> count : counts.entrySet()) {
+                metrics.setTotal(count.getKey(), count.getValue());
+            }
+            metrics.setTotal(INITIAL_SCORE, fInitialScore);
+            metrics.setTotal(SearchMetrics.BEST_SCORE, fBestScore);
+            metrics.setTotal(STOPPED_EARLY, stopReason == null ? 0 : 1);
+            finishMetrics();
+            if (metricsFile != null && metricsFile.getPath().length() > 0 && !metricsFile.isDirectory()) {
+                metrics.write(metricsFile);
+            }
+        }
+
+        /**
+         * Converts nanoseconds to milliseconds
+         *
+         * @param nanos nanoseconds
+         * @return milliseconds
+         */
+        double toMillis(long nanos) {
+            return nanos / 1e6;
+        }
+    }//class MetricsRecorder
+
+    /**
+     * Snapshot of the best structure found so far. The network is a copy that is never changed afterwards.
+     */
+    private static final class BestSoFar {
+        /**
+         * copy of the best structure
+         */
+        final BayesNet bayesNet;
+        /**
+         * score of the best structure
+         */
+        final double fScore;
+        /**
+         * iteration in which the snapshot was taken, -1 for the initial structure
+         */
+        final int iteration;
+
+        BestSoFar(BayesNet bayesNet, double fScore, int iteration) {
+            this.bayesNet = bayesNet;
+            this.fScore = fScore;
+            this.iteration = iteration;
+        }
+    }
+
+    /**
+     * State of the search that is kept in a checkpoint next to the initial and best structures. The current structure
+     * of the checkpoint is the initial K2 structure, the current score its score.
+     */
+    private static final class AcoState implements Serializable {
+        private static final long serialVersionUID = 3914658620472883171L;
+        /**
+         * initial pheromone level
+         */
+        double f_pheromone0;
+        /**
+         * pheromone matrix of every colony
+         */
+        double[][][] pheromones;
+        /**
+         * parents of every node in the best structure of every colony
+         */
+        int[][][] bestParents;
+        /**
+         * score of the best structure of every colony
+         */
+        double[] bestScores;
+        /**
+         * index of the colony with the best structure
+         */
+        int bestColony;
+        /**
+         * best score at the last improvement counted by the stagnation criterion
+         */
+        double fStagnationScore;
+        /**
+         * iteration of the last improvement counted by the stagnation criterion
+         */
+        int stagnationStart;
+        /**
+         * time spent in iterations so far, in milliseconds
+         */
+        long elapsedTime;
+    }
+
+    /**
+     * One colony of ants with its own pheromone matrix, seed and best structure found. With more than one colony
+     * the colonies are islands that search side by side and exchange their best structures and pheromone every
+     * migrationInterval iterations.
+     */
+    private class Colony {
+        /**
+         * pheromone level matrix of the colony. In the asynchronous mode a snapshot of sharedPheromone
+         */
+        double[][] pheromone;
+        /**
+         * pheromone store the ants update concurrently in the asynchronous mode, null in the deterministic mode
+         */
+        PheromoneStore sharedPheromone;
+        /**
+         * best structure found by the colony so far
+         */
+        BayesNet bestBayesNet;
+        /**
+         * score of the best structure found by the colony so far
+         */
+        double fBestScore;
+        /**
+         * added to the seed of every ant of the colony, 0 for the first colony
+         */
+        long seedOffset;
+        /**
+         * ants of the current iteration that built a solution
+         */
+        List<Ant> ants = new ArrayList<>();
+        /**
+         * ants of the colony, reused in every iteration together with their networks
+         */
+        List<Ant> antPool = new ArrayList<>();
+        /**
+         * ants that are not running in the asynchronous mode
+         */
+        List<Ant> idleAnts = new ArrayList<>();
+
+        /**
+         * Creates a colony starting from the given structure
+         *
+         * @param colonyNum     index of the colony
+         * @param instances     instances in a data set
+         * @param initialNet    structure the colony starts from
+         * @param fInitialScore score of the initial structure
+         * @throws Exception if the structure can not be initialized
+         */
+        Colony(int colonyNum, Instances instances, BayesNet initialNet, double fInitialScore) throws Exception {
+            pheromone = initPheromoneMatrix(instances.numAttributes(), f_pheromone0);
+            bestBayesNet = new BayesNet();
+            bestBayesNet.m_Instances = instances;
+            bestBayesNet.initStructure();
+            copyParentSets(bestBayesNet, initialNet);
+            fBestScore = fInitialScore;
+            seedOffset = colonyNum * 1000003L;
+        }
+
+        /**
+         * Prepares the ants of an iteration. Ants of the previous iteration are reused, they are created only in
+         * the first iteration
+         *
+         * @param instances instances in a data set
+         * @param iteration current iteration
+         * @param bOptimize true if the solutions of the ants are to be optimized by a local optimizer
+         * @return the ants, to be called by an executor
+         */
+        List<Ant> createAnts(Instances instances, int iteration, boolean bOptimize) {
+            for (int antNum = 0; antNum < numOfAnts; antNum++) {
+                if (antNum == antPool.size()) {
+                    antPool.add(new Ant());
+                }
+                Ant ant = antPool.get(antNum);
+                initializeAntParameters(ant, instances, seedOffset + antNum + iteration * 100);
+                ant.setPheromone(pheromone);
+                ant.colony = this;
+                if (bOptimize) {
+                    ant.m_LocalOptimizer = getLocalOptimizer();
+                    initLocalOptimizer(ant.m_LocalOptimizer);
+                }
+            }
+            return antPool;
+        }
+
+        /**
+         * Prepares an idle ant to run in the asynchronous mode
+         *
+         * @param instances  instances in a data set
+         * @param antSerial  number of ants started by the search before, makes seeds of ants different
+         * @param bOptimize  true if the solution of the ant is to be optimized by a local optimizer
+         * @return the ant, to be called by an executor
+         */
+        Ant startAnt(Instances instances, long antSerial, boolean bOptimize) {
+            Ant ant = idleAnts.isEmpty() ? new Ant() : idleAnts.remove(idleAnts.size() - 1);
+            initializeAntParameters(ant, instances, seedOffset + antSerial);
+            ant.setSharedPheromone(sharedPheromone);
+            ant.colony = this;
+            if (bOptimize) {
+                ant.m_LocalOptimizer = getLocalOptimizer();
+                initLocalOptimizer(ant.m_LocalOptimizer);
+            }
+            return ant;
+        }
+
+        /**
+         * Returns the pheromone matrix of the colony, in the asynchronous mode after taking a snapshot of the store
+         *
+         * @return pheromone matrix
+         */
+        double[][] snapshotPheromone() {
+            if (sharedPheromone != null) {
+                sharedPheromone.copyTo(pheromone);
+            }
+            return pheromone;
+        }
+
+        /**
+         * Moves the pheromone level of an arc towards a value: level = (1 - coef) * level + coef * value
+         *
+         * @param iTail tail of an arc
+         * @param iHead head of an arc
+         * @param coef  weight of the value
+         * @param value value to move towards
+         */
+        void blendPheromone(int iTail, int iHead, double coef, double value) {
+            if (sharedPheromone != null) {
+                sharedPheromone.blend(iTail, iHead, coef, value);
+            } else {
+                pheromone[iTail][iHead] = (1 - coef) * pheromone[iTail][iHead] + coef * value;
+            }
+        }
+
+        /**
+         * Collects the ants of the iteration that finished, in the order they were created
+         */
+        void collectAnts() {
+            ants.clear();
+            for (int antNum = 0; antNum < numOfAnts; antNum++) {
+                if (antPool.get(antNum).m_bFinished) {
+                    ants.add(antPool.get(antNum));
+                }
+            }
+        }
+
+        /**
+         * Performs the local pheromone update of the ants and keeps track of the best structure found
+         *
+         * @param numOfAttrs number of attributes in the data set
+         */
+        void updateBest(int numOfAttrs) {
+            int bestAntindex = -1;
+            for (int antNum = 0; antNum < ants.size(); antNum++) {
+                Ant currentAnt = ants.get(antNum);
+
+                //do update in the same thread to recreate a solution with the same seed, asynchronous ants did it
+                if (sharedPheromone == null) {
+                    currentAnt.performLocalPheromoneUpdate(numOfAttrs);
+                }
+
+                double fAntScore = currentAnt.m_fScore;
+
+                if (fAntScore > fBestScore) {
+                    fBestScore = fAntScore;
+                    bestAntindex = antNum;
+                }
+            }
+
+            // if better solution is found
+            if (bestAntindex != -1) {
+                copyParentSets(bestBayesNet, ants.get(bestAntindex).m_BayesNet);
+            }
+            if (sharedPheromone != null) {
+                idleAnts.addAll(ants);
+            }
+        }
+    }//class Colony
 
     @Override
     protected void search(BayesNet bayesNet, Instances instances) throws Exception {
         //no boundary to max nr of parents
         m_nMaxNrOfParents = 100000;
-        //create initial solution with K2
-        k2 = new K2();
-        k2.setScoreType(getScoreType());
-        k2.setMaxNrOfParents(m_nMaxNrOfParents);
-        k2.buildStructure(bayesNet, instances);
-
-        //calculate score of k2
-        double totalK2Score = calculateNetworkScore(k2, instances.numAttributes());
+        //continue from the checkpoint, if any
+        SearchCheckpoint checkpoint = loadCheckpoint(instances);
+        AcoState state = checkpoint == null ? null : (AcoState) checkpoint.m_State;
+        //scores only depend on a node and its parents so they are shared by all ants in all iterations. The cache
+        //is not part of a checkpoint, a resumed search fills it again
+        scoreCache = scoreCacheSize > 0 ? new NodeScoreCache(scoreCacheSize) : null;
+        setScoreCache(scoreCache);
+        //lookup tables for scoring counts are shared the same way
+        getCountScoreTables(instances);
+        MetricsRecorder recorder = new MetricsRecorder();
+
+        double totalK2Score;
+        if (checkpoint == null && warmStart) {
+            //start from the structure the network has
+            totalK2Score = calculateNetworkScore(this, instances.numAttributes());
+
+            //init pheromone level
+            f_pheromone0 = 1 / (instances.numAttributes() * Math.abs(totalK2Score));
+        } else if (checkpoint == null) {
+            //create initial solution with K2
+            k2 = new K2();
+            k2.copyScoring(this);
+            k2.setMaxNrOfParents(m_nMaxNrOfParents);
+            //the network is initialized already, initializing it again would add the class as parent twice
+            k2.refineStructure(bayesNet, instances);
+            k2.setScoreCache(null);
+
+            //calculate score of k2
+            totalK2Score = calculateNetworkScore(k2, instances.numAttributes());
+
+            //init pheromone level
+            f_pheromone0 = 1 / (instances.numAttributes() * Math.abs(totalK2Score));
+        } else {
+            SearchCheckpoint.setParentSets(bayesNet, checkpoint.m_nCurrentParents, instances);
+            totalK2Score = checkpoint.m_fCurrentScore;
+            f_pheromone0 = state.f_pheromone0;
+        }
 
-        //init pheromone matrix
-        f_pheromone0 = 1 / (instances.numAttributes() * Math.abs(totalK2Score));
-        initPheromoneMatrix(instances.numAttributes(), f_pheromone0);
+        //the thread running the search is one of the execution slots, so with one slot no threads are started
+        int numOfThreads = !parallelize ? 1 : getNumSlotsToUse();
 
-        // keeps track of the best structure found so far
-        BayesNet bestBayesNet;
+        //ants only consider arcs from the candidate parents of a node, ranked on the counts the search scores with
+        candidateParents = null;
+        if (numOfCandidateParents > 0) {
+            SufficientStatistics statistics = getSufficientStatistics() != null ? getSufficientStatistics()
+                    : getCountIndex() != null ? getCountIndex() : new CountIndex(instances);
+            candidateParents = new CandidateParentSelector(statistics, instances, numOfCandidateParents,
+                    candidateMeasure).select(getExecutor(), numOfThreads);
+        }
 
-        // initialize bestBayesNet with K2 bayes net
-        double fBestScore = totalK2Score;
-        bestBayesNet = new BayesNet();
-        bestBayesNet.m_Instances = instances;
-        bestBayesNet.initStructure();
-        copyParentSets(bestBayesNet, bayesNet);
-        System.out.println("Initial sore:" + fBestScore);
+        double[][] startPheromone = checkpoint == null ? loadPheromone(instances.numAttributes()) : null;
+
+        // every colony starts from the initial bayes net and keeps track of the best structure it found
+        List<Colony> colonies = new ArrayList<>();
+        for (int colonyNum = 0; colonyNum < Math.max(numOfColonies, 1); colonyNum++) {
+            Colony colony = new Colony(colonyNum, instances, bayesNet, totalK2Score);
+            if (state != null) {
+                colony.pheromone = state.pheromones[colonyNum];
+                SearchCheckpoint.setParentSets(colony.bestBayesNet, state.bestParents[colonyNum], instances);
+                colony.fBestScore = state.bestScores[colonyNum];
+            } else if (startPheromone != null) {
+                for (int i = 0; i < startPheromone.length; i++) {
+                    colony.pheromone[i] = startPheromone[i].clone();
+                }
+            }
+            if (asynchronous) {
+                colony.sharedPheromone = new PheromoneStore(colony.pheromone);
+            }
+            colonies.add(colony);
+        }
+        Colony bestColony = colonies.get(state == null ? 0 : state.bestColony);
+        if (checkpoint == null) {
+            System.out.println("Initial sore:" + bestColony.fBestScore);
+        }
 
 
-        //create ExecutorService
-        int numOfThreads = parallelize ? Runtime.getRuntime().availableProcessors() : 1;
-        ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+        workspacePool = new ConcurrentLinkedQueue<>();
 
         System.out.println("Optimizer " + selectedOptimizer + " selected.");
 
-        //store all callable ants here
-        List<Callable<Ant>> callablesAnts = new ArrayList<>();
-        //store all results of threads executions
-        List<Ant> antsResults = new ArrayList<>();
+        //ants are taken from here as soon as they finish
+        SearchTaskRunner<Ant> taskRunner = createTaskRunner(numOfThreads);
+        int antsRunning = 0;
+        long antsStarted = 0;
+
+
+        long startTime = System.currentTimeMillis() - (state == null ? 0 : state.elapsedTime);
+        stopRequested = false;
+        stopReason = null;
+        publishBestSoFar(bestColony, instances, -1);
+        //with a stop criterion set, no number of iterations means running until a criterion is met
+        boolean bUnbounded = numOfIterations <= 0
+                && (timeLimit > 0 || stagnationIterations > 0 || entropyThreshold > 0);
+        double fStagnationScore = state == null ? bestColony.fBestScore : state.fStagnationScore;
+        int stagnationStart = state == null ? 0 : state.stagnationStart;
+        int firstIteration = checkpoint == null ? 0 : checkpoint.m_nIteration;
+
+        int antsPerIteration = numOfAnts * colonies.size();
+        long antsToStart = bUnbounded ? Long.MAX_VALUE : (long) (numOfIterations - firstIteration) * antsPerIteration;
+
+        try {
+            //start iterations
+            for (int iteration = firstIteration; bUnbounded || iteration < numOfIterations; iteration++) {
+                recorder.startIteration();
+                if (asynchronous) {
+                    //keep every thread busy, ants of the next iteration start while this one is completed
+                    for (Colony colony : colonies) {
+                        colony.ants.clear();
+                    }
+                    for (; antsRunning < numOfThreads && antsStarted < antsToStart; antsRunning++, antsStarted++) {
+                        startAnt(colonies, taskRunner, instances, firstIteration, antsStarted);
+                    }
+                    for (int antNum = 0; antNum < antsPerIteration; antNum++) {
+                        Future<Ant> future = taskRunner.take();
+                        antsRunning--;
+                        try {
+                            Ant ant = future.get();
+                            ant.colony.ants.add(ant);
+                        } catch (ExecutionException e) {
+                            //a colony that silently lost an ant would continue with fewer solutions
+                            throw new Exception("An ant failed to build or optimize its solution", e.getCause());
+                        }
+                        if (antsStarted < antsToStart) {
+                            startAnt(colonies, taskRunner, instances, firstIteration, antsStarted);
+                            antsRunning++;
+                            antsStarted++;
+                        }
+                    }
+                } else {
+                    //start the ants of all colonies, so colonies run their ants concurrently. An ant hands its solution to
+                    //its local optimizer as soon as it is built, instead of waiting for the other ants
+                    boolean bOptimize = iteration % optimizationStep == 0 || iteration + 1 == numOfIterations;
+                    for (Colony colony : colonies) {
+                        for (Ant ant : colony.createAnts(instances, iteration, bOptimize)) {
+                            taskRunner.submit(ant);
+                            antsRunning++;
+                        }
+                    }
+                    //pheromone is only updated after the last ant finished, so the order ants finish in does not matter
+                    for (; antsRunning > 0; antsRunning--) {
+                        try {
+                            taskRunner.take().get();
+                        } catch (ExecutionException e) {
+                            throw new Exception("An ant failed to build or optimize its solution", e.getCause());
+                        }
+                    }
+                    for (Colony colony : colonies) {
+                        colony.collectAnts();
+                    }
+                }
 
-        //start iterations
-        for (int iteration = 0; iteration < numOfIterations; iteration++) {
-            callablesAnts.clear();
-            //create ants and add them to the list
-            for (int antNum = 0; antNum < numOfAnts; antNum++) {
-                //create an ant
-                Ant ant = new Ant();
-                initializeAntParameters(ant, instances, antNum + iteration * 100);
-                callablesAnts.add(ant);
-            }
+                for (Colony colony : colonies) {
+                    colony.updateBest(instances.numAttributes());
+                    if (colony.fBestScore > bestColony.fBestScore) {
+                        bestColony = colony;
+                    }
+                }
+
+                if (iteration % optimizationStep == 0 || iteration + 1 == numOfIterations) {
+                    System.out.println("Best after iteration " + iteration + ".:" + bestColony.fBestScore);
+                }
 
-            antsResults.clear();
-            List<Future<Ant>> futuresAnts = executor.invokeAll(callablesAnts);
-            //collect results and store them
-            for (Future<Ant> future : futuresAnts) {
-                Ant antResult = null;
-                try {
-                    antResult = future.get();
-                    antsResults.add(antResult);
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
-                    continue;
+                //global pheromone update
+                long globalUpdateStartTime = System.nanoTime();
+                for (Colony colony : colonies) {
+                    globalPheromoneUpdate(colony, instances.numAttributes());
                 }
+                long globalUpdateTime = System.nanoTime() - globalUpdateStartTime;
 
+                if (colonies.size() > 1 && migrationInterval > 0 && (iteration + 1) % migrationInterval == 0
+                        && (bUnbounded || iteration + 1 < numOfIterations)) {
+                    migrate(colonies, instances);
+                }
+
+                if (bestColony.fBestScore > bestSoFar.fScore) {
+                    publishBestSoFar(bestColony, instances, iteration);
+                }
+
+                //anytime stop criteria
+                if (bestColony.fBestScore > fStagnationScore + stagnationEpsilon) {
+                    fStagnationScore = bestColony.fBestScore;
+                    stagnationStart = iteration;
+                }
+                if (stopRequested) {
+                    stopReason = "stop requested";
+                } else if (timeLimit > 0 && System.currentTimeMillis() - startTime >= timeLimit) {
+                    stopReason = "time limit of " + timeLimit + "ms reached";
+                } else if (stagnationIterations > 0 && iteration - stagnationStart >= stagnationIterations) {
+                    stopReason = "no improvement for " + stagnationIterations + " iterations";
+                } else if (entropyThreshold > 0) {
+                    double fEntropy = 0;
+                    for (Colony colony : colonies) {
+                        fEntropy = Math.max(fEntropy, calculatePheromoneEntropy(colony.snapshotPheromone()));
+                    }
+                    if (fEntropy < entropyThreshold) {
+                        stopReason = "pheromone entropy " + fEntropy + " below " + entropyThreshold;
+                    }
+                }
+
+                if (isCheckpointDue() || (isCheckpointing() && (stopReason != null || iteration + 1 == numOfIterations))) {
+                    AcoState newState = new AcoState();
+                    newState.f_pheromone0 = f_pheromone0;
+                    newState.pheromones = new double[colonies.size()][][];
+                    newState.bestParents = new int[colonies.size()][][];
+                    newState.bestScores = new double[colonies.size()];
+                    for (int colonyNum = 0; colonyNum < colonies.size(); colonyNum++) {
+                        Colony colony = colonies.get(colonyNum);
+                        newState.pheromones[colonyNum] = colony.snapshotPheromone();
+                        newState.bestParents[colonyNum] = SearchCheckpoint.getParentSets(colony.bestBayesNet);
+                        newState.bestScores[colonyNum] = colony.fBestScore;
+                    }
+                    newState.bestColony = colonies.indexOf(bestColony);
+                    newState.fStagnationScore = fStagnationScore;
+                    newState.stagnationStart = stagnationStart;
+                    newState.elapsedTime = System.currentTimeMillis() - startTime;
+                    SearchCheckpoint newCheckpoint = new SearchCheckpoint(this, instances);
+                    newCheckpoint.m_nIteration = iteration + 1;
+                    newCheckpoint.m_nCurrentParents = SearchCheckpoint.getParentSets(bayesNet);
+                    newCheckpoint.m_fCurrentScore = totalK2Score;
+                    newCheckpoint.m_nBestParents = SearchCheckpoint.getParentSets(bestColony.bestBayesNet);
+                    newCheckpoint.m_fBestScore = bestColony.fBestScore;
+                    newCheckpoint.m_State = newState;
+                    saveCheckpoint(newCheckpoint);
+                }
+
+                recorder.endIteration(iteration, colonies, bestColony, globalUpdateTime);
+
+                if (stopReason != null) {
+                    break;
+                }
+            }
+
+
+            //wait for the asynchronous ants that were started for iterations that did not run
+            for (; antsRunning > 0; antsRunning--) {
+                taskRunner.take();
             }
+        } finally {
+            //waits for running ants, only shuts down the executor if the runner created it
+            taskRunner.close();
+            releaseScoreCache(colonies);
+        }
+
+        // restore current network to the best network
+        copyParentSets(bayesNet, bestColony.bestBayesNet);
+        lastPheromone = bestColony.snapshotPheromone();
+        if (pheromoneOutputFile != null && pheromoneOutputFile.getPath().length() > 0
+                && !pheromoneOutputFile.isDirectory()) {
+            SerializationHelper.write(pheromoneOutputFile.getPath(), bestColony.snapshotPheromone());
+        }
+        workspacePool = null;
+        candidateParents = null;
+
+        recorder.finish(totalK2Score, bestColony.fBestScore);
+    }//search
+
+    /**
+     * Drops every reference to the score cache of the search, so it is not kept alive by the trained network,
+     * which holds on to its search algorithm
+     *
+     * @param colonies colonies of the search, with the ants and local optimizers that got the cache
+     */
+    private void releaseScoreCache(List<Colony> colonies) {
+        scoreCache = null;
+        setScoreCache(null);
+        for (Colony colony : colonies) {
+            for (Ant ant : colony.antPool) {
+                ant.setScoreCache(null);
+                if (ant.m_LocalOptimizer != null) {
+                    ant.m_LocalOptimizer.setScoreCache(null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the pheromone matrix every colony starts with, the initial pheromone if it is set, otherwise the one
+     * saved by an earlier search in the pheromone input file
+     *
+     * @param numOfAttrs number of attributes in the data set
+     * @return the pheromone matrix, null if neither is set
+     * @throws Exception if the file can not be read or the matrix does not fit the data set
+     */
+    private double[][] loadPheromone(int numOfAttrs) throws Exception {
+        if (initialPheromone != null) {
+            return checkPheromone(initialPheromone, "Initial pheromone", numOfAttrs);
+        }
+        if (pheromoneInputFile == null || pheromoneInputFile.getPath().length() == 0) {
+            return null;
+        }
+        return checkPheromone(SerializationHelper.read(pheromoneInputFile.getPath()),
+                "File " + pheromoneInputFile, numOfAttrs);
+    }
 
-            if (iteration % optimizationStep == 0 || iteration + 1 == numOfIterations) {
-                executeOptimizersParallel(antsResults, executor);
+    /**
+     * Checks that a pheromone matrix fits the data set
+     *
+     * @param matrix     the pheromone matrix
+     * @param source     where the matrix comes from, for the error message
+     * @param numOfAttrs number of attributes in the data set
+     * @return the pheromone matrix
+     * @throws Exception if the matrix does not fit the data set
+     */
+    private static double[][] checkPheromone(Object matrix, String source, int numOfAttrs) throws Exception {
+        if (!(matrix instanceof double[][]) || ((double[][]) matrix).length != numOfAttrs) {
+            throw new Exception(source + " does not hold a pheromone matrix for " + numOfAttrs + " nodes");
+        }
+        double[][] pheromone = (double[][]) matrix;
+        for (double[] row : pheromone) {
+            if (row.length != numOfAttrs) {
+                throw new Exception(source + " does not hold a pheromone matrix for " + numOfAttrs + " nodes");
             }
+        }
+        return pheromone;
+    }
 
-            int bestAntindex = -1;
-            for (int antNum = 0; antNum < numOfAnts; antNum++) {
-                Ant currentAnt = antsResults.get(antNum);
-
-                //do update in the same thread to recreate a solution with the same seed
-                currentAnt.performLocalPheromoneUpdate(instances.numAttributes());
-
-                double fAntScore = calculateNetworkScore(currentAnt, instances.numAttributes());
+    /**
+     * Publishes a copy of the best structure of a colony, so it can be read by other threads while the search runs
+     *
+     * @param colony    colony with the best structure
+     * @param instances instances in a data set
+     * @param iteration current iteration
+     * @throws Exception if the structure can not be initialized
+     */
+    private void publishBestSoFar(Colony colony, Instances instances, int iteration) throws Exception {
+        BayesNet snapshot = new BayesNet();
+        snapshot.m_Instances = instances;
+        snapshot.initStructure();
+        copyParentSets(snapshot, colony.bestBayesNet);
+        bestSoFar = new BestSoFar(snapshot, colony.fBestScore, iteration);
+    }
 
-                if (fAntScore > fBestScore) {
-                    fBestScore = fAntScore;
-                    bestAntindex = antNum;
+    /**
+     * Returns the mean normalized entropy of the pheromone over the possible parents of a node. It is 1 when all arcs
+     * have the same pheromone level and goes to 0 when the pheromone of every node concentrates on a single parent.
+     *
+     * @param pheromone pheromone matrix
+     * @return mean normalized entropy, between 0 and 1
+     */
+    private double calculatePheromoneEntropy(double[][] pheromone) {
+        int numOfAttrs = pheromone.length;
+        if (numOfAttrs < 3) {
+            return 0;
+        }
+        double totalEntropy = 0;
+        for (int iAttributeHead = 0; iAttributeHead < numOfAttrs; iAttributeHead++) {
+            double sum = 0;
+            for (int iAttributeTail = 0; iAttributeTail < numOfAttrs; iAttributeTail++) {
+                if (iAttributeTail != iAttributeHead) {
+                    sum += pheromone[iAttributeTail][iAttributeHead];
                 }
             }
-
-            // if better solution is found
-            if (bestAntindex != -1) {
-                copyParentSets(bestBayesNet, antsResults.get(bestAntindex).m_BayesNet);
+            double entropy = 0;
+            for (int iAttributeTail = 0; iAttributeTail < numOfAttrs; iAttributeTail++) {
+                if (iAttributeTail != iAttributeHead && pheromone[iAttributeTail][iAttributeHead] > 0) {
+                    double p = pheromone[iAttributeTail][iAttributeHead] / sum;
+                    entropy -= p * Math.log(p);
+                }
             }
+            totalEntropy += entropy / Math.log(numOfAttrs - 1);
+        }
+        return totalEntropy / numOfAttrs;
+    }
 
-            if (iteration % optimizationStep == 0 || iteration + 1 == numOfIterations) {
-                System.out.println("Best after iteration " + iteration + ".:" + fBestScore);
-            }
+    /**
+     * Asks a running search to stop after the current iteration. The best structure found so far is kept as result.
+     */
+    public void stopSearch() {
+        stopRequested = true;
+    }
 
-            //global pheromone update
-            globalPheromoneUpdate(bestBayesNet, fBestScore, instances.numAttributes());
-        }
+    /**
+     * The number of colonies and the candidate parents determine the shape of the pheromone matrices and of the
+     * arcs ants can choose, so a checkpoint is only resumed with the same values
+     *
+     * @return the settings that a checkpoint must match
+     */
+    @Override
+    String getCheckpointSettings() {
+        return "colonies=" + Math.max(numOfColonies, 1) + " candidates=" + numOfCandidateParents
+                + " candidateMeasure=" + candidateMeasure;
+    }
 
+    /**
+     * Returns why the running or last search stopped before its number of iterations, for example a time limit
+     * that was reached or a stop that was requested. Safe to call from another thread.
+     *
+     * @return reason the search stopped, null if it ran all its iterations, is still running or was not started
+     */
+    public String getStopReason() {
+        return stopReason;
+    }
 
-        // restore current network to the best network
-        copyParentSets(bayesNet, bestBayesNet);
+    /**
+     * Returns a copy of the best structure found so far by the running or last search. Safe to call from another
+     * thread while the search runs.
+     *
+     * @return best structure found so far, null if no search was started
+     */
+    public BayesNet getBestSoFar() {
+        BestSoFar best = bestSoFar;
+        return best == null ? null : best.bayesNet;
+    }
 
-    }//search
+    /**
+     * Returns the score of the structure returned by getBestSoFar(). Safe to call from another thread.
+     *
+     * @return score of the best structure found so far, NaN if no search was started
+     */
+    public double getBestSoFarScore() {
+        BestSoFar best = bestSoFar;
+        return best == null ? Double.NaN : best.fScore;
+    }
 
     /**
-     * Executes local optimization of ants solutions in parallel.
+     * Returns the iteration in which the best structure found so far was found. Safe to call from another thread.
      *
-     * @param antsResults list of ants with built solution
-     * @param executor    executor service
+     * @return iteration of the best structure, -1 for the initial K2 structure or if no search was started
      */
-    private void executeOptimizersParallel(List<Ant> antsResults, ExecutorService executor) {
-        List<Future> futuresOptimizers = new ArrayList<>();
+    public int getBestSoFarIteration() {
+        BestSoFar best = bestSoFar;
+        return best == null ? -1 : best.iteration;
+    }
 
-        for (int antNum = 0; antNum < numOfAnts; antNum++) {
-            //create an optimizer
-            HillClimber localOptimizer = getLocalOptimizer();
-            initLocalOptimizer(localOptimizer);
-            //set the same bayes net object
-            localOptimizer.m_BayesNet = antsResults.get(antNum).m_BayesNet;
-            futuresOptimizers.add(executor.submit(localOptimizer));
+    /**
+     * Exchanges best structures and pheromone between colonies. Colonies form a ring, every colony receives the best
+     * structure of its predecessor, adopting it when it is better than its own, and blends the predecessor's
+     * pheromone into its own with weight migrationRate.
+     *
+     * @param colonies  the colonies
+     * @param instances instances in a data set
+     * @throws Exception if a structure can not be initialized
+     */
+    private void migrate(List<Colony> colonies, Instances instances) throws Exception {
+        int numOfAttrs = instances.numAttributes();
+        int numOfColonies = colonies.size();
+        // take a snapshot first, so every colony receives what its predecessor had before migration
+        double[][][] pheromones = new double[numOfColonies][numOfAttrs][];
+        BayesNet[] bestBayesNets = new BayesNet[numOfColonies];
+        double[] fBestScores = new double[numOfColonies];
+        for (int colonyNum = 0; colonyNum < numOfColonies; colonyNum++) {
+            Colony colony = colonies.get(colonyNum);
+            for (int i = 0; i < numOfAttrs; i++) {
+                pheromones[colonyNum][i] = colony.snapshotPheromone()[i].clone();
+            }
+            bestBayesNets[colonyNum] = new BayesNet();
+            bestBayesNets[colonyNum].m_Instances = instances;
+            bestBayesNets[colonyNum].initStructure();
+            copyParentSets(bestBayesNets[colonyNum], colony.bestBayesNet);
+            fBestScores[colonyNum] = colony.fBestScore;
         }
 
-        for (Future optimizer : futuresOptimizers) {
-            try {
-                optimizer.get();
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
+        for (int colonyNum = 0; colonyNum < numOfColonies; colonyNum++) {
+            Colony colony = colonies.get(colonyNum);
+            int source = (colonyNum + numOfColonies - 1) % numOfColonies;
+            if (fBestScores[source] > colony.fBestScore) {
+                copyParentSets(colony.bestBayesNet, bestBayesNets[source]);
+                colony.fBestScore = fBestScores[source];
+            }
+            for (int i = 0; i < numOfAttrs; i++) {
+                for (int j = 0; j < numOfAttrs; j++) {
+                    colony.blendPheromone(i, j, migrationRate, pheromones[source][i][j]);
+                }
             }
         }
-
     }
 
     /**
@@ -756,36 +2096,56 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
      *
      * @param numOfAttrs   number of attributes in the data set
      * @param f_pheromone0 initial pheromone value
+     * @return the pheromone matrix
      */
-    private void initPheromoneMatrix(int numOfAttrs, double f_pheromone0) {
-        pheromone = new double[numOfAttrs][numOfAttrs];
+    private double[][] initPheromoneMatrix(int numOfAttrs, double f_pheromone0) {
+        double[][] pheromone = new double[numOfAttrs][numOfAttrs];
         for (int i = 0; i < numOfAttrs; i++) {
             for (int j = 0; j < numOfAttrs; j++) {
                 pheromone[i][j] = f_pheromone0;
             }
         }
+        return pheromone;
     }
 
     /**
      * Performs global pheromone update by updating the pheromone value of arcs which are present in the best solution
      * found
      *
-     * @param bestBayesNet best bayes structure found
-     * @param fBestScore   score of the best structure
-     * @param numOfAttrs   number of attributes in the data set
+     * @param colony     colony with the pheromone to update and the best structure it found
+     * @param numOfAttrs number of attributes in the data set
      */
-    private void globalPheromoneUpdate(BayesNet bestBayesNet, double fBestScore, int numOfAttrs) {
-        double reciprocalScore = 1 / Math.abs(fBestScore);
+    private void globalPheromoneUpdate(Colony colony, int numOfAttrs) {
+        double reciprocalScore = 1 / Math.abs(colony.fBestScore);
         for (int iAttributeHead = 0; iAttributeHead < numOfAttrs; iAttributeHead++) {
-            ParentSet parentSet = bestBayesNet.getParentSet(iAttributeHead);
+            ParentSet parentSet = colony.bestBayesNet.getParentSet(iAttributeHead);
             for (int iAttributeTailIndex = 0; iAttributeTailIndex < parentSet.getNrOfParents(); iAttributeTailIndex++) {
                 int iAttributeTail = parentSet.getParent(iAttributeTailIndex);
-                pheromone[iAttributeTail][iAttributeHead] = (1 - f_globalUpdateCoef) * pheromone[iAttributeTail][iAttributeHead]
-                        + f_globalUpdateCoef * reciprocalScore;
+                colony.blendPheromone(iAttributeTail, iAttributeHead, f_globalUpdateCoef, reciprocalScore);
             }
         }
     }
 
+    /**
+     * Starts an ant in the asynchronous mode. Ants are spread over the colonies round robin, the solutions of the ants
+     * of every optimizationStep-th iteration are optimized by the ants themselves
+     *
+     * @param colonies       the colonies
+     * @param taskRunner     runner that runs the ant
+     * @param instances      instances in a data set
+     * @param firstIteration iteration the search started with
+     * @param antSerial      number of ants started before
+     */
+    private void startAnt(List<Colony> colonies, SearchTaskRunner<Ant> taskRunner, Instances instances,
+                          int firstIteration, long antSerial) {
+        int antsPerIteration = numOfAnts * colonies.size();
+        long iteration = firstIteration + antSerial / antsPerIteration;
+        boolean bOptimize = iteration % optimizationStep == 0 || iteration + 1 == numOfIterations;
+        Colony colony = colonies.get((int) (antSerial % colonies.size()));
+        taskRunner.submit(colony.startAnt(instances, firstIteration * (long) antsPerIteration + antSerial,
+                bOptimize));
+    }
+
     /**
      * Returns the new object of selected local optimizer
      *
@@ -814,8 +2174,8 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
     private void initLocalOptimizer(HillClimber hc) {
         hc.setInitAsNaiveBayes(false);
         hc.setMaxNrOfParents(m_nMaxNrOfParents);
-        hc.setScoreType(getScoreType());
         hc.setUseArcReversal(true);
+        hc.copyScoring(this);
     }
 
     /**
@@ -825,7 +2185,7 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
      * @param instances  instances in a data set
      * @param seedOffset number which ensures that each ant has different seed. Introduce deterministic randomness
      */
-    private void initializeAntParameters(Ant ant, Instances instances, int seedOffset) {
+    private void initializeAntParameters(Ant ant, Instances instances, long seedOffset) {
         //pheromone matrix and stuff
         ant.setMaxNrOfParents(m_nMaxNrOfParents);
         ant.setInitAsNaiveBayes(false);
@@ -834,8 +2194,67 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
         ant.setF_pheromone0(f_pheromone0);
         ant.setQ0(q0);
         ant.setSeed(seed + seedOffset);
-        ant.setScoreType(getScoreType());
         ant.setInstances(instances);
+        ant.copyScoring(this);
+    }
+
+    /**
+     * Returns the number of candidate parents of every node in the running search
+     *
+     * @param numOfAttrs number of attributes in the data set
+     * @return number of candidate parents, the number of attributes if every node is a candidate
+     */
+    private int getNumOfCandidateSlots(int numOfAttrs) {
+        return candidateParents == null ? numOfAttrs : candidateParents[0].length;
+    }
+
+    /**
+     * Returns a candidate parent of a node in the running search
+     *
+     * @param head node
+     * @param slot index of the candidate
+     * @return candidate parent, the slot itself if every node is a candidate
+     */
+    private int getCandidateParent(int head, int slot) {
+        return candidateParents == null ? slot : candidateParents[head][slot];
+    }
+
+    /**
+     * Takes a workspace from the pool, or creates one if all workspaces are in use
+     *
+     * @param numOfAttrs number of attributes in the data set
+     * @return workspace sized for the data set
+     */
+    private AntWorkspace acquireWorkspace(int numOfAttrs) {
+        AntWorkspace workspace = workspacePool.poll();
+        if (workspace == null || workspace.numOfNodes != numOfAttrs) {
+            workspace = new AntWorkspace(numOfAttrs);
+        }
+        return workspace;
+    }
+
+    /**
+     * Returns a workspace to the pool
+     *
+     * @param workspace workspace that is no longer used
+     */
+    private void releaseWorkspace(AntWorkspace workspace) {
+        workspacePool.offer(workspace);
+    }
+
+    /**
+     * Removes all arcs of a network without allocating new parent sets
+     *
+     * @param bayesNet  network to clear
+     * @param instances instances in a data set
+     */
+    private void clearParentSets(BayesNet bayesNet, Instances instances) {
+        for (int iNode = 0; iNode < bayesNet.getNrOfNodes(); iNode++) {
+            ParentSet parentSet = bayesNet.getParentSet(iNode);
+            while (parentSet.getNrOfParents() > 0) {
+                parentSet.deleteLastParent(instances);
+            }
+        }
     }
 
     /**
@@ -879,8 +2298,42 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
                 "-H <iterationStep>"));
         newVector.addElement(new Option("\tLocal Optimizer (Hill Climber (A,D,R), LAGD Hill Climber, Tabu Search )",
                 "opt", 1, "-opt [HCST|LAGDHC|TABU]"));
-        newVector.addElement(new Option("\tParallelize.\n\t(default true)", "P",
+        newVector.addElement(new Option("\tParallelize on the threads set with -num-slots.\n\t(default true)", "P",
                 0, "-P"));
+        newVector.addElement(new Option("\tMax number of cached node scores, 0 disables the cache.\n\t(default 500000)",
+                "cache", 1, "-cache <score cache size>"));
+        newVector.addElement(new Option("\tNumber of colonies (islands) with their own pheromone matrix.\n\t(default 1)",
+                "colonies", 1, "-colonies <num of colonies>"));
+        newVector.addElement(new Option("\tIterations between migrations of best structures and pheromone between"
+                + " colonies.\n\t(default 10)", "migration", 1, "-migration <migration interval>"));
+        newVector.addElement(new Option("\tWeight of the neighbouring colony's pheromone in a migration.\n\t(default 0.5)",
+                "blend", 1, "-blend <migration rate>"));
+        newVector.addElement(new Option("\tTime limit in milliseconds, checked after every iteration. 0 means no limit.\n"
+                + "\t(default 0)", "time", 1, "-time <time limit>"));
+        newVector.addElement(new Option("\tStop after this many iterations without improvement. 0 disables it.\n"
+                + "\t(default 0)", "stagnation", 1, "-stagnation <iterations>"));
+        newVector.addElement(new Option("\tMin improvement of the best score that counts as improvement.\n\t(default 0)",
+                "epsilon", 1, "-epsilon <min improvement>"));
+        newVector.addElement(new Option("\tStop when the mean normalized pheromone entropy drops below this value.\n"
+                + "\t0 disables it. (default 0)", "entropy", 1, "-entropy <entropy threshold>"));
+        newVector.addElement(new Option("\tAsynchronous colony: ants update the pheromone while building and start\n"
+                + "\twithout waiting for the iteration to end. Results are not reproducible.", "async", 0, "-async"));
+        newVector.addElement(new Option("\tMax number of candidate parents per node that ants consider.\n"
+                + "\t0 means all nodes. Every ant thread keeps two nodes x candidates\n"
+                + "\tmatrices of doubles, so without a limit memory grows with the\n"
+                + "\tsquare of the number of nodes. (default 0)", "candidates", 1, "-candidates <num>"));
+        newVector.addElement(new Option("\tMeasure to select candidate parents by: MI or CHI2.\n\t(default MI)",
+                "candidate-measure", 1, "-candidate-measure <MI|CHI2>"));
+        newVector.addElement(new Option("\tFile to write the metrics of the search to, as JSON if the name ends\n"
+                + "\twith .json and as CSV otherwise.", "metrics", 1, "-metrics <file>"));
+        newVector.addElement(new Option("\tInitial structure specified in XML BIF file", "initial", 1,
+                "-initial <file>"));
+        newVector.addElement(new Option("\tWarm start: start from the structure of the network, e.g. the initial BIF\n"
+                + "\tfile, instead of running K2 first.", "warm", 0, "-warm"));
+        newVector.addElement(new Option("\tFile with a pheromone matrix saved by an earlier search to start from.",
+                "pheromone-in", 1, "-pheromone-in <file>"));
+        newVector.addElement(new Option("\tFile to save the pheromone matrix of the best colony to.",
+                "pheromone-out", 1, "-pheromone-out <file>"));
         newVector.addAll(Collections.list(super.listOptions()));
 
 
@@ -952,6 +2405,88 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
      * -O
      * Parallelize
      * </pre>
+     * <p>
+     * <pre>
+     * -cache
+     * Max number of cached node scores
+     * </pre>
+     * <p>
+     * <pre>
+     * -colonies
+     * Number of colonies (islands)
+     * </pre>
+     * <p>
+     * <pre>
+     * -migration
+     * Iterations between migrations between colonies
+     * </pre>
+     * <p>
+     * <pre>
+     * -blend
+     * Weight of the neighbouring colony's pheromone in a migration
+     * </pre>
+     * <p>
+     * <pre>
+     * -time
+     * Time limit in milliseconds
+     * </pre>
+     * <p>
+     * <pre>
+     * -stagnation
+     * Stop after this many iterations without improvement
+     * </pre>
+     * <p>
+     * <pre>
+     * -epsilon
+     * Min improvement of the best score that counts as improvement
+     * </pre>
+     * <p>
+     * <pre>
+     * -entropy
+     * Stop when the mean normalized pheromone entropy drops below this value
+     * </pre>
+     * <p>
+     * <pre>
+     * -async
+     * Asynchronous colony without iteration barrier
+     * </pre>
+     * <p>
+     * <pre>
+     * -candidates
+     * Max number of candidate parents per node. Every ant thread keeps two
+     * nodes x candidates matrices of doubles, so without a limit memory grows
+     * with the square of the number of nodes
+     * </pre>
+     * <p>
+     * <pre>
+     * -candidate-measure
+     * Measure to select candidate parents by, MI or CHI2
+     * </pre>
+     * <p>
+     * <pre>
+     * -metrics
+     * File to write the metrics of the search to, CSV or JSON
+     * </pre>
+     * <p>
+     * <pre>
+     * -initial
+     * Initial structure specified in XML BIF file
+     * </pre>
+     * <p>
+     * <pre>
+     * -warm
+     * Start from the structure of the network instead of running K2
+     * </pre>
+     * <p>
+     * <pre>
+     * -pheromone-in
+     * File with a pheromone matrix to start from
+     * </pre>
+     * <p>
+     * <pre>
+     * -pheromone-out
+     * File to save the pheromone matrix of the best colony to
+     * </pre>
      * <!-- options-end -->
      *
      * @param options the list of options as an array of strings
@@ -970,6 +2505,25 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
         setOptimizationStep(parseOptionInteger(Utils.getOption('T', options), optimizationStep));
         setLocalOptimizer(Utils.getOption("opt", options));
         setParallelize(Utils.getFlag('P', options));
+        setScoreCacheSize(parseOptionInteger(Utils.getOption("cache", options), scoreCacheSize));
+        setNumOfColonies(parseOptionInteger(Utils.getOption("colonies", options), numOfColonies));
+        setMigrationInterval(parseOptionInteger(Utils.getOption("migration", options), migrationInterval));
+        setMigrationRate(parseOptionDouble(Utils.getOption("blend", options), migrationRate));
+        setTimeLimit(parseOptionLong(Utils.getOption("time", options), timeLimit));
+        setStagnationIterations(parseOptionInteger(Utils.getOption("stagnation", options), stagnationIterations));
+        setStagnationEpsilon(parseOptionDouble(Utils.getOption("epsilon", options), stagnationEpsilon));
+        setEntropyThreshold(parseOptionDouble(Utils.getOption("entropy", options), entropyThreshold));
+        setAsynchronous(Utils.getFlag("async", options));
+        setNumOfCandidateParents(parseOptionInteger(Utils.getOption("candidates", options), numOfCandidateParents));
+        String measure = Utils.getOption("candidate-measure", options);
+        if (measure.length() != 0) {
+            setCandidateMeasure(new SelectedTag(measure, CandidateParentSelector.TAGS_MEASURE));
+        }
+        setMetricsFile(new File(Utils.getOption("metrics", options)));
+        setInitialStructureFile(new File(Utils.getOption("initial", options)));
+        setWarmStart(Utils.getFlag("warm", options));
+        setPheromoneInputFile(new File(Utils.getOption("pheromone-in", options)));
+        setPheromoneOutputFile(new File(Utils.getOption("pheromone-out", options)));
 
         super.setOptions(options);
     } // setOptions
@@ -1075,6 +2629,64 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
         options.add("-P");
         options.add("" + getParallelize());
 
+        options.add("-cache");
+        options.add("" + getScoreCacheSize());
+
+        options.add("-colonies");
+        options.add("" + getNumOfColonies());
+
+        options.add("-migration");
+        options.add("" + getMigrationInterval());
+
+        options.add("-blend");
+        options.add("" + getMigrationRate());
+
+        options.add("-time");
+        options.add("" + getTimeLimit());
+
+        options.add("-stagnation");
+        options.add("" + getStagnationIterations());
+
+        options.add("-epsilon");
+        options.add("" + getStagnationEpsilon());
+
+        options.add("-entropy");
+        options.add("" + getEntropyThreshold());
+
+        if (getAsynchronous()) {
+            options.add("-async");
+        }
+
+        options.add("-candidates");
+        options.add("" + getNumOfCandidateParents());
+
+        options.add("-candidate-measure");
+        options.add(getCandidateMeasure().getSelectedTag().getIDStr());
+
+        if (getMetricsFile().getPath().length() > 0) {
+            options.add("-metrics");
+            options.add(getMetricsFile().getPath());
+        }
+
+        if (getInitialStructureFile().getPath().length() > 0) {
+            options.add("-initial");
+            options.add(getInitialStructureFile().getPath());
+        }
+
+        if (getWarmStart()) {
+            options.add("-warm");
+        }
+
+        if (getPheromoneInputFile().getPath().length() > 0) {
+            options.add("-pheromone-in");
+            options.add(getPheromoneInputFile().getPath());
+        }
+
+        if (getPheromoneOutputFile().getPath().length() > 0) {
+            options.add("-pheromone-out");
+            options.add(getPheromoneOutputFile().getPath());
+        }
+
         Collections.addAll(options, super.getOptions());
 
         return options.toArray(new String[0]);
@@ -1162,6 +2774,170 @@ public class AntColonyOptimization extends LocalScoreSearchAlgorithm {
     public boolean getParallelize(){
         return parallelize;
     }
+
+    public void setScoreCacheSize(int scoreCacheSize) {
+        this.scoreCacheSize = scoreCacheSize;
+    }
+
+    public int getScoreCacheSize() {
+        return scoreCacheSize;
+    }
+
+    public void setNumOfColonies(int numOfColonies) {
+        this.numOfColonies = numOfColonies;
+    }
+
+    public int getNumOfColonies() {
+        return numOfColonies;
+    }
+
+    public void setMigrationInterval(int migrationInterval) {
+        this.migrationInterval = migrationInterval;
+    }
+
+    public int getMigrationInterval() {
+        return migrationInterval;
+    }
+
+    public void setMigrationRate(double migrationRate) {
+        this.migrationRate = migrationRate;
+    }
+
+    public double getMigrationRate() {
+        return migrationRate;
+    }
+
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    public void setStagnationIterations(int stagnationIterations) {
+        this.stagnationIterations = stagnationIterations;
+    }
+
+    public int getStagnationIterations() {
+        return stagnationIterations;
+    }
+
+    public void setStagnationEpsilon(double stagnationEpsilon) {
+        this.stagnationEpsilon = stagnationEpsilon;
+    }
+
+    public double getStagnationEpsilon() {
+        return stagnationEpsilon;
+    }
+
+    public void setEntropyThreshold(double entropyThreshold) {
+        this.entropyThreshold = entropyThreshold;
+    }
+
+    public double getEntropyThreshold() {
+        return entropyThreshold;
+    }
+
+    public void setAsynchronous(boolean asynchronous) {
+        this.asynchronous = asynchronous;
+    }
+
+    public boolean getAsynchronous() {
+        return asynchronous;
+    }
+
+    public void setNumOfCandidateParents(int numOfCandidateParents) {
+        this.numOfCandidateParents = numOfCandidateParents;
+    }
+
+    public int getNumOfCandidateParents() {
+        return numOfCandidateParents;
+    }
+
+    /**
+     * @return a string to describe the NumOfCandidateParents option.
+     */
+    public String numOfCandidateParentsTipText() {
+        return "Max number of candidate parents per node that ants consider, 0 means all nodes. Every ant thread "
+                + "keeps two nodes x candidates matrices of doubles, about 16 * nodes * candidates bytes, so without "
+                + "a limit memory grows with the square of the number of nodes.";
+    }
+
+    public void setCandidateMeasure(SelectedTag candidateMeasure) {
+        if (candidateMeasure.getTags() == CandidateParentSelector.TAGS_MEASURE) {
+            this.candidateMeasure = candidateMeasure.getSelectedTag().getID();
+        }
+    }
+
+    public SelectedTag getCandidateMeasure() {
+        return new SelectedTag(candidateMeasure, CandidateParentSelector.TAGS_MEASURE);
+    }
+
+    public void setMetricsFile(File metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    public File getMetricsFile() {
+        return metricsFile;
+    }
+
+    public void setInitialStructureFile(File initialStructureFile) {
+        m_sInitalBIFFile = initialStructureFile.getPath();
+    }
+
+    public File getInitialStructureFile() {
+        return new File(m_sInitalBIFFile == null ? "" : m_sInitalBIFFile);
+    }
+
+    public void setWarmStart(boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    public boolean getWarmStart() {
+        return warmStart;
+    }
+
+    public void setPheromoneInputFile(File pheromoneInputFile) {
+        this.pheromoneInputFile = pheromoneInputFile;
+    }
+
+    public File getPheromoneInputFile() {
+        return pheromoneInputFile;
+    }
+
+    public void setPheromoneOutputFile(File pheromoneOutputFile) {
+        this.pheromoneOutputFile = pheromoneOutputFile;
+    }
+
+    public File getPheromoneOutputFile() {
+        return pheromoneOutputFile;
+    }
+
+    /**
+     * Sets the pheromone matrix every colony starts with, for example the one an earlier search on older data ended
+     * with. Takes precedence over the pheromone input file.
+     *
+     * @param initialPheromone pheromone matrix indexed by tail and head, null to use the pheromone input file
+     */
+    @ProgrammaticProperty
+    public void setInitialPheromone(double[][] initialPheromone) {
+        this.initialPheromone = initialPheromone;
+    }
+
+    @ProgrammaticProperty
+    public double[][] getInitialPheromone() {
+        return initialPheromone;
+    }
+
+    /**
+     * Returns the pheromone matrix of the best colony when the last search finished, to start a later search with
+     *
+     * @return pheromone matrix indexed by tail and head, null if no search finished
+     */
+    public double[][] getLastPheromone() {
+        return lastPheromone;
+    }
     private enum Optimizer {
         HCST, LAGDHC, TABU
     }
@@ -0,0 +1,288 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CandidateParentSelector.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import weka.classifiers.bayes.net.search.SearchTaskRunner;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Statistics;
+import weka.core.Tag;
+
+/**
+ * Restricts the parents a search considers for every node to a short list of
+ * candidates, the nodes that depend most on the node according to the mutual
+ * information or a chi-squared test of independence on the counts the search
+ * scores with, so instance weights are taken into account. Candidate
+ * lists are determined once before a search, node by node in parallel, and
+ * hold the candidates in increasing order of node index.
+ *
+ * @version $Revision$
+ */
+public class CandidateParentSelector implements RevisionHandler {
+
+  /** rank candidates by mutual information **/
+  public static final int MUTUAL_INFORMATION = 0;
+
+  /** rank candidates by the p-value of a chi-squared test **/
+  public static final int CHI_SQUARED = 1;
+
+  /** the measures to rank candidates by **/
+  public static final Tag[] TAGS_MEASURE = {
+    new Tag(MUTUAL_INFORMATION, "MI", "Mutual information"),
+    new Tag(CHI_SQUARED, "CHI2", "Chi-squared test") };
+
+  /** source of the joint counts of two attributes **/
+  protected SufficientStatistics m_Statistics;
+
+  /** number of values of every attribute **/
+  protected int[] m_nNumValues;
+
+  /** number of candidates per node **/
+  protected int m_nNrOfCandidates;
+
+  /** measure to rank candidates by **/
+  protected int m_nMeasure;
+
+  /**
+   * c'tor
+   *
+   * @param statistics source of the counts, the one the search scores with so
+   *          candidates are ranked on the same (weighted) counts
+   * @param instances data set the counts are taken from, only its header is
+   *          used, all attributes nominal
+   * @param nNrOfCandidates max number of candidate parents per node
+   * @param nMeasure MUTUAL_INFORMATION or CHI_SQUARED
+   */
+  public CandidateParentSelector(SufficientStatistics statistics,
+    Instances instances, int nNrOfCandidates, int nMeasure) {
+    int nNrOfAtts = instances.numAttributes();
+    m_Statistics = statistics;
+    m_nNumValues = new int[nNrOfAtts];
+    for (int iAttribute = 0; iAttribute < nNrOfAtts; iAttribute++) {
+      m_nNumValues[iAttribute] = instances.attribute(iAttribute).numValues();
+    }
+    m_nNrOfCandidates = nNrOfCandidates;
+    m_nMeasure = nMeasure;
+  } // c'tor
+
+  /**
+   * determine the candidate parents of all nodes
+   *
+   * @param executor executor to take threads from, null to let the runner
+   *          create its own
+   * @param nNumSlots number of execution slots
+   * @return candidate parents per node, or null if every node is a candidate
+   *         parent of every other node
+   * @throws Exception if a candidate list can not be determined
+   */
+  public int[][] select(Executor executor, int nNumSlots) throws Exception {
+    final int nNrOfAtts = m_nNumValues.length;
+    if (m_nNrOfCandidates <= 0 || m_nNrOfCandidates >= nNrOfAtts - 1) {
+      return null;
+    }
+    final int[][] nCandidates = new int[nNrOfAtts][];
+    SearchTaskRunner<int[]> runner = new SearchTaskRunner<int[]>(executor,
+      nNumSlots);
+    try {
+      for (int iNode = 0; iNode < nNrOfAtts; iNode++) {
+        final int iHead = iNode;
+        runner.submit(new Callable<int[]>() {
+          @Override
+          public int[] call() {
+            nCandidates[iHead] = selectCandidates(iHead);
+            return nCandidates[iHead];
+          }
+        });
+      }
+      for (int iNode = 0; iNode < nNrOfAtts; iNode++) {
+        try {
+          runner.take().get();
+        } catch (ExecutionException e) {
+          throw new Exception("Could not select candidate parents", e.getCause());
+        }
+      }
+    } finally {
+      runner.close();
+    }
+    return nCandidates;
+  } // select
+
+  /**
+   * determine the candidate parents of a node
+   *
+   * @param iHead node
+   * @return the best ranked other nodes, in increasing order of node index
+   */
+  protected int[] selectCandidates(int iHead) {
+    int nNrOfAtts = m_nNumValues.length;
+    // primary and secondary ranking key of every node, higher is better
+    final double[] fRank = new double[nNrOfAtts];
+    final double[] fTieBreak = new double[nNrOfAtts];
+    Integer[] nOrder = new Integer[nNrOfAtts - 1];
+    int nTotal = m_Statistics.getTotalCount();
+    int[] nHead = { iHead };
+    int iOrder = 0;
+    for (int iTail = 0; iTail < nNrOfAtts; iTail++) {
+      if (iTail == iHead) {
+        continue;
+      }
+      // counting the tail with the head as parent gives the counts indexed by
+      // head value * nNumTailValues + tail value
+      int[] nCounts = m_Statistics.getCounts(iTail, nHead, 1);
+      int nNumTailValues = m_nNumValues[iTail];
+      if (m_nMeasure == CHI_SQUARED) {
+        double[] fChiSquared = chiSquared(nCounts, m_nNumValues[iHead],
+          nNumTailValues, nTotal);
+        // small p-values rank first, p-values that underflow are ranked by
+        // the statistic
+        fRank[iTail] = -Statistics.chiSquaredProbability(fChiSquared[0],
+          fChiSquared[1]);
+        fTieBreak[iTail] = fChiSquared[0];
+      } else {
+        fRank[iTail] = mutualInformation(nCounts, m_nNumValues[iHead],
+          nNumTailValues, nTotal);
+      }
+      nOrder[iOrder++] = iTail;
+    }
+    Arrays.sort(nOrder, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i1, Integer i2) {
+        int nCompare = Double.compare(fRank[i2], fRank[i1]);
+        if (nCompare == 0) {
+          nCompare = Double.compare(fTieBreak[i2], fTieBreak[i1]);
+        }
+        return nCompare != 0 ? nCompare : i1.compareTo(i2);
+      }
+    });
+    int[] nCandidates = new int[m_nNrOfCandidates];
+    for (int iCandidate = 0; iCandidate < m_nNrOfCandidates; iCandidate++) {
+      nCandidates[iCandidate] = nOrder[iCandidate];
+    }
+    Arrays.sort(nCandidates);
+    return nCandidates;
+  } // selectCandidates
+
+  /**
+   * mutual information of two attributes
+   *
+   * @param nCounts joint counts, indexed by head value * nNumTailValues +
+   *          tail value
+   * @param nNumHeadValues number of values of the head
+   * @param nNumTailValues number of values of the tail
+   * @param nTotal sum of the counts
+   * @return mutual information in nats
+   */
+  protected static double mutualInformation(int[] nCounts, int nNumHeadValues,
+    int nNumTailValues, int nTotal) {
+    double[] fHeadCounts = new double[nNumHeadValues];
+    double[] fTailCounts = new double[nNumTailValues];
+    marginals(nCounts, fHeadCounts, fTailCounts);
+    double fMI = 0;
+    for (int iHead = 0; iHead < nNumHeadValues; iHead++) {
+      for (int iTail = 0; iTail < nNumTailValues; iTail++) {
+        int nCount = nCounts[iHead * nNumTailValues + iTail];
+        if (nCount > 0) {
+          fMI += nCount
+            * Math.log(nCount * (double) nTotal
+              / (fHeadCounts[iHead] * fTailCounts[iTail]));
+        }
+      }
+    }
+    return fMI / nTotal;
+  } // mutualInformation
+
+  /**
+   * chi-squared statistic of a test of independence of two attributes
+   *
+   * @param nCounts joint counts, indexed by head value * nNumTailValues +
+   *          tail value
+   * @param nNumHeadValues number of values of the head
+   * @param nNumTailValues number of values of the tail
+   * @param nTotal sum of the counts
+   * @return the statistic and its degrees of freedom. Values that do not
+   *         occur do not count towards the degrees of freedom
+   */
+  protected static double[] chiSquared(int[] nCounts, int nNumHeadValues,
+    int nNumTailValues, int nTotal) {
+    double[] fHeadCounts = new double[nNumHeadValues];
+    double[] fTailCounts = new double[nNumTailValues];
+    marginals(nCounts, fHeadCounts, fTailCounts);
+    double fChiSquared = 0;
+    int nHeadValues = 0;
+    int nTailValues = 0;
+    for (int iHead = 0; iHead < nNumHeadValues; iHead++) {
+      if (fHeadCounts[iHead] == 0) {
+        continue;
+      }
+      nHeadValues++;
+      for (int iTail = 0; iTail < nNumTailValues; iTail++) {
+        if (fTailCounts[iTail] > 0) {
+          double fExpected = fHeadCounts[iHead] * fTailCounts[iTail] / nTotal;
+          double fDiff = nCounts[iHead * nNumTailValues + iTail] - fExpected;
+          fChiSquared += fDiff * fDiff / fExpected;
+        }
+      }
+    }
+    for (int iTail = 0; iTail < nNumTailValues; iTail++) {
+      if (fTailCounts[iTail] > 0) {
+        nTailValues++;
+      }
+    }
+    return new double[] { fChiSquared,
+      Math.max(1, (nHeadValues - 1) * (nTailValues - 1)) };
+  } // chiSquared
+
+  /**
+   * marginal counts of the head and the tail
+   *
+   * @param nCounts joint counts
+   * @param fHeadCounts receives the counts of the head values
+   * @param fTailCounts receives the counts of the tail values
+   */
+  protected static void marginals(int[] nCounts, double[] fHeadCounts,
+    double[] fTailCounts) {
+    for (int iHead = 0; iHead < fHeadCounts.length; iHead++) {
+      for (int iTail = 0; iTail < fTailCounts.length; iTail++) {
+        int nCount = nCounts[iHead * fTailCounts.length + iTail];
+        fHeadCounts[iHead] += nCount;
+        fTailCounts[iTail] += nCount;
+      }
+    }
+  } // marginals
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+} // class CandidateParentSelector
@@ -0,0 +1,397 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CountIndex.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Compact, column major copy of a nominal data set for calculating the
+ * frequency counts that node scores are based on. The data is copied once
+ * into one byte[] (or short[] for attributes with more than 256 values) per
+ * attribute, so counting a family is a few passes over primitive arrays
+ * instead of virtual Instance.value() calls per instance and parent. Rows can
+ * carry an integer weight, so a data set in which identical rows are merged
+ * gives the same counts as the original one. compress merges identical rows
+ * of a data set, weighted() indexes a data set with its instance weights.
+ * <p/>
+ * Instances of this class are immutable after construction and can be shared
+ * between search algorithms running in different threads.
+ *
+ * @version $Revision$
+ */
+public class CountIndex implements SufficientStatistics, RevisionHandler {
+
+  /** the data the index was built from **/
+  final Instances m_Instances;
+
+  /** number of rows in the index **/
+  final int m_nNrOfRows;
+
+  /** number of values of each attribute **/
+  final int[] m_nNumValues;
+
+  /** attribute values per attribute, null if short columns are used **/
+  final byte[][] m_nByteColumns;
+
+  /** attribute values per attribute, null if byte columns are used **/
+  final short[][] m_nShortColumns;
+
+  /** weight (multiplicity) of each row, null if all rows have weight 1 **/
+  final int[] m_nWeights;
+
+  /** sum of the weights of the rows **/
+  final int m_nTotalCount;
+
+  /** per thread buffer holding the parent configuration of every row **/
+  final ThreadLocal<int[]> m_Configurations = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[m_nNrOfRows];
+    }
+  };
+
+  /**
+   * c'tor, every instance counts once
+   *
+   * @param instances nominal data set to index
+   */
+  public CountIndex(Instances instances) {
+    this(instances, null);
+  } // c'tor
+
+  /**
+   * c'tor
+   *
+   * @param instances nominal data set to index
+   * @param nWeights number of times each instance counts, or null if every
+   *          instance counts once
+   */
+  public CountIndex(Instances instances, int[] nWeights) {
+    if (nWeights != null && nWeights.length != instances.numInstances()) {
+      throw new IllegalArgumentException("Number of weights ("
+        + nWeights.length + ") differs from number of instances ("
+        + instances.numInstances() + ")");
+    }
+    int nNrOfAtts = instances.numAttributes();
+    m_Instances = instances;
+    m_nNrOfRows = instances.numInstances();
+    m_nWeights = nWeights;
+    m_nNumValues = new int[nNrOfAtts];
+
+    long nTotalCount = m_nNrOfRows;
+    if (nWeights != null) {
+      nTotalCount = 0;
+      for (int nWeight : nWeights) {
+        if (nWeight < 0) {
+          throw new IllegalArgumentException("Negative weight " + nWeight);
+        }
+        nTotalCount += nWeight;
+      }
+    }
+    if (nTotalCount > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Sum of weights (" + nTotalCount
+        + ") is too large to count");
+    }
+    m_nTotalCount = (int) nTotalCount;
+
+    int nMaxNumValues = 0;
+    for (int iAttribute = 0; iAttribute < nNrOfAtts; iAttribute++) {
+      if (!instances.attribute(iAttribute).isNominal()) {
+        throw new IllegalArgumentException("Attribute "
+          + instances.attribute(iAttribute).name() + " is not nominal");
+      }
+      m_nNumValues[iAttribute] = instances.attribute(iAttribute).numValues();
+      nMaxNumValues = Math.max(nMaxNumValues, m_nNumValues[iAttribute]);
+    }
+
+    if (nMaxNumValues <= 256) {
+      m_nByteColumns = new byte[nNrOfAtts][m_nNrOfRows];
+      m_nShortColumns = null;
+    } else {
+      m_nByteColumns = null;
+      m_nShortColumns = new short[nNrOfAtts][m_nNrOfRows];
+    }
+
+    for (int iRow = 0; iRow < m_nNrOfRows; iRow++) {
+      Instance instance = instances.instance(iRow);
+      for (int iAttribute = 0; iAttribute < nNrOfAtts; iAttribute++) {
+        // missing values end up as the first value, like (int) Double.NaN
+        int nValue = (int) instance.value(iAttribute);
+        if (m_nByteColumns != null) {
+          m_nByteColumns[iAttribute][iRow] = (byte) nValue;
+        } else {
+          m_nShortColumns[iAttribute][iRow] = (short) nValue;
+        }
+      }
+    }
+  } // c'tor
+
+  /**
+   * index a data set in which every instance counts as often as its weight
+   * says, e.g. one in which identical rows are merged by compress
+   *
+   * @param instances nominal data set to index
+   * @return the index
+   * @throws IllegalArgumentException if a weight is not a whole number
+   */
+  public static CountIndex weighted(Instances instances) {
+    int[] nWeights = new int[instances.numInstances()];
+    boolean bAllOnes = true;
+    for (int iRow = 0; iRow < nWeights.length; iRow++) {
+      double fWeight = instances.instance(iRow).weight();
+      if (fWeight != Math.rint(fWeight) || fWeight < 0
+        || fWeight > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Weight of instance " + iRow + " ("
+          + fWeight + ") is not a count");
+      }
+      nWeights[iRow] = (int) fWeight;
+      bAllOnes &= nWeights[iRow] == 1;
+    }
+    return new CountIndex(instances, bAllOnes ? null : nWeights);
+  } // weighted
+
+  /**
+   * merge identical rows of a data set into a single row, weighted with the
+   * sum of their weights. Rows keep the order in which they first appear.
+   * Highly repetitive data, e.g. discretized data, shrinks to the number of
+   * distinct rows, while the weighted counts stay the same.
+   *
+   * @param instances data set to compress
+   * @return data set with the same header and distinct rows
+   */
+  public static Instances compress(Instances instances) {
+    Map<Row, double[]> rows = new LinkedHashMap<Row, double[]>();
+    for (int iRow = 0; iRow < instances.numInstances(); iRow++) {
+      Instance instance = instances.instance(iRow);
+      Row row = new Row(instance.toDoubleArray());
+      double[] fWeight = rows.get(row);
+      if (fWeight == null) {
+        rows.put(row, new double[] { instance.weight() });
+      } else {
+        fWeight[0] += instance.weight();
+      }
+    }
+    Instances compressed = new Instances(instances, rows.size());
+    for (Map.Entry<Row, double[]> row : rows.entrySet()) {
+      compressed.add(new DenseInstance(row.getValue()[0], row.getKey().m_fValues));
+    }
+    return compressed;
+  } // compress
+
+  /**
+   * values of a row, as key for merging identical rows. Missing values are
+   * equal to each other.
+   */
+  private static class Row {
+
+    /** the attribute values **/
+    final double[] m_fValues;
+
+    /** hash code of the values **/
+    final int m_nHashCode;
+
+    Row(double[] fValues) {
+      m_fValues = fValues;
+      m_nHashCode = Arrays.hashCode(fValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return m_nHashCode;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Row
+        && Arrays.equals(m_fValues, ((Row) other).m_fValues);
+    }
+  } // class Row
+
+  /**
+   * @return the data the index was built from
+   */
+  public Instances getInstances() {
+    return m_Instances;
+  }
+
+  /**
+   * @return number of rows in the index
+   */
+  public int getNrOfRows() {
+    return m_nNrOfRows;
+  }
+
+  /**
+   * @return sum of the weights of the rows, the number of rows if they are
+   *         not weighted
+   */
+  @Override
+  public int getTotalCount() {
+    return m_nTotalCount;
+  }
+
+  /**
+   * determine frequency counts of a node for every configuration of its
+   * parents. The parent configuration is calculated as in
+   * LocalScoreSearchAlgorithm, with the first parent as most significant
+   * digit.
+   *
+   * @param nNode node to count values for
+   * @param nParents parents of the node
+   * @param nNrOfParents number of parents in nParents to use
+   * @return counts, indexed by numValues * parent configuration + value of
+   *         the node
+   */
+  @Override
+  public int[] getCounts(int nNode, int[] nParents, int nNrOfParents) {
+    int nCardinality = 1;
+    for (int iParent = 0; iParent < nNrOfParents; iParent++) {
+      nCardinality *= m_nNumValues[nParents[iParent]];
+    }
+    int[] nCounts = new int[nCardinality * m_nNumValues[nNode]];
+    if (m_nByteColumns != null) {
+      countBytes(nCounts, nNode, nParents, nNrOfParents);
+    } else {
+      countShorts(nCounts, nNode, nParents, nNrOfParents);
+    }
+    return nCounts;
+  } // getCounts
+
+  /**
+   * count using byte columns. Parent configurations are built up one parent at
+   * a time so every pass streams over a single column.
+   *
+   * @param nCounts array to add counts to
+   * @param nNode node to count values for
+   * @param nParents parents of the node
+   * @param nNrOfParents number of parents in nParents to use
+   */
+  private void countBytes(int[] nCounts, int nNode, int[] nParents,
+    int nNrOfParents) {
+    int numValues = m_nNumValues[nNode];
+    byte[] nNodeValues = m_nByteColumns[nNode];
+
+    if (nNrOfParents == 0) {
+      if (m_nWeights == null) {
+        for (int iRow = 0; iRow < m_nNrOfRows; iRow++) {
+          nCounts[nNodeValues[iRow] & 0xFF]++;
+        }
+      } else {
+        for (int iRow = 0; iRow < m_nNrOfRows; iRow++) {
+          nCounts[nNodeValues[iRow] & 0xFF] += m_nWeights[iRow];
+        }
+      }
+      return;
+    }
+
+    int[] nConfigurations = m_Configurations.get();
+    byte[] nParentValues = m_nByteColumns[nParents[0]];
+    for (int iRow = 0; iRow < m_nNrOfRows; iRow++) {
+      nConfigurations[iRow] = nParentValues[iRow] & 0xFF;
+    }
+    for (int iParent = 1; iParent < nNrOfParents; iParent++) {
+      int nParentNumValues = m_nNumValues[nParents[iParent]];
+      nParentValues = m_nByteColumns[nParents[iParent]];
+      for (int iRow = 0; iRow < m_nNrOfRows; iRow++) {
+        nConfigurations[iRow] = nConfigurations[iRow] * nParentNumValues
+          + (nParentValues[iRow] & 0xFF);
+      }
+    }
+    if (m_nWeights == null) {
+      for (int iRow = 0; iRow < m_nNrOfRows; iRow++) {
+        nCounts[nConfigurations[iRow] * numValues + (nNodeValues[iRow] & 0xFF)]++;
+      }
+    } else {
+      for (int iRow = 0; iRow < m_nNrOfRows; iRow++) {
+        nCounts[nConfigurations[iRow] * numValues + (nNodeValues[iRow] & 0xFF)] += m_nWeights[iRow];
+      }
+    }
+  } // countBytes
+
+  /**
+   * count using short columns, see countBytes
+   *
+   * @param nCounts array to add counts to
+   * @param nNode node to count values for
+   * @param nParents parents of the node
+   * @param nNrOfParents number of parents in nParents to use
+   */
+  private void countShorts(int[] nCounts, int nNode, int[] nParents,
+    int nNrOfParents) {
+    int numValues = m_nNumValues[nNode];
+    short[] nNodeValues = m_nShortColumns[nNode];
+
+    if (nNrOfParents == 0) {
+      if (m_nWeights == null) {
+        for (int iRow = 0; iRow < m_nNrOfRows; iRow++) {
+          nCounts[nNodeValues[iRow] & 0xFFFF]++;
+        }
+      } else {
+        for (int iRow = 0; iRow < m_nNrOfRows; iRow++) {
+          nCounts[nNodeValues[iRow] & 0xFFFF] += m_nWeights[iRow];
+        }
+      }
+      return;
+    }
+
+    int[] nConfigurations = m_Configurations.get();
+    short[] nParentValues = m_nShortColumns[nParents[0]];
+    for (int iRow = 0; iRow < m_nNrOfRows; iRow++) {
+      nConfigurations[iRow] = nParentValues[iRow] & 0xFFFF;
+    }
+    for (int iParent = 1; iParent < nNrOfParents; iParent++) {
+      int nParentNumValues = m_nNumValues[nParents[iParent]];
+      nParentValues = m_nShortColumns[nParents[iParent]];
+      for (int iRow = 0; iRow < m_nNrOfRows; iRow++) {
+        nConfigurations[iRow] = nConfigurations[iRow] * nParentNumValues
+          + (nParentValues[iRow] & 0xFFFF);
+      }
+    }
+    if (m_nWeights == null) {
+      for (int iRow = 0; iRow < m_nNrOfRows; iRow++) {
+        nCounts[nConfigurations[iRow] * numValues + (nNodeValues[iRow] & 0xFFFF)]++;
+      }
+    } else {
+      for (int iRow = 0; iRow < m_nNrOfRows; iRow++) {
+        nCounts[nConfigurations[iRow] * numValues + (nNodeValues[iRow] & 0xFFFF)] += m_nWeights[iRow];
+      }
+    }
+  } // countShorts
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+} // class CountIndex
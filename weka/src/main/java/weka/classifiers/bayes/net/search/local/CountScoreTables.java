@@ -0,0 +1,152 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CountScoreTables.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Statistics;
+
+/**
+ * Lookup tables for the terms of a local score that only depend on a single
+ * frequency count. Counts are integers, so lnGamma(alpha + count) is computed
+ * once per count and pseudo count instead of once per cell of every count
+ * table that is scored. Table entries are exactly the values
+ * Statistics.lnGamma returns, so scores do not change.
+ * <p/>
+ * Tables only cover counts up to MAX_TABLE_LENGTH, larger counts are rare in
+ * a count table and are computed directly. A table is only created for a
+ * pseudo count that is asked for more than once, since BDeu uses a different
+ * pseudo count for every combination of node and parent cardinality.
+ * <p/>
+ * Tables are immutable once created, so an instance can be shared by several
+ * search algorithms scoring the same data set from different threads.
+ *
+ * @version $Revision$
+ */
+public class CountScoreTables implements RevisionHandler {
+
+  /** max number of lnGamma tables kept, one per pseudo count **/
+  static final int MAX_NR_OF_TABLES = 64;
+
+  /** max number of entries of a table **/
+  static final int MAX_TABLE_LENGTH = 1 << 16;
+
+  /** max number of pseudo counts remembered while waiting for a repeat **/
+  static final int MAX_NR_OF_REQUESTS = 1024;
+
+  /** largest count the tables hold an entry for **/
+  protected final int m_nMaxCount;
+
+  /** lnGamma(alpha + count) for every count, per pseudo count alpha **/
+  protected final ConcurrentHashMap<Double, double[]> m_LnGammaTables =
+    new ConcurrentHashMap<Double, double[]>();
+
+  /** pseudo counts asked for once, that have no table yet **/
+  protected final ConcurrentHashMap<Double, Boolean> m_Requests =
+    new ConcurrentHashMap<Double, Boolean>();
+
+  /**
+   * c'tor
+   *
+   * @param nMaxCount largest count that occurs, usually the number of
+   *          instances. Tables hold no more than MAX_TABLE_LENGTH entries.
+   */
+  public CountScoreTables(int nMaxCount) {
+    m_nMaxCount = nMaxCount;
+  } // c'tor
+
+  /**
+   * get the largest count that occurs in the counts these tables are for
+   *
+   * @return largest count
+   */
+  public int getMaxCount() {
+    return m_nMaxCount;
+  } // getMaxCount
+
+  /**
+   * get the table of lnGamma(alpha + count), to be read through lnGamma.
+   * Entries for which alpha + count is 0 are 0, so they can be summed without
+   * a test.
+   *
+   * @param fAlpha pseudo count
+   * @return table indexed by count, not to be modified, or null if the pseudo
+   *         count is asked for the first time or too many tables were created
+   *         already
+   */
+  public double[] getLnGammaTable(double fAlpha) {
+    Double key = fAlpha;
+    double[] fTable = m_LnGammaTables.get(key);
+    if (fTable == null) {
+      if (m_LnGammaTables.size() >= MAX_NR_OF_TABLES) {
+        return null;
+      }
+      if (m_Requests.putIfAbsent(key, Boolean.TRUE) == null) {
+        if (m_Requests.size() > MAX_NR_OF_REQUESTS) {
+          m_Requests.remove(key);
+        }
+        return null;
+      }
+      fTable = new double[Math.min(m_nMaxCount + 1, MAX_TABLE_LENGTH)];
+      for (int nCount = 0; nCount < fTable.length; nCount++) {
+        if (fAlpha + nCount != 0) {
+          fTable[nCount] = Statistics.lnGamma(fAlpha + nCount);
+        }
+      }
+      double[] fOther = m_LnGammaTables.putIfAbsent(key, fTable);
+      if (fOther != null) {
+        fTable = fOther;
+      } else {
+        m_Requests.remove(key);
+      }
+    }
+    return fTable;
+  } // getLnGammaTable
+
+  /**
+   * get lnGamma(alpha + count) from a table, or compute it if the count is
+   * beyond the end of the table
+   *
+   * @param fTable table of fAlpha as returned by getLnGammaTable
+   * @param fAlpha pseudo count
+   * @param nCount count
+   * @return lnGamma(fAlpha + nCount), 0 if fAlpha + nCount is 0
+   */
+  public static double lnGamma(double[] fTable, double fAlpha, int nCount) {
+    if (nCount < fTable.length) {
+      return fTable[nCount];
+    }
+    return fAlpha + nCount != 0 ? Statistics.lnGamma(fAlpha + nCount) : 0;
+  } // lnGamma
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+} // class CountScoreTables
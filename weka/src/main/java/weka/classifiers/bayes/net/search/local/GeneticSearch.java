@@ -21,13 +21,17 @@
 
 package weka.classifiers.bayes.net.search.local;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import weka.classifiers.bayes.BayesNet;
 import weka.classifiers.bayes.net.ParentSet;
+import weka.classifiers.bayes.net.search.SearchTaskRunner;
 import weka.core.Instances;
 import weka.core.Option;
 import weka.core.RevisionHandler;
@@ -131,11 +135,8 @@ public class GeneticSearch extends LocalScoreSearchAlgorithm {
   /** random number generator **/
   Random m_random = null;
 
-  /**
-   * used in BayesNetRepresentation for efficiently determining whether a number
-   * is square
-   */
-  boolean[] g_bIsSquare;
+  /** runs the tasks of the running search, null if offspring are scored serially **/
+  transient SearchTaskRunner<BayesNetRepresentation> m_TaskRunner;
 
   class BayesNetRepresentation implements RevisionHandler {
 
@@ -143,14 +144,23 @@ public class GeneticSearch extends LocalScoreSearchAlgorithm {
     int m_nNodes = 0;
 
     /**
-     * bit representation of parent sets m_bits[iTail + iHead * m_nNodes]
+     * packed bit representation of parent sets, bit iTail + iHead * m_nNodes
      * represents arc iTail->iHead
      */
-    boolean[] m_bits;
+    long[] m_bits;
 
     /** score of represented network structure **/
     double m_fScore = 0.0f;
 
+    /** scores of the parent sets of all nodes **/
+    double[] m_fNodeScores;
+
+    /**
+     * nodes whose parent set changed since their score was calculated, null if
+     * the scores are up to date
+     */
+    boolean[] m_bChanged;
+
     /**
      * return score of represented network structure
      * 
@@ -171,81 +181,124 @@ public class GeneticSearch extends LocalScoreSearchAlgorithm {
 
     /**
      * initialize with a random structure by randomly placing m_nNodes arcs.
+     * The score is calculated by calcScore().
      */
     public void randomInit() {
       do {
-        m_bits = new boolean[m_nNodes * m_nNodes];
+        m_bits = new long[(m_nNodes * m_nNodes + 63) >>> 6];
         for (int i = 0; i < m_nNodes; i++) {
           int iPos;
           do {
             iPos = m_random.nextInt(m_nNodes * m_nNodes);
           } while (isSquare(iPos));
-          m_bits[iPos] = true;
+          m_bits[iPos >>> 6] |= 1L << iPos;
         }
       } while (hasCycles());
-      calcScore();
+      m_fNodeScores = new double[m_nNodes];
+      m_bChanged = new boolean[m_nNodes];
+      Arrays.fill(m_bChanged, true);
     }
 
     /**
-     * calculate score of current network representation As a side effect, the
-     * parent sets are set
+     * @param iBit index of a bit
+     * @return whether the bit is set
+     */
+    boolean getBit(int iBit) {
+      return (m_bits[iBit >>> 6] & (1L << iBit)) != 0;
+    } // getBit
+
+    /**
+     * calculate score of current network representation, rescoring only the
+     * nodes whose parent set changed. Only reads shared state, so
+     * representations can be scored in parallel.
      */
     void calcScore() {
-      // clear current network
-      for (int iNode = 0; iNode < m_nNodes; iNode++) {
-        ParentSet parentSet = m_BayesNet.getParentSet(iNode);
-        while (parentSet.getNrOfParents() > 0) {
-          parentSet.deleteLastParent(m_BayesNet.m_Instances);
-        }
+      if (m_bChanged == null) {
+        return;
       }
-      // insert arrows
+      int[] nParents = new int[m_nNodes];
       for (int iNode = 0; iNode < m_nNodes; iNode++) {
-        ParentSet parentSet = m_BayesNet.getParentSet(iNode);
-        for (int iNode2 = 0; iNode2 < m_nNodes; iNode2++) {
-          if (m_bits[iNode2 + iNode * m_nNodes]) {
-            parentSet.addParent(iNode2, m_BayesNet.m_Instances);
+        if (m_bChanged[iNode]) {
+          int nNrOfParents = 0;
+          for (int iNode2 = 0; iNode2 < m_nNodes; iNode2++) {
+            if (getBit(iNode2 + iNode * m_nNodes)) {
+              nParents[nNrOfParents++] = iNode2;
+            }
           }
+          m_fNodeScores[iNode] = calcNodeScoreOfParents(iNode, nParents,
+            nNrOfParents);
         }
       }
-      // calc score
+      m_bChanged = null;
+      // sum in node order, so the score does not depend on what changed
       m_fScore = 0.0;
       for (int iNode = 0; iNode < m_nNodes; iNode++) {
-        m_fScore += calcNodeScore(iNode);
+        m_fScore += m_fNodeScores[iNode];
       }
     } // calcScore
 
     /**
-     * check whether there are cycles in the network
+     * set the parent sets of a network to the represented network structure
      * 
-     * @return true if a cycle is found, false otherwise
+     * @param bayesNet network to set the parent sets of
      */
-    public boolean hasCycles() {
-      // check for cycles
-      boolean[] bDone = new boolean[m_nNodes];
+    void setParentSets(BayesNet bayesNet) {
       for (int iNode = 0; iNode < m_nNodes; iNode++) {
+        ParentSet parentSet = bayesNet.getParentSet(iNode);
+        while (parentSet.getNrOfParents() > 0) {
+          parentSet.deleteLastParent(bayesNet.m_Instances);
+        }
+        for (int iNode2 = 0; iNode2 < m_nNodes; iNode2++) {
+          if (getBit(iNode2 + iNode * m_nNodes)) {
+            parentSet.addParent(iNode2, bayesNet.m_Instances);
+          }
+        }
+      }
+    } // setParentSets
 
-        // find a node for which all parents are 'done'
-        boolean bFound = false;
+    /**
+     * mark the node with a parent set that contains the given bit as changed
+     * 
+     * @param iBit index of a bit
+     */
+    void markChanged(int iBit) {
+      if (m_bChanged == null) {
+        m_bChanged = new boolean[m_nNodes];
+      }
+      m_bChanged[iBit / m_nNodes] = true;
+    } // markChanged
 
-        for (int iNode2 = 0; !bFound && iNode2 < m_nNodes; iNode2++) {
-          if (!bDone[iNode2]) {
-            boolean bHasNoParents = true;
-            for (int iParent = 0; iParent < m_nNodes; iParent++) {
-              if (m_bits[iParent + iNode2 * m_nNodes] && !bDone[iParent]) {
-                bHasNoParents = false;
-              }
-            }
-            if (bHasNoParents) {
-              bDone[iNode2] = true;
-              bFound = true;
-            }
+    /**
+     * check whether there are cycles in the network, by repeatedly removing
+     * nodes without parents
+     * 
+     * @return true if a cycle is found, false otherwise
+     */
+    public boolean hasCycles() {
+      int[] nNrOfParents = new int[m_nNodes];
+      int[] nOrphans = new int[m_nNodes];
+      int nNrOfOrphans = 0;
+      for (int iNode = 0; iNode < m_nNodes; iNode++) {
+        for (int iParent = 0; iParent < m_nNodes; iParent++) {
+          if (getBit(iParent + iNode * m_nNodes)) {
+            nNrOfParents[iNode]++;
           }
         }
-        if (!bFound) {
-          return true;
+        if (nNrOfParents[iNode] == 0) {
+          nOrphans[nNrOfOrphans++] = iNode;
         }
       }
-      return false;
+      int nDone = 0;
+      while (nDone < nNrOfOrphans) {
+        int iParent = nOrphans[nDone++];
+        for (int iNode = 0; iNode < m_nNodes; iNode++) {
+          if (getBit(iParent + iNode * m_nNodes)
+            && --nNrOfParents[iNode] == 0) {
+            nOrphans[nNrOfOrphans++] = iNode;
+          }
+        }
+      }
+      return nNrOfOrphans < m_nNodes;
     } // hasCycles
 
     /**
@@ -255,73 +308,110 @@ public class GeneticSearch extends LocalScoreSearchAlgorithm {
      */
     BayesNetRepresentation copy() {
       BayesNetRepresentation b = new BayesNetRepresentation(m_nNodes);
-      b.m_bits = new boolean[m_bits.length];
-      for (int i = 0; i < m_nNodes * m_nNodes; i++) {
-        b.m_bits[i] = m_bits[i];
-      }
+      b.m_bits = m_bits.clone();
       b.m_fScore = m_fScore;
+      b.m_fNodeScores = m_fNodeScores.clone();
+      if (m_bChanged != null) {
+        b.m_bChanged = m_bChanged.clone();
+      }
       return b;
     } // copy
 
     /**
-     * Apply mutation operation to BayesNet Calculate score and as a side effect
-     * sets BayesNet parent sets.
+     * Apply mutation operation to BayesNet. The score is calculated by
+     * calcScore().
      */
     void mutate() {
-      // flip a bit
-      do {
+      // flip bits until the network is acyclic again. Once a flip creates a
+      // cycle this random walk can take very long, so after m_nNodes *
+      // m_nNodes flips the walk starts over from the original network and
+      // flips that create a cycle are flipped back. Deleting an arc never
+      // creates a cycle, so there always is a bit that can be flipped
+      long[] bits = m_bits.clone();
+      int nNrOfFlips = 0;
+      boolean bUndo = false;
+      while (true) {
+        if (!bUndo && nNrOfFlips++ == m_nNodes * m_nNodes) {
+          System.arraycopy(bits, 0, m_bits, 0, bits.length);
+          bUndo = true;
+        }
         int iBit;
         do {
           iBit = m_random.nextInt(m_nNodes * m_nNodes);
         } while (isSquare(iBit));
 
-        m_bits[iBit] = !m_bits[iBit];
-      } while (hasCycles());
-
-      calcScore();
+        m_bits[iBit >>> 6] ^= 1L << iBit;
+        if (!hasCycles()) {
+          break;
+        }
+        if (bUndo) {
+          m_bits[iBit >>> 6] ^= 1L << iBit;
+        }
+      }
+      // rescore the nodes with a different parent set
+      for (int iBit = 0; iBit < m_nNodes * m_nNodes; iBit++) {
+        if (((bits[iBit >>> 6] ^ m_bits[iBit >>> 6]) & (1L << iBit)) != 0) {
+          markChanged(iBit);
+        }
+      }
     } // mutate
 
     /**
-     * Apply cross-over operation to BayesNet Calculate score and as a side
-     * effect sets BayesNet parent sets.
+     * Apply cross-over operation to BayesNet. The score is calculated by
+     * calcScore().
      * 
      * @param other BayesNetRepresentation to cross over with
      */
     void crossOver(BayesNetRepresentation other) {
-      boolean[] bits = new boolean[m_bits.length];
-      for (int i = 0; i < m_bits.length; i++) {
-        bits[i] = m_bits[i];
-      }
-      int iCrossOverPoint = m_bits.length;
+      long[] bits = m_bits.clone();
+      int nNrOfBits = m_nNodes * m_nNodes;
+      int iCrossOverPoint = nNrOfBits;
       do {
         // restore to original state
-        for (int i = iCrossOverPoint; i < m_bits.length; i++) {
-          m_bits[i] = bits[i];
-        }
+        copyBits(bits, m_bits, iCrossOverPoint);
         // take all bits from cross-over points onwards
-        iCrossOverPoint = m_random.nextInt(m_bits.length);
-        for (int i = iCrossOverPoint; i < m_bits.length; i++) {
-          m_bits[i] = other.m_bits[i];
-        }
+        iCrossOverPoint = m_random.nextInt(nNrOfBits);
+        copyBits(other.m_bits, m_bits, iCrossOverPoint);
       } while (hasCycles());
-      calcScore();
+      // rescore the nodes whose parents come from the other network
+      for (int iNode = iCrossOverPoint / m_nNodes; iNode < m_nNodes; iNode++) {
+        for (int iBit = Math.max(iCrossOverPoint, iNode * m_nNodes); iBit < (iNode + 1)
+          * m_nNodes; iBit++) {
+          if (((bits[iBit >>> 6] ^ m_bits[iBit >>> 6]) & (1L << iBit)) != 0) {
+            markChanged(iBit);
+            break;
+          }
+        }
+      }
     } // crossOver
 
     /**
-     * check if number is square and initialize g_bIsSquare structure if
-     * necessary
+     * copy bits from a bit index onwards
+     * 
+     * @param source bits to copy from
+     * @param dest bits to copy to
+     * @param iFirstBit first bit to copy
+     */
+    void copyBits(long[] source, long[] dest, int iFirstBit) {
+      int iWord = iFirstBit >>> 6;
+      if (iWord >= dest.length) {
+        return;
+      }
+      long nMask = -1L << iFirstBit;
+      dest[iWord] = (dest[iWord] & ~nMask) | (source[iWord] & nMask);
+      System.arraycopy(source, iWord + 1, dest, iWord + 1, dest.length
+        - iWord - 1);
+    } // copyBits
+
+    /**
+     * check if bit is on the diagonal, that is, represents an arc from a node
+     * to itself
      * 
      * @param nNum number to check (should be below m_nNodes * m_nNodes)
      * @return true if number is square
      */
     boolean isSquare(int nNum) {
-      if (g_bIsSquare == null || g_bIsSquare.length < nNum) {
-        g_bIsSquare = new boolean[m_nNodes * m_nNodes];
-        for (int i = 0; i < m_nNodes; i++) {
-          g_bIsSquare[i * m_nNodes + i] = true;
-        }
-      }
-      return g_bIsSquare[nNum];
+      return nNum % (m_nNodes + 1) == 0;
     } // isSquare
 
     /**
@@ -335,6 +425,31 @@ public class GeneticSearch extends LocalScoreSearchAlgorithm {
     }
   } // class BayesNetRepresentation
 
+  /**
+   * refineStructure determines the network structure/graph of the network,
+   * scoring offspring on the execution slots of the search
+   * 
+   * @param bayesNet the network
+   * @param instances the data to use
+   * @throws Exception if something goes wrong
+   */
+  @Override
+  public void refineStructure(BayesNet bayesNet, Instances instances)
+    throws Exception {
+    int nNumSlots = getNumSlotsToUse();
+    if (nNumSlots > 1) {
+      m_TaskRunner = createTaskRunner(nNumSlots);
+    }
+    try {
+      super.refineStructure(bayesNet, instances);
+    } finally {
+      if (m_TaskRunner != null) {
+        m_TaskRunner.close();
+        m_TaskRunner = null;
+      }
+    }
+  } // refineStructure
+
   /**
    * search determines the network structure/graph of the network with a genetic
    * search algorithm.
@@ -378,8 +493,11 @@ public class GeneticSearch extends LocalScoreSearchAlgorithm {
     for (int i = 0; i < getPopulationSize(); i++) {
       population[i] = new BayesNetRepresentation(instances.numAttributes());
       population[i].randomInit();
+    }
+    calcScores(population);
+    for (int i = 0; i < getPopulationSize(); i++) {
       if (population[i].getScore() > fBestScore) {
-        copyParentSets(bestBayesNet, bayesNet);
+        population[i].setParentSets(bestBayesNet);
         fBestScore = population[i].getScore();
 
       }
@@ -404,9 +522,13 @@ public class GeneticSearch extends LocalScoreSearchAlgorithm {
           descendantPopulation[i].crossOver(population[m_random
             .nextInt(getPopulationSize())]);
         }
-
+      }
+      // descendants only depend on the random number generator, so they are
+      // created first and scored together
+      calcScores(descendantPopulation);
+      for (int i = 0; i < getDescendantPopulationSize(); i++) {
         if (descendantPopulation[i].getScore() > fBestScore) {
-          copyParentSets(bestBayesNet, bayesNet);
+          descendantPopulation[i].setParentSets(bestBayesNet);
           fBestScore = descendantPopulation[i].getScore();
         }
       }
@@ -451,9 +573,44 @@ public class GeneticSearch extends LocalScoreSearchAlgorithm {
 
     // free up memory
     bestBayesNet = null;
-    g_bIsSquare = null;
   } // search
 
+  /**
+   * calculate the scores of a population, on the execution slots of the
+   * search if there is more than one
+   * 
+   * @param population network structures to score
+   * @throws Exception if a score can not be calculated
+   */
+  void calcScores(BayesNetRepresentation[] population) throws Exception {
+    if (m_TaskRunner == null) {
+      for (BayesNetRepresentation representation : population) {
+        representation.calcScore();
+      }
+      return;
+    }
+    int nNrOfTasks = 0;
+    for (final BayesNetRepresentation representation : population) {
+      if (representation.m_bChanged != null) {
+        m_TaskRunner.submit(new Callable<BayesNetRepresentation>() {
+          @Override
+          public BayesNetRepresentation call() {
+            representation.calcScore();
+            return representation;
+          }
+        });
+        nNrOfTasks++;
+      }
+    }
+    for (int iTask = 0; iTask < nNrOfTasks; iTask++) {
+      try {
+        m_TaskRunner.take().get();
+      } catch (ExecutionException e) {
+        throw new Exception("Could not score network structure", e.getCause());
+      }
+    }
+  } // calcScores
+
   /**
    * copyParentSets copies parent sets of source to dest BayesNet
    * 
@@ -491,7 +648,7 @@ public class GeneticSearch extends LocalScoreSearchAlgorithm {
    */
   @Override
   public Enumeration<Option> listOptions() {
-    Vector<Option> newVector = new Vector<Option>(7);
+    Vector<Option> newVector = new Vector<Option>(8);
 
     newVector
       .addElement(new Option("\tPopulation size", "L", 1, "-L <integer>"));
@@ -573,6 +730,15 @@ public class GeneticSearch extends LocalScoreSearchAlgorithm {
    *  Score type (BAYES, BDeu, MDL, ENTROPY and AIC)
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads the search runs its tasks on, including
+   *  the thread running the search. 0 means the number of
+   *  available processors. Supported by hill climbing, tabu search,
+   *  simulated annealing, genetic search, ICS and ant colony
+   *  optimization. (default 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -22,18 +22,24 @@
 package weka.classifiers.bayes.net.search.local;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Vector;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import weka.classifiers.bayes.BayesNet;
 import weka.classifiers.bayes.net.ParentSet;
+import weka.classifiers.bayes.net.search.SearchTaskRunner;
 import weka.core.Instances;
 import weka.core.Option;
 import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
 import weka.core.Utils;
+import weka.gui.ProgrammaticProperty;
 
 /**
  * <!-- globalinfo-start --> This Bayes Network learning algorithm uses a hill
@@ -76,6 +82,15 @@ import weka.core.Utils;
  *  Score type (BAYES, BDeu, MDL, ENTROPY and AIC)
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads the search runs its tasks on, including
+ *  the thread running the search. 0 means the number of
+ *  available processors. Supported by hill climbing, tabu search,
+ *  simulated annealing, genetic search, ICS and ant colony
+ *  optimization. (default 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Remco Bouckaert (rrb@xm.co.nz)
@@ -238,6 +253,90 @@ public class HillClimber extends LocalScoreSearchAlgorithm implements Runnable{
   /** use the arc reversal operator **/
   boolean m_bUseArcReversal = false;
 
+  /**
+   * max number of arcs a search adds, deletes or reverses, 0 for no limit.
+   * A limit keeps refining a structure cheap
+   **/
+  int m_nMaxNrOfSteps = 0;
+
+  /** runs the tasks of the running search, null if moves are evaluated serially **/
+  transient SearchTaskRunner<Operation> m_TaskRunner;
+
+  /** number of tasks the nodes are split over when moves are evaluated in parallel **/
+  transient int m_nNrOfTasks;
+
+  /**
+   * refineStructure determines the network structure/graph of the network,
+   * evaluating moves on the execution slots of the search
+   * 
+   * @param bayesNet the network
+   * @param instances the data to use
+   * @throws Exception if something goes wrong
+   */
+  @Override
+  public void refineStructure(BayesNet bayesNet, Instances instances)
+    throws Exception {
+    int nNumSlots = getNumSlotsToUse();
+    if (nNumSlots > 1) {
+      m_TaskRunner = createTaskRunner(nNumSlots);
+      m_nNrOfTasks = 4 * nNumSlots;
+    }
+    try {
+      super.refineStructure(bayesNet, instances);
+    } finally {
+      if (m_TaskRunner != null) {
+        m_TaskRunner.close();
+        m_TaskRunner = null;
+      }
+    }
+  } // refineStructure
+
+  /**
+   * run tasks on the execution slots of the search and wait until all are done
+   * 
+   * @param tasks tasks to run
+   * @return results of the tasks, in the order of the tasks
+   */
+  List<Operation> runTasks(List<Callable<Operation>> tasks) {
+    List<Future<Operation>> futures = new ArrayList<Future<Operation>>(
+      tasks.size());
+    for (Callable<Operation> task : tasks) {
+      futures.add(m_TaskRunner.submit(task));
+    }
+    List<Operation> results = new ArrayList<Operation>(tasks.size());
+    try {
+      for (int iTask = 0; iTask < tasks.size(); iTask++) {
+        m_TaskRunner.take();
+      }
+      for (Future<Operation> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while evaluating moves", e);
+    } catch (ExecutionException e) {
+      // tasks only throw unchecked exceptions
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw (RuntimeException) e.getCause();
+    }
+    return results;
+  } // runTasks
+
+  /**
+   * get the first node of a task when the nodes are split over the tasks of a
+   * parallel evaluation
+   * 
+   * @param iTask task, the number of tasks for the end of the last task
+   * @param nNrOfTasks number of tasks
+   * @param nNrOfAtts number of nodes
+   * @return first node of the task
+   */
+  static int getFirstNodeOfTask(int iTask, int nNrOfTasks, int nNrOfAtts) {
+    return (int) ((long) iTask * nNrOfAtts / nNrOfTasks);
+  } // getFirstNodeOfTask
+
   /**
    * search determines the network structure/graph of the network with the Taby
    * algorithm.
@@ -252,9 +351,13 @@ public class HillClimber extends LocalScoreSearchAlgorithm implements Runnable{
     initCache(bayesNet, instances);
 
     // go do the search
+    int nNrOfSteps = 0;
     Operation oOperation = getOptimalOperation(bayesNet, instances);
     while ((oOperation != null) && (oOperation.m_fDeltaScore > 0)) {
       performOperation(bayesNet, instances, oOperation);
+      if (m_nMaxNrOfSteps > 0 && ++nNrOfSteps >= m_nMaxNrOfSteps) {
+        break;
+      }
       oOperation = getOptimalOperation(bayesNet, instances);
     }
 
@@ -269,34 +372,60 @@ public class HillClimber extends LocalScoreSearchAlgorithm implements Runnable{
    * @param instances data set to learn from
    * @throws Exception if something goes wrong
    */
-  void initCache(BayesNet bayesNet, Instances instances) throws Exception {
+  void initCache(final BayesNet bayesNet, Instances instances)
+    throws Exception {
 
-    // determine base scores
-    double[] fBaseScores = new double[instances.numAttributes()];
-    int nNrOfAtts = instances.numAttributes();
+    final int nNrOfAtts = instances.numAttributes();
 
     m_Cache = new Cache(nNrOfAtts);
 
-    for (int iAttribute = 0; iAttribute < nNrOfAtts; iAttribute++) {
-      updateCache(iAttribute, nNrOfAtts, bayesNet.getParentSet(iAttribute));
+    if (m_TaskRunner == null) {
+      initCache(bayesNet, nNrOfAtts, 0, nNrOfAtts);
+      return;
     }
 
-    for (int iAttribute = 0; iAttribute < nNrOfAtts; iAttribute++) {
-      fBaseScores[iAttribute] = calcNodeScore(iAttribute);
+    // every task fills the cache entries of arcs heading towards its nodes
+    List<Callable<Operation>> tasks = new ArrayList<Callable<Operation>>();
+    int nNrOfTasks = Math.min(m_nNrOfTasks, nNrOfAtts);
+    for (int iTask = 0; iTask < nNrOfTasks; iTask++) {
+      final int iFirstHead = getFirstNodeOfTask(iTask, nNrOfTasks, nNrOfAtts);
+      final int iEndHead = getFirstNodeOfTask(iTask + 1, nNrOfTasks, nNrOfAtts);
+      tasks.add(new Callable<Operation>() {
+        @Override
+        public Operation call() {
+          initCache(bayesNet, nNrOfAtts, iFirstHead, iEndHead);
+          return null;
+        }
+      });
     }
+    runTasks(tasks);
+  } // initCache
+
+  /**
+   * initializes the cache entries of arcs heading towards a range of nodes
+   * 
+   * @param bayesNet Bayes network to be learned
+   * @param nNrOfAtts number of nodes/attributes in data set
+   * @param iFirstHead first node of the range
+   * @param iEndHead node after the last node of the range
+   */
+  void initCache(BayesNet bayesNet, int nNrOfAtts, int iFirstHead,
+    int iEndHead) {
+    for (int iAttributeHead = iFirstHead; iAttributeHead < iEndHead; iAttributeHead++) {
+      ParentSet parentSet = bayesNet.getParentSet(iAttributeHead);
+      double fBaseScore = calcNodeScore(iAttributeHead);
+      updateCache(iAttributeHead, parentSet, fBaseScore, 0, nNrOfAtts);
 
-    for (int iAttributeHead = 0; iAttributeHead < nNrOfAtts; iAttributeHead++) {
       for (int iAttributeTail = 0; iAttributeTail < nNrOfAtts; iAttributeTail++) {
         if (iAttributeHead != iAttributeTail) {
           Operation oOperation = new Operation(iAttributeTail, iAttributeHead,
             Operation.OPERATION_ADD);
           m_Cache.put(oOperation,
             calcScoreWithExtraParent(iAttributeHead, iAttributeTail)
-              - fBaseScores[iAttributeHead]);
+              - fBaseScore);
         }
       }
     }
-
   } // initCache
 
   /**
@@ -420,15 +549,55 @@ public class HillClimber extends LocalScoreSearchAlgorithm implements Runnable{
    *         allowed (this can happen if any arc addition introduces a cycle, or
    *         all parent sets are filled up to the maximum nr of parents).
    */
+  Operation findBestArcToAdd(final BayesNet bayesNet,
+    final Instances instances, final Operation oBestOperation) {
+    final long[][] nDescendants = getDescendants(bayesNet);
+    int nNrOfAtts = instances.numAttributes();
+    if (m_TaskRunner == null || nDescendants == null) {
+      return findBestArcToAdd(bayesNet, instances, oBestOperation,
+        nDescendants, 0, nNrOfAtts);
+    }
+    List<Callable<Operation>> tasks = new ArrayList<Callable<Operation>>();
+    int nNrOfTasks = Math.min(m_nNrOfTasks, nNrOfAtts);
+    for (int iTask = 0; iTask < nNrOfTasks; iTask++) {
+      final int iFirstHead = getFirstNodeOfTask(iTask, nNrOfTasks, nNrOfAtts);
+      final int iEndHead = getFirstNodeOfTask(iTask + 1, nNrOfTasks, nNrOfAtts);
+      tasks.add(new Callable<Operation>() {
+        @Override
+        public Operation call() {
+          return findBestArcToAdd(bayesNet, instances, oBestOperation,
+            nDescendants, iFirstHead, iEndHead);
+        }
+      });
+    }
+    return getBestOperation(oBestOperation, runTasks(tasks));
+  } // findBestArcToAdd
+
+  /**
+   * find best (or least bad) arc addition operation for arcs heading towards
+   * a range of nodes
+   * 
+   * @param bayesNet Bayes network to add arc to
+   * @param instances data set
+   * @param oBestOperation best operation so far, not modified
+   * @param nDescendants descendants of every node as returned by
+   *          getDescendants, null to check for cycles with addArcMakesSense
+   * @param iFirstHead first node of the range
+   * @param iEndHead node after the last node of the range
+   * @return Operation containing best arc to add, or oBestOperation if there
+   *         is no better one
+   */
   Operation findBestArcToAdd(BayesNet bayesNet, Instances instances,
-    Operation oBestOperation) {
+    Operation oBestOperation, long[][] nDescendants, int iFirstHead,
+    int iEndHead) {
     int nNrOfAtts = instances.numAttributes();
     // find best arc to add
-    for (int iAttributeHead = 0; iAttributeHead < nNrOfAtts; iAttributeHead++) {
+    for (int iAttributeHead = iFirstHead; iAttributeHead < iEndHead; iAttributeHead++) {
       if (bayesNet.getParentSet(iAttributeHead).getNrOfParents() < m_nMaxNrOfParents) {
         for (int iAttributeTail = 0; iAttributeTail < nNrOfAtts; iAttributeTail++) {
-          if (addArcMakesSense(bayesNet, instances, iAttributeHead,
-            iAttributeTail)) {
+          if (nDescendants != null ? addArcMakesSense(bayesNet, nDescendants,
+            iAttributeHead, iAttributeTail) : addArcMakesSense(bayesNet,
+            instances, iAttributeHead, iAttributeTail)) {
             Operation oOperation = new Operation(iAttributeTail,
               iAttributeHead, Operation.OPERATION_ADD);
             if (m_Cache.get(oOperation) > oBestOperation.m_fDeltaScore) {
@@ -483,16 +652,57 @@ public class HillClimber extends LocalScoreSearchAlgorithm implements Runnable{
    *         allowed (happens if there is no arc in the network yet, or when any
    *         such reversal introduces a cycle).
    */
-  Operation findBestArcToReverse(BayesNet bayesNet, Instances instances,
-    Operation oBestOperation) {
+  Operation findBestArcToReverse(final BayesNet bayesNet,
+    final Instances instances, final Operation oBestOperation) {
+    final long[][] nDescendants = getDescendants(bayesNet);
     int nNrOfAtts = instances.numAttributes();
+    if (m_TaskRunner == null || nDescendants == null) {
+      return findBestArcToReverse(bayesNet, instances, oBestOperation,
+        nDescendants, 0, nNrOfAtts);
+    }
+    List<Callable<Operation>> tasks = new ArrayList<Callable<Operation>>();
+    int nNrOfTasks = Math.min(m_nNrOfTasks, nNrOfAtts);
+    for (int iTask = 0; iTask < nNrOfTasks; iTask++) {
+      final int iFirstNode = getFirstNodeOfTask(iTask, nNrOfTasks, nNrOfAtts);
+      final int iEndNode = getFirstNodeOfTask(iTask + 1, nNrOfTasks, nNrOfAtts);
+      tasks.add(new Callable<Operation>() {
+        @Override
+        public Operation call() {
+          return findBestArcToReverse(bayesNet, instances, oBestOperation,
+            nDescendants, iFirstNode, iEndNode);
+        }
+      });
+    }
+    return getBestOperation(oBestOperation, runTasks(tasks));
+  } // findBestArcToReverse
+
+  /**
+   * find best (or least bad) arc reversal operation for arcs heading towards a
+   * range of nodes
+   * 
+   * @param bayesNet Bayes network to reverse arc in
+   * @param instances data set
+   * @param oBestOperation best operation so far, not modified
+   * @param nDescendants descendants of every node as returned by
+   *          getDescendants, null to check for cycles with
+   *          reverseArcMakesSense
+   * @param iFirstNode first node of the range
+   * @param iEndNode node after the last node of the range
+   * @return Operation containing best arc to reverse, or oBestOperation if
+   *         there is no better one
+   */
+  Operation findBestArcToReverse(BayesNet bayesNet, Instances instances,
+    Operation oBestOperation, long[][] nDescendants, int iFirstNode,
+    int iEndNode) {
     // find best arc to reverse
-    for (int iNode = 0; iNode < nNrOfAtts; iNode++) {
+    for (int iNode = iFirstNode; iNode < iEndNode; iNode++) {
       ParentSet parentSet = bayesNet.getParentSet(iNode);
       for (int iParent = 0; iParent < parentSet.getNrOfParents(); iParent++) {
         int iTail = parentSet.getParent(iParent);
         // is reversal allowed?
-        if (reverseArcMakesSense(bayesNet, instances, iNode, iTail)
+        if ((nDescendants != null ? reverseArcMakesSense(bayesNet,
+          nDescendants, iNode, iTail) : reverseArcMakesSense(bayesNet,
+          instances, iNode, iTail))
           && bayesNet.getParentSet(iTail).getNrOfParents() < m_nMaxNrOfParents) {
           // go check if reversal results in the best step forward
           Operation oOperation = new Operation(parentSet.getParent(iParent),
@@ -509,6 +719,119 @@ public class HillClimber extends LocalScoreSearchAlgorithm implements Runnable{
     return oBestOperation;
   } // findBestArcToReverse
 
+  /**
+   * pick the best of the operations found by the tasks of a parallel search.
+   * Ties go to the operation found first in node order, like in a serial
+   * search, so the result does not depend on the number of threads.
+   * 
+   * @param oBestOperation best operation before the tasks ran
+   * @param operations best operation found by every task, in node order
+   * @return best operation
+   */
+  static Operation getBestOperation(Operation oBestOperation,
+    List<Operation> operations) {
+    for (Operation oOperation : operations) {
+      if (oOperation.m_fDeltaScore > oBestOperation.m_fDeltaScore) {
+        oBestOperation = oOperation;
+      }
+    }
+    return oBestOperation;
+  } // getBestOperation
+
+  /**
+   * determine the descendants of every node, so that arcs that would
+   * introduce a cycle can be recognized without changing the network
+   * 
+   * @param bayesNet Bayes network
+   * @return bitsets of descendants per node, a node is not its own descendant.
+   *         Null if the network has a cycle
+   */
+  static long[][] getDescendants(BayesNet bayesNet) {
+    int nNrOfNodes = bayesNet.getNrOfNodes();
+    int[] nNrOfChildren = new int[nNrOfNodes];
+    for (int iNode = 0; iNode < nNrOfNodes; iNode++) {
+      ParentSet parentSet = bayesNet.getParentSet(iNode);
+      for (int iParent = 0; iParent < parentSet.getNrOfParents(); iParent++) {
+        nNrOfChildren[parentSet.getParent(iParent)]++;
+      }
+    }
+
+    // order nodes so that every node comes after its children
+    int[] nOrder = new int[nNrOfNodes];
+    int nOrdered = 0;
+    for (int iNode = 0; iNode < nNrOfNodes; iNode++) {
+      if (nNrOfChildren[iNode] == 0) {
+        nOrder[nOrdered++] = iNode;
+      }
+    }
+    long[][] nDescendants = new long[nNrOfNodes][(nNrOfNodes + 63) >>> 6];
+    for (int iOrder = 0; iOrder < nOrdered; iOrder++) {
+      int iNode = nOrder[iOrder];
+      ParentSet parentSet = bayesNet.getParentSet(iNode);
+      for (int iParent = 0; iParent < parentSet.getNrOfParents(); iParent++) {
+        int nParent = parentSet.getParent(iParent);
+        long[] nParentDescendants = nDescendants[nParent];
+        nParentDescendants[iNode >>> 6] |= 1L << iNode;
+        for (int iWord = 0; iWord < nParentDescendants.length; iWord++) {
+          nParentDescendants[iWord] |= nDescendants[iNode][iWord];
+        }
+        if (--nNrOfChildren[nParent] == 0) {
+          nOrder[nOrdered++] = nParent;
+        }
+      }
+    }
+    return nOrdered == nNrOfNodes ? nDescendants : null;
+  } // getDescendants
+
+  /**
+   * check whether adding an arc keeps the network acyclic, like
+   * SearchAlgorithm.addArcMakesSense but without changing the network
+   * 
+   * @param bayesNet Bayes network
+   * @param nDescendants descendants of every node as returned by
+   *          getDescendants
+   * @param iAttributeHead head of the arc
+   * @param iAttributeTail tail of the arc
+   * @return true if the arc is not in the network and does not introduce a
+   *         cycle
+   */
+  static boolean addArcMakesSense(BayesNet bayesNet, long[][] nDescendants,
+    int iAttributeHead, int iAttributeTail) {
+    return iAttributeHead != iAttributeTail
+      && !bayesNet.getParentSet(iAttributeHead).contains(iAttributeTail)
+      && (nDescendants[iAttributeHead][iAttributeTail >>> 6] & 1L << iAttributeTail) == 0;
+  } // addArcMakesSense
+
+  /**
+   * check whether reversing an arc keeps the network acyclic, like
+   * SearchAlgorithm.reverseArcMakesSense but without changing the network. A
+   * cycle is introduced if another parent of the head descends from the tail.
+   * 
+   * @param bayesNet Bayes network
+   * @param nDescendants descendants of every node as returned by
+   *          getDescendants
+   * @param iAttributeHead head of the arc
+   * @param iAttributeTail tail of the arc
+   * @return true if the arc is in the network and reversing it does not
+   *         introduce a cycle
+   */
+  static boolean reverseArcMakesSense(BayesNet bayesNet,
+    long[][] nDescendants, int iAttributeHead, int iAttributeTail) {
+    ParentSet parentSet = bayesNet.getParentSet(iAttributeHead);
+    if (iAttributeHead == iAttributeTail || !parentSet.contains(iAttributeTail)) {
+      return false;
+    }
+    long[] nTailDescendants = nDescendants[iAttributeTail];
+    for (int iParent = 0; iParent < parentSet.getNrOfParents(); iParent++) {
+      int nParent = parentSet.getParent(iParent);
+      if (nParent != iAttributeTail
+        && (nTailDescendants[nParent >>> 6] & 1L << nParent) != 0) {
+        return false;
+      }
+    }
+    return true;
+  } // reverseArcMakesSense
+
   /**
    * update the cache due to change of parent set of a node
    * 
@@ -516,11 +839,45 @@ public class HillClimber extends LocalScoreSearchAlgorithm implements Runnable{
    * @param nNrOfAtts number of nodes/attributes in data set
    * @param parentSet new parents set of node iAttributeHead
    */
-  void updateCache(int iAttributeHead, int nNrOfAtts, ParentSet parentSet) {
+  void updateCache(final int iAttributeHead, int nNrOfAtts,
+    final ParentSet parentSet) {
     // update cache entries for arrows heading towards iAttributeHead
-    double fBaseScore = calcNodeScore(iAttributeHead);
+    final double fBaseScore = calcNodeScore(iAttributeHead);
+    if (m_TaskRunner == null) {
+      updateCache(iAttributeHead, parentSet, fBaseScore, 0, nNrOfAtts);
+      return;
+    }
+    List<Callable<Operation>> tasks = new ArrayList<Callable<Operation>>();
+    int nNrOfTasks = Math.min(m_nNrOfTasks, nNrOfAtts);
+    for (int iTask = 0; iTask < nNrOfTasks; iTask++) {
+      final int iFirstTail = getFirstNodeOfTask(iTask, nNrOfTasks, nNrOfAtts);
+      final int iEndTail = getFirstNodeOfTask(iTask + 1, nNrOfTasks, nNrOfAtts);
+      tasks.add(new Callable<Operation>() {
+        @Override
+        public Operation call() {
+          updateCache(iAttributeHead, parentSet, fBaseScore, iFirstTail,
+            iEndTail);
+          return null;
+        }
+      });
+    }
+    runTasks(tasks);
+  } // updateCache
+
+  /**
+   * update the cache entries of arcs from a range of nodes to a node whose
+   * parent set changed
+   * 
+   * @param iAttributeHead node that has its parent set changed
+   * @param parentSet new parents set of node iAttributeHead
+   * @param fBaseScore score of iAttributeHead with its new parent set
+   * @param iFirstTail first node of the range
+   * @param iEndTail node after the last node of the range
+   */
+  void updateCache(int iAttributeHead, ParentSet parentSet, double fBaseScore,
+    int iFirstTail, int iEndTail) {
     int nNrOfParents = parentSet.getNrOfParents();
-    for (int iAttributeTail = 0; iAttributeTail < nNrOfAtts; iAttributeTail++) {
+    for (int iAttributeTail = iFirstTail; iAttributeTail < iEndTail; iAttributeTail++) {
       if (iAttributeTail != iAttributeHead) {
         if (!parentSet.contains(iAttributeTail)) {
           // add entries to cache for adding arcs
@@ -568,7 +925,7 @@ public class HillClimber extends LocalScoreSearchAlgorithm implements Runnable{
    */
   @Override
   public Enumeration<Option> listOptions() {
-    Vector<Option> newVector = new Vector<Option>(4);
+    Vector<Option> newVector = new Vector<Option>(5);
 
     newVector.addElement(new Option("\tMaximum number of parents", "P", 1,
       "-P <nr of parents>"));
@@ -620,6 +977,15 @@ public class HillClimber extends LocalScoreSearchAlgorithm implements Runnable{
    *  Score type (BAYES, BDeu, MDL, ENTROPY and AIC)
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads the search runs its tasks on, including
+   *  the thread running the search. 0 means the number of
+   *  available processors. Supported by hill climbing, tabu search,
+   *  simulated annealing, genetic search, ICS and ant colony
+   *  optimization. (default 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -709,6 +1075,26 @@ public class HillClimber extends LocalScoreSearchAlgorithm implements Runnable{
     m_bUseArcReversal = bUseArcReversal;
   } // setUseArcReversal
 
+  /**
+   * set the max number of arcs a search adds, deletes or reverses
+   * 
+   * @param nMaxNrOfSteps max number of steps, 0 for no limit
+   */
+  @ProgrammaticProperty
+  public void setMaxNrOfSteps(int nMaxNrOfSteps) {
+    m_nMaxNrOfSteps = nMaxNrOfSteps;
+  } // setMaxNrOfSteps
+
+  /**
+   * get the max number of arcs a search adds, deletes or reverses
+   * 
+   * @return max number of steps, 0 for no limit
+   */
+  @ProgrammaticProperty
+  public int getMaxNrOfSteps() {
+    return m_nMaxNrOfSteps;
+  } // getMaxNrOfSteps
+
   /**
    * This will return a string describing the search algorithm.
    * 
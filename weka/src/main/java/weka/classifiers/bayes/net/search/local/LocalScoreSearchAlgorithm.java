@@ -21,13 +21,19 @@
 
 package weka.classifiers.bayes.net.search.local;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Vector;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import weka.classifiers.bayes.BayesNet;
 import weka.classifiers.bayes.net.ParentSet;
 import weka.classifiers.bayes.net.search.SearchAlgorithm;
+import weka.classifiers.bayes.net.search.SearchMetrics;
+import weka.classifiers.bayes.net.search.SearchTaskRunner;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
@@ -36,6 +42,7 @@ import weka.core.SelectedTag;
 import weka.core.Statistics;
 import weka.core.Tag;
 import weka.core.Utils;
+import weka.gui.ProgrammaticProperty;
 
 /**
  * <!-- globalinfo-start --> The ScoreBasedSearchAlgorithm class supports Bayes
@@ -60,6 +67,40 @@ import weka.core.Utils;
  *  Score type (BAYES, BDeu, MDL, ENTROPY and AIC)
  * </pre>
  * 
+ * <pre>
+ * -cidx
+ *  Count frequencies with a compact index of the data.
+ *  (default false)
+ * </pre>
+ * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads the search runs its tasks on, including
+ *  the thread running the search. 0 means the number of
+ *  available processors. Supported by hill climbing, tabu search,
+ *  simulated annealing, genetic search, ICS and ant colony
+ *  optimization. (default 1)
+ * </pre>
+ * 
+ * <pre>
+ * -checkpoint &lt;file&gt;
+ *  File to write the search state to, so an interrupted
+ *  search can be resumed. Supported by ant colony optimization,
+ *  tabu search and simulated annealing.
+ * </pre>
+ * 
+ * <pre>
+ * -checkpoint-interval &lt;seconds&gt;
+ *  Min number of seconds between two checkpoints.
+ *  (default 60)
+ * </pre>
+ * 
+ * <pre>
+ * -resume
+ *  Resume from the checkpoint file, if it holds the state
+ *  of a search of the same data.
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Remco Bouckaert
@@ -106,6 +147,66 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
    */
   int m_nScoreType = Scoreable.BAYES;
 
+  /**
+   * cache of node scores, possibly shared with other search algorithms
+   * working on the same data. Null if node scores are not cached.
+   */
+  transient NodeScoreCache m_ScoreCache;
+
+  /**
+   * number of node scores calculated, not counting cache hits. Possibly
+   * shared with other search algorithms so their scores are counted together
+   */
+  AtomicLong m_ScoreEvaluations = new AtomicLong();
+
+  /** whether to count frequencies with a compact index of the data **/
+  boolean m_bUseCountIndex = false;
+
+  /**
+   * compact index of the data used for counting frequencies, possibly shared
+   * with other search algorithms working on the same data
+   */
+  transient CountIndex m_CountIndex;
+
+  /** whether instances count as often as their (whole number) weight says **/
+  boolean m_bUseInstanceWeights = false;
+
+  /**
+   * precomputed frequency counts, used instead of counting the data. Null if
+   * counts are taken from the data.
+   */
+  transient SufficientStatistics m_SufficientStatistics;
+
+  /**
+   * lookup tables for scoring frequency counts, possibly shared with other
+   * search algorithms working on the same data
+   */
+  transient CountScoreTables m_CountScoreTables;
+
+  /**
+   * number of threads the search runs its tasks on, including the thread
+   * running the search. 0 means the number of available processors
+   **/
+  int m_nNumSlots = 1;
+
+  /** executor threads are taken from, null to create a pool per search **/
+  transient Executor m_Executor;
+
+  /** file search state is written to, no checkpoints if it is not set **/
+  File m_CheckpointFile = new File("");
+
+  /** min number of seconds between two checkpoints **/
+  int m_nCheckpointInterval = 60;
+
+  /** whether to resume from the checkpoint file if it holds a matching state **/
+  boolean m_bResume = false;
+
+  /** iteration the last search continued with, 0 if it started from scratch **/
+  transient int m_nResumedIteration;
+
+  /** time the last checkpoint was written **/
+  transient long m_nLastCheckpoint;
+
   /**
    * logScore returns the log of the quality of a network (e.g. the posterior
    * probability of the network, or the MDL value).
@@ -154,20 +255,80 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
   } // logScore
 
   /**
-   * buildStructure determines the network structure/graph of the network with
-   * the K2 algorithm, restricted by its initial structure (which can be an
-   * empty graph, or a Naive Bayes graph.
+   * refineStructure determines the network structure/graph of the network,
+   * starting from its current structure, with the data counted as the options
+   * say. Unless the search records metrics itself, its wall time, score
+   * evaluations and score cache hits are recorded as totals of its metrics.
    * 
    * @param bayesNet the network
    * @param instances the data to use
    * @throws Exception if something goes wrong
    */
   @Override
-  public void buildStructure(BayesNet bayesNet, Instances instances)
+  public void refineStructure(BayesNet bayesNet, Instances instances)
     throws Exception {
     m_BayesNet = bayesNet;
-    super.buildStructure(bayesNet, instances);
-  } // buildStructure
+    // plain and ADTree counting ignore weights, so weights need the index
+    boolean bUseCountIndex = m_bUseCountIndex || m_bUseInstanceWeights;
+    boolean bBuildCountIndex = bUseCountIndex && m_SufficientStatistics == null
+      && (m_CountIndex == null || m_CountIndex.getInstances() != instances);
+    if (bBuildCountIndex) {
+      m_CountIndex = m_bUseInstanceWeights ? CountIndex.weighted(instances)
+        : new CountIndex(instances);
+    } else if (!bUseCountIndex) {
+      m_CountIndex = null;
+    }
+    long[] nStartCounters = getSearchCounters();
+    // searches that record their own metrics replace these
+    m_Metrics = null;
+    try {
+      super.refineStructure(bayesNet, instances);
+    } finally {
+      // only keep hold of an index that was handed to us
+      if (bBuildCountIndex) {
+        m_CountIndex = null;
+      }
+    }
+    if (m_Metrics == null) {
+      recordSearchTotals(nStartCounters);
+    }
+  } // refineStructure
+
+  /**
+   * take the clock and the counters of score evaluations and score cache
+   * lookups, to record the totals of a search from
+   * 
+   * @return time in nanoseconds, evaluations, cache hits and cache misses
+   */
+  protected long[] getSearchCounters() {
+    NodeScoreCache cache = m_ScoreCache;
+    return new long[] { System.nanoTime(), m_ScoreEvaluations.get(),
+      cache == null ? 0 : cache.getHits(), cache == null ? 0 : cache.getMisses() };
+  } // getSearchCounters
+
+  /**
+   * record the wall time, score evaluations and score cache hits since the
+   * counters were taken as totals of new metrics, and notify the listeners
+   * 
+   * @param nStartCounters counters taken at the start of the search
+   */
+  protected void recordSearchTotals(long[] nStartCounters) {
+    long[] nCounters = getSearchCounters();
+    SearchMetrics metrics = startMetrics();
+    metrics.setTotal(SearchMetrics.WALL_TIME,
+      (nCounters[0] - nStartCounters[0]) / 1e6);
+    metrics.setTotal(SearchMetrics.SCORE_EVALUATIONS, nCounters[1]
+      - nStartCounters[1]);
+    if (m_ScoreCache != null) {
+      long nHits = nCounters[2] - nStartCounters[2];
+      long nMisses = nCounters[3] - nStartCounters[3];
+      metrics.setTotal(SearchMetrics.CACHE_HITS, nHits);
+      metrics.setTotal(SearchMetrics.CACHE_MISSES, nMisses);
+      metrics.setTotal(SearchMetrics.CACHE_HIT_RATE, nHits + nMisses == 0 ? 0
+        : (double) nHits / (nHits + nMisses));
+    }
+    finishMetrics();
+  } // recordSearchTotals
 
   /**
    * Calc Node Score for given parent set
@@ -176,10 +337,73 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
    * @return log score
    */
   public double calcNodeScore(int nNode) {
-    if (m_BayesNet.getUseADTree() && m_BayesNet.getADTree() != null) {
-      return calcNodeScoreADTree(nNode);
+    ParentSet oParentSet = m_BayesNet.getParentSet(nNode);
+    return calcNodeScoreOfParents(nNode, oParentSet.getParents(),
+      oParentSet.getNrOfParents());
+  }
+
+  /**
+   * Calc Node Score for the given parents, through the score cache if there
+   * is one
+   * 
+   * @param nNode node for which the score is calculate
+   * @param nParents parents of the node, not modified
+   * @param nNrOfParents number of parents in nParents to use
+   * @return log score
+   */
+  protected double calcNodeScoreOfParents(int nNode, int[] nParents,
+    int nNrOfParents) {
+    if (m_ScoreCache != null) {
+      return calcNodeScoreCached(nNode, nParents, nNrOfParents);
+    }
+    return calcNodeScore(nNode, nParents, nNrOfParents);
+  } // calcNodeScoreOfParents
+
+  /**
+   * helper function for CalcNodeScore above that looks up the score in the
+   * score cache first. Scores are calculated with the parents in sorted order,
+   * so a cached score does not depend on the order in which parents were
+   * added.
+   * 
+   * @param nNode node for which the score is calculate
+   * @param nUnsortedParents parents of the node, not modified
+   * @param nNrOfParents number of parents in nUnsortedParents to use
+   * @return log score
+   */
+  private double calcNodeScoreCached(int nNode, int[] nUnsortedParents,
+    int nNrOfParents) {
+    int[] nParents = Arrays.copyOf(nUnsortedParents, nNrOfParents);
+    Arrays.sort(nParents);
+
+    Double fCachedScore = m_ScoreCache.get(nNode, m_nScoreType, nParents);
+    if (fCachedScore != null) {
+      return fCachedScore;
+    }
+    double fLogScore = calcNodeScore(nNode, nParents, nNrOfParents);
+    m_ScoreCache.put(nNode, m_nScoreType, nParents, fLogScore);
+    return fLogScore;
+  } // calcNodeScoreCached
+
+  /**
+   * Calc Node Score for the given parents
+   * 
+   * @param nNode node for which the score is calculate
+   * @param nParents parents of the node
+   * @param nNrOfParents number of parents in nParents to use
+   * @return log score
+   */
+  private double calcNodeScore(int nNode, int[] nParents, int nNrOfParents) {
+    m_ScoreEvaluations.incrementAndGet();
+    if (m_SufficientStatistics != null) {
+      return calcNodeScoreStatistics(m_SufficientStatistics, nNode, nParents,
+        nNrOfParents);
+    } else if (m_CountIndex != null) {
+      return calcNodeScoreStatistics(m_CountIndex, nNode, nParents,
+        nNrOfParents);
+    } else if (m_BayesNet.getUseADTree() && m_BayesNet.getADTree() != null) {
+      return calcNodeScoreADTree(nNode, nParents, nNrOfParents);
     } else {
-      return calcNodeScorePlain(nNode);
+      return calcNodeScorePlain(nNode, nParents, nNrOfParents);
     }
   }
 
@@ -187,16 +411,17 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
    * helper function for CalcNodeScore above using the ADTree data structure
    * 
    * @param nNode node for which the score is calculate
+   * @param nParents parents of the node
+   * @param nNrOfParents number of parents in nParents to use
    * @return log score
    */
-  private double calcNodeScoreADTree(int nNode) {
+  private double calcNodeScoreADTree(int nNode, int[] nParents,
+    int nNrOfParents) {
     Instances instances = m_BayesNet.m_Instances;
-    ParentSet oParentSet = m_BayesNet.getParentSet(nNode);
     // get set of parents, insert iNode
-    int nNrOfParents = oParentSet.getNrOfParents();
     int[] nNodes = new int[nNrOfParents + 1];
     for (int iParent = 0; iParent < nNrOfParents; iParent++) {
-      nNodes[iParent] = oParentSet.getParent(iParent);
+      nNodes[iParent] = nParents[iParent];
     }
     nNodes[nNrOfParents] = nNode;
 
@@ -225,8 +450,8 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
     }
 
     // get counts from ADTree
-    int nCardinality = oParentSet.getCardinalityOfParents();
     int numValues = instances.attribute(nNode).numValues();
+    int nCardinality = nOffset / numValues;
     int[] nCounts = new int[nCardinality * numValues];
     // if (nNrOfParents > 1) {
 
@@ -235,12 +460,35 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
     return calcScoreOfCounts(nCounts, nCardinality, numValues, instances);
   } // CalcNodeScore
 
-  private double calcNodeScorePlain(int nNode) {
+  /**
+   * helper function for CalcNodeScore above using the compact count index or
+   * precomputed counts
+   * 
+   * @param statistics source of the counts
+   * @param nNode node for which the score is calculate
+   * @param nParents parents of the node
+   * @param nNrOfParents number of parents in nParents to use
+   * @return log score
+   */
+  private double calcNodeScoreStatistics(SufficientStatistics statistics,
+    int nNode, int[] nParents, int nNrOfParents) {
+    Instances instances = m_BayesNet.m_Instances;
+    int numValues = instances.attribute(nNode).numValues();
+    int[] nCounts = statistics.getCounts(nNode, nParents, nNrOfParents);
+
+    return calcScoreOfCounts(nCounts, nCounts.length / numValues, numValues,
+      instances);
+  } // calcNodeScoreCountIndex
+
+  private double calcNodeScorePlain(int nNode, int[] nParents,
+    int nNrOfParents) {
     Instances instances = m_BayesNet.m_Instances;
-    ParentSet oParentSet = m_BayesNet.getParentSet(nNode);
 
     // determine cardinality of parent set & reserve space for frequency counts
-    int nCardinality = oParentSet.getCardinalityOfParents();
+    int nCardinality = 1;
+    for (int iParent = 0; iParent < nNrOfParents; iParent++) {
+      nCardinality *= instances.attribute(nParents[iParent]).numValues();
+    }
     int numValues = instances.attribute(nNode).numValues();
     int[] nCounts = new int[nCardinality * numValues];
 
@@ -258,8 +506,8 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
       // updateClassifier;
       double iCPT = 0;
 
-      for (int iParent = 0; iParent < oParentSet.getNrOfParents(); iParent++) {
-        int nParent = oParentSet.getParent(iParent);
+      for (int iParent = 0; iParent < nNrOfParents; iParent++) {
+        int nParent = nParents[iParent];
 
         iCPT = iCPT * instances.attribute(nParent).numValues()
           + instance.value(nParent);
@@ -287,6 +535,120 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
     // calculate scores using the distributions
     double fLogScore = 0.0;
 
+    switch (m_nScoreType) {
+
+    case (Scoreable.BAYES): {
+      double[] fLnGamma = getCountScoreTables(instances).getLnGammaTable(m_fAlpha);
+      if (fLnGamma == null) {
+        return calcScoreOfCountsPlain(nCounts, nCardinality, numValues);
+      }
+      double fLnGammaAlpha = 0;
+      double fLnGammaSumOfAlpha = 0;
+      if (m_fAlpha != 0) {
+        fLnGammaAlpha = Statistics.lnGamma(m_fAlpha);
+        fLnGammaSumOfAlpha = Statistics.lnGamma(numValues * m_fAlpha);
+      }
+      for (int iParent = 0; iParent < nCardinality; iParent++) {
+        int iFirst = iParent * numValues;
+        int iLast = iFirst + numValues;
+        double nSumOfCounts = 0;
+
+        // entries for alpha + count == 0 are 0 and add nothing to the sum
+        for (int iCell = iFirst; iCell < iLast; iCell++) {
+          fLogScore += CountScoreTables.lnGamma(fLnGamma, m_fAlpha,
+            nCounts[iCell]);
+          nSumOfCounts += m_fAlpha + nCounts[iCell];
+        }
+
+        if (nSumOfCounts != 0) {
+          fLogScore -= Statistics.lnGamma(nSumOfCounts);
+        }
+
+        if (m_fAlpha != 0) {
+          fLogScore -= numValues * fLnGammaAlpha;
+          fLogScore += fLnGammaSumOfAlpha;
+        }
+      }
+    }
+
+      break;
+    case (Scoreable.BDeu): {
+      double fAlpha = 1.0 / (numValues * nCardinality);
+      double[] fLnGamma = getCountScoreTables(instances).getLnGammaTable(fAlpha);
+      if (fLnGamma == null) {
+        return calcScoreOfCountsPlain(nCounts, nCardinality, numValues);
+      }
+      double fLnGammaAlpha = Statistics.lnGamma(1.0 / (numValues * nCardinality));
+      double fLnGammaSumOfAlpha = Statistics.lnGamma(1.0 / nCardinality);
+      for (int iParent = 0; iParent < nCardinality; iParent++) {
+        int iFirst = iParent * numValues;
+        int iLast = iFirst + numValues;
+        double nSumOfCounts = 0;
+
+        for (int iCell = iFirst; iCell < iLast; iCell++) {
+          if (m_fAlpha + nCounts[iCell] != 0) {
+            fLogScore += CountScoreTables.lnGamma(fLnGamma, fAlpha,
+              nCounts[iCell]);
+            nSumOfCounts += fAlpha + nCounts[iCell];
+          }
+        }
+        fLogScore -= Statistics.lnGamma(nSumOfCounts);
+
+        fLogScore -= numValues * fLnGammaAlpha;
+        fLogScore += fLnGammaSumOfAlpha;
+      }
+    }
+      break;
+
+    case (Scoreable.MDL):
+
+    case (Scoreable.AIC):
+
+    case (Scoreable.ENTROPY): {
+      // log(count / sum of counts) is not split into two table lookups: these
+      // scores are equal for equivalent structures, and rounding differently
+      // would change which of them a search ends up with
+      for (int iParent = 0; iParent < nCardinality; iParent++) {
+        int iFirst = iParent * numValues;
+        int iLast = iFirst + numValues;
+        double nSumOfCounts = 0;
+
+        for (int iCell = iFirst; iCell < iLast; iCell++) {
+          nSumOfCounts += nCounts[iCell];
+        }
+
+        for (int iCell = iFirst; iCell < iLast; iCell++) {
+          if (nCounts[iCell] > 0) {
+            fLogScore += nCounts[iCell] * Math.log(nCounts[iCell] / nSumOfCounts);
+          }
+        }
+      }
+    }
+
+      break;
+
+    default: {
+    }
+    }
+
+    return fLogScore + calcPenalty(nCardinality, numValues);
+  } // CalcNodeScore
+
+  /**
+   * determine the score based on observed frequencies without lookup tables,
+   * used when the tables can not hold the terms needed
+   * 
+   * @param nCounts array with observed frequencies
+   * @param nCardinality ardinality of parent set
+   * @param numValues number of values a node can take
+   * @return log score
+   */
+  private double calcScoreOfCountsPlain(int[] nCounts, int nCardinality,
+    int numValues) {
+
+    // calculate scores using the distributions
+    double fLogScore = 0.0;
+
     for (int iParent = 0; iParent < nCardinality; iParent++) {
       switch (m_nScoreType) {
 
@@ -331,52 +693,75 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
       }
         break;
 
-      case (Scoreable.MDL):
-
-      case (Scoreable.AIC):
-
-      case (Scoreable.ENTROPY): {
-        double nSumOfCounts = 0;
-
-        for (int iSymbol = 0; iSymbol < numValues; iSymbol++) {
-          nSumOfCounts += nCounts[iParent * numValues + iSymbol];
-        }
-
-        for (int iSymbol = 0; iSymbol < numValues; iSymbol++) {
-          if (nCounts[iParent * numValues + iSymbol] > 0) {
-            fLogScore += nCounts[iParent * numValues + iSymbol]
-              * Math.log(nCounts[iParent * numValues + iSymbol] / nSumOfCounts);
-          }
-        }
-      }
-
-        break;
-
       default: {
       }
       }
     }
 
+    return fLogScore + calcPenalty(nCardinality, numValues);
+  } // calcScoreOfCountsPlain
+
+  /**
+   * determine the penalty of the MDL and AIC scores for the number of
+   * parameters of a node
+   * 
+   * @param nCardinality cardinality of parent set
+   * @param numValues number of values a node can take
+   * @return penalty, 0 for other score types
+   */
+  private double calcPenalty(int nCardinality, int numValues) {
     switch (m_nScoreType) {
 
     case (Scoreable.MDL): {
-      fLogScore -= 0.5 * nCardinality * (numValues - 1)
-        * Math.log(m_BayesNet.getNumInstances());
+      return -0.5 * nCardinality * (numValues - 1)
+        * Math.log(getTotalCount(m_BayesNet.m_Instances));
 
       // it seems safe to assume that numInstances>0 here
     }
 
-      break;
-
     case (Scoreable.AIC): {
-      fLogScore -= nCardinality * (numValues - 1);
+      return -nCardinality * (numValues - 1);
     }
 
-      break;
+    default:
+      return 0;
     }
+  } // calcPenalty
 
-    return fLogScore;
-  } // CalcNodeScore
+  /**
+   * get the number of instances counts are taken from, which is the sum of
+   * the weights when instances are counted with their weights
+   * 
+   * @param instances data set the counts are taken from, unless precomputed
+   *          counts are used
+   * @return total count
+   */
+  protected int getTotalCount(Instances instances) {
+    if (m_SufficientStatistics != null) {
+      return m_SufficientStatistics.getTotalCount();
+    }
+    if (m_CountIndex != null) {
+      return m_CountIndex.getTotalCount();
+    }
+    return instances.numInstances();
+  } // getTotalCount
+
+  /**
+   * get the lookup tables for scoring counts of a data set, creating them if
+   * there are none yet or if they are too small for the data set
+   * 
+   * @param instances data set the counts are taken from
+   * @return lookup tables
+   */
+  protected CountScoreTables getCountScoreTables(Instances instances) {
+    CountScoreTables tables = m_CountScoreTables;
+    int nTotalCount = getTotalCount(instances);
+    if (tables == null || tables.getMaxCount() < nTotalCount) {
+      tables = new CountScoreTables(nTotalCount);
+      m_CountScoreTables = tables;
+    }
+    return tables;
+  } // getCountScoreTables
 
   protected double calcScoreOfCounts2(int[][] nCounts, int nCardinality,
     int numValues, Instances instances) {
@@ -477,7 +862,9 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
   } // CalcNodeScore
 
   /**
-   * Calc Node Score With AddedParent
+   * Calc Node Score With AddedParent. The parent set of the node is not
+   * changed, so scores of several candidates for the same node can be
+   * calculated in parallel.
    * 
    * @param nNode node for which the score is calculate
    * @param nCandidateParent candidate parent to add to the existing parent set
@@ -491,20 +878,19 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
       return -1e100;
     }
 
-    // set up candidate parent
-    oParentSet.addParent(nCandidateParent, m_BayesNet.m_Instances);
+    // set up candidate parent, last like ParentSet.addParent puts it
+    int nNrOfParents = oParentSet.getNrOfParents();
+    int[] nParents = Arrays.copyOf(oParentSet.getParents(), nNrOfParents + 1);
+    nParents[nNrOfParents] = nCandidateParent;
 
     // calculate the score
-    double logScore = calcNodeScore(nNode);
-
-    // delete temporarily added parent
-    oParentSet.deleteLastParent(m_BayesNet.m_Instances);
-
-    return logScore;
+    return calcNodeScoreOfParents(nNode, nParents, nNrOfParents + 1);
   } // CalcScoreWithExtraParent
 
   /**
-   * Calc Node Score With Parent Deleted
+   * Calc Node Score With Parent Deleted. The parent set of the node is not
+   * changed, so scores of several candidates for the same node can be
+   * calculated in parallel.
    * 
    * @param nNode node for which the score is calculate
    * @param nCandidateParent candidate parent to delete from the existing parent
@@ -519,18 +905,389 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
       return -1e100;
     }
 
-    // set up candidate parent
-    int iParent = oParentSet.deleteParent(nCandidateParent,
-      m_BayesNet.m_Instances);
+    // set up the other parents, in the order ParentSet.deleteParent leaves
+    int nNrOfParents = oParentSet.getNrOfParents();
+    int[] nParents = new int[nNrOfParents - 1];
+    int iParent = 0;
+    for (int iOldParent = 0; iOldParent < nNrOfParents; iOldParent++) {
+      if (oParentSet.getParent(iOldParent) != nCandidateParent) {
+        nParents[iParent++] = oParentSet.getParent(iOldParent);
+      }
+    }
 
     // calculate the score
-    double logScore = calcNodeScore(nNode);
+    return calcNodeScoreOfParents(nNode, nParents, nNrOfParents - 1);
+  } // CalcScoreWithMissingParent
 
-    // restore temporarily deleted parent
-    oParentSet.addParent(nCandidateParent, iParent, m_BayesNet.m_Instances);
+  /**
+   * copy everything scores depend on from another search, so a search that
+   * works for it, like a local optimizer, an ant or a chain, calculates the
+   * same scores. The score type and prior are copied, the score cache,
+   * evaluation counter, count index, sufficient statistics and lookup tables
+   * are shared.
+   * 
+   * @param from the search to take the scoring settings from
+   */
+  public void copyScoring(LocalScoreSearchAlgorithm from) {
+    m_nScoreType = from.m_nScoreType;
+    m_fAlpha = from.m_fAlpha;
+    m_ScoreCache = from.m_ScoreCache;
+    m_ScoreEvaluations = from.m_ScoreEvaluations;
+    m_bUseCountIndex = from.m_bUseCountIndex;
+    m_CountIndex = from.m_CountIndex;
+    m_bUseInstanceWeights = from.m_bUseInstanceWeights;
+    m_SufficientStatistics = from.m_SufficientStatistics;
+    m_CountScoreTables = from.m_CountScoreTables;
+  } // copyScoring
 
-    return logScore;
-  } // CalcScoreWithMissingParent
+  /**
+   * Sets the cache used for node scores. The cache can be shared between
+   * search algorithms as long as they work on the same data set.
+   * 
+   * @param scoreCache the score cache, or null to calculate every score
+   */
+  @ProgrammaticProperty
+  public void setScoreCache(NodeScoreCache scoreCache) {
+    m_ScoreCache = scoreCache;
+  }
+
+  /**
+   * Gets the cache used for node scores.
+   * 
+   * @return the score cache, or null if scores are not cached
+   */
+  @ProgrammaticProperty
+  public NodeScoreCache getScoreCache() {
+    return m_ScoreCache;
+  }
+
+  /**
+   * Sets the counter of node score calculations. The counter can be shared
+   * between search algorithms to count their calculations together.
+   * 
+   * @param scoreEvaluations the counter
+   */
+  @ProgrammaticProperty
+  public void setScoreEvaluationCounter(AtomicLong scoreEvaluations) {
+    m_ScoreEvaluations = scoreEvaluations;
+  }
+
+  /**
+   * Gets the counter of node score calculations, cache hits are not counted.
+   * 
+   * @return the counter
+   */
+  @ProgrammaticProperty
+  public AtomicLong getScoreEvaluationCounter() {
+    return m_ScoreEvaluations;
+  }
+
+  /**
+   * Sets whether frequencies are counted with a compact index of the data
+   * instead of going through the instances.
+   * 
+   * @param bUseCountIndex whether to use the count index
+   */
+  public void setUseCountIndex(boolean bUseCountIndex) {
+    m_bUseCountIndex = bUseCountIndex;
+  }
+
+  /**
+   * Gets whether frequencies are counted with a compact index of the data.
+   * 
+   * @return whether to use the count index
+   */
+  public boolean getUseCountIndex() {
+    return m_bUseCountIndex;
+  }
+
+  /**
+   * Sets the count index to use. The index can be shared between search
+   * algorithms as long as they work on the same data set. It is only used
+   * when useCountIndex is set.
+   * 
+   * @param countIndex the count index, or null to build one when needed
+   */
+  @ProgrammaticProperty
+  public void setCountIndex(CountIndex countIndex) {
+    m_CountIndex = countIndex;
+  }
+
+  /**
+   * Gets the count index in use.
+   * 
+   * @return the count index, or null if there is none
+   */
+  @ProgrammaticProperty
+  public CountIndex getCountIndex() {
+    return m_CountIndex;
+  }
+
+  /**
+   * Sets whether instances count as often as their weight says. Weights must
+   * be whole numbers, so a data set in which identical rows are merged into
+   * one row weighted with their number, see CountIndex.compress, gives the
+   * same network as the original data set. Weighted counts are taken from a
+   * count index.
+   * 
+   * @param bUseInstanceWeights whether to count instance weights
+   */
+  public void setUseInstanceWeights(boolean bUseInstanceWeights) {
+    m_bUseInstanceWeights = bUseInstanceWeights;
+  }
+
+  /**
+   * Gets whether instances count as often as their weight says.
+   * 
+   * @return whether to count instance weights
+   */
+  public boolean getUseInstanceWeights() {
+    return m_bUseInstanceWeights;
+  }
+
+  /**
+   * Sets precomputed frequency counts to calculate scores from instead of
+   * counting the data, which then only provides the attributes. The counts
+   * can be shared between search algorithms working on the same data.
+   * 
+   * @param sufficientStatistics the counts, or null to count the data
+   */
+  @ProgrammaticProperty
+  public void setSufficientStatistics(
+    SufficientStatistics sufficientStatistics) {
+    m_SufficientStatistics = sufficientStatistics;
+  }
+
+  /**
+   * Gets the precomputed frequency counts.
+   * 
+   * @return the counts, or null if the data is counted
+   */
+  @ProgrammaticProperty
+  public SufficientStatistics getSufficientStatistics() {
+    return m_SufficientStatistics;
+  }
+
+  /**
+   * Sets the lookup tables for scoring frequency counts. The tables can be
+   * shared between search algorithms as long as they work on data sets with
+   * at most as many instances (or total weight, when weights are counted) as
+   * the tables were created for.
+   * 
+   * @param countScoreTables the tables, or null to create them when needed
+   */
+  @ProgrammaticProperty
+  public void setCountScoreTables(CountScoreTables countScoreTables) {
+    m_CountScoreTables = countScoreTables;
+  }
+
+  /**
+   * Gets the lookup tables for scoring frequency counts.
+   * 
+   * @return the tables, or null if none were created yet
+   */
+  @ProgrammaticProperty
+  public CountScoreTables getCountScoreTables() {
+    return m_CountScoreTables;
+  }
+
+  /**
+   * Sets the number of threads the search runs its tasks on.
+   * 
+   * @param nNumSlots number of threads, including the thread running the
+   *          search. 0 means the number of available processors
+   */
+  public void setNumSlots(int nNumSlots) {
+    m_nNumSlots = nNumSlots;
+  }
+
+  /**
+   * Gets the number of threads the search runs its tasks on.
+   * 
+   * @return number of threads, 0 for the number of available processors
+   */
+  public int getNumSlots() {
+    return m_nNumSlots;
+  }
+
+  /**
+   * Sets the executor threads are taken from, for example a pool shared by
+   * all searches of an experiment. The executor is not shut down by the
+   * search.
+   * 
+   * @param executor executor, null to let every search create its own pool
+   */
+  @ProgrammaticProperty
+  public void setExecutor(Executor executor) {
+    m_Executor = executor;
+  }
+
+  /**
+   * Gets the executor threads are taken from.
+   * 
+   * @return executor, null if every search creates its own pool
+   */
+  @ProgrammaticProperty
+  public Executor getExecutor() {
+    return m_Executor;
+  }
+
+  /**
+   * get the number of threads the search runs its tasks on, with 0 slots
+   * resolved to the number of available processors
+   * 
+   * @return number of threads, at least 1
+   */
+  protected int getNumSlotsToUse() {
+    return m_nNumSlots > 0 ? m_nNumSlots : Runtime.getRuntime()
+      .availableProcessors();
+  } // getNumSlotsToUse
+
+  /**
+   * create a runner for the tasks of a search, taking threads from the
+   * executor of the search. The runner has to be closed when the search ends.
+   * 
+   * @param <T> type of the results of the tasks
+   * @param nNumSlots number of threads, including the thread running the
+   *          search
+   * @return the runner
+   */
+  protected <T> SearchTaskRunner<T> createTaskRunner(int nNumSlots) {
+    return new SearchTaskRunner<T>(m_Executor, nNumSlots);
+  } // createTaskRunner
+
+  /**
+   * Sets the file the search state is written to.
+   * 
+   * @param checkpointFile the checkpoint file, empty or a directory for no
+   *          checkpoints
+   */
+  public void setCheckpointFile(File checkpointFile) {
+    m_CheckpointFile = checkpointFile;
+  }
+
+  /**
+   * Gets the file the search state is written to.
+   * 
+   * @return the checkpoint file
+   */
+  public File getCheckpointFile() {
+    return m_CheckpointFile;
+  }
+
+  /**
+   * Sets the min number of seconds between two checkpoints.
+   * 
+   * @param nCheckpointInterval min number of seconds between checkpoints
+   */
+  public void setCheckpointInterval(int nCheckpointInterval) {
+    m_nCheckpointInterval = nCheckpointInterval;
+  }
+
+  /**
+   * Gets the min number of seconds between two checkpoints.
+   * 
+   * @return min number of seconds between checkpoints
+   */
+  public int getCheckpointInterval() {
+    return m_nCheckpointInterval;
+  }
+
+  /**
+   * Sets whether to resume from the checkpoint file.
+   * 
+   * @param bResume whether to resume
+   */
+  public void setResume(boolean bResume) {
+    m_bResume = bResume;
+  }
+
+  /**
+   * Gets whether to resume from the checkpoint file.
+   * 
+   * @return whether to resume
+   */
+  public boolean getResume() {
+    return m_bResume;
+  }
+
+  /**
+   * @return whether a checkpoint file is set
+   */
+  boolean isCheckpointing() {
+    return m_CheckpointFile != null && m_CheckpointFile.getPath().length() > 0
+      && !m_CheckpointFile.isDirectory();
+  }
+
+  /**
+   * get the checkpoint to resume a search from
+   * 
+   * @param instances data set to search
+   * @return the checkpoint, or null if resume is off, there is no checkpoint
+   *         or it does not match this search
+   */
+  SearchCheckpoint loadCheckpoint(Instances instances) {
+    m_nLastCheckpoint = System.currentTimeMillis();
+    m_nResumedIteration = 0;
+    if (!m_bResume || !isCheckpointing() || !m_CheckpointFile.exists()) {
+      return null;
+    }
+    SearchCheckpoint checkpoint;
+    try {
+      checkpoint = SearchCheckpoint.read(m_CheckpointFile);
+    } catch (Exception e) {
+      // a checkpoint that can not be read is treated like a missing one
+      return null;
+    }
+    if (!checkpoint.matches(this, instances)) {
+      return null;
+    }
+    m_nResumedIteration = checkpoint.m_nIteration;
+    return checkpoint;
+  } // loadCheckpoint
+
+  /**
+   * get the settings of this search that determine the layout of its state in
+   * a checkpoint, like the number of colonies of ant colony optimization. A
+   * checkpoint is only resumed by a search with the same settings.
+   * 
+   * @return the settings, empty if none matter
+   */
+  String getCheckpointSettings() {
+    return "";
+  } // getCheckpointSettings
+
+  /**
+   * get the iteration the last search continued with when it resumed from a
+   * checkpoint. A search started from scratch when resume was off, there was
+   * no checkpoint, or the checkpoint could not be read or did not match the
+   * search.
+   * 
+   * @return iteration resumed with, 0 if the search started from scratch
+   */
+  public int getResumedIteration() {
+    return m_nResumedIteration;
+  } // getResumedIteration
+
+  /**
+   * @return whether the checkpoint interval has passed since the last
+   *         checkpoint
+   */
+  boolean isCheckpointDue() {
+    return isCheckpointing()
+      && System.currentTimeMillis() - m_nLastCheckpoint >= 1000L * m_nCheckpointInterval;
+  }
+
+  /**
+   * write a checkpoint
+   * 
+   * @param checkpoint state of the search
+   * @throws Exception if the checkpoint could not be written
+   */
+  void saveCheckpoint(SearchCheckpoint checkpoint) throws Exception {
+    checkpoint.write(m_CheckpointFile);
+    m_nLastCheckpoint = System.currentTimeMillis();
+  } // saveCheckpoint
 
   /**
    * set quality measure to be used in searching for networks.
@@ -589,6 +1346,37 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
       "\tScore type (BAYES, BDeu, MDL, ENTROPY and AIC)", "S", 1,
       "-S [BAYES|MDL|ENTROPY|AIC|CROSS_CLASSIC|CROSS_BAYES]"));
 
+    newVector.addElement(new Option(
+      "\tCount frequencies with a compact index of the data.\n"
+        + "\t(default false)", "cidx", 0, "-cidx"));
+
+    newVector.addElement(new Option(
+      "\tCount every instance as often as its weight says, for data\n"
+        + "\tin which identical rows are merged. Weights must be whole\n"
+        + "\tnumbers.\n" + "\t(default false)", "weights", 0, "-weights"));
+
+    newVector.addElement(new Option(
+      "\tNumber of threads the search runs its tasks on, including\n"
+        + "\tthe thread running the search. 0 means the number of\n"
+        + "\tavailable processors. Supported by hill climbing, tabu search,\n"
+        + "\tsimulated annealing, genetic search, ICS and ant colony\n"
+        + "\toptimization. (default 1)", "num-slots", 1, "-num-slots <num>"));
+
+    newVector.addElement(new Option(
+      "\tFile to write the search state to, so an interrupted\n"
+        + "\tsearch can be resumed. Supported by ant colony optimization,\n"
+        + "\ttabu search and simulated annealing.", "checkpoint", 1,
+      "-checkpoint <file>"));
+
+    newVector.addElement(new Option(
+      "\tMin number of seconds between two checkpoints.\n"
+        + "\t(default 60)", "checkpoint-interval", 1,
+      "-checkpoint-interval <seconds>"));
+
+    newVector.addElement(new Option(
+      "\tResume from the checkpoint file, if it holds the state\n"
+        + "\tof a search of the same data.", "resume", 0, "-resume"));
+
     newVector.addAll(Collections.list(super.listOptions()));
 
     return newVector.elements();
@@ -614,6 +1402,48 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
    *  Score type (BAYES, BDeu, MDL, ENTROPY and AIC)
    * </pre>
    * 
+   * <pre>
+   * -cidx
+   *  Count frequencies with a compact index of the data.
+   *  (default false)
+   * </pre>
+   * 
+   * <pre>
+   * -weights
+   *  Count every instance as often as its weight says, for data
+   *  in which identical rows are merged. Weights must be whole
+   *  numbers.
+   *  (default false)
+   * </pre>
+   * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads the search runs its tasks on, including
+   *  the thread running the search. 0 means the number of
+   *  available processors. Supported by hill climbing, tabu search,
+   *  simulated annealing, genetic search, ICS and ant colony
+   *  optimization. (default 1)
+   * </pre>
+   * 
+   * <pre>
+   * -checkpoint &lt;file&gt;
+   *  File to write the search state to, so an interrupted
+   *  search can be resumed. Supported by ant colony optimization,
+   *  tabu search and simulated annealing.
+   * </pre>
+   * 
+   * <pre>
+   * -checkpoint-interval &lt;seconds&gt;
+   *  Min number of seconds between two checkpoints.
+   *  (default 60)
+   * </pre>
+   * 
+   * <pre>
+   * -resume
+   *  Resume from the checkpoint file, if it holds the state
+   *  of a search of the same data.
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -624,6 +1454,28 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
 
     setMarkovBlanketClassifier(Utils.getFlag("mbc", options));
 
+    setUseCountIndex(Utils.getFlag("cidx", options));
+
+    setUseInstanceWeights(Utils.getFlag("weights", options));
+
+    String sNumSlots = Utils.getOption("num-slots", options);
+    if (sNumSlots.length() != 0) {
+      setNumSlots(Integer.parseInt(sNumSlots));
+    } else {
+      setNumSlots(1);
+    }
+
+    setCheckpointFile(new File(Utils.getOption("checkpoint", options)));
+
+    String sCheckpointInterval = Utils.getOption("checkpoint-interval", options);
+    if (sCheckpointInterval.length() != 0) {
+      setCheckpointInterval(Integer.parseInt(sCheckpointInterval));
+    } else {
+      setCheckpointInterval(60);
+    }
+
+    setResume(Utils.getFlag("resume", options));
+
     String sScore = Utils.getOption('S', options);
 
     if (sScore.compareTo("BAYES") == 0) {
@@ -659,6 +1511,28 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
       options.add("-mbc");
     }
 
+    if (getUseCountIndex()) {
+      options.add("-cidx");
+    }
+
+    if (getUseInstanceWeights()) {
+      options.add("-weights");
+    }
+
+    options.add("-num-slots");
+    options.add("" + getNumSlots());
+
+    if (isCheckpointing()) {
+      options.add("-checkpoint");
+      options.add(getCheckpointFile().getPath());
+      options.add("-checkpoint-interval");
+      options.add("" + getCheckpointInterval());
+    }
+
+    if (getResume()) {
+      options.add("-resume");
+    }
+
     options.add("-S");
 
     switch (m_nScoreType) {
@@ -699,6 +1573,67 @@ public class LocalScoreSearchAlgorithm extends SearchAlgorithm {
       + " Akaike Information Criterion (AIC), and Entropy.";
   }
 
+  /**
+   * @return a string to describe the UseCountIndex option.
+   */
+  public String useCountIndexTipText() {
+    return "When set to true, the data is copied once into a compact column wise index"
+      + " that is used to count frequencies for scoring, instead of going through the"
+      + " instances for every score. This is usually much faster, at the cost of one"
+      + " byte per attribute value. It takes precedence over the ADTree.";
+  }
+
+  /**
+   * @return a string to describe the UseInstanceWeights option.
+   */
+  public String useInstanceWeightsTipText() {
+    return "When set to true, every instance counts as often as its weight says, so"
+      + " data in which identical rows are merged into a single row, weighted with"
+      + " their number, can be learned from much faster. Weights must be whole"
+      + " numbers. Counts are taken from a compact index of the data.";
+  }
+
+  /**
+   * @return a string to describe the NumSlots option.
+   */
+  public String numSlotsTipText() {
+    return "Number of threads the search runs its tasks on, including the thread"
+      + " running the search. 0 means the number of available processors. Hill"
+      + " climbing and tabu search evaluate moves in parallel, simulated annealing"
+      + " runs its chains, genetic search scores offspring, ICS runs independence"
+      + " tests and ant colony optimization runs ants in parallel. The network"
+      + " found does not depend on the number of threads, except for an"
+      + " asynchronous ant colony.";
+  }
+
+  /**
+   * @return a string to describe the CheckpointFile option.
+   */
+  public String checkpointFileTipText() {
+    return "File the state of the search is written to now and then, so that a"
+      + " search that was interrupted can be resumed. Leave empty (or set to a"
+      + " directory) for no checkpoints. Only supported by search algorithms"
+      + " that run for many iterations, like ant colony optimization, tabu"
+      + " search and simulated annealing.";
+  }
+
+  /**
+   * @return a string to describe the CheckpointInterval option.
+   */
+  public String checkpointIntervalTipText() {
+    return "Min number of seconds between two checkpoints.";
+  }
+
+  /**
+   * @return a string to describe the Resume option.
+   */
+  public String resumeTipText() {
+    return "When set to true, the search continues from the state in the"
+      + " checkpoint file, if that holds the state of a search with the same"
+      + " algorithm, score type and settings on the same data. Otherwise the"
+      + " search starts from scratch.";
+  }
+
   /**
    * @return a string to describe the MarkovBlanketClassifier option.
    */
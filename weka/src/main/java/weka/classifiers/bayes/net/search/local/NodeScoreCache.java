@@ -0,0 +1,330 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * NodeScoreCache.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+/**
+ * Thread safe cache of node scores that can be shared by several local score
+ * search algorithms working on the same data set, for example the ants and
+ * local optimizers of an ant colony search. The score of a node only depends
+ * on the node, its parent set and the score type, so entries are keyed on the
+ * node, the score type and the sorted parent set.
+ * <p/>
+ * The cache is bounded. It is split into segments that each hold a least
+ * recently used list and their own hit and miss counters, so concurrent
+ * lookups of different families rarely block each other. The cache is
+ * serializable, so it can be kept in a checkpoint of a search.
+ *
+ * @version $Revision$
+ */
+public class NodeScoreCache implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = 6035466251307813309L;
+
+  /** number of segments the cache is split into **/
+  static final int NR_OF_SEGMENTS = 16;
+
+  /**
+   * key of a cache entry: node, score type and sorted parent set
+   */
+  static class Key implements Serializable, RevisionHandler {
+
+    /** for serialization */
+    private static final long serialVersionUID = -1754226009367418032L;
+
+    /** node the score belongs to **/
+    final int m_nNode;
+
+    /** score type the score was calculated with **/
+    final int m_nScoreType;
+
+    /** sorted parents of the node **/
+    final int[] m_nParents;
+
+    /** precomputed hash code **/
+    final int m_nHash;
+
+    /**
+     * c'tor
+     *
+     * @param nNode node the score belongs to
+     * @param nScoreType score type the score was calculated with
+     * @param nParents sorted parents of the node, not copied
+     */
+    Key(int nNode, int nScoreType, int[] nParents) {
+      m_nNode = nNode;
+      m_nScoreType = nScoreType;
+      m_nParents = nParents;
+      m_nHash = (31 * (31 * nNode + nScoreType) + Arrays.hashCode(nParents)) * 0x9E3779B9;
+    }
+
+    @Override
+    public int hashCode() {
+      return m_nHash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return m_nHash == key.m_nHash && m_nNode == key.m_nNode
+        && m_nScoreType == key.m_nScoreType
+        && Arrays.equals(m_nParents, key.m_nParents);
+    }
+
+    /**
+     * Returns the revision string.
+     *
+     * @return the revision
+     */
+    @Override
+    public String getRevision() {
+      return RevisionUtils.extract("$Revision$");
+    }
+  } // class Key
+
+  /**
+   * one segment of the cache, an access ordered map that drops its least
+   * recently used entry when it grows over its capacity. Access to a segment
+   * and its counters is guarded by the segment itself.
+   */
+  static class Segment extends LinkedHashMap<Key, Double> {
+
+    /** for serialization */
+    private static final long serialVersionUID = -2386302411839417394L;
+
+    /** max number of entries in this segment **/
+    final int m_nCapacity;
+
+    /** number of lookups that found a score **/
+    long m_nHits;
+
+    /** number of lookups that did not find a score **/
+    long m_nMisses;
+
+    /** number of entries dropped because the segment was full **/
+    long m_nEvictions;
+
+    /**
+     * c'tor
+     *
+     * @param nCapacity max number of entries in this segment
+     */
+    Segment(int nCapacity) {
+      super(16, 0.75f, true);
+      m_nCapacity = nCapacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+      if (size() > m_nCapacity) {
+        m_nEvictions++;
+        return true;
+      }
+      return false;
+    }
+  } // class Segment
+
+  /** segments of the cache **/
+  final Segment[] m_Segments;
+
+  /** max number of entries in the cache **/
+  final int m_nCapacity;
+
+  /**
+   * c'tor
+   *
+   * @param nCapacity max number of scores to keep
+   */
+  public NodeScoreCache(int nCapacity) {
+    m_nCapacity = Math.max(nCapacity, NR_OF_SEGMENTS);
+    m_Segments = new Segment[NR_OF_SEGMENTS];
+    int nSegmentCapacity = (m_nCapacity + NR_OF_SEGMENTS - 1) / NR_OF_SEGMENTS;
+    for (int iSegment = 0; iSegment < NR_OF_SEGMENTS; iSegment++) {
+      m_Segments[iSegment] = new Segment(nSegmentCapacity);
+    }
+  } // c'tor
+
+  /**
+   * returns the segment responsible for a key
+   *
+   * @param key key of an entry
+   * @return segment holding the entry
+   */
+  Segment segmentFor(Key key) {
+    return m_Segments[(key.m_nHash >>> 16) & (NR_OF_SEGMENTS - 1)];
+  }
+
+  /**
+   * look up the score of a node
+   *
+   * @param nNode node the score belongs to
+   * @param nScoreType score type the score was calculated with
+   * @param nParents sorted parents of the node
+   * @return the cached score, or null if the score is not in the cache
+   */
+  public Double get(int nNode, int nScoreType, int[] nParents) {
+    Key key = new Key(nNode, nScoreType, nParents);
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      Double fScore = segment.get(key);
+      if (fScore == null) {
+        segment.m_nMisses++;
+      } else {
+        segment.m_nHits++;
+      }
+      return fScore;
+    }
+  } // get
+
+  /**
+   * store the score of a node
+   *
+   * @param nNode node the score belongs to
+   * @param nScoreType score type the score was calculated with
+   * @param nParents sorted parents of the node, the cache keeps a reference
+   *          to this array so it should not be changed afterwards
+   * @param fScore score of the node
+   */
+  public void put(int nNode, int nScoreType, int[] nParents, double fScore) {
+    Key key = new Key(nNode, nScoreType, nParents);
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      segment.put(key, fScore);
+    }
+  } // put
+
+  /**
+   * drop all cached scores and reset the counters
+   */
+  public void clear() {
+    for (Segment segment : m_Segments) {
+      synchronized (segment) {
+        segment.clear();
+        segment.m_nHits = 0;
+        segment.m_nMisses = 0;
+        segment.m_nEvictions = 0;
+      }
+    }
+  } // clear
+
+  /**
+   * @return number of scores currently in the cache
+   */
+  public int size() {
+    int nSize = 0;
+    for (Segment segment : m_Segments) {
+      synchronized (segment) {
+        nSize += segment.size();
+      }
+    }
+    return nSize;
+  }
+
+  /**
+   * @return max number of scores kept in the cache
+   */
+  public int getCapacity() {
+    return m_nCapacity;
+  }
+
+  /**
+   * @return number of lookups that found a score
+   */
+  public long getHits() {
+    long nHits = 0;
+    for (Segment segment : m_Segments) {
+      synchronized (segment) {
+        nHits += segment.m_nHits;
+      }
+    }
+    return nHits;
+  }
+
+  /**
+   * @return number of lookups that did not find a score
+   */
+  public long getMisses() {
+    long nMisses = 0;
+    for (Segment segment : m_Segments) {
+      synchronized (segment) {
+        nMisses += segment.m_nMisses;
+      }
+    }
+    return nMisses;
+  }
+
+  /**
+   * @return number of scores dropped because the cache was full
+   */
+  public long getEvictions() {
+    long nEvictions = 0;
+    for (Segment segment : m_Segments) {
+      synchronized (segment) {
+        nEvictions += segment.m_nEvictions;
+      }
+    }
+    return nEvictions;
+  }
+
+  /**
+   * @return fraction of lookups that found a score, 0 if there were no
+   *         lookups yet
+   */
+  public double getHitRate() {
+    long nHits = getHits();
+    long nLookups = nHits + getMisses();
+    return nLookups == 0 ? 0 : (double) nHits / nLookups;
+  }
+
+  /**
+   * a string representation of the cache statistics
+   *
+   * @return a string representation
+   */
+  @Override
+  public String toString() {
+    return "Score cache: " + getHits() + " hits, " + getMisses() + " misses, "
+      + getEvictions() + " evictions, hit rate " + Utils.doubleToString(getHitRate(), 3);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+} // class NodeScoreCache
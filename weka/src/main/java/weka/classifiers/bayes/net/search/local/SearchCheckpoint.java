@@ -0,0 +1,223 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SearchCheckpoint.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import weka.classifiers.bayes.BayesNet;
+import weka.classifiers.bayes.net.ParentSet;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * State of a structure search that is written to disk every now and then, so
+ * that a search that was interrupted can be resumed where it left off. Next to
+ * the iteration to continue with and the current and best structures found, a
+ * checkpoint holds state that is specific to the search algorithm, like a
+ * pheromone matrix, a tabu list or a random number generator.
+ * <p/>
+ * Checkpoints are written as gzipped serialized objects. They hold no caches,
+ * which are rebuilt when a search resumes, so they stay small. A checkpoint is
+ * only used to resume a search by the same algorithm with the same score type
+ * and the same settings that shape its state, like the number of colonies, on
+ * a data set with the same relation name and dimensions.
+ *
+ * @version $Revision$
+ */
+public class SearchCheckpoint implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = 5271034561983374520L;
+
+  /** class name of the search algorithm that wrote the checkpoint **/
+  String m_sAlgorithm;
+
+  /** relation name of the data set searched **/
+  String m_sRelationName;
+
+  /** number of attributes of the data set searched **/
+  int m_nNrOfAttributes;
+
+  /** number of instances of the data set searched **/
+  int m_nNrOfInstances;
+
+  /** score type used by the search **/
+  int m_nScoreType;
+
+  /**
+   * settings of the search that determine the layout of its state, see
+   * LocalScoreSearchAlgorithm.getCheckpointSettings()
+   **/
+  String m_sSettings;
+
+  /** iteration to continue with **/
+  int m_nIteration;
+
+  /** parents of every node in the current structure **/
+  int[][] m_nCurrentParents;
+
+  /** score of the current structure **/
+  double m_fCurrentScore;
+
+  /** parents of every node in the best structure found **/
+  int[][] m_nBestParents;
+
+  /** score of the best structure found **/
+  double m_fBestScore;
+
+  /** state specific to the search algorithm **/
+  Serializable m_State;
+
+  /**
+   * c'tor
+   *
+   * @param search search algorithm the checkpoint belongs to
+   * @param instances data set searched
+   */
+  public SearchCheckpoint(LocalScoreSearchAlgorithm search, Instances instances) {
+    m_sAlgorithm = search.getClass().getName();
+    m_sRelationName = instances.relationName();
+    m_nNrOfAttributes = instances.numAttributes();
+    m_nNrOfInstances = instances.numInstances();
+    m_nScoreType = search.m_nScoreType;
+    m_sSettings = search.getCheckpointSettings();
+  } // c'tor
+
+  /**
+   * check whether this checkpoint can be used to resume a search
+   *
+   * @param search search algorithm to resume
+   * @param instances data set to search
+   * @return true if the checkpoint was written by the same algorithm with the
+   *         same score type and settings for a similar data set
+   */
+  public boolean matches(LocalScoreSearchAlgorithm search, Instances instances) {
+    return m_sAlgorithm.equals(search.getClass().getName())
+      && m_sRelationName.equals(instances.relationName())
+      && m_nNrOfAttributes == instances.numAttributes()
+      && m_nNrOfInstances == instances.numInstances()
+      && m_nScoreType == search.m_nScoreType
+      && search.getCheckpointSettings().equals(
+        m_sSettings == null ? "" : m_sSettings);
+  } // matches
+
+  /**
+   * write the checkpoint. The checkpoint is written to a temporary file first,
+   * which then replaces the checkpoint file, so a crash while writing leaves
+   * the previous checkpoint intact.
+   *
+   * @param file file to write to
+   * @throws IOException if the file can not be written
+   */
+  public void write(File file) throws IOException {
+    File tmpFile = new File(file.getPath() + ".tmp");
+    ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+      new GZIPOutputStream(new FileOutputStream(tmpFile))));
+    try {
+      out.writeObject(this);
+    } finally {
+      out.close();
+    }
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Could not replace checkpoint " + file);
+    }
+    if (!tmpFile.renameTo(file)) {
+      throw new IOException("Could not rename " + tmpFile + " to " + file);
+    }
+  } // write
+
+  /**
+   * read a checkpoint
+   *
+   * @param file file to read from
+   * @return the checkpoint
+   * @throws Exception if the file can not be read or holds no checkpoint
+   */
+  public static SearchCheckpoint read(File file) throws Exception {
+    ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+      new GZIPInputStream(new FileInputStream(file))));
+    try {
+      return (SearchCheckpoint) in.readObject();
+    } finally {
+      in.close();
+    }
+  } // read
+
+  /**
+   * get the parents of all nodes of a network
+   *
+   * @param bayesNet network
+   * @return parents per node, in the order they were added
+   */
+  public static int[][] getParentSets(BayesNet bayesNet) {
+    int[][] nParents = new int[bayesNet.getNrOfNodes()][];
+    for (int iNode = 0; iNode < nParents.length; iNode++) {
+      ParentSet parentSet = bayesNet.getParentSet(iNode);
+      nParents[iNode] = new int[parentSet.getNrOfParents()];
+      for (int iParent = 0; iParent < nParents[iNode].length; iParent++) {
+        nParents[iNode][iParent] = parentSet.getParent(iParent);
+      }
+    }
+    return nParents;
+  } // getParentSets
+
+  /**
+   * replace the parents of all nodes of a network
+   *
+   * @param bayesNet network
+   * @param nParents parents per node, as returned by getParentSets
+   * @param instances data set of the network
+   */
+  public static void setParentSets(BayesNet bayesNet, int[][] nParents,
+    Instances instances) {
+    for (int iNode = 0; iNode < nParents.length; iNode++) {
+      ParentSet parentSet = bayesNet.getParentSet(iNode);
+      while (parentSet.getNrOfParents() > 0) {
+        parentSet.deleteLastParent(instances);
+      }
+      for (int iParent : nParents[iNode]) {
+        parentSet.addParent(iParent, instances);
+      }
+    }
+  } // setParentSets
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+} // class SearchCheckpoint
@@ -21,14 +21,19 @@
 
 package weka.classifiers.bayes.net.search.local;
 
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import weka.classifiers.bayes.BayesNet;
+import weka.classifiers.bayes.net.search.SearchTaskRunner;
 import weka.core.Instances;
 import weka.core.Option;
+import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
 import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformation.Field;
@@ -41,6 +46,11 @@ import weka.core.Utils;
  * general purpose search method of simulated annealing to find a well scoring
  * network structure.<br/>
  * <br/>
+ * With more than one chain, chains at increasing temperatures are run in
+ * parallel and exchange their networks from time to time (parallel
+ * tempering), so that the cold chains can escape from local optima through
+ * the hot ones.<br/>
+ * <br/>
  * For more information see:<br/>
  * <br/>
  * R.R. Bouckaert (1995). Bayesian Belief Networks: from Construction to
@@ -86,6 +96,21 @@ import weka.core.Utils;
  * </pre>
  * 
  * <pre>
+ * -chains &lt;integer&gt;
+ *  Number of chains, 1 for a single annealing chain (default 1)
+ * </pre>
+ * 
+ * <pre>
+ * -ratio &lt;float&gt;
+ *  Ratio of the start temperatures of adjacent chains (default 2)
+ * </pre>
+ * 
+ * <pre>
+ * -swap &lt;integer&gt;
+ *  Number of runs between exchanges of networks (default 100)
+ * </pre>
+ * 
+ * <pre>
  * -mbc
  *  Applies a Markov Blanket correction to the network structure, 
  *  after a network structure is learned. This ensures that all 
@@ -98,6 +123,15 @@ import weka.core.Utils;
  *  Score type (BAYES, BDeu, MDL, ENTROPY and AIC)
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads the search runs its tasks on, including
+ *  the thread running the search. 0 means the number of
+ *  available processors. Supported by hill climbing, tabu search,
+ *  simulated annealing, genetic search, ICS and ant colony
+ *  optimization. (default 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Remco Bouckaert (rrb@xm.co.nz)
@@ -127,6 +161,15 @@ public class SimulatedAnnealing extends LocalScoreSearchAlgorithm implements
   /** random number generator **/
   Random m_random;
 
+  /** number of chains, more than one for parallel tempering **/
+  int m_nChains = 1;
+
+  /** ratio of the temperatures of adjacent chains **/
+  double m_fTemperatureRatio = 2;
+
+  /** number of runs between exchanges of networks between chains **/
+  int m_nSwapInterval = 100;
+
   /**
    * Returns an instance of a TechnicalInformation object, containing detailed
    * information about the technical background of this class, e.g., paper
@@ -157,7 +200,24 @@ public class SimulatedAnnealing extends LocalScoreSearchAlgorithm implements
    */
   @Override
   public void search(BayesNet bayesNet, Instances instances) throws Exception {
+    if (m_nChains > 1) {
+      searchParallelTempering(bayesNet, instances);
+      return;
+    }
     m_random = new Random(m_nSeed);
+    double fTemp = m_fTStart;
+    int iFirstRun = 0;
+
+    // continue from the checkpoint, if any
+    SearchCheckpoint checkpoint = loadCheckpoint(instances);
+    if (checkpoint != null) {
+      AnnealingState state = (AnnealingState) checkpoint.m_State;
+      SearchCheckpoint.setParentSets(bayesNet, checkpoint.m_nCurrentParents,
+        instances);
+      m_random = state.m_random;
+      fTemp = state.m_fTemp;
+      iFirstRun = checkpoint.m_nIteration;
+    }
 
     // determine base scores
     double[] fBaseScores = new double[instances.numAttributes()];
@@ -173,63 +233,451 @@ public class SimulatedAnnealing extends LocalScoreSearchAlgorithm implements
     bestBayesNet.m_Instances = instances;
     bestBayesNet.initStructure();
     copyParentSets(bestBayesNet, bayesNet);
+    if (checkpoint != null) {
+      SearchCheckpoint.setParentSets(bestBayesNet, checkpoint.m_nBestParents,
+        instances);
+      fBestScore = checkpoint.m_fBestScore;
+      fCurrentScore = checkpoint.m_fCurrentScore;
+    }
 
+    for (int iRun = iFirstRun; iRun < m_nRuns; iRun++) {
+      fCurrentScore += tryMove(bayesNet, instances, m_random, fTemp,
+        fBaseScores);
+      if (fCurrentScore > fBestScore) {
+        copyParentSets(bestBayesNet, bayesNet);
+      }
+      fTemp = fTemp * m_fDelta;
+
+      if (isCheckpointDue() || (iRun + 1 == m_nRuns && isCheckpointing())) {
+        SearchCheckpoint newCheckpoint = new SearchCheckpoint(this, instances);
+        newCheckpoint.m_nIteration = iRun + 1;
+        newCheckpoint.m_nCurrentParents = SearchCheckpoint.getParentSets(bayesNet);
+        newCheckpoint.m_fCurrentScore = fCurrentScore;
+        newCheckpoint.m_nBestParents = SearchCheckpoint.getParentSets(bestBayesNet);
+        newCheckpoint.m_fBestScore = fBestScore;
+        AnnealingState state = new AnnealingState();
+        state.m_fTemp = fTemp;
+        state.m_random = m_random;
+        newCheckpoint.m_State = state;
+        saveCheckpoint(newCheckpoint);
+      }
+    }
+
+    copyParentSets(bayesNet, bestBayesNet);
+  } // buildStructure
+
+  /**
+   * search with several chains at increasing temperatures that run in
+   * parallel. Every m_nSwapInterval runs, adjacent chains propose to exchange
+   * their networks, alternating between even and odd pairs. Chains have their
+   * own random number generators that are seeded from m_nSeed, and exchanges
+   * are decided in the thread running the search, so the network found does
+   * not depend on the number of threads.
+   * 
+   * @param bayesNet the network
+   * @param instances the data to use
+   * @throws Exception if something goes wrong
+   */
+  void searchParallelTempering(BayesNet bayesNet, Instances instances)
+    throws Exception {
+    m_random = new Random(m_nSeed);
+    // chains share the lookup tables for scoring counts
+    getCountScoreTables(instances);
+    Chain[] chains = new Chain[m_nChains];
     double fTemp = m_fTStart;
-    for (int iRun = 0; iRun < m_nRuns; iRun++) {
-      boolean bRunSucces = false;
-      double fDeltaScore = 0.0;
-      while (!bRunSucces) {
-        // pick two nodes at random
-        int iTailNode = m_random.nextInt(instances.numAttributes());
-        int iHeadNode = m_random.nextInt(instances.numAttributes());
-        while (iTailNode == iHeadNode) {
-          iHeadNode = m_random.nextInt(instances.numAttributes());
+    for (int iChain = 0; iChain < m_nChains; iChain++) {
+      chains[iChain] = new Chain(bayesNet, instances, fTemp,
+        new Random(m_random.nextLong()));
+      fTemp *= m_fTemperatureRatio;
+    }
+    Random swapRandom = new Random(m_random.nextLong());
+    int iFirstRun = 0;
+
+    // continue from the checkpoint, if any
+    SearchCheckpoint checkpoint = loadCheckpoint(instances);
+    if (checkpoint != null) {
+      TemperingState state = (TemperingState) checkpoint.m_State;
+      for (int iChain = 0; iChain < m_nChains; iChain++) {
+        chains[iChain].restore(state, iChain);
+      }
+      swapRandom = state.m_swapRandom;
+      iFirstRun = checkpoint.m_nIteration;
+    }
+
+    SearchTaskRunner<Chain> runner = createTaskRunner(getNumSlotsToUse());
+    try {
+      for (int iRun = iFirstRun; iRun < m_nRuns; iRun += m_nSwapInterval) {
+        int nRuns = Math.min(m_nSwapInterval, m_nRuns - iRun);
+        for (Chain chain : chains) {
+          chain.m_nRuns = nRuns;
+          runner.submit(chain);
         }
-        if (isArc(bayesNet, iHeadNode, iTailNode)) {
-          bRunSucces = true;
-          // either try a delete
-          bayesNet.getParentSet(iHeadNode).deleteParent(iTailNode, instances);
-          double fScore = calcNodeScore(iHeadNode);
-          fDeltaScore = fScore - fBaseScores[iHeadNode];
-          // System.out.println("Try delete " + iTailNode + "->" + iHeadNode +
-          // " dScore = " + fDeltaScore);
-          if (fTemp
-            * Math
-              .log((Math.abs(m_random.nextInt()) % 10000) / 10000.0 + 1e-100) < fDeltaScore) {
-            // System.out.println("success!!!");
-            fCurrentScore += fDeltaScore;
-            fBaseScores[iHeadNode] = fScore;
-          } else {
-            // roll back
-            bayesNet.getParentSet(iHeadNode).addParent(iTailNode, instances);
+        for (int iChain = 0; iChain < m_nChains; iChain++) {
+          try {
+            runner.take().get();
+          } catch (ExecutionException e) {
+            throw new Exception("Simulated annealing chain failed",
+              e.getCause());
           }
-        } else {
-          // try to add an arc
-          if (addArcMakesSense(bayesNet, instances, iHeadNode, iTailNode)) {
-            bRunSucces = true;
-            double fScore = calcScoreWithExtraParent(iHeadNode, iTailNode);
-            fDeltaScore = fScore - fBaseScores[iHeadNode];
-            // System.out.println("Try add " + iTailNode + "->" + iHeadNode +
-            // " dScore = " + fDeltaScore);
-            if (fTemp
-              * Math
-                .log((Math.abs(m_random.nextInt()) % 10000) / 10000.0 + 1e-100) < fDeltaScore) {
-              // System.out.println("success!!!");
-              bayesNet.getParentSet(iHeadNode).addParent(iTailNode, instances);
-              fBaseScores[iHeadNode] = fScore;
-              fCurrentScore += fDeltaScore;
-            }
+        }
+
+        // exchange networks between adjacent chains
+        for (int iChain = (iRun / m_nSwapInterval) % 2; iChain + 1 < m_nChains; iChain += 2) {
+          Chain cold = chains[iChain];
+          Chain hot = chains[iChain + 1];
+          double fLogAccept = (hot.m_fScore - cold.m_fScore)
+            * (1 / cold.m_fTemp - 1 / hot.m_fTemp);
+          double fRandom = swapRandom.nextDouble();
+          if (!Double.isNaN(fLogAccept) && Math.log(fRandom) < fLogAccept) {
+            cold.exchange(hot);
           }
         }
+
+        if (isCheckpointDue()
+          || (iRun + nRuns == m_nRuns && isCheckpointing())) {
+          saveTemperingCheckpoint(chains, swapRandom, instances, iRun + nRuns);
+        }
       }
-      if (fCurrentScore > fBestScore) {
-        copyParentSets(bestBayesNet, bayesNet);
+    } finally {
+      runner.close();
+    }
+
+    Chain best = chains[0];
+    for (Chain chain : chains) {
+      if (chain.m_fBestScore > best.m_fBestScore) {
+        best = chain;
       }
-      fTemp = fTemp * m_fDelta;
     }
+    copyParentSets(bayesNet, best.m_BestBayesNet);
+  } // searchParallelTempering
 
-    copyParentSets(bayesNet, bestBayesNet);
-  } // buildStructure
+  /**
+   * a single chain and parallel tempering keep different states, and the
+   * state of parallel tempering has a network per chain, so a checkpoint is
+   * only resumed with the same number of chains
+   * 
+   * @return the settings that a checkpoint must match
+   */
+  @Override
+  String getCheckpointSettings() {
+    return "chains=" + Math.max(m_nChains, 1);
+  } // getCheckpointSettings
+
+  /**
+   * write a checkpoint of a parallel tempering search
+   * 
+   * @param chains the chains
+   * @param swapRandom random number generator for exchanges
+   * @param instances the data to use
+   * @param nRuns number of runs done
+   * @throws Exception if the checkpoint can not be written
+   */
+  void saveTemperingCheckpoint(Chain[] chains, Random swapRandom,
+    Instances instances, int nRuns) throws Exception {
+    TemperingState state = new TemperingState();
+    state.m_nParents = new int[m_nChains][][];
+    state.m_fScores = new double[m_nChains];
+    state.m_nBestParents = new int[m_nChains][][];
+    state.m_fBestScores = new double[m_nChains];
+    state.m_fTemps = new double[m_nChains];
+    state.m_randoms = new Random[m_nChains];
+    state.m_swapRandom = swapRandom;
+    Chain best = chains[0];
+    for (int iChain = 0; iChain < m_nChains; iChain++) {
+      Chain chain = chains[iChain];
+      state.m_nParents[iChain] = SearchCheckpoint
+        .getParentSets(chain.m_BayesNet);
+      state.m_fScores[iChain] = chain.m_fScore;
+      state.m_nBestParents[iChain] = SearchCheckpoint
+        .getParentSets(chain.m_BestBayesNet);
+      state.m_fBestScores[iChain] = chain.m_fBestScore;
+      state.m_fTemps[iChain] = chain.m_fTemp;
+      state.m_randoms[iChain] = chain.m_random;
+      if (chain.m_fBestScore > best.m_fBestScore) {
+        best = chain;
+      }
+    }
+    SearchCheckpoint checkpoint = new SearchCheckpoint(this, instances);
+    checkpoint.m_nIteration = nRuns;
+    checkpoint.m_nCurrentParents = state.m_nParents[0];
+    checkpoint.m_fCurrentScore = chains[0].m_fScore;
+    checkpoint.m_nBestParents = SearchCheckpoint
+      .getParentSets(best.m_BestBayesNet);
+    checkpoint.m_fBestScore = best.m_fBestScore;
+    checkpoint.m_State = state;
+    saveCheckpoint(checkpoint);
+  } // saveTemperingCheckpoint
+
+  /**
+   * propose random moves until one is possible, and perform it if it is
+   * accepted at the given temperature. Scores are calculated with the network
+   * of this search algorithm, which should be bayesNet.
+   * 
+   * @param bayesNet the network to change
+   * @param instances the data to use
+   * @param random random number generator of the chain
+   * @param fTemp current temperature
+   * @param fBaseScores scores of all nodes, updated if the move is accepted
+   * @return change in score, 0 if the move was rejected
+   */
+  double tryMove(BayesNet bayesNet, Instances instances, Random random,
+    double fTemp, double[] fBaseScores) {
+    while (true) {
+      // pick two nodes at random
+      int iTailNode = random.nextInt(instances.numAttributes());
+      int iHeadNode = random.nextInt(instances.numAttributes());
+      while (iTailNode == iHeadNode) {
+        iHeadNode = random.nextInt(instances.numAttributes());
+      }
+      if (isArc(bayesNet, iHeadNode, iTailNode)) {
+        // either try a delete
+        bayesNet.getParentSet(iHeadNode).deleteParent(iTailNode, instances);
+        double fScore = calcNodeScore(iHeadNode);
+        double fDeltaScore = fScore - fBaseScores[iHeadNode];
+        // System.out.println("Try delete " + iTailNode + "->" + iHeadNode +
+        // " dScore = " + fDeltaScore);
+        if (fTemp
+          * Math
+            .log((Math.abs(random.nextInt()) % 10000) / 10000.0 + 1e-100) < fDeltaScore) {
+          // System.out.println("success!!!");
+          fBaseScores[iHeadNode] = fScore;
+          return fDeltaScore;
+        }
+        // roll back
+        bayesNet.getParentSet(iHeadNode).addParent(iTailNode, instances);
+        return 0;
+      } else if (addArcMakesSense(bayesNet, instances, iHeadNode, iTailNode)) {
+        // try to add an arc
+        double fScore = calcScoreWithExtraParent(iHeadNode, iTailNode);
+        double fDeltaScore = fScore - fBaseScores[iHeadNode];
+        // System.out.println("Try add " + iTailNode + "->" + iHeadNode +
+        // " dScore = " + fDeltaScore);
+        if (fTemp
+          * Math
+            .log((Math.abs(random.nextInt()) % 10000) / 10000.0 + 1e-100) < fDeltaScore) {
+          // System.out.println("success!!!");
+          bayesNet.getParentSet(iHeadNode).addParent(iTailNode, instances);
+          fBaseScores[iHeadNode] = fScore;
+          return fDeltaScore;
+        }
+        return 0;
+      }
+    }
+  } // tryMove
+
+  /**
+   * state of a simulated annealing search that is kept in a checkpoint next to
+   * the structures
+   */
+  static class AnnealingState implements Serializable, RevisionHandler {
+
+    /** for serialization */
+    private static final long serialVersionUID = 8430297364281927753L;
+
+    /** current temperature **/
+    double m_fTemp;
+
+    /** random number generator, in the state it was in at the checkpoint **/
+    Random m_random;
+
+    /**
+     * Returns the revision string.
+     * 
+     * @return the revision
+     */
+    @Override
+    public String getRevision() {
+      return RevisionUtils.extract("$Revision$");
+    }
+  } // class AnnealingState
+
+  /**
+   * one chain of a parallel tempering search. A chain runs at its own
+   * temperature, networks move between chains when they are exchanged.
+   */
+  class Chain implements Callable<Chain> {
+
+    /** scores the network of the chain **/
+    SimulatedAnnealing m_Scorer;
+
+    /** network of the chain **/
+    BayesNet m_BayesNet;
+
+    /** scores of all nodes of the network **/
+    double[] m_fBaseScores;
+
+    /** score of the network **/
+    double m_fScore;
+
+    /** best network the chain has seen **/
+    BayesNet m_BestBayesNet;
+
+    /** score of the best network **/
+    double m_fBestScore;
+
+    /** current temperature **/
+    double m_fTemp;
+
+    /** random number generator of the chain **/
+    Random m_random;
+
+    /** data to use **/
+    Instances m_Instances;
+
+    /** number of runs to do at the next call **/
+    int m_nRuns;
+
+    /**
+     * c'tor
+     * 
+     * @param bayesNet network to start from
+     * @param instances the data to use
+     * @param fTemp start temperature
+     * @param random random number generator of the chain
+     * @throws Exception if the network can not be created
+     */
+    Chain(BayesNet bayesNet, Instances instances, double fTemp, Random random)
+      throws Exception {
+      m_Instances = instances;
+      m_fTemp = fTemp;
+      m_random = random;
+      m_BayesNet = newBayesNet(instances);
+      copyParentSets(m_BayesNet, bayesNet);
+      m_BestBayesNet = newBayesNet(instances);
+      m_Scorer = new SimulatedAnnealing();
+      m_Scorer.copyScoring(SimulatedAnnealing.this);
+      rescore();
+      copyParentSets(m_BestBayesNet, m_BayesNet);
+      m_fBestScore = m_fScore;
+    } // c'tor
+
+    /**
+     * create an empty network for the data
+     * 
+     * @param instances the data to use
+     * @return network without arcs
+     * @throws Exception if the network can not be created
+     */
+    BayesNet newBayesNet(Instances instances) throws Exception {
+      BayesNet bayesNet = new BayesNet();
+      bayesNet.m_Instances = instances;
+      bayesNet.initStructure();
+      return bayesNet;
+    } // newBayesNet
+
+    /**
+     * determine the scores of all nodes of the network
+     */
+    void rescore() {
+      m_Scorer.m_BayesNet = m_BayesNet;
+      m_fBaseScores = new double[m_Instances.numAttributes()];
+      m_fScore = 0;
+      for (int iAttribute = 0; iAttribute < m_Instances.numAttributes(); iAttribute++) {
+        m_fBaseScores[iAttribute] = m_Scorer.calcNodeScore(iAttribute);
+        m_fScore += m_fBaseScores[iAttribute];
+      }
+    } // rescore
+
+    /**
+     * continue the chain from the state kept in a checkpoint
+     * 
+     * @param state state of the search
+     * @param iChain index of the chain
+     * @throws Exception if the networks can not be restored
+     */
+    void restore(TemperingState state, int iChain) throws Exception {
+      SearchCheckpoint.setParentSets(m_BayesNet, state.m_nParents[iChain],
+        m_Instances);
+      SearchCheckpoint.setParentSets(m_BestBayesNet,
+        state.m_nBestParents[iChain], m_Instances);
+      rescore();
+      m_fScore = state.m_fScores[iChain];
+      m_fBestScore = state.m_fBestScores[iChain];
+      m_fTemp = state.m_fTemps[iChain];
+      m_random = state.m_randoms[iChain];
+    } // restore
+
+    /**
+     * exchange networks with another chain. Temperatures and random number
+     * generators stay with the chains.
+     * 
+     * @param other chain to exchange with
+     */
+    void exchange(Chain other) {
+      SimulatedAnnealing scorer = m_Scorer;
+      m_Scorer = other.m_Scorer;
+      other.m_Scorer = scorer;
+      BayesNet bayesNet = m_BayesNet;
+      m_BayesNet = other.m_BayesNet;
+      other.m_BayesNet = bayesNet;
+      double[] fBaseScores = m_fBaseScores;
+      m_fBaseScores = other.m_fBaseScores;
+      other.m_fBaseScores = fBaseScores;
+      double fScore = m_fScore;
+      m_fScore = other.m_fScore;
+      other.m_fScore = fScore;
+    } // exchange
+
+    /**
+     * do the next m_nRuns runs of the chain
+     * 
+     * @return this chain
+     */
+    @Override
+    public Chain call() {
+      for (int iRun = 0; iRun < m_nRuns; iRun++) {
+        m_fScore += m_Scorer.tryMove(m_BayesNet, m_Instances, m_random,
+          m_fTemp, m_fBaseScores);
+        if (m_fScore > m_fBestScore) {
+          copyParentSets(m_BestBayesNet, m_BayesNet);
+          m_fBestScore = m_fScore;
+        }
+        m_fTemp = m_fTemp * m_fDelta;
+      }
+      return this;
+    } // call
+  } // class Chain
+
+  /**
+   * state of a parallel tempering search that is kept in a checkpoint next to
+   * the structures
+   */
+  static class TemperingState implements Serializable, RevisionHandler {
+
+    /** for serialization */
+    private static final long serialVersionUID = -2816343709147723187L;
+
+    /** parent sets of the network of every chain **/
+    int[][][] m_nParents;
+
+    /** score of the network of every chain **/
+    double[] m_fScores;
+
+    /** parent sets of the best network of every chain **/
+    int[][][] m_nBestParents;
+
+    /** score of the best network of every chain **/
+    double[] m_fBestScores;
+
+    /** current temperature of every chain **/
+    double[] m_fTemps;
+
+    /** random number generator of every chain **/
+    Random[] m_randoms;
+
+    /** random number generator for exchanges **/
+    Random m_swapRandom;
+
+    /**
+     * Returns the revision string.
+     * 
+     * @return the revision
+     */
+    @Override
+    public String getRevision() {
+      return RevisionUtils.extract("$Revision$");
+    }
+  } // class TemperingState
 
   /**
    * CopyParentSets copies parent sets of source to dest BayesNet
@@ -309,6 +757,54 @@ public class SimulatedAnnealing extends LocalScoreSearchAlgorithm implements
     m_nSeed = nSeed;
   } // setSeed
 
+  /**
+   * @return number of chains
+   */
+  public int getChains() {
+    return m_nChains;
+  } // getChains
+
+  /**
+   * Sets the number of chains
+   * 
+   * @param nChains number of chains, 1 for a single annealing chain
+   */
+  public void setChains(int nChains) {
+    m_nChains = nChains;
+  } // setChains
+
+  /**
+   * @return ratio of the temperatures of adjacent chains
+   */
+  public double getTemperatureRatio() {
+    return m_fTemperatureRatio;
+  } // getTemperatureRatio
+
+  /**
+   * Sets the ratio of the temperatures of adjacent chains
+   * 
+   * @param fTemperatureRatio the ratio to set
+   */
+  public void setTemperatureRatio(double fTemperatureRatio) {
+    m_fTemperatureRatio = fTemperatureRatio;
+  } // setTemperatureRatio
+
+  /**
+   * @return number of runs between exchanges of networks
+   */
+  public int getSwapInterval() {
+    return m_nSwapInterval;
+  } // getSwapInterval
+
+  /**
+   * Sets the number of runs between exchanges of networks
+   * 
+   * @param nSwapInterval the number of runs to set
+   */
+  public void setSwapInterval(int nSwapInterval) {
+    m_nSwapInterval = Math.max(1, nSwapInterval);
+  } // setSwapInterval
+
   /**
    * Returns an enumeration describing the available options.
    * 
@@ -316,7 +812,7 @@ public class SimulatedAnnealing extends LocalScoreSearchAlgorithm implements
    */
   @Override
   public Enumeration<Option> listOptions() {
-    Vector<Option> newVector = new Vector<Option>(4);
+    Vector<Option> newVector = new Vector<Option>(8);
 
     newVector
       .addElement(new Option("\tStart temperature", "A", 1, "-A <float>"));
@@ -326,6 +822,15 @@ public class SimulatedAnnealing extends LocalScoreSearchAlgorithm implements
       .addElement(new Option("\tDelta temperature", "D", 1, "-D <float>"));
     newVector
       .addElement(new Option("\tRandom number seed", "R", 1, "-R <seed>"));
+    newVector.addElement(new Option(
+      "\tNumber of chains, 1 for a single annealing chain (default 1)",
+      "chains", 1, "-chains <integer>"));
+    newVector.addElement(new Option(
+      "\tRatio of the start temperatures of adjacent chains (default 2)",
+      "ratio", 1, "-ratio <float>"));
+    newVector.addElement(new Option(
+      "\tNumber of runs between exchanges of networks (default 100)", "swap",
+      1, "-swap <integer>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -360,6 +865,21 @@ public class SimulatedAnnealing extends LocalScoreSearchAlgorithm implements
    * </pre>
    * 
    * <pre>
+   * -chains &lt;integer&gt;
+   *  Number of chains, 1 for a single annealing chain (default 1)
+   * </pre>
+   * 
+   * <pre>
+   * -ratio &lt;float&gt;
+   *  Ratio of the start temperatures of adjacent chains (default 2)
+   * </pre>
+   * 
+   * <pre>
+   * -swap &lt;integer&gt;
+   *  Number of runs between exchanges of networks (default 100)
+   * </pre>
+   * 
+   * <pre>
    * -mbc
    *  Applies a Markov Blanket correction to the network structure, 
    *  after a network structure is learned. This ensures that all 
@@ -372,6 +892,15 @@ public class SimulatedAnnealing extends LocalScoreSearchAlgorithm implements
    *  Score type (BAYES, BDeu, MDL, ENTROPY and AIC)
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads the search runs its tasks on, including
+   *  the thread running the search. 0 means the number of
+   *  available processors. Supported by hill climbing, tabu search,
+   *  simulated annealing, genetic search, ICS and ant colony
+   *  optimization. (default 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -395,6 +924,18 @@ public class SimulatedAnnealing extends LocalScoreSearchAlgorithm implements
     if (sSeed.length() != 0) {
       setSeed(Integer.parseInt(sSeed));
     }
+    String sChains = Utils.getOption("chains", options);
+    if (sChains.length() != 0) {
+      setChains(Integer.parseInt(sChains));
+    }
+    String sRatio = Utils.getOption("ratio", options);
+    if (sRatio.length() != 0) {
+      setTemperatureRatio(Double.parseDouble(sRatio));
+    }
+    String sSwap = Utils.getOption("swap", options);
+    if (sSwap.length() != 0) {
+      setSwapInterval(Integer.parseInt(sSwap));
+    }
     super.setOptions(options);
   }
 
@@ -420,6 +961,15 @@ public class SimulatedAnnealing extends LocalScoreSearchAlgorithm implements
     options.add("-R");
     options.add("" + getSeed());
 
+    options.add("-chains");
+    options.add("" + getChains());
+
+    options.add("-ratio");
+    options.add("" + getTemperatureRatio());
+
+    options.add("-swap");
+    options.add("" + getSwapInterval());
+
     Collections.addAll(options, super.getOptions());
 
     return options.toArray(new String[0]);
@@ -469,6 +1019,31 @@ public class SimulatedAnnealing extends LocalScoreSearchAlgorithm implements
       + " Setting the seed allows replicability of experiments.";
   } // seedTipText
 
+  /**
+   * @return a string to describe the Chains option.
+   */
+  public String chainsTipText() {
+    return "Sets the number of chains. With more than one chain, chains at increasing "
+      + "temperatures run in parallel and exchange their networks from time to time "
+      + "(parallel tempering). With one chain, a single simulated annealing run is done.";
+  } // chainsTipText
+
+  /**
+   * @return a string to describe the TemperatureRatio option.
+   */
+  public String temperatureRatioTipText() {
+    return "Sets the ratio of the start temperatures of adjacent chains. The first chain "
+      + "starts at the start temperature.";
+  } // temperatureRatioTipText
+
+  /**
+   * @return a string to describe the SwapInterval option.
+   */
+  public String swapIntervalTipText() {
+    return "Sets the number of iterations between proposals to exchange the networks "
+      + "of adjacent chains.";
+  } // swapIntervalTipText
+
   /**
    * Returns the revision string.
    * 
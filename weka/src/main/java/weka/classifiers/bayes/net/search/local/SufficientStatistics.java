@@ -0,0 +1,56 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SufficientStatistics.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+/**
+ * Source of the frequency counts that local scores are calculated from. A
+ * search algorithm handed an implementation does not look at the instances to
+ * count, so counts can come from a precomputed store, e.g. one filled by a
+ * database query, or from a data set in which identical rows are merged.
+ * <p/>
+ * Implementations must be safe to call from several threads at once.
+ *
+ * @version $Revision$
+ */
+public interface SufficientStatistics {
+
+  /**
+   * determine frequency counts of a node for every configuration of its
+   * parents, with the first parent as most significant digit of the
+   * configuration
+   *
+   * @param nNode node to count values for
+   * @param nParents parents of the node
+   * @param nNrOfParents number of parents in nParents to use
+   * @return counts, indexed by numValues * parent configuration + value of
+   *         the node
+   */
+  int[] getCounts(int nNode, int[] nParents, int nNrOfParents);
+
+  /**
+   * get the number of instances the counts are taken from, which is the sum of
+   * the counts of any node
+   *
+   * @return total count
+   */
+  int getTotalCount();
+}
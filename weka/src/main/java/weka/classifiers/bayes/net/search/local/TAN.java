@@ -123,6 +123,7 @@ public class TAN extends LocalScoreSearchAlgorithm implements
   public void buildStructure(BayesNet bayesNet, Instances instances)
     throws Exception {
 
+    long[] nStartCounters = getSearchCounters();
     m_bInitAsNaiveBayes = true;
     m_nMaxNrOfParents = 2;
     super.buildStructure(bayesNet, instances);
@@ -229,6 +230,8 @@ public class TAN extends LocalScoreSearchAlgorithm implements
       }
     }
 
+    // the spanning tree is built outside refineStructure
+    recordSearchTotals(nStartCounters);
   } // buildStructure
 
   /**
@@ -21,6 +21,7 @@
 
 package weka.classifiers.bayes.net.search.local;
 
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Vector;
@@ -28,6 +29,7 @@ import java.util.Vector;
 import weka.classifiers.bayes.BayesNet;
 import weka.core.Instances;
 import weka.core.Option;
+import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
 import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformation.Field;
@@ -172,6 +174,24 @@ public class TabuSearch extends HillClimber implements
     throws Exception {
     m_oTabuList = new Operation[m_nTabuList];
     int iCurrentTabuList = 0;
+    int iFirstRun = 0;
+
+    // continue from the checkpoint, if any
+    SearchCheckpoint checkpoint = loadCheckpoint(instances);
+    if (checkpoint != null) {
+      TabuState state = (TabuState) checkpoint.m_State;
+      SearchCheckpoint.setParentSets(bayesNet, checkpoint.m_nCurrentParents,
+        instances);
+      for (int iTabu = 0; iTabu < m_nTabuList && iTabu < state.m_nTabuList.length; iTabu++) {
+        int[] nOperation = state.m_nTabuList[iTabu];
+        if (nOperation != null) {
+          m_oTabuList[iTabu] = new Operation(nOperation[1], nOperation[2],
+            nOperation[0]);
+        }
+      }
+      iCurrentTabuList = state.m_iCurrentTabuList % m_nTabuList;
+      iFirstRun = checkpoint.m_nIteration;
+    }
     initCache(bayesNet, instances);
 
     // keeps track of score pf best structure found so far
@@ -190,9 +210,15 @@ public class TabuSearch extends HillClimber implements
     bestBayesNet.m_Instances = instances;
     bestBayesNet.initStructure();
     copyParentSets(bestBayesNet, bayesNet);
+    if (checkpoint != null) {
+      SearchCheckpoint.setParentSets(bestBayesNet, checkpoint.m_nBestParents,
+        instances);
+      fBestScore = checkpoint.m_fBestScore;
+      fCurrentScore = checkpoint.m_fCurrentScore;
+    }
 
     // go do the search
-    for (int iRun = 0; iRun < m_nRuns; iRun++) {
+    for (int iRun = iFirstRun; iRun < m_nRuns; iRun++) {
       Operation oOperation = getOptimalOperation(bayesNet, instances);
       performOperation(bayesNet, instances, oOperation);
       // sanity check
@@ -214,6 +240,11 @@ public class TabuSearch extends HillClimber implements
       if (bayesNet.getDebug()) {
         printTabuList();
       }
+
+      if (isCheckpointDue() || (iRun + 1 == m_nRuns && isCheckpointing())) {
+        saveCheckpoint(makeCheckpoint(instances, iRun + 1, bayesNet,
+          fCurrentScore, bestBayesNet, fBestScore, iCurrentTabuList));
+      }
     }
 
     // restore current network to best network
@@ -224,6 +255,67 @@ public class TabuSearch extends HillClimber implements
     m_Cache = null;
   } // search
 
+  /**
+   * state of a tabu search that is kept in a checkpoint next to the
+   * structures
+   */
+  static class TabuState implements Serializable, RevisionHandler {
+
+    /** for serialization */
+    private static final long serialVersionUID = -2219764215347370911L;
+
+    /** operation, tail and head of every entry in the tabu list **/
+    int[][] m_nTabuList;
+
+    /** position of the next entry in the tabu list **/
+    int m_iCurrentTabuList;
+
+    /**
+     * Returns the revision string.
+     * 
+     * @return the revision
+     */
+    @Override
+    public String getRevision() {
+      return RevisionUtils.extract("$Revision$");
+    }
+  } // class TabuState
+
+  /**
+   * create a checkpoint of the search
+   * 
+   * @param instances the data used
+   * @param iNextRun run to continue with
+   * @param bayesNet current network
+   * @param fCurrentScore score of the current network
+   * @param bestBayesNet best network found so far
+   * @param fBestScore score of the best network
+   * @param iCurrentTabuList position of the next entry in the tabu list
+   * @return the checkpoint
+   */
+  SearchCheckpoint makeCheckpoint(Instances instances, int iNextRun,
+    BayesNet bayesNet, double fCurrentScore, BayesNet bestBayesNet,
+    double fBestScore, int iCurrentTabuList) {
+    SearchCheckpoint checkpoint = new SearchCheckpoint(this, instances);
+    checkpoint.m_nIteration = iNextRun;
+    checkpoint.m_nCurrentParents = SearchCheckpoint.getParentSets(bayesNet);
+    checkpoint.m_fCurrentScore = fCurrentScore;
+    checkpoint.m_nBestParents = SearchCheckpoint.getParentSets(bestBayesNet);
+    checkpoint.m_fBestScore = fBestScore;
+    TabuState state = new TabuState();
+    state.m_nTabuList = new int[m_nTabuList][];
+    for (int iTabu = 0; iTabu < m_nTabuList; iTabu++) {
+      Operation oOperation = m_oTabuList[iTabu];
+      if (oOperation != null) {
+        state.m_nTabuList[iTabu] = new int[] { oOperation.m_nOperation,
+          oOperation.m_nTail, oOperation.m_nHead };
+      }
+    }
+    state.m_iCurrentTabuList = iCurrentTabuList;
+    checkpoint.m_State = state;
+    return checkpoint;
+  } // makeCheckpoint
+
   /**
    * copyParentSets copies parent sets of source to dest BayesNet
    * 
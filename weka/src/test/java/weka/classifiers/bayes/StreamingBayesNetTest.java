@@ -0,0 +1,365 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.bayes.net.BayesNetGenerator;
+import weka.classifiers.bayes.net.ParentSet;
+import weka.classifiers.bayes.net.search.AbstractSearchTest;
+import weka.classifiers.bayes.net.search.local.AntColonyOptimization;
+import weka.classifiers.bayes.net.search.local.HillClimber;
+import weka.classifiers.bayes.net.search.local.K2;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Tests that the CPTs of a StreamingBayesNet are those of a BayesNet built on
+ * its window, and that refreshes search, skip and warm start as they should.
+ * Refreshes run on the thread that starts them. Run from the command line
+ * with:
+ * <p/>
+ * java weka.classifiers.bayes.StreamingBayesNetTest
+ *
+ * @version $Revision$
+ */
+public class StreamingBayesNetTest extends AbstractSearchTest {
+
+  /** number of instances in the window */
+  protected static final int WINDOW_SIZE = 300;
+
+  /** number of updates between two refreshes */
+  protected static final int REFRESH_INTERVAL = 100;
+
+  /** data of a different network over the same attributes, to drift to */
+  protected Instances m_Drift;
+
+  /** number of refreshes the executor ran */
+  protected AtomicInteger m_nNrOfRuns;
+
+  /**
+   * Constructs the <code>StreamingBayesNetTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public StreamingBayesNetTest(String name) {
+    super(name);
+  }
+
+  /**
+   * the options of the BayesNetGenerator that generates the data
+   *
+   * @return the options
+   */
+  @Override
+  protected String getGeneratorOptions() {
+    return "-N 8 -A 10 -M 1000 -C 3 -S 1";
+  }
+
+  /**
+   * Called by JUnit before each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    BayesNetGenerator generator = new BayesNetGenerator();
+    generator.setOptions(Utils.splitOptions("-N 8 -A 10 -M 1000 -C 3 -S 2"));
+    generator.generateRandomNetwork();
+    generator.generateInstances();
+    m_Drift = new Instances(generator.m_Instances);
+    m_nNrOfRuns = new AtomicInteger();
+  }
+
+  /**
+   * Called by JUnit after each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    m_Drift = null;
+
+    super.tearDown();
+  }
+
+  /**
+   * create a streaming network whose refreshes run on the thread that starts
+   * them, built on the first instances of the data
+   *
+   * @param nRefreshInterval number of updates between two refreshes
+   * @return the network
+   * @throws Exception if the network can not be built
+   */
+  protected StreamingBayesNet streaming(int nRefreshInterval) throws Exception {
+    StreamingBayesNet bayesNet = new StreamingBayesNet();
+    bayesNet.setWindowSize(WINDOW_SIZE);
+    bayesNet.setRefreshInterval(nRefreshInterval);
+    bayesNet.setSearchAlgorithm(new K2());
+    bayesNet.setExecutor(new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        m_nNrOfRuns.incrementAndGet();
+        command.run();
+      }
+    });
+    return bayesNet;
+  }
+
+  /**
+   * build a network on the first instances of the data
+   *
+   * @param bayesNet the network
+   * @throws Exception if the network can not be built
+   */
+  protected void build(StreamingBayesNet bayesNet) throws Exception {
+    bayesNet.buildClassifier(new Instances(m_Instances, 0, WINDOW_SIZE));
+  }
+
+  /**
+   * update a network with instances of a data set
+   *
+   * @param bayesNet the network
+   * @param instances the data
+   * @param nFirst first instance to update with
+   * @param nLast instance after the last one to update with
+   * @throws Exception if an update fails
+   */
+  protected void update(StreamingBayesNet bayesNet, Instances instances,
+    int nFirst, int nLast) throws Exception {
+    for (int iInstance = nFirst; iInstance < nLast; iInstance++) {
+      bayesNet.updateClassifier(instances.instance(iInstance));
+    }
+  }
+
+  /**
+   * the instances in the window of a network, oldest first
+   *
+   * @param bayesNet the network
+   * @return the instances
+   */
+  protected Instances window(StreamingBayesNet bayesNet) {
+    Instances window = new Instances(bayesNet.m_Instances,
+      bayesNet.m_Window.size());
+    for (Instance instance : bayesNet.m_Window) {
+      window.add(instance);
+    }
+    return window;
+  }
+
+  /**
+   * copy the parent sets of a network
+   *
+   * @param bayesNet the network
+   * @return the copies
+   */
+  protected ParentSet[] copyParentSets(BayesNet bayesNet) {
+    ParentSet[] parentSets = new ParentSet[bayesNet.getNrOfNodes()];
+    for (int iNode = 0; iNode < parentSets.length; iNode++) {
+      parentSets[iNode] = new ParentSet(bayesNet.getParentSet(iNode));
+    }
+    return parentSets;
+  }
+
+  /**
+   * tests that the CPTs of a streaming network are those of a network with
+   * the same structure, built on the instances of its window
+   *
+   * @param bayesNet the streaming network
+   * @param window the instances of its window
+   * @throws Exception if the CPTs can not be estimated
+   */
+  protected void checkCPTs(StreamingBayesNet bayesNet, Instances window)
+    throws Exception {
+    assertEquals(WINDOW_SIZE, bayesNet.getNrOfWindowInstances());
+    BayesNet expected = new BayesNet();
+    expected.m_Instances = window;
+    expected.m_ParentSets = copyParentSets(bayesNet);
+    expected.estimateCPTs();
+    for (int iNode = 0; iNode < bayesNet.getNrOfNodes(); iNode++) {
+      int nCardinality = bayesNet.getParentSet(iNode).getCardinalityOfParents();
+      for (int iParent = 0; iParent < nCardinality; iParent++) {
+        for (int iValue = 0; iValue < bayesNet.getCardinality(iNode); iValue++) {
+          assertEquals("node " + iNode + " parents " + iParent + " value "
+            + iValue, expected.getProbability(iNode, iParent, iValue),
+            bayesNet.getProbability(iNode, iParent, iValue), 1e-12);
+        }
+      }
+    }
+  }
+
+  /**
+   * tests that instances leaving the window are subtracted from the CPTs
+   *
+   * @throws Exception if a test fails
+   */
+  public void testWindowedCPTs() throws Exception {
+    StreamingBayesNet bayesNet = streaming(0);
+    build(bayesNet);
+    checkCPTs(bayesNet, new Instances(m_Instances, 0, WINDOW_SIZE));
+    update(bayesNet, m_Instances, WINDOW_SIZE, m_Instances.numInstances());
+    checkCPTs(bayesNet, new Instances(m_Instances, m_Instances.numInstances()
+      - WINDOW_SIZE, WINDOW_SIZE));
+    assertEquals(0, m_nNrOfRuns.get());
+  }
+
+  /**
+   * tests that a refresh replaces the structure and re-estimates the CPTs
+   * from the window
+   *
+   * @throws Exception if a test fails
+   */
+  public void testRefresh() throws Exception {
+    StreamingBayesNet bayesNet = streaming(REFRESH_INTERVAL);
+    build(bayesNet);
+    String sBefore = parents(bayesNet);
+    update(bayesNet, m_Drift, 0, REFRESH_INTERVAL);
+    assertEquals(1, m_nNrOfRuns.get());
+    // the refresh finished, it is installed by the next update
+    assertEquals(0, bayesNet.getNrOfRefreshes());
+    assertEquals(sBefore, parents(bayesNet));
+    update(bayesNet, m_Drift, REFRESH_INTERVAL, REFRESH_INTERVAL + 1);
+    assertEquals(1, bayesNet.getNrOfRefreshes());
+    assertFalse(sBefore.equals(parents(bayesNet)));
+    checkCPTs(bayesNet, window(bayesNet));
+  }
+
+  /**
+   * tests that refreshes skip the search while the score has not dropped by
+   * more than the drift threshold, and always search without threshold
+   *
+   * @throws Exception if a test fails
+   */
+  public void testDriftThreshold() throws Exception {
+    StreamingBayesNet bayesNet = streaming(REFRESH_INTERVAL);
+    build(bayesNet);
+    update(bayesNet, m_Instances, WINDOW_SIZE, WINDOW_SIZE + 3
+      * REFRESH_INTERVAL);
+    bayesNet.waitForRefresh();
+    assertEquals(3, m_nNrOfRuns.get());
+    assertEquals(3, bayesNet.getNrOfRefreshes());
+
+    m_nNrOfRuns.set(0);
+    bayesNet = streaming(REFRESH_INTERVAL);
+    bayesNet.setDriftThreshold(1e6);
+    build(bayesNet);
+    update(bayesNet, m_Instances, WINDOW_SIZE, WINDOW_SIZE + 3
+      * REFRESH_INTERVAL);
+    bayesNet.waitForRefresh();
+    assertEquals(3, m_nNrOfRuns.get());
+    // the first refresh has no score to compare with
+    assertEquals(1, bayesNet.getNrOfRefreshes());
+  }
+
+  /**
+   * tests that an ant colony refresh continues from the current structure
+   * and the pheromone the last refresh ended with
+   *
+   * @throws Exception if a test fails
+   */
+  public void testAntColonyRefresh() throws Exception {
+    AntColonyOptimization refreshSearch = new AntColonyOptimization();
+    refreshSearch.setSeed(3);
+    StreamingBayesNet bayesNet = streaming(REFRESH_INTERVAL);
+    bayesNet.setRefreshSearch(refreshSearch);
+    bayesNet.setRefreshSteps(2);
+    build(bayesNet);
+    update(bayesNet, m_Drift, 0, 2 * REFRESH_INTERVAL - 1);
+    assertEquals(1, bayesNet.getNrOfRefreshes());
+    double[][] pheromone = bayesNet.m_Pheromone;
+    assertNotNull(pheromone);
+    ParentSet[] parentSets = copyParentSets(bayesNet);
+
+    // the second refresh runs on the last update
+    update(bayesNet, m_Drift, 2 * REFRESH_INTERVAL - 1, 2 * REFRESH_INTERVAL);
+    Instances window = window(bayesNet);
+    bayesNet.waitForRefresh();
+    assertEquals(2, bayesNet.getNrOfRefreshes());
+
+    BayesNet expected = new BayesNet();
+    expected.m_Instances = window;
+    expected.m_ParentSets = parentSets;
+    AntColonyOptimization search = new AntColonyOptimization();
+    search.setSeed(3);
+    search.setNumOfIterations(2);
+    search.setWarmStart(true);
+    search.setInitialPheromone(pheromone);
+    search.refineStructure(expected, window);
+    assertEquals(parents(expected), parents(bayesNet));
+    double[][] lastPheromone = search.getLastPheromone();
+    for (int iRow = 0; iRow < lastPheromone.length; iRow++) {
+      for (int iColumn = 0; iColumn < lastPheromone[iRow].length; iColumn++) {
+        assertEquals(lastPheromone[iRow][iColumn],
+          bayesNet.m_Pheromone[iRow][iColumn], 0);
+      }
+    }
+  }
+
+  /**
+   * tests that only searches that can be limited to a few steps from the
+   * current structure refresh it
+   *
+   * @throws Exception if a test fails
+   */
+  public void testRefreshSearch() throws Exception {
+    StreamingBayesNet bayesNet = new StreamingBayesNet();
+    bayesNet.setRefreshSearch(new HillClimber());
+    bayesNet.setRefreshSearch(new AntColonyOptimization());
+    try {
+      bayesNet.setRefreshSearch(new K2());
+      fail("K2 can not refresh");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      bayesNet.setOptions(Utils.splitOptions("-refresh-search "
+        + "weka.classifiers.bayes.net.search.local.K2"));
+      fail("K2 can not refresh");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertTrue(bayesNet.getRefreshSearch() instanceof AntColonyOptimization);
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(StreamingBayesNetTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
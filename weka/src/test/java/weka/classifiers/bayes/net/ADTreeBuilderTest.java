@@ -0,0 +1,270 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.bayes.net.search.AbstractSearchTest;
+import weka.core.Instance;
+
+/**
+ * Tests that ADTrees built with leaf lists, a memory budget that leaves nodes
+ * to be expanded on first use, or several threads count the same as counting
+ * the data directly, and that expanded nodes release the data of their
+ * builder. Run from the command line with:
+ * <p/>
+ * java weka.classifiers.bayes.net.ADTreeBuilderTest
+ *
+ * @version $Revision$
+ */
+public class ADTreeBuilderTest extends AbstractSearchTest {
+
+  /**
+   * Constructs the <code>ADTreeBuilderTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public ADTreeBuilderTest(String name) {
+    super(name);
+  }
+
+  /**
+   * the options of the BayesNetGenerator that generates the data
+   *
+   * @return the options
+   */
+  @Override
+  protected String getGeneratorOptions() {
+    return "-N 9 -A 14 -M 2000 -C 3 -S 8";
+  }
+
+  /**
+   * build an ADTree
+   *
+   * @param nLeafListThreshold leaf list threshold of the builder
+   * @param nMemoryBudget memory budget of the builder
+   * @param nNumThreads number of threads of the builder
+   * @return the tree
+   */
+  protected ADNode build(int nLeafListThreshold, long nMemoryBudget,
+    int nNumThreads) {
+    ADTreeBuilder builder = new ADTreeBuilder();
+    builder.setLeafListThreshold(nLeafListThreshold);
+    builder.setMemoryBudget(nMemoryBudget);
+    builder.setNumThreads(nNumThreads);
+    return builder.build(m_Instances);
+  }
+
+  /**
+   * all sets of one to three nodes, in increasing order of node index
+   *
+   * @return the node sets
+   */
+  protected List<int[]> nodeSets() {
+    int nNrOfAtts = m_Instances.numAttributes();
+    List<int[]> nodeSets = new ArrayList<int[]>();
+    for (int i = 0; i < nNrOfAtts; i++) {
+      nodeSets.add(new int[] { i });
+      for (int j = i + 1; j < nNrOfAtts; j++) {
+        nodeSets.add(new int[] { i, j });
+        for (int k = j + 1; k < nNrOfAtts; k++) {
+          nodeSets.add(new int[] { i, j, k });
+        }
+      }
+    }
+    return nodeSets;
+  }
+
+  /**
+   * offsets of the nodes in the counts, the last node varying fastest
+   *
+   * @param nNodes the nodes
+   * @return the offsets
+   */
+  protected int[] offsets(int[] nNodes) {
+    int[] nOffsets = new int[nNodes.length];
+    int nOffset = 1;
+    for (int iNode = nNodes.length - 1; iNode >= 0; iNode--) {
+      nOffsets[iNode] = nOffset;
+      nOffset *= m_Instances.attribute(nNodes[iNode]).numValues();
+    }
+    return nOffsets;
+  }
+
+  /**
+   * count the value combinations of nodes with a tree
+   *
+   * @param tree the tree
+   * @param nNodes the nodes
+   * @return the counts
+   */
+  protected int[] treeCounts(ADNode tree, int[] nNodes) {
+    int[] nOffsets = offsets(nNodes);
+    int[] nCounts = new int[nOffsets[0]
+      * m_Instances.attribute(nNodes[0]).numValues()];
+    tree.getCounts(nCounts, nNodes, nOffsets, 0, 0, false);
+    return nCounts;
+  }
+
+  /**
+   * count the value combinations of nodes in the data directly
+   *
+   * @param nNodes the nodes
+   * @return the counts
+   */
+  protected int[] plainCounts(int[] nNodes) {
+    int[] nOffsets = offsets(nNodes);
+    int[] nCounts = new int[nOffsets[0]
+      * m_Instances.attribute(nNodes[0]).numValues()];
+    for (Instance instance : m_Instances) {
+      int iCount = 0;
+      for (int iNode = 0; iNode < nNodes.length; iNode++) {
+        iCount += nOffsets[iNode] * (int) instance.value(nNodes[iNode]);
+      }
+      nCounts[iCount]++;
+    }
+    return nCounts;
+  }
+
+  /**
+   * tests that the counts of a tree are those of the data, for all sets of
+   * one to three nodes
+   *
+   * @param sMessage message to fail with
+   * @param tree the tree
+   */
+  protected void checkCounts(String sMessage, ADNode tree) {
+    for (int[] nNodes : nodeSets()) {
+      int[] nExpected = plainCounts(nNodes);
+      int[] nCounts = treeCounts(tree, nNodes);
+      for (int iCount = 0; iCount < nExpected.length; iCount++) {
+        assertEquals(sMessage, nExpected[iCount], nCounts[iCount]);
+      }
+    }
+  }
+
+  /**
+   * tests that expanded nodes do not refer to their builder, and that nodes
+   * keeping their records do
+   *
+   * @param node root of the (sub) tree
+   * @return number of nodes that keep their records
+   */
+  protected int checkReleased(ADNode node) {
+    if (node.m_VaryNodes == null) {
+      assertNotNull(node.m_nRecords);
+      assertNotNull(node.m_Builder);
+      return 1;
+    }
+    assertNull(node.m_nRecords);
+    assertNull(node.m_Builder);
+    int nNrOfRecordNodes = 0;
+    for (VaryNode varyNode : node.m_VaryNodes) {
+      for (ADNode child : varyNode.m_ADNodes) {
+        if (child != null) {
+          nNrOfRecordNodes += checkReleased(child);
+        }
+      }
+    }
+    return nNrOfRecordNodes;
+  }
+
+  /**
+   * tests eager trees, with and without leaf lists and threads
+   */
+  public void testEager() {
+    ADNode tree = build(0, 0, 1);
+    checkCounts("eager", tree);
+    assertEquals(0, checkReleased(tree));
+    checkCounts("leaf lists", build(16, 0, 1));
+    checkCounts("threads", build(0, 0, 4));
+  }
+
+  /**
+   * tests that lazy nodes count the same as eager ones, and are expanded and
+   * release their builder once they are counted
+   */
+  public void testLazy() {
+    ADNode tree = build(0, 1, 1);
+    int nNrOfLazyNodes = checkReleased(tree);
+    assertTrue(nNrOfLazyNodes > 0);
+    checkCounts("lazy", tree);
+    // counting every set of up to three nodes expands the top of the tree
+    assertTrue(checkReleased(tree) != nNrOfLazyNodes);
+    // a tree expanded while it is counted counts the same the second time
+    checkCounts("expanded", tree);
+    checkCounts("lazy leaf lists", build(16, 1, 1));
+    checkCounts("lazy threads", build(16, 20000, 4));
+  }
+
+  /**
+   * tests that lazy nodes expanded by several threads at once count right
+   *
+   * @throws Exception if a test fails
+   */
+  public void testConcurrentExpansion() throws Exception {
+    final ADNode tree = build(0, 1, 1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int iThread = 0; iThread < 4; iThread++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            checkCounts("concurrent", tree);
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    checkReleased(tree);
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(ADTreeBuilderTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.bayes.BayesNet;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.TestInstances;
+import weka.core.Utils;
+
+/**
+ * Tests that BayesNet.distributionsForInstances, which goes through an
+ * InferencePlan, gives bit for bit the same distributions as
+ * distributionForInstance. Run from the command line with:
+ * <p/>
+ * java weka.classifiers.bayes.net.InferencePlanTest
+ *
+ * @version $Revision$
+ */
+public class InferencePlanTest extends TestCase {
+
+  /**
+   * Constructs the <code>InferencePlanTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public InferencePlanTest(String name) {
+    super(name);
+  }
+
+  /**
+   * generate nominal data from a random network
+   *
+   * @param nSeed seed of the generator
+   * @return the data
+   * @throws Exception if the data can not be generated
+   */
+  protected Instances generate(int nSeed) throws Exception {
+    BayesNetGenerator generator = new BayesNetGenerator();
+    generator.setOptions(Utils.splitOptions("-N 10 -A 15 -M 500 -C 3 -S "
+      + nSeed));
+    generator.generateRandomNetwork();
+    generator.generateInstances();
+    return new Instances(generator.m_Instances);
+  }
+
+  /**
+   * make values missing at random, except class values
+   *
+   * @param instances the data
+   * @param fFraction fraction of values to make missing
+   * @return the data
+   */
+  protected Instances makeMissing(Instances instances, double fFraction) {
+    Random random = new Random(1);
+    for (int iInstance = 0; iInstance < instances.numInstances(); iInstance++) {
+      for (int iAttribute = 0; iAttribute < instances.numAttributes(); iAttribute++) {
+        if (iAttribute != instances.classIndex()
+          && random.nextDouble() < fFraction) {
+          instances.instance(iInstance).setMissing(iAttribute);
+        }
+      }
+    }
+    return instances;
+  }
+
+  /**
+   * assert that batch and single instance prediction agree exactly
+   *
+   * @param bayesNet trained network
+   * @param instances the instances to predict
+   * @throws Exception if prediction fails
+   */
+  protected void assertSameDistributions(BayesNet bayesNet, Instances instances)
+    throws Exception {
+    assertTrue(bayesNet.implementsMoreEfficientBatchPrediction());
+    double[][] fBatch = bayesNet.distributionsForInstances(instances);
+    assertEquals(instances.numInstances(), fBatch.length);
+    for (int iInstance = 0; iInstance < instances.numInstances(); iInstance++) {
+      double[] fSingle = bayesNet.distributionForInstance(instances
+        .instance(iInstance));
+      assertEquals(fSingle.length, fBatch[iInstance].length);
+      for (int iClass = 0; iClass < fSingle.length; iClass++) {
+        assertEquals("instance " + iInstance + " class " + iClass,
+          Double.doubleToLongBits(fSingle[iClass]),
+          Double.doubleToLongBits(fBatch[iInstance][iClass]));
+      }
+    }
+  }
+
+  /**
+   * tests complete nominal data
+   *
+   * @throws Exception if a test fails
+   */
+  public void testComplete() throws Exception {
+    BayesNet bayesNet = new BayesNet();
+    bayesNet.buildClassifier(generate(1));
+    assertSameDistributions(bayesNet, generate(2));
+  }
+
+  /**
+   * tests instances with missing values, which go through the filters
+   *
+   * @throws Exception if a test fails
+   */
+  public void testMissingValues() throws Exception {
+    BayesNet bayesNet = new BayesNet();
+    bayesNet.buildClassifier(makeMissing(generate(1), 0.1));
+    assertSameDistributions(bayesNet, makeMissing(generate(2), 0.2));
+  }
+
+  /**
+   * tests numeric attributes, which need discretizing, and missing values
+   *
+   * @throws Exception if a test fails
+   */
+  public void testNumericAttributes() throws Exception {
+    TestInstances data = new TestInstances();
+    data.setNumNominal(4);
+    data.setNumNumeric(3);
+    data.setNumInstances(200);
+    data.setClassType(Attribute.NOMINAL);
+    data.setNumClasses(3);
+    data.setSeed(1);
+    Instances train = data.generate();
+    data.setSeed(2);
+    Instances test = makeMissing(data.generate(), 0.1);
+    BayesNet bayesNet = new BayesNet();
+    bayesNet.buildClassifier(train);
+    assertSameDistributions(bayesNet, test);
+  }
+
+  /**
+   * tests that the plan follows updates of the CPTs
+   *
+   * @throws Exception if a test fails
+   */
+  public void testUpdate() throws Exception {
+    BayesNet bayesNet = new BayesNet();
+    bayesNet.buildClassifier(generate(1));
+    Instances test = generate(2);
+    bayesNet.distributionsForInstances(test);
+    Instances update = generate(3);
+    for (int iInstance = 0; iInstance < update.numInstances(); iInstance++) {
+      bayesNet.updateClassifier(update.instance(iInstance));
+    }
+    assertSameDistributions(bayesNet, test);
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(InferencePlanTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
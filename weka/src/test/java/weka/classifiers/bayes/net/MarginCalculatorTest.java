@@ -0,0 +1,202 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.core.Utils;
+
+/**
+ * Tests that margins propagated incrementally after evidence is set, changed
+ * or retracted equal the margins of a fresh propagation of the same evidence.
+ * Run from the command line with:
+ * <p/>
+ * java weka.classifiers.bayes.net.MarginCalculatorTest
+ *
+ * @version $Revision$
+ */
+public class MarginCalculatorTest extends TestCase {
+
+  /** max difference between incremental and fresh margins */
+  private static final double TOLERANCE = 1e-12;
+
+  /** the network, connected as the junction tree needs */
+  protected BayesNetGenerator m_BayesNet;
+
+  /**
+   * Constructs the <code>MarginCalculatorTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public MarginCalculatorTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Called by JUnit before each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    m_BayesNet = new BayesNetGenerator();
+    m_BayesNet.setOptions(Utils.splitOptions("-N 12 -A 18 -C 3 -S 6"));
+    m_BayesNet.generateRandomNetwork();
+  }
+
+  /**
+   * Called by JUnit after each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    m_BayesNet = null;
+
+    super.tearDown();
+  }
+
+  /**
+   * calculate the margins of all nodes from scratch
+   *
+   * @param nEvidence observed value of every node, -1 if not observed
+   * @return margins per node
+   * @throws Exception if propagation fails
+   */
+  protected double[][] freshMargins(int[] nEvidence) throws Exception {
+    MarginCalculator calculator = new MarginCalculator();
+    calculator.calcMargins(m_BayesNet);
+    for (int iNode = 0; iNode < nEvidence.length; iNode++) {
+      if (nEvidence[iNode] >= 0) {
+        calculator.setEvidence(iNode, nEvidence[iNode]);
+      }
+    }
+    double[][] fMargins = new double[nEvidence.length][];
+    for (int iNode = 0; iNode < nEvidence.length; iNode++) {
+      fMargins[iNode] = calculator.getMargin(iNode).clone();
+    }
+    return fMargins;
+  }
+
+  /**
+   * assert that margins agree
+   *
+   * @param sMessage message on failure
+   * @param fExpected expected margins per node
+   * @param fActual actual margins per node
+   */
+  protected void assertMargins(String sMessage, double[][] fExpected,
+    double[][] fActual) {
+    for (int iNode = 0; iNode < fExpected.length; iNode++) {
+      for (int iValue = 0; iValue < fExpected[iNode].length; iValue++) {
+        assertEquals(sMessage + " node " + iNode + " value " + iValue,
+          fExpected[iNode][iValue], fActual[iNode][iValue], TOLERANCE);
+      }
+    }
+  }
+
+  /**
+   * tests random sequences of setting, changing and retracting evidence, with
+   * margins asked for in between
+   *
+   * @throws Exception if a test fails
+   */
+  public void testIncrementalEvidence() throws Exception {
+    int nNodes = m_BayesNet.getNrOfNodes();
+    MarginCalculator calculator = new MarginCalculator();
+    calculator.calcMargins(m_BayesNet);
+    int[] nEvidence = new int[nNodes];
+    Arrays.fill(nEvidence, -1);
+    Random random = new Random(1);
+    for (int iStep = 0; iStep < 100; iStep++) {
+      int iNode = random.nextInt(nNodes);
+      if (nEvidence[iNode] >= 0 && random.nextBoolean()) {
+        // retract
+        nEvidence[iNode] = -1;
+      } else {
+        // set or change
+        nEvidence[iNode] = random.nextInt(m_BayesNet.getCardinality(iNode));
+      }
+      calculator.setEvidence(iNode, nEvidence[iNode]);
+      if (random.nextInt(3) == 0) {
+        // only ask for the margins of a few nodes, so not all cliques are
+        // up to date when the evidence changes again
+        calculator.getMargin(random.nextInt(nNodes));
+        continue;
+      }
+      double[][] fMargins = new double[nNodes][];
+      for (int iMargin = 0; iMargin < nNodes; iMargin++) {
+        fMargins[iMargin] = calculator.getMargin(iMargin);
+      }
+      assertMargins("step " + iStep, freshMargins(nEvidence), fMargins);
+    }
+  }
+
+  /**
+   * tests margins of many evidence sets at once, on one or more slots
+   *
+   * @throws Exception if a test fails
+   */
+  public void testBatchMargins() throws Exception {
+    int nNodes = m_BayesNet.getNrOfNodes();
+    Random random = new Random(2);
+    int[][] nEvidence = new int[20][nNodes];
+    for (int[] nSet : nEvidence) {
+      for (int iNode = 0; iNode < nNodes; iNode++) {
+        nSet[iNode] = random.nextInt(4) == 0 ? random.nextInt(m_BayesNet
+          .getCardinality(iNode)) : -1;
+      }
+    }
+    MarginCalculator calculator = new MarginCalculator();
+    calculator.calcMargins(m_BayesNet);
+    double[][][] fSerial = calculator.getMargins(nEvidence, null, 1);
+    double[][][] fParallel = calculator.getMargins(nEvidence, null, 4);
+    for (int iSet = 0; iSet < nEvidence.length; iSet++) {
+      assertMargins("set " + iSet, freshMargins(nEvidence[iSet]),
+        fSerial[iSet]);
+      assertMargins("set " + iSet, fSerial[iSet], fParallel[iSet]);
+    }
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(MarginCalculatorTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
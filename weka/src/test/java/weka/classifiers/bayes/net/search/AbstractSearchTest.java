@@ -0,0 +1,151 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net.search;
+
+import junit.framework.TestCase;
+import weka.classifiers.bayes.BayesNet;
+import weka.classifiers.bayes.net.BayesNetGenerator;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Abstract test class for structure searches. It generates the data of a
+ * random network before each test and learns networks on it.
+ *
+ * @version $Revision$
+ */
+public abstract class AbstractSearchTest extends TestCase {
+
+  /** the data to search on */
+  protected Instances m_Instances;
+
+  /**
+   * Constructs the <code>AbstractSearchTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public AbstractSearchTest(String name) {
+    super(name);
+  }
+
+  /**
+   * the options of the BayesNetGenerator that generates the data
+   *
+   * @return the options
+   */
+  protected abstract String getGeneratorOptions();
+
+  /**
+   * Called by JUnit before each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    BayesNetGenerator generator = new BayesNetGenerator();
+    generator.setOptions(Utils.splitOptions(getGeneratorOptions()));
+    generator.generateRandomNetwork();
+    generator.generateInstances();
+    m_Instances = new Instances(generator.m_Instances);
+  }
+
+  /**
+   * Called by JUnit after each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    m_Instances = null;
+
+    super.tearDown();
+  }
+
+  /**
+   * learn a network
+   *
+   * @param search the search algorithm
+   * @param instances the data to search on
+   * @return the network
+   * @throws Exception if the search fails
+   */
+  protected BayesNet build(SearchAlgorithm search, Instances instances)
+    throws Exception {
+    BayesNet bayesNet = new BayesNet();
+    bayesNet.setSearchAlgorithm(search);
+    bayesNet.buildClassifier(instances);
+    return bayesNet;
+  }
+
+  /**
+   * learn a network on the generated data
+   *
+   * @param search the search algorithm
+   * @return the network
+   * @throws Exception if the search fails
+   */
+  protected BayesNet build(SearchAlgorithm search) throws Exception {
+    return build(search, m_Instances);
+  }
+
+  /**
+   * the parent sets of a network, one node per line
+   *
+   * @param bayesNet the network
+   * @return the parent sets
+   */
+  protected String parents(BayesNet bayesNet) {
+    StringBuilder parents = new StringBuilder();
+    for (int iNode = 0; iNode < bayesNet.getNrOfNodes(); iNode++) {
+      parents.append(iNode).append(':');
+      for (int iParent = 0; iParent < bayesNet.getNrOfParents(iNode); iParent++) {
+        parents.append(' ').append(bayesNet.getParent(iNode, iParent));
+      }
+      parents.append('\n');
+    }
+    return parents.toString();
+  }
+
+  /**
+   * learn a structure
+   *
+   * @param search the search algorithm
+   * @param instances the data to search on
+   * @return the parent sets of the structure
+   * @throws Exception if the search fails
+   */
+  protected String search(SearchAlgorithm search, Instances instances)
+    throws Exception {
+    return parents(build(search, instances));
+  }
+
+  /**
+   * learn a structure on the generated data
+   *
+   * @param search the search algorithm
+   * @return the parent sets of the structure
+   * @throws Exception if the search fails
+   */
+  protected String search(SearchAlgorithm search) throws Exception {
+    return search(search, m_Instances);
+  }
+}
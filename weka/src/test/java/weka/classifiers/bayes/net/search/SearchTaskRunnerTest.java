@@ -0,0 +1,159 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net.search;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+/**
+ * Tests that a SearchTaskRunner runs its tasks on its slots and that close()
+ * leaves no task running. Run from the command line with:
+ * <p/>
+ * java weka.classifiers.bayes.net.search.SearchTaskRunnerTest
+ *
+ * @version $Revision$
+ */
+public class SearchTaskRunnerTest extends TestCase {
+
+  /**
+   * Constructs the <code>SearchTaskRunnerTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public SearchTaskRunnerTest(String name) {
+    super(name);
+  }
+
+  /**
+   * tests that all tasks are run and their results taken, on one slot and on
+   * several
+   *
+   * @throws Exception if a test fails
+   */
+  public void testResults() throws Exception {
+    for (int nNumSlots : new int[] { 1, 4 }) {
+      SearchTaskRunner<Integer> runner = new SearchTaskRunner<Integer>(null,
+        nNumSlots);
+      try {
+        for (int iTask = 0; iTask < 100; iTask++) {
+          final int nValue = iTask;
+          runner.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+              return nValue;
+            }
+          });
+        }
+        int nSum = 0;
+        for (int iTask = 0; iTask < 100; iTask++) {
+          nSum += runner.take().get();
+        }
+        assertEquals("slots " + nNumSlots, 99 * 100 / 2, nSum);
+      } finally {
+        runner.close();
+      }
+    }
+  }
+
+  /**
+   * tests that close() waits for running tasks and that tasks that did not
+   * start never start, like when a search ends with an exception
+   *
+   * @throws Exception if a test fails
+   */
+  public void testCloseWaitsForRunningTasks() throws Exception {
+    final AtomicInteger nStarted = new AtomicInteger();
+    final AtomicInteger nRunning = new AtomicInteger();
+    final CountDownLatch helpersBusy = new CountDownLatch(3);
+    SearchTaskRunner<Integer> runner = new SearchTaskRunner<Integer>(null, 4);
+    for (int iTask = 0; iTask < 20; iTask++) {
+      runner.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          nStarted.incrementAndGet();
+          nRunning.incrementAndGet();
+          helpersBusy.countDown();
+          try {
+            Thread.sleep(200);
+          } finally {
+            nRunning.decrementAndGet();
+          }
+          return 0;
+        }
+      });
+    }
+    // the three helpers are busy, the other tasks are pending
+    helpersBusy.await();
+    runner.close();
+    assertEquals("running after close", 0, nRunning.get());
+    Thread.sleep(300);
+    assertEquals("started", 3, nStarted.get());
+  }
+
+  /**
+   * tests that the exception of a failed task is passed on
+   *
+   * @throws Exception if a test fails
+   */
+  public void testFailedTask() throws Exception {
+    SearchTaskRunner<Integer> runner = new SearchTaskRunner<Integer>(null, 2);
+    try {
+      runner.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          throw new IllegalStateException("failed");
+        }
+      });
+      try {
+        runner.take().get();
+        fail("exception expected");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IllegalStateException);
+      }
+    } finally {
+      runner.close();
+    }
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(SearchTaskRunnerTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
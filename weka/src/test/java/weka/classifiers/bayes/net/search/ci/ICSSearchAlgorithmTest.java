@@ -0,0 +1,111 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net.search.ci;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.bayes.net.search.AbstractSearchTest;
+
+/**
+ * Tests that running the independence tests of ICSSearchAlgorithm in parallel
+ * learns the same structure as running them one by one. Run from the command
+ * line with:
+ * <p/>
+ * java weka.classifiers.bayes.net.search.ci.ICSSearchAlgorithmTest
+ *
+ * @version $Revision$
+ */
+public class ICSSearchAlgorithmTest extends AbstractSearchTest {
+
+  /**
+   * Constructs the <code>ICSSearchAlgorithmTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public ICSSearchAlgorithmTest(String name) {
+    super(name);
+  }
+
+  /**
+   * the options of the BayesNetGenerator that generates the data
+   *
+   * @return the options
+   */
+  @Override
+  protected String getGeneratorOptions() {
+    return "-N 12 -A 18 -M 2000 -C 2 -S 5";
+  }
+
+  /**
+   * learn a structure
+   *
+   * @param nNumSlots number of slots the independence tests run on
+   * @return the parent sets of the structure
+   * @throws Exception if the search fails
+   */
+  protected String search(int nNumSlots) throws Exception {
+    ICSSearchAlgorithm search = new ICSSearchAlgorithm();
+    search.setNumSlots(nNumSlots);
+    return search(search);
+  }
+
+  /**
+   * tests that the number of slots does not change the structure
+   *
+   * @throws Exception if a search fails
+   */
+  public void testSlotsDoNotMatter() throws Exception {
+    String sExpected = search(1);
+    assertEquals(sExpected, search(2));
+    assertEquals(sExpected, search(4));
+  }
+
+  /**
+   * tests that the structure is the one the search learned before the
+   * independence tests could run in parallel
+   *
+   * @throws Exception if a search fails
+   */
+  public void testSerialStructure() throws Exception {
+    String sExpected = "0:\n1: 2 3 9 10 11\n2: 1 7 9\n3: 1 7 8 10\n4:\n5:\n"
+      + "6:\n7: 0 2 3\n8: 1 3 11\n9: 1 2 6\n10: 1 3 4 5\n11: 0 1 8\n";
+    assertEquals(sExpected, search(1));
+    assertEquals(sExpected, search(4));
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(ICSSearchAlgorithmTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
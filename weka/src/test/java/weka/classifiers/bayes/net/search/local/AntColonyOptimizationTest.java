@@ -0,0 +1,205 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.bayes.net.search.AbstractSearchTest;
+
+/**
+ * Tests that ant colony optimization is deterministic: the ants of an
+ * iteration get seeds that only depend on the seed of the search, so the
+ * learned structure and pheromone do not depend on how the ants are spread
+ * over threads, and that the candidate trees of an ant workspace select
+ * the arcs a linear scan over the candidates would. Run from the command line
+ * with:
+ * <p/>
+ * java weka.classifiers.bayes.net.search.local.AntColonyOptimizationTest
+ *
+ * @version $Revision$
+ */
+public class AntColonyOptimizationTest extends AbstractSearchTest {
+
+  /**
+   * Constructs the <code>AntColonyOptimizationTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public AntColonyOptimizationTest(String name) {
+    super(name);
+  }
+
+  /**
+   * the options of the BayesNetGenerator that generates the data
+   *
+   * @return the options
+   */
+  @Override
+  protected String getGeneratorOptions() {
+    return "-N 10 -A 15 -M 500 -C 3 -S 2";
+  }
+
+  /**
+   * create a search
+   *
+   * @param nSeed seed of the search
+   * @param nNumSlots number of execution slots
+   * @return the search algorithm
+   */
+  protected AntColonyOptimization ants(long nSeed, int nNumSlots) {
+    AntColonyOptimization search = new AntColonyOptimization();
+    search.setSeed(nSeed);
+    search.setNumOfIterations(5);
+    search.setNumOfColonies(2);
+    search.setMigrationInterval(2);
+    search.setParallelize(true);
+    search.setNumSlots(nNumSlots);
+    return search;
+  }
+
+  /**
+   * learn a structure
+   *
+   * @param search the search algorithm
+   * @return the parent sets of the structure and the pheromone the search
+   *         ended with
+   * @throws Exception if the search fails
+   */
+  protected String search(AntColonyOptimization search) throws Exception {
+    StringBuilder result = new StringBuilder(parents(build(search)));
+    for (double[] fRow : search.getLastPheromone()) {
+      for (double fPheromone : fRow) {
+        result.append(' ').append(Double.doubleToLongBits(fPheromone));
+      }
+      result.append('\n');
+    }
+    return result.toString();
+  }
+
+  /**
+   * tests that searches with the same seed and number of slots end the same
+   *
+   * @throws Exception if a search fails
+   */
+  public void testSameSeedAndSlots() throws Exception {
+    assertEquals(search(ants(1, 4)), search(ants(1, 4)));
+  }
+
+  /**
+   * tests that the number of slots does not change the result
+   *
+   * @throws Exception if a search fails
+   */
+  public void testSlotsDoNotMatter() throws Exception {
+    String sExpected = search(ants(1, 1));
+    assertEquals(sExpected, search(ants(1, 2)));
+    assertEquals(sExpected, search(ants(1, 4)));
+  }
+
+  /**
+   * tests that another seed gives another search
+   *
+   * @throws Exception if a search fails
+   */
+  public void testOtherSeed() throws Exception {
+    assertFalse(search(ants(1, 4)).equals(search(ants(2, 4))));
+  }
+
+  /**
+   * checks the candidate trees of a cache against a linear scan over the
+   * candidate arcs in the head by head, slot by slot order
+   *
+   * @param cache the cache
+   */
+  protected void checkCandidates(AntColonyOptimization.Cache cache) {
+    int nCount = 0;
+    double fSum = 0;
+    int iBestHead = -1;
+    int iBestSlot = -1;
+    for (int iHead = 0; iHead < cache.m_nNrOfNodes; iHead++) {
+      for (int iSlot = 0; iSlot < cache.m_nNrOfSlots; iSlot++) {
+        if (cache.getScore(iHead, iSlot) > 0) {
+          double fValue = cache.getPheromoneHeuristicB(iHead, iSlot);
+          int[] nArc = cache.getCandidateAt(fSum + fValue / 2);
+          assertEquals(iHead, nArc[1]);
+          assertEquals(iSlot, nArc[2]);
+          if (iBestHead == -1
+            || fValue > cache.getPheromoneHeuristicB(iBestHead, iBestSlot)) {
+            iBestHead = iHead;
+            iBestSlot = iSlot;
+          }
+          fSum += fValue;
+          nCount++;
+        }
+      }
+    }
+    assertEquals(nCount, cache.getNumOfAvailableArcs());
+    assertEquals(fSum, cache.getSumOfPheromoneHeuristic(), 1e-9);
+    int[] nBest = cache.getBestCandidate();
+    assertEquals(iBestHead, nBest[1]);
+    assertEquals(iBestSlot, nBest[2]);
+  }
+
+  /**
+   * tests that the candidate trees, which hold a leaf per head, select the
+   * arcs of a linear scan while arcs drop out of the candidates
+   */
+  public void testCandidateTrees() {
+    AntColonyOptimization.Cache cache =
+      new AntColonyOptimization().new Cache(7, 7);
+    Random random = new Random(1);
+    for (int iHead = 0; iHead < 7; iHead++) {
+      for (int iSlot = 0; iSlot < 7; iSlot++) {
+        cache.putScore(iHead, iSlot, random.nextDouble() - 0.4);
+        cache.putPheromoneHeuristicB(iHead, iSlot, random.nextDouble());
+      }
+    }
+    cache.updateCandidates(0, 6);
+    checkCandidates(cache);
+    while (cache.getNumOfAvailableArcs() > 0) {
+      int[] nArc = cache.getBestCandidate();
+      cache.putScore(nArc[1], nArc[2], 0);
+      cache.updateCandidate(nArc[1], nArc[2]);
+      checkCandidates(cache);
+    }
+    assertEquals(-1, cache.getCandidateAt(0)[1]);
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(AntColonyOptimizationTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
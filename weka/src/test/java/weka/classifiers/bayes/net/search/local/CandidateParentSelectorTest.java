@@ -0,0 +1,229 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * Tests that CandidateParentSelector ranks the nodes that depend most on a
+ * node first, by mutual information and by a chi-squared test, and that it
+ * does not restrict the parents when every node would be a candidate. Run
+ * from the command line with:
+ * <p/>
+ * java weka.classifiers.bayes.net.search.local.CandidateParentSelectorTest
+ *
+ * @version $Revision$
+ */
+public class CandidateParentSelectorTest extends TestCase {
+
+  /** number of attributes of the data */
+  protected static final int NUM_ATTRIBUTES = 6;
+
+  /**
+   * the data: a1 copies a0, a2 copies a0 with noise, a3 copies a2 with more
+   * noise, the others are independent of all
+   */
+  protected Instances m_Instances;
+
+  /**
+   * Constructs the <code>CandidateParentSelectorTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public CandidateParentSelectorTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Called by JUnit before each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+    for (int iAttribute = 0; iAttribute < NUM_ATTRIBUTES; iAttribute++) {
+      attributes.add(new Attribute("a" + iAttribute, Arrays.asList("x", "y",
+        "z")));
+    }
+    m_Instances = new Instances("candidates", attributes, 2000);
+    m_Instances.setClassIndex(NUM_ATTRIBUTES - 1);
+    Random random = new Random(1);
+    for (int iInstance = 0; iInstance < 2000; iInstance++) {
+      double[] fValues = new double[NUM_ATTRIBUTES];
+      for (int iAttribute = 0; iAttribute < NUM_ATTRIBUTES; iAttribute++) {
+        fValues[iAttribute] = random.nextInt(3);
+      }
+      fValues[1] = fValues[0];
+      if (random.nextDouble() < 0.8) {
+        fValues[2] = fValues[0];
+      }
+      if (random.nextDouble() < 0.6) {
+        fValues[3] = fValues[2];
+      }
+      m_Instances.add(new DenseInstance(1, fValues));
+    }
+  }
+
+  /**
+   * Called by JUnit after each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    m_Instances = null;
+
+    super.tearDown();
+  }
+
+  /**
+   * select candidate parents
+   *
+   * @param statistics source of the counts
+   * @param nNrOfCandidates number of candidates per node
+   * @param nMeasure measure to rank candidates by
+   * @param nNumSlots number of execution slots
+   * @return candidate parents per node
+   * @throws Exception if the selection fails
+   */
+  protected int[][] select(SufficientStatistics statistics,
+    int nNrOfCandidates, int nMeasure, int nNumSlots) throws Exception {
+    return new CandidateParentSelector(statistics, m_Instances,
+      nNrOfCandidates, nMeasure).select(null, nNumSlots);
+  }
+
+  /**
+   * tests that the strongest dependencies rank first, in increasing order of
+   * node index, whatever the measure and the number of slots
+   *
+   * @throws Exception if a test fails
+   */
+  public void testRanking() throws Exception {
+    CountIndex index = new CountIndex(m_Instances);
+    for (int nMeasure : new int[] { CandidateParentSelector.MUTUAL_INFORMATION,
+      CandidateParentSelector.CHI_SQUARED }) {
+      int[][] nCandidates = select(index, 1, nMeasure, 1);
+      assertEquals(NUM_ATTRIBUTES, nCandidates.length);
+      assertTrue(Arrays.equals(new int[] { 1 }, nCandidates[0]));
+      assertTrue(Arrays.equals(new int[] { 0 }, nCandidates[1]));
+
+      nCandidates = select(index, 3, nMeasure, 1);
+      assertTrue(Arrays.equals(new int[] { 1, 2, 3 }, nCandidates[0]));
+      assertTrue(Arrays.equals(new int[] { 0, 1, 3 }, nCandidates[2]));
+      assertTrue(Arrays.equals(new int[] { 0, 1, 2 }, nCandidates[3]));
+
+      int[][] nParallel = select(index, 3, nMeasure, 4);
+      for (int iNode = 0; iNode < NUM_ATTRIBUTES; iNode++) {
+        assertEquals(3, nCandidates[iNode].length);
+        assertTrue("node " + iNode,
+          Arrays.equals(nCandidates[iNode], nParallel[iNode]));
+      }
+    }
+  }
+
+  /**
+   * tests that candidates ranked on the weighted counts of compressed data
+   * are those ranked on the data
+   *
+   * @throws Exception if a test fails
+   */
+  public void testWeightedCounts() throws Exception {
+    int[][] nExpected = select(new CountIndex(m_Instances), 2,
+      CandidateParentSelector.MUTUAL_INFORMATION, 1);
+    int[][] nWeighted = select(
+      CountIndex.weighted(CountIndex.compress(m_Instances)), 2,
+      CandidateParentSelector.MUTUAL_INFORMATION, 1);
+    for (int iNode = 0; iNode < NUM_ATTRIBUTES; iNode++) {
+      assertTrue("node " + iNode,
+        Arrays.equals(nExpected[iNode], nWeighted[iNode]));
+    }
+  }
+
+  /**
+   * tests that there are no candidate lists when the number of candidates
+   * does not restrict the parents
+   *
+   * @throws Exception if a test fails
+   */
+  public void testNoRestriction() throws Exception {
+    CountIndex index = new CountIndex(m_Instances);
+    for (int nNrOfCandidates : new int[] { -1, 0, NUM_ATTRIBUTES - 1,
+      NUM_ATTRIBUTES }) {
+      assertNull("candidates " + nNrOfCandidates,
+        select(index, nNrOfCandidates,
+          CandidateParentSelector.MUTUAL_INFORMATION, 1));
+    }
+    assertNotNull(select(index, NUM_ATTRIBUTES - 2,
+      CandidateParentSelector.MUTUAL_INFORMATION, 1));
+  }
+
+  /**
+   * tests the measures on a table of counts
+   */
+  public void testMeasures() {
+    int[] nCounts = { 40, 10, 10, 40 };
+    assertEquals(0.8 * Math.log(1.6) + 0.2 * Math.log(0.4),
+      CandidateParentSelector.mutualInformation(nCounts, 2, 2, 100), 1e-12);
+    double[] fChiSquared = CandidateParentSelector.chiSquared(nCounts, 2, 2,
+      100);
+    assertEquals(36, fChiSquared[0], 1e-12);
+    assertEquals(1, fChiSquared[1], 0);
+
+    // independent attributes, values that do not occur have no degrees of
+    // freedom
+    nCounts = new int[] { 10, 20, 0, 20, 40, 0, 0, 0, 0 };
+    assertEquals(0, CandidateParentSelector.mutualInformation(nCounts, 3, 3,
+      90), 1e-12);
+    fChiSquared = CandidateParentSelector.chiSquared(nCounts, 3, 3, 90);
+    assertEquals(0, fChiSquared[0], 1e-12);
+    assertEquals(1, fChiSquared[1], 0);
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(CandidateParentSelectorTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.bayes.BayesNet;
+import weka.classifiers.bayes.net.search.AbstractSearchTest;
+import weka.core.Instances;
+import weka.core.SelectedTag;
+
+/**
+ * Tests that counts taken from a CountIndex, as plain index, as precomputed
+ * sufficient statistics or over compressed and weighted data, give the same
+ * counts, scores and structures as counting the data directly. Run from the
+ * command line with:
+ * <p/>
+ * java weka.classifiers.bayes.net.search.local.CountIndexTest
+ *
+ * @version $Revision$
+ */
+public class CountIndexTest extends AbstractSearchTest {
+
+  /** the score types to compare */
+  protected static final int[] SCORE_TYPES = { Scoreable.BAYES,
+    Scoreable.BDeu, Scoreable.MDL, Scoreable.ENTROPY, Scoreable.AIC };
+
+  /** the data with identical rows merged into weighted rows */
+  protected Instances m_Compressed;
+
+  /**
+   * Constructs the <code>CountIndexTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public CountIndexTest(String name) {
+    super(name);
+  }
+
+  /**
+   * the options of the BayesNetGenerator that generates the data
+   *
+   * @return the options
+   */
+  @Override
+  protected String getGeneratorOptions() {
+    // few values per attribute so rows repeat
+    return "-N 8 -A 10 -M 2000 -C 2 -S 7";
+  }
+
+  /**
+   * Called by JUnit before each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    m_Compressed = CountIndex.compress(m_Instances);
+  }
+
+  /**
+   * Called by JUnit after each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    m_Compressed = null;
+
+    super.tearDown();
+  }
+
+  /**
+   * count the data directly, in the layout of CountIndex.getCounts
+   *
+   * @param nNode node to count
+   * @param nParents parents of the node
+   * @return counts
+   */
+  protected int[] plainCounts(int nNode, int[] nParents) {
+    int nCardinality = 1;
+    for (int nParent : nParents) {
+      nCardinality *= m_Instances.attribute(nParent).numValues();
+    }
+    int nNumValues = m_Instances.attribute(nNode).numValues();
+    int[] nCounts = new int[nCardinality * nNumValues];
+    for (int iInstance = 0; iInstance < m_Instances.numInstances(); iInstance++) {
+      int iCPT = 0;
+      for (int nParent : nParents) {
+        iCPT = iCPT * m_Instances.attribute(nParent).numValues()
+          + (int) m_Instances.instance(iInstance).value(nParent);
+      }
+      nCounts[nNumValues * iCPT
+        + (int) m_Instances.instance(iInstance).value(nNode)]++;
+    }
+    return nCounts;
+  }
+
+  /**
+   * draw random parent sets, without regard for cycles
+   *
+   * @param random random number generator
+   * @return parents per node
+   */
+  protected int[][] randomParents(Random random) {
+    int nNodes = m_Instances.numAttributes();
+    int[][] nParents = new int[nNodes][];
+    for (int iNode = 0; iNode < nNodes; iNode++) {
+      boolean[] bParent = new boolean[nNodes];
+      int nNrOfParents = random.nextInt(4);
+      nParents[iNode] = new int[nNrOfParents];
+      for (int iParent = 0; iParent < nNrOfParents; iParent++) {
+        int nParent;
+        do {
+          nParent = random.nextInt(nNodes);
+        } while (nParent == iNode || bParent[nParent]);
+        bParent[nParent] = true;
+        nParents[iNode][iParent] = nParent;
+      }
+    }
+    return nParents;
+  }
+
+  /**
+   * create a scorer for a network with the given parent sets
+   *
+   * @param instances the data of the network
+   * @param nParents parents per node
+   * @param nScoreType the score type
+   * @return the scorer
+   * @throws Exception if the network can not be set up
+   */
+  protected LocalScoreSearchAlgorithm scorer(Instances instances,
+    int[][] nParents, int nScoreType) throws Exception {
+    BayesNet bayesNet = new BayesNet();
+    bayesNet.m_Instances = instances;
+    bayesNet.initStructure();
+    for (int iNode = 0; iNode < nParents.length; iNode++) {
+      for (int nParent : nParents[iNode]) {
+        bayesNet.getParentSet(iNode).addParent(nParent, instances);
+      }
+    }
+    LocalScoreSearchAlgorithm scorer = new LocalScoreSearchAlgorithm(bayesNet,
+      instances);
+    scorer.setScoreType(new SelectedTag(nScoreType,
+      LocalScoreSearchAlgorithm.TAGS_SCORE_TYPE));
+    return scorer;
+  }
+
+  /**
+   * tests that the compressed data is smaller but holds the same number of
+   * instances
+   */
+  public void testCompress() {
+    assertTrue(m_Compressed.numInstances() < m_Instances.numInstances());
+    assertEquals(m_Instances.numInstances(), new CountIndex(m_Instances)
+      .getTotalCount());
+    assertEquals(m_Instances.numInstances(), CountIndex.weighted(m_Compressed)
+      .getTotalCount());
+  }
+
+  /**
+   * tests counts of an index and of a weighted index of the compressed data
+   * against counting the data directly
+   */
+  public void testCounts() {
+    CountIndex index = new CountIndex(m_Instances);
+    CountIndex weighted = CountIndex.weighted(m_Compressed);
+    int[][] nParents = randomParents(new Random(1));
+    for (int iNode = 0; iNode < nParents.length; iNode++) {
+      int[] nExpected = plainCounts(iNode, nParents[iNode]);
+      int[] nCounts = index.getCounts(iNode, nParents[iNode],
+        nParents[iNode].length);
+      int[] nWeighted = weighted.getCounts(iNode, nParents[iNode],
+        nParents[iNode].length);
+      assertEquals(nExpected.length, nCounts.length);
+      assertEquals(nExpected.length, nWeighted.length);
+      for (int iCount = 0; iCount < nExpected.length; iCount++) {
+        assertEquals("node " + iNode + " count " + iCount, nExpected[iCount],
+          nCounts[iCount]);
+        assertEquals("node " + iNode + " weighted count " + iCount,
+          nExpected[iCount], nWeighted[iCount]);
+      }
+    }
+  }
+
+  /**
+   * tests node scores of every score type with counts from an index, from
+   * precomputed statistics and from weighted compressed data against plain
+   * counting
+   *
+   * @throws Exception if a test fails
+   */
+  public void testNodeScores() throws Exception {
+    Random random = new Random(2);
+    for (int iRound = 0; iRound < 5; iRound++) {
+      int[][] nParents = randomParents(random);
+      for (int nScoreType : SCORE_TYPES) {
+        LocalScoreSearchAlgorithm plain = scorer(m_Instances, nParents,
+          nScoreType);
+        LocalScoreSearchAlgorithm indexed = scorer(m_Instances, nParents,
+          nScoreType);
+        indexed.setCountIndex(new CountIndex(m_Instances));
+        LocalScoreSearchAlgorithm statistics = scorer(m_Instances, nParents,
+          nScoreType);
+        statistics.setSufficientStatistics(new CountIndex(m_Instances));
+        LocalScoreSearchAlgorithm weighted = scorer(m_Compressed, nParents,
+          nScoreType);
+        weighted.setCountIndex(CountIndex.weighted(m_Compressed));
+        for (int iNode = 0; iNode < nParents.length; iNode++) {
+          String sMessage = "round " + iRound + " score type " + nScoreType
+            + " node " + iNode;
+          double fExpected = plain.calcNodeScore(iNode);
+          assertEquals(sMessage, fExpected, indexed.calcNodeScore(iNode), 0);
+          assertEquals(sMessage, fExpected, statistics.calcNodeScore(iNode), 0);
+          assertEquals(sMessage, fExpected, weighted.calcNodeScore(iNode), 0);
+        }
+      }
+    }
+  }
+
+  /**
+   * tests that K2 learns the same structure with counts from an index and
+   * from weighted compressed data as with plain counting
+   *
+   * @throws Exception if a search fails
+   */
+  public void testK2() throws Exception {
+    String sExpected = search(new K2(), m_Instances);
+    K2 indexed = new K2();
+    indexed.setUseCountIndex(true);
+    assertEquals(sExpected, search(indexed, m_Instances));
+    K2 weighted = new K2();
+    weighted.setUseInstanceWeights(true);
+    assertEquals(sExpected, search(weighted, m_Compressed));
+  }
+
+  /**
+   * tests that hill climbing learns the same structure with counts from an
+   * index, from precomputed statistics and from weighted compressed data as
+   * with plain counting
+   *
+   * @throws Exception if a search fails
+   */
+  public void testHillClimber() throws Exception {
+    String sExpected = search(new HillClimber(), m_Instances);
+    HillClimber indexed = new HillClimber();
+    indexed.setUseCountIndex(true);
+    assertEquals(sExpected, search(indexed, m_Instances));
+    HillClimber statistics = new HillClimber();
+    statistics.setSufficientStatistics(new CountIndex(m_Instances));
+    assertEquals(sExpected, search(statistics, m_Instances));
+    HillClimber weighted = new HillClimber();
+    weighted.setUseInstanceWeights(true);
+    assertEquals(sExpected, search(weighted, m_Compressed));
+  }
+
+  /**
+   * create a parallel tempering search, whose chains score with their own
+   * scorers
+   *
+   * @return the search algorithm
+   */
+  protected SimulatedAnnealing chains() {
+    SimulatedAnnealing search = new SimulatedAnnealing();
+    search.setChains(3);
+    search.setRuns(2000);
+    return search;
+  }
+
+  /**
+   * tests that the chains of simulated annealing learn the same structure with
+   * counts from an index, from precomputed statistics and from weighted
+   * compressed data as with plain counting, and count their evaluations
+   *
+   * @throws Exception if a search fails
+   */
+  public void testSimulatedAnnealing() throws Exception {
+    String sExpected = search(chains(), m_Instances);
+    SimulatedAnnealing indexed = chains();
+    indexed.setUseCountIndex(true);
+    assertEquals(sExpected, search(indexed, m_Instances));
+    SimulatedAnnealing statistics = chains();
+    statistics.setSufficientStatistics(CountIndex.weighted(m_Compressed));
+    assertEquals(sExpected, search(statistics, m_Compressed));
+    SimulatedAnnealing weighted = chains();
+    weighted.setUseInstanceWeights(true);
+    assertEquals(sExpected, search(weighted, m_Compressed));
+    // every run of every chain scores at least one node
+    assertTrue(statistics.getScoreEvaluationCounter().get() >= 3 * 2000);
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(CountIndexTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
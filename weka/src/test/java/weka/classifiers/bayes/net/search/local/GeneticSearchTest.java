@@ -0,0 +1,168 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.bayes.BayesNet;
+import weka.classifiers.bayes.net.search.AbstractSearchTest;
+import weka.classifiers.bayes.net.search.local.GeneticSearch.BayesNetRepresentation;
+
+/**
+ * Tests that genetic search, which only rescores the nodes whose parent set
+ * changed, gives offspring the scores of a full rescore, and that scoring
+ * offspring in parallel does not change the structure. Run from the command
+ * line with:
+ * <p/>
+ * java weka.classifiers.bayes.net.search.local.GeneticSearchTest
+ *
+ * @version $Revision$
+ */
+public class GeneticSearchTest extends AbstractSearchTest {
+
+  /**
+   * Constructs the <code>GeneticSearchTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public GeneticSearchTest(String name) {
+    super(name);
+  }
+
+  /**
+   * the options of the BayesNetGenerator that generates the data
+   *
+   * @return the options
+   */
+  @Override
+  protected String getGeneratorOptions() {
+    return "-N 12 -A 18 -M 500 -C 3 -S 6";
+  }
+
+  /**
+   * score a representation from scratch
+   *
+   * @param representation the network structure
+   * @return the score
+   */
+  protected double fullScore(BayesNetRepresentation representation) {
+    BayesNetRepresentation copy = representation.copy();
+    copy.m_bChanged = new boolean[copy.m_nNodes];
+    Arrays.fill(copy.m_bChanged, true);
+    copy.calcScore();
+    return copy.getScore();
+  }
+
+  /**
+   * tests that mutated and crossed over offspring get the score of a full
+   * rescore, while only the changed nodes are scored
+   *
+   * @throws Exception if a test fails
+   */
+  public void testIncrementalScores() throws Exception {
+    BayesNet bayesNet = new BayesNet();
+    bayesNet.m_Instances = m_Instances;
+    bayesNet.initStructure();
+    GeneticSearch search = new GeneticSearch();
+    search.m_BayesNet = bayesNet;
+    search.m_random = new Random(1);
+    int nNodes = m_Instances.numAttributes();
+
+    BayesNetRepresentation[] population = new BayesNetRepresentation[10];
+    for (int i = 0; i < population.length; i++) {
+      population[i] = search.new BayesNetRepresentation(nNodes);
+      population[i].randomInit();
+      population[i].calcScore();
+    }
+    int nNrOfChanges = 0;
+    for (int iRun = 0; iRun < 500; iRun++) {
+      BayesNetRepresentation offspring = population[search.m_random
+        .nextInt(population.length)].copy();
+      if (iRun % 2 == 0) {
+        offspring.mutate();
+      } else {
+        offspring.crossOver(population[search.m_random
+          .nextInt(population.length)]);
+      }
+      assertFalse(offspring.hasCycles());
+      int nNrOfChanged = 0;
+      if (offspring.m_bChanged != null) {
+        for (boolean bChanged : offspring.m_bChanged) {
+          nNrOfChanged += bChanged ? 1 : 0;
+        }
+      }
+      nNrOfChanges += nNrOfChanged;
+      long nEvaluations = search.getScoreEvaluationCounter().get();
+      offspring.calcScore();
+      assertEquals("run " + iRun, nNrOfChanged,
+        search.getScoreEvaluationCounter().get() - nEvaluations);
+      assertEquals("run " + iRun, fullScore(offspring),
+        offspring.getScore(), 0);
+      population[search.m_random.nextInt(population.length)] = offspring;
+    }
+    // offspring should share most node scores with their parents
+    assertTrue(nNrOfChanges > 0);
+    assertTrue(nNrOfChanges < 500 * nNodes / 2);
+  }
+
+  /**
+   * tests that the structure does not depend on the number of slots
+   * offspring are scored on
+   *
+   * @throws Exception if a search fails
+   */
+  public void testSlotsDoNotMatter() throws Exception {
+    String sExpected = null;
+    for (int nNumSlots : new int[] { 1, 2, 4 }) {
+      GeneticSearch search = new GeneticSearch();
+      search.setUseMutation(true);
+      search.setUseCrossOver(true);
+      search.setRuns(20);
+      search.setNumSlots(nNumSlots);
+      String sParents = search(search);
+      if (sExpected == null) {
+        sExpected = sParents;
+      }
+      assertEquals("slots " + nNumSlots, sExpected, sParents);
+    }
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(GeneticSearchTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
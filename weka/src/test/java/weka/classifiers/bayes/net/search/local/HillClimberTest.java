@@ -0,0 +1,141 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.bayes.net.search.AbstractSearchTest;
+
+/**
+ * Tests that hill climbing searches that evaluate moves in parallel learn the
+ * same structure as when they evaluate moves one by one. Run from the command
+ * line with:
+ * <p/>
+ * java weka.classifiers.bayes.net.search.local.HillClimberTest
+ *
+ * @version $Revision$
+ */
+public class HillClimberTest extends AbstractSearchTest {
+
+  /**
+   * Constructs the <code>HillClimberTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public HillClimberTest(String name) {
+    super(name);
+  }
+
+  /**
+   * the options of the BayesNetGenerator that generates the data
+   *
+   * @return the options
+   */
+  @Override
+  protected String getGeneratorOptions() {
+    return "-N 15 -A 25 -M 1000 -C 3 -S 3";
+  }
+
+  /**
+   * learn a structure
+   *
+   * @param search the search algorithm
+   * @param nNumSlots number of slots to evaluate moves on
+   * @return the parent sets of the structure
+   * @throws Exception if the search fails
+   */
+  protected String search(HillClimber search, int nNumSlots) throws Exception {
+    search.setNumSlots(nNumSlots);
+    search.setMaxNrOfParents(3);
+    return search(search);
+  }
+
+  /**
+   * tests hill climbing
+   *
+   * @throws Exception if a search fails
+   */
+  public void testHillClimber() throws Exception {
+    String sExpected = search(new HillClimber(), 1);
+    assertEquals(sExpected, search(new HillClimber(), 2));
+    assertEquals(sExpected, search(new HillClimber(), 4));
+  }
+
+  /**
+   * tests hill climbing with arc reversal
+   *
+   * @throws Exception if a search fails
+   */
+  public void testArcReversal() throws Exception {
+    HillClimber serial = new HillClimber();
+    serial.setUseArcReversal(true);
+    HillClimber parallel = new HillClimber();
+    parallel.setUseArcReversal(true);
+    assertEquals(search(serial, 1), search(parallel, 4));
+  }
+
+  /**
+   * tests tabu search
+   *
+   * @throws Exception if a search fails
+   */
+  public void testTabuSearch() throws Exception {
+    assertEquals(search(new TabuSearch(), 1), search(new TabuSearch(), 4));
+  }
+
+  /**
+   * tests look ahead hill climbing
+   *
+   * @throws Exception if a search fails
+   */
+  public void testLAGDHillClimber() throws Exception {
+    assertEquals(search(new LAGDHillClimber(), 1),
+      search(new LAGDHillClimber(), 4));
+  }
+
+  /**
+   * tests repeated hill climbing
+   *
+   * @throws Exception if a search fails
+   */
+  public void testRepeatedHillClimber() throws Exception {
+    assertEquals(search(new RepeatedHillClimber(), 1),
+      search(new RepeatedHillClimber(), 4));
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(HillClimberTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
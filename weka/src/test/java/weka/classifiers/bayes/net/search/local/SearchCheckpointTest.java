@@ -0,0 +1,225 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+import java.io.File;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.bayes.net.search.AbstractSearchTest;
+
+/**
+ * Tests that a search resumed from a checkpoint ends with the same structure
+ * as a search that was not interrupted. A search that stops early is
+ * simulated by a search with fewer iterations, which writes a checkpoint when
+ * it ends. Run from the command line with:
+ * <p/>
+ * java weka.classifiers.bayes.net.search.local.SearchCheckpointTest
+ *
+ * @version $Revision$
+ */
+public class SearchCheckpointTest extends AbstractSearchTest {
+
+  /** the checkpoint file */
+  protected File m_CheckpointFile;
+
+  /**
+   * Constructs the <code>SearchCheckpointTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public SearchCheckpointTest(String name) {
+    super(name);
+  }
+
+  /**
+   * the options of the BayesNetGenerator that generates the data
+   *
+   * @return the options
+   */
+  @Override
+  protected String getGeneratorOptions() {
+    return "-N 8 -A 10 -M 500 -C 3 -S 1";
+  }
+
+  /**
+   * Called by JUnit before each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    m_CheckpointFile = File.createTempFile("checkpoint", ".ser");
+    m_CheckpointFile.delete();
+  }
+
+  /**
+   * Called by JUnit after each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    m_CheckpointFile.delete();
+
+    super.tearDown();
+  }
+
+  /**
+   * make a search write checkpoints, and resume from them
+   *
+   * @param search the search algorithm
+   * @return the search algorithm
+   */
+  protected LocalScoreSearchAlgorithm checkpoint(
+    LocalScoreSearchAlgorithm search) {
+    search.setCheckpointFile(m_CheckpointFile);
+    search.setResume(true);
+    return search;
+  }
+
+  /**
+   * create an ant colony search
+   *
+   * @param nIterations number of iterations
+   * @return the search algorithm
+   */
+  protected AntColonyOptimization ants(int nIterations) {
+    AntColonyOptimization search = new AntColonyOptimization();
+    search.setNumOfIterations(nIterations);
+    search.setNumOfColonies(2);
+    // the last iteration always optimizes, so a shorter search only ends the
+    // same as the first iterations of a longer one if every iteration does
+    search.setOptimizationStep(1);
+    search.setNumSlots(1);
+    return search;
+  }
+
+  /**
+   * create a simulated annealing search
+   *
+   * @param nRuns number of runs
+   * @return the search algorithm
+   */
+  protected SimulatedAnnealing annealing(int nRuns) {
+    SimulatedAnnealing search = new SimulatedAnnealing();
+    search.setRuns(nRuns);
+    return search;
+  }
+
+  /**
+   * create a tabu search
+   *
+   * @param nRuns number of runs
+   * @return the search algorithm
+   */
+  protected TabuSearch tabu(int nRuns) {
+    TabuSearch search = new TabuSearch();
+    search.setRuns(nRuns);
+    return search;
+  }
+
+  /**
+   * tests that a resumed ant colony search ends like an uninterrupted one.
+   * The structure settles in the first iterations, so the pheromone is
+   * compared as well.
+   *
+   * @throws Exception if a search fails
+   */
+  public void testAntColonyOptimization() throws Exception {
+    AntColonyOptimization uninterrupted = ants(6);
+    String sExpected = search(uninterrupted);
+
+    search(checkpoint(ants(3)));
+    AntColonyOptimization resumed = (AntColonyOptimization) checkpoint(ants(6));
+    assertEquals(sExpected, search(resumed));
+    assertEquals("resumed iteration", 3, resumed.getResumedIteration());
+    double[][] fExpected = uninterrupted.getLastPheromone();
+    double[][] fPheromone = resumed.getLastPheromone();
+    for (int iTail = 0; iTail < fExpected.length; iTail++) {
+      for (int iHead = 0; iHead < fExpected.length; iHead++) {
+        assertEquals("pheromone " + iTail + "->" + iHead,
+          fExpected[iTail][iHead], fPheromone[iTail][iHead], 0);
+      }
+    }
+  }
+
+  /**
+   * tests that a resumed simulated annealing search ends like an
+   * uninterrupted one
+   *
+   * @throws Exception if a search fails
+   */
+  public void testSimulatedAnnealing() throws Exception {
+    String sExpected = search(annealing(2000));
+
+    search(checkpoint(annealing(1000)));
+    SimulatedAnnealing resumed = (SimulatedAnnealing) checkpoint(annealing(2000));
+    assertEquals(sExpected, search(resumed));
+    assertEquals("resumed iteration", 1000, resumed.getResumedIteration());
+  }
+
+  /**
+   * tests that a resumed tabu search ends like an uninterrupted one
+   *
+   * @throws Exception if a search fails
+   */
+  public void testTabuSearch() throws Exception {
+    String sExpected = search(tabu(10));
+
+    search(checkpoint(tabu(5)));
+    TabuSearch resumed = (TabuSearch) checkpoint(tabu(10));
+    assertEquals(sExpected, search(resumed));
+    assertEquals("resumed iteration", 5, resumed.getResumedIteration());
+  }
+
+  /**
+   * tests that a checkpoint of a search with other settings is not resumed
+   *
+   * @throws Exception if a search fails
+   */
+  public void testOtherSettingsStartOver() throws Exception {
+    search(checkpoint(ants(3)));
+    AntColonyOptimization other = (AntColonyOptimization) checkpoint(ants(6));
+    other.setNumOfColonies(3);
+    search(other);
+    assertEquals("resumed iteration", 0, other.getResumedIteration());
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(SearchCheckpointTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
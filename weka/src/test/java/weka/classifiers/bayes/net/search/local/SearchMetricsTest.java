@@ -0,0 +1,144 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.bayes.BayesNet;
+import weka.classifiers.bayes.net.search.AbstractSearchTest;
+
+/**
+ * Tests that every local score search reports its search time and score
+ * evaluations through the measures of BayesNet. Run from the command line
+ * with:
+ * <p/>
+ * java weka.classifiers.bayes.net.search.local.SearchMetricsTest
+ *
+ * @version $Revision$
+ */
+public class SearchMetricsTest extends AbstractSearchTest {
+
+  /**
+   * Constructs the <code>SearchMetricsTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public SearchMetricsTest(String name) {
+    super(name);
+  }
+
+  /**
+   * the options of the BayesNetGenerator that generates the data
+   *
+   * @return the options
+   */
+  @Override
+  protected String getGeneratorOptions() {
+    return "-N 8 -A 10 -M 500 -C 3 -S 4";
+  }
+
+  /**
+   * tests that a search reports its time and exactly the score evaluations
+   * it counted
+   *
+   * @param search the search algorithm
+   * @throws Exception if the search fails
+   */
+  protected void checkMeasures(LocalScoreSearchAlgorithm search)
+    throws Exception {
+    String sName = search.getClass().getSimpleName();
+    long nEvaluations = search.getScoreEvaluationCounter().get();
+    BayesNet bayesNet = build(search);
+    nEvaluations = search.getScoreEvaluationCounter().get() - nEvaluations;
+    assertTrue(sName, nEvaluations > 0);
+    assertEquals(sName, nEvaluations,
+      bayesNet.getMeasure("measureScoreEvaluations"), 0);
+    assertTrue(sName, bayesNet.getMeasure("measureSearchTime") >= 0);
+    assertEquals(sName, 0, bayesNet.getMeasure("measureScoreCacheHitRate"), 0);
+  }
+
+  /**
+   * tests the measures of the searches that do not record metrics themselves
+   *
+   * @throws Exception if a search fails
+   */
+  public void testMeasures() throws Exception {
+    checkMeasures(new K2());
+    checkMeasures(new HillClimber());
+    checkMeasures(new RepeatedHillClimber());
+    checkMeasures(new LAGDHillClimber());
+    checkMeasures(new TabuSearch());
+    checkMeasures(new TAN());
+    SimulatedAnnealing simulatedAnnealing = new SimulatedAnnealing();
+    simulatedAnnealing.setRuns(500);
+    checkMeasures(simulatedAnnealing);
+    GeneticSearch geneticSearch = new GeneticSearch();
+    geneticSearch.setUseMutation(true);
+    geneticSearch.setRuns(3);
+    checkMeasures(geneticSearch);
+  }
+
+  /**
+   * tests that the cache hit rate is reported when scores are cached
+   *
+   * @throws Exception if the search fails
+   */
+  public void testCacheHitRate() throws Exception {
+    HillClimber search = new HillClimber();
+    NodeScoreCache cache = new NodeScoreCache(10000);
+    search.setScoreCache(cache);
+    BayesNet bayesNet = build(search);
+    assertEquals(cache.getHitRate(),
+      bayesNet.getMeasure("measureScoreCacheHitRate"), 1e-12);
+    assertTrue(bayesNet.getMeasure("measureScoreCacheHitRate") > 0);
+  }
+
+  /**
+   * tests that a search recording metrics itself keeps its own totals
+   *
+   * @throws Exception if the search fails
+   */
+  public void testOwnMetrics() throws Exception {
+    AntColonyOptimization search = new AntColonyOptimization();
+    search.setNumOfIterations(2);
+    BayesNet bayesNet = build(search);
+    assertEquals(2, bayesNet.getMeasure("measureSearchIterations"), 0);
+    assertTrue(bayesNet.getMeasure("measureScoreEvaluations") > 0);
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(SearchMetricsTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.bayes.net.search.local;
+
+import java.io.File;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.bayes.net.search.AbstractSearchTest;
+
+/**
+ * Tests the parallel tempering mode of simulated annealing: the chains have
+ * their own random number generators and exchanges are decided serially, so
+ * the network found only depends on the seed. Run from the command line
+ * with:
+ * <p/>
+ * java weka.classifiers.bayes.net.search.local.SimulatedAnnealingTest
+ *
+ * @version $Revision$
+ */
+public class SimulatedAnnealingTest extends AbstractSearchTest {
+
+  /**
+   * Constructs the <code>SimulatedAnnealingTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public SimulatedAnnealingTest(String name) {
+    super(name);
+  }
+
+  /**
+   * the options of the BayesNetGenerator that generates the data
+   *
+   * @return the options
+   */
+  @Override
+  protected String getGeneratorOptions() {
+    return "-N 10 -A 15 -M 500 -C 3 -S 4";
+  }
+
+  /**
+   * create a parallel tempering search
+   *
+   * @param nSeed seed of the search
+   * @param nRuns number of runs
+   * @param nNumSlots number of slots the chains run on
+   * @return the search algorithm
+   */
+  protected SimulatedAnnealing chains(int nSeed, int nRuns, int nNumSlots) {
+    SimulatedAnnealing search = new SimulatedAnnealing();
+    search.setSeed(nSeed);
+    search.setRuns(nRuns);
+    search.setChains(4);
+    search.setSwapInterval(50);
+    search.setNumSlots(nNumSlots);
+    return search;
+  }
+
+  /**
+   * tests that searches with the same seed end the same, whatever the number
+   * of slots
+   *
+   * @throws Exception if a search fails
+   */
+  public void testSlotsDoNotMatter() throws Exception {
+    String sExpected = search(chains(1, 1000, 1));
+    assertEquals(sExpected, search(chains(1, 1000, 1)));
+    assertEquals(sExpected, search(chains(1, 1000, 4)));
+  }
+
+  /**
+   * tests that a resumed parallel tempering search ends like an
+   * uninterrupted one
+   *
+   * @throws Exception if a search fails
+   */
+  public void testResume() throws Exception {
+    File checkpointFile = File.createTempFile("checkpoint", ".ser");
+    checkpointFile.delete();
+    try {
+      String sExpected = search(chains(1, 1000, 2));
+
+      SimulatedAnnealing interrupted = chains(1, 500, 2);
+      interrupted.setCheckpointFile(checkpointFile);
+      search(interrupted);
+      SimulatedAnnealing resumed = chains(1, 1000, 2);
+      resumed.setCheckpointFile(checkpointFile);
+      resumed.setResume(true);
+      assertEquals(sExpected, search(resumed));
+      assertEquals("resumed iteration", 500, resumed.getResumedIteration());
+    } finally {
+      checkpointFile.delete();
+    }
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(SimulatedAnnealingTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * InferenceBenchmark.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.benchmarks.bayes.net;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import weka.classifiers.bayes.BayesNet;
+import weka.core.Instances;
+
+/**
+ * Throughput of classifying a data set with a trained Bayes network, in a
+ * single batch and one instance at a time. The network is learned by K2
+ * from data sampled from a random network, and classifies that data.
+ *
+ * @version $Revision$
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InferenceBenchmark {
+
+  /** number of nodes of the network **/
+  @Param({ "10", "30", "60" })
+  public int nrOfNodes;
+
+  /** number of values of every node **/
+  @Param({ "2", "4" })
+  public int cardinality;
+
+  /** number of instances to classify **/
+  @Param({ "1000" })
+  public int nrOfInstances;
+
+  /** the trained network **/
+  protected BayesNet m_BayesNet;
+
+  /** the data to classify **/
+  protected Instances m_Instances;
+
+  @Setup
+  public void setup() throws Exception {
+    m_Instances = SyntheticNetworks.generate(nrOfNodes, cardinality,
+      nrOfInstances);
+    m_BayesNet = SyntheticNetworks.learn(m_Instances, false);
+  } // setup
+
+  @Benchmark
+  public double[][] distributionsForInstances() throws Exception {
+    return m_BayesNet.distributionsForInstances(m_Instances);
+  } // distributionsForInstances
+
+  @Benchmark
+  public void distributionForInstance(Blackhole blackhole) throws Exception {
+    for (int iInstance = 0; iInstance < m_Instances.numInstances(); iInstance++) {
+      blackhole.consume(m_BayesNet.distributionForInstance(m_Instances
+        .instance(iInstance)));
+    }
+  } // distributionForInstance
+} // class InferenceBenchmark
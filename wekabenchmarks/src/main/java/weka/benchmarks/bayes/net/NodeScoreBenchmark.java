@@ -0,0 +1,103 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * NodeScoreBenchmark.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.benchmarks.bayes.net;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import weka.benchmarks.bayes.net.SyntheticNetworks.ScorableBayesNet;
+import weka.classifiers.bayes.net.search.local.LocalScoreSearchAlgorithm;
+import weka.core.Instances;
+
+/**
+ * Throughput of the local score of a node, counted from the data or from an
+ * ADTree. Every operation scores all nodes of a network learned by K2 with
+ * their parents, or with every other node as extra parent. No score cache is
+ * used, so every score is calculated.
+ *
+ * @version $Revision$
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NodeScoreBenchmark {
+
+  /** number of nodes of the network **/
+  @Param({ "10", "30", "60" })
+  public int nrOfNodes;
+
+  /** number of values of every node **/
+  @Param({ "2", "4" })
+  public int cardinality;
+
+  /** number of instances sampled from the network **/
+  @Param({ "1000" })
+  public int nrOfInstances;
+
+  /** whether counts come from an ADTree instead of the data **/
+  @Param({ "false", "true" })
+  public boolean useADTree;
+
+  /** the search algorithm that calculates the scores **/
+  protected LocalScoreSearchAlgorithm m_Scorer;
+
+  @Setup
+  public void setup() throws Exception {
+    Instances instances = SyntheticNetworks.generate(nrOfNodes, cardinality,
+      nrOfInstances);
+    ScorableBayesNet bayesNet = SyntheticNetworks.learn(instances, useADTree);
+    m_Scorer = new LocalScoreSearchAlgorithm(bayesNet, instances);
+  } // setup
+
+  @Benchmark
+  public void calcNodeScore(Blackhole blackhole) {
+    for (int iNode = 0; iNode < nrOfNodes; iNode++) {
+      blackhole.consume(m_Scorer.calcNodeScore(iNode));
+    }
+  } // calcNodeScore
+
+  @Benchmark
+  public void calcScoreWithExtraParent(Blackhole blackhole) {
+    for (int iNode = 0; iNode < nrOfNodes; iNode++) {
+      for (int iParent = 0; iParent < nrOfNodes; iParent++) {
+        if (iParent != iNode) {
+          blackhole.consume(m_Scorer.calcScoreWithExtraParent(iNode, iParent));
+        }
+      }
+    }
+  } // calcScoreWithExtraParent
+} // class NodeScoreBenchmark
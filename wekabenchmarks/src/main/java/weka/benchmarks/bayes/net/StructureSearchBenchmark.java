@@ -0,0 +1,128 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * StructureSearchBenchmark.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.benchmarks.bayes.net;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import weka.classifiers.bayes.BayesNet;
+import weka.classifiers.bayes.net.search.SearchAlgorithm;
+import weka.classifiers.bayes.net.search.local.AntColonyOptimization;
+import weka.classifiers.bayes.net.search.local.HillClimber;
+import weka.classifiers.bayes.net.search.local.K2;
+import weka.classifiers.bayes.net.search.local.TabuSearch;
+import weka.core.Instances;
+
+/**
+ * Throughput of training a Bayes network, structure search and CPT
+ * estimation, on data sampled from random networks. Every operation starts
+ * from a new search algorithm, so nothing is cached between operations. ACO
+ * runs a few iterations on a single execution slot to keep the numbers
+ * comparable between machines.
+ *
+ * @version $Revision$
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StructureSearchBenchmark {
+
+  /** the search algorithm: K2, HillClimber, TabuSearch or ACO **/
+  @Param({ "K2", "HillClimber", "TabuSearch", "ACO" })
+  public String search;
+
+  /** number of nodes of the network **/
+  @Param({ "10", "30" })
+  public int nrOfNodes;
+
+  /** number of values of every node **/
+  @Param({ "2", "4" })
+  public int cardinality;
+
+  /** number of instances sampled from the network **/
+  @Param({ "1000" })
+  public int nrOfInstances;
+
+  /** the data to learn a network from **/
+  protected Instances m_Instances;
+
+  @Setup
+  public void setup() throws Exception {
+    m_Instances = SyntheticNetworks.generate(nrOfNodes, cardinality,
+      nrOfInstances);
+    newSearchAlgorithm(); // fail on an unknown search before measuring
+  } // setup
+
+  /**
+   * create the search algorithm to benchmark
+   *
+   * @return the search algorithm, with the options used for benchmarking
+   * @throws IllegalArgumentException if the search is unknown
+   */
+  protected SearchAlgorithm newSearchAlgorithm() {
+    if (search.equals("K2")) {
+      K2 k2 = new K2();
+      k2.setMaxNrOfParents(3);
+      return k2;
+    }
+    if (search.equals("HillClimber")) {
+      HillClimber hillClimber = new HillClimber();
+      hillClimber.setMaxNrOfParents(3);
+      return hillClimber;
+    }
+    if (search.equals("TabuSearch")) {
+      TabuSearch tabuSearch = new TabuSearch();
+      tabuSearch.setMaxNrOfParents(3);
+      tabuSearch.setRuns(10);
+      return tabuSearch;
+    }
+    if (search.equals("ACO")) {
+      AntColonyOptimization aco = new AntColonyOptimization();
+      aco.setNumOfIterations(5);
+      aco.setNumSlots(1);
+      return aco;
+    }
+    throw new IllegalArgumentException("Unknown search " + search);
+  } // newSearchAlgorithm
+
+  @Benchmark
+  public BayesNet buildClassifier() throws Exception {
+    BayesNet bayesNet = new BayesNet();
+    bayesNet.setSearchAlgorithm(newSearchAlgorithm());
+    bayesNet.buildClassifier(m_Instances);
+    return bayesNet;
+  } // buildClassifier
+} // class StructureSearchBenchmark
@@ -0,0 +1,130 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SyntheticNetworks.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.benchmarks.bayes.net;
+
+import weka.classifiers.bayes.BayesNet;
+import weka.classifiers.bayes.net.ADNode;
+import weka.classifiers.bayes.net.BayesNetGenerator;
+import weka.classifiers.bayes.net.search.local.K2;
+import weka.core.Instances;
+
+/**
+ * Data sets sampled from random networks generated by BayesNetGenerator, so
+ * benchmarks run on the same data on every machine. Networks have twice as
+ * many arcs as nodes, the class is the last node.
+ *
+ * @version $Revision$
+ */
+public class SyntheticNetworks {
+
+  /** seed of the generated networks and data **/
+  public static final int SEED = 1;
+
+  /**
+   * Bayes network that keeps its data and its ADTree after training, which
+   * BayesNet drops to save space, so node scores can be calculated for its
+   * structure.
+   */
+  public static class ScorableBayesNet extends BayesNet {
+
+    /** for serialization */
+    private static final long serialVersionUID = 3872690174458310447L;
+
+    /** the data the network was trained on **/
+    protected Instances m_TrainingInstances;
+
+    /** the ADTree built for training, null if none was used **/
+    protected ADNode m_KeptADTree;
+
+    /**
+     * estimates the CPTs and keeps the data and ADTree, which are still
+     * available at this point of training
+     *
+     * @throws Exception in case of an error
+     */
+    @Override
+    public void estimateCPTs() throws Exception {
+      super.estimateCPTs();
+      m_TrainingInstances = m_Instances;
+      m_KeptADTree = super.getADTree();
+    } // estimateCPTs
+
+    /**
+     * restores the training data, so scores are calculated on it
+     */
+    public void restoreTrainingInstances() {
+      m_Instances = m_TrainingInstances;
+    } // restoreTrainingInstances
+
+    /**
+     * get the ADTree, kept after training
+     *
+     * @return the ADTree, null if none was built
+     */
+    @Override
+    public ADNode getADTree() {
+      return m_KeptADTree != null ? m_KeptADTree : super.getADTree();
+    } // getADTree
+  } // class ScorableBayesNet
+
+  /**
+   * sample a data set from a random network
+   *
+   * @param nNrOfNodes number of nodes of the network
+   * @param nCardinality number of values of every node
+   * @param nNrOfInstances number of instances to sample
+   * @return the data set, with the last attribute as class
+   * @throws Exception if the network can not be generated
+   */
+  public static Instances generate(int nNrOfNodes, int nCardinality,
+    int nNrOfInstances) throws Exception {
+    int nNrOfArcs = Math.min(2 * nNrOfNodes, nNrOfNodes * (nNrOfNodes - 1) / 2);
+    BayesNetGenerator generator = new BayesNetGenerator();
+    generator.setOptions(new String[] { "-N", "" + nNrOfNodes, "-A",
+      "" + nNrOfArcs, "-M", "" + nNrOfInstances, "-C", "" + nCardinality,
+      "-S", "" + SEED });
+    generator.generateRandomNetwork();
+    generator.generateInstances();
+    return new Instances(generator.m_Instances);
+  } // generate
+
+  /**
+   * learn a network from a data set with K2, which is fast and gives every
+   * node a few parents to score
+   *
+   * @param instances the data set
+   * @param bUseADTree whether the network builds an ADTree for counting
+   * @return the trained network, which still holds the data and the ADTree
+   * @throws Exception if the network can not be learned
+   */
+  public static ScorableBayesNet learn(Instances instances,
+    boolean bUseADTree) throws Exception {
+    K2 search = new K2();
+    search.setMaxNrOfParents(3);
+    ScorableBayesNet bayesNet = new ScorableBayesNet();
+    bayesNet.setSearchAlgorithm(search);
+    bayesNet.setUseADTree(bUseADTree);
+    bayesNet.buildClassifier(instances);
+    bayesNet.restoreTrainingInstances();
+    return bayesNet;
+  } // learn
+} // class SyntheticNetworks